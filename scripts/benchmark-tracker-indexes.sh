@@ -0,0 +1,91 @@
+#!/bin/bash
+
+# Compares the plans of the delta reader joins before and after the tracker indexes of migrations/liquibase.xml.
+# Everything is created in a throwaway schema, so it can be run against any postgres the sync user can connect to:
+#
+#   ANALYTICS_DB_SERVER=localhost POSTGRES_DB_NAME=analytics ANALYTICS_DB_USER=analytics ./benchmark-tracker-indexes.sh [rows]
+
+set -e
+
+ROWS=${1:-200000}
+SCHEMA=tracker_index_benchmark
+
+export PGPASSWORD=${ANALYTICS_DB_PASSWORD}
+PSQL="psql -X -q -v ON_ERROR_STOP=1 -h ${ANALYTICS_DB_SERVER:-localhost} -U ${ANALYTICS_DB_USER:-postgres} -d ${POSTGRES_DB_NAME:-postgres}"
+
+DELTA_QUERY="
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT enrTable.\"Patient_Identifier\", insTracker.instance_id, enrolTracker.enrollment_id, evntTracker.event_id
+FROM enrollment enrTable
+  INNER JOIN marker enrollment_marker
+    ON enrTable.date_created > COALESCE(enrollment_marker.last_synced_date, '-infinity')
+       AND category = 'enrollment' AND program_name = 'HIV Program'
+  INNER JOIN orgunit_tracker orgTracker ON enrTable.\"OrgUnit\" = orgTracker.orgunit
+  INNER JOIN instance_tracker insTracker ON enrTable.\"Patient_Identifier\" = insTracker.patient_id
+  LEFT JOIN enrollment_tracker enrolTracker ON enrTable.program = enrolTracker.program
+                                               AND enrolTracker.instance_id = insTracker.instance_id
+                                               AND enrolTracker.program_unique_id = enrTable.program_unique_id :: TEXT
+  LEFT JOIN event_tracker evntTracker ON insTracker.instance_id = evntTracker.instance_id
+                                         AND enrTable.program_unique_id :: TEXT = evntTracker.event_unique_id
+                                         AND enrTable.program = evntTracker.program
+                                         AND evntTracker.program_stage = 'Initial Visit'
+WHERE enrolTracker.instance_id IS NOT NULL;"
+
+echo "Generating ${ROWS} patients in schema ${SCHEMA}"
+${PSQL} <<SQL
+DROP SCHEMA IF EXISTS ${SCHEMA} CASCADE;
+CREATE SCHEMA ${SCHEMA};
+SET search_path TO ${SCHEMA};
+
+CREATE TABLE instance_tracker(patient_id text, instance_id text, created_by text, date_created TIMESTAMP,
+                              PRIMARY KEY (instance_id, patient_id));
+CREATE TABLE enrollment_tracker(enrollment_id text, instance_id text, program text, status text, created_by text,
+                                date_created TIMESTAMP, program_unique_id text, PRIMARY KEY (enrollment_id, program_unique_id));
+CREATE TABLE event_tracker(event_id text PRIMARY KEY, instance_id text, program text, program_stage text,
+                           event_unique_id text, created_by text, date_created TIMESTAMP);
+CREATE TABLE orgunit_tracker(orgunit text PRIMARY KEY, id text, date_created TIMESTAMP);
+CREATE TABLE marker(marker_id SERIAL PRIMARY KEY, program_name TEXT, category TEXT, last_synced_date TIMESTAMP);
+CREATE TABLE enrollment("Patient_Identifier" text, program text, program_unique_id int, "OrgUnit" text,
+                        status text, date_created TIMESTAMP);
+
+INSERT INTO orgunit_tracker SELECT 'OrgUnit ' || i, 'ou' || i, now() FROM generate_series(1, 100) i;
+INSERT INTO marker(program_name, category, last_synced_date)
+  SELECT 'Program ' || i, category, now() - INTERVAL '1 day'
+  FROM generate_series(1, 50) i, unnest(ARRAY['instance', 'enrollment', 'event']) category;
+INSERT INTO marker(program_name, category, last_synced_date) VALUES ('HIV Program', 'enrollment', now() - INTERVAL '1 day');
+
+INSERT INTO instance_tracker SELECT 'PAT' || i, 'TEI' || i, 'admin', now() FROM generate_series(1, ${ROWS}) i;
+INSERT INTO enrollment_tracker
+  SELECT 'ENR' || i, 'TEI' || i, 'HIV Program', 'ACTIVE', 'admin', now(), i :: TEXT FROM generate_series(1, ${ROWS}) i;
+INSERT INTO event_tracker
+  SELECT 'EVN' || i, 'TEI' || i, 'HIV Program', 'Initial Visit', i :: TEXT, 'admin', now() FROM generate_series(1, ${ROWS}) i;
+
+-- the delta is the last 1% of the patients
+INSERT INTO enrollment
+  SELECT 'PAT' || i, 'HIV Program', i, 'OrgUnit ' || (i % 100 + 1), 'ACTIVE',
+         CASE WHEN i > ${ROWS} * 0.99 THEN now() ELSE now() - INTERVAL '2 days' END
+  FROM generate_series(1, ${ROWS}) i;
+
+ANALYZE;
+SQL
+
+echo
+echo "========== Without the tracker indexes =========="
+${PSQL} -c "SET search_path TO ${SCHEMA};" -c "${DELTA_QUERY}"
+
+${PSQL} <<SQL
+SET search_path TO ${SCHEMA};
+CREATE INDEX instance_tracker_patient_id_idx ON instance_tracker (patient_id, instance_id);
+CREATE INDEX enrollment_tracker_program_instance_idx
+  ON enrollment_tracker (program, instance_id, program_unique_id, enrollment_id, date_created);
+CREATE INDEX event_tracker_instance_event_idx
+  ON event_tracker (instance_id, event_unique_id, program, program_stage, event_id);
+CREATE UNIQUE INDEX marker_program_name_category_unique ON marker (program_name, category);
+ANALYZE;
+SQL
+
+echo
+echo "========== With the tracker indexes =========="
+${PSQL} -c "SET search_path TO ${SCHEMA};" -c "${DELTA_QUERY}"
+
+${PSQL} -c "DROP SCHEMA ${SCHEMA} CASCADE;"
@@ -0,0 +1,173 @@
+package com.thoughtworks.martdhis2sync.model;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// Run with ./gradlew jmh, adding -prof gc to jmh.profilers to compare allocation per chunk.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EnrollmentRequestBodyBenchmark {
+
+    private static final String EVENT_API_FORMAT = "{" +
+            "\"event\":\"%s\", " +
+            "\"trackedEntityInstance\":\"%s\", " +
+            "\"enrollment\":\"%s\", " +
+            "\"program\":\"%s\", " +
+            "\"programStage\":\"%s\", " +
+            "\"orgUnit\":\"%s\", " +
+            "\"eventDate\":\"%s\", " +
+            "\"status\":\"%s\", " +
+            "\"dataValues\":[%s]" +
+            "}";
+
+    private static final String ENROLLMENT_API_FORMAT = "{" +
+            "\"enrollment\":\"%s\", " +
+            "\"trackedEntityInstance\":\"%s\", " +
+            "\"orgUnit\":\"%s\", " +
+            "\"program\":\"%s\", " +
+            "\"enrollmentDate\":\"%s\", " +
+            "\"incidentDate\":\"%s\", " +
+            "\"status\":\"%s\", " +
+            "\"events\":[%s]" +
+            "}";
+
+    @Param({"100", "1000"})
+    private int enrollmentCount;
+
+    @Param({"1", "5"})
+    private int eventsPerEnrollment;
+
+    @Param({"20"})
+    private int dataValuesPerEvent;
+
+    private List<EnrollmentAPIPayLoad> enrollments;
+    private List<String> enrollmentIds;
+
+    @Setup
+    public void setUp() {
+        enrollments = new ArrayList<>();
+        enrollmentIds = new ArrayList<>();
+        for (int i = 0; i < enrollmentCount; i++) {
+            List<Event> events = new ArrayList<>();
+            for (int j = 0; j < eventsPerEnrollment; j++) {
+                Map<String, String> dataValues = new LinkedHashMap<>();
+                for (int k = 0; k < dataValuesPerEvent; k++) {
+                    dataValues.put("dataElem" + k, "value \"" + k + "\" of event " + j);
+                }
+                events.add(new Event("", "instance" + i, "", "UoZQdIJuv1R", "m6Yfksc81Tg", "ofmUIu4tg",
+                        "2018-10-11T00:00:00.000+0530", "COMPLETED", String.valueOf(j), dataValues));
+            }
+            enrollments.add(new EnrollmentAPIPayLoad("", "instance" + i, "UoZQdIJuv1R", "ofmUIu4tg",
+                    "2018-10-11", "2018-10-11", "ACTIVE", String.valueOf(i), events));
+            enrollmentIds.add("");
+        }
+    }
+
+    @Benchmark
+    public long stringFormatTemplates() throws IOException {
+        CountingOutputStream outputStream = new CountingOutputStream();
+        outputStream.write(getAPIBody().getBytes(StandardCharsets.UTF_8));
+
+        return outputStream.count;
+    }
+
+    @Benchmark
+    public long streamingRequestBody() throws IOException {
+        CountingOutputStream outputStream = new CountingOutputStream();
+        new EnrollmentRequestBody(enrollments, enrollmentIds, Event::getEvent, Event::getStatus).writeTo(outputStream);
+
+        return outputStream.count;
+    }
+
+    // the request body building used by the enrollment writers before EnrollmentRequestBody
+    private String getAPIBody() {
+        StringBuilder body = new StringBuilder("");
+        for (int i = 0; i < enrollments.size(); i++) {
+            EnrollmentAPIPayLoad value = enrollments.get(i);
+            body.append(String.format(
+                    ENROLLMENT_API_FORMAT,
+                    enrollmentIds.get(i),
+                    value.getInstanceId(),
+                    value.getOrgUnit(),
+                    value.getProgram(),
+                    value.getProgramStartDate(),
+                    value.getIncidentDate(),
+                    EnrollmentAPIPayLoad.STATUS_ACTIVE,
+                    getEventBody(value.getEvents())
+            )).append(",");
+        }
+
+        return String.format("{\"enrollments\":[%s]}", removeLastChar(body));
+    }
+
+    private String getEventBody(List<Event> events) {
+        StringBuilder eventsApiBuilder = new StringBuilder();
+        events.forEach(event -> eventsApiBuilder
+                .append(String.format(EVENT_API_FORMAT,
+                        event.getEvent(),
+                        event.getTrackedEntityInstance(),
+                        event.getEnrollment(),
+                        event.getProgram(),
+                        event.getProgramStage(),
+                        event.getOrgUnit(),
+                        event.getEventDate(),
+                        event.getStatus(),
+                        getDataValues(event.getDataValues())
+                ))
+                .append(","));
+
+        return removeLastChar(eventsApiBuilder);
+    }
+
+    private String getDataValues(Map<String, String> dataValues) {
+        StringBuilder dataValuesApiBuilder = new StringBuilder();
+        dataValues.forEach((key, value) -> dataValuesApiBuilder.append(
+                String.format("{\"dataElement\":\"%s\", \"value\":\"%s\"},", key,
+                        value.replace("\\", "\\\\").replace("\"", "\\\""))
+        ));
+
+        return removeLastChar(dataValuesApiBuilder);
+    }
+
+    private static String removeLastChar(StringBuilder value) {
+        int length = value.length();
+
+        return length > 0 ? value.deleteCharAt(length - 1).toString() : "";
+    }
+
+    private static class CountingOutputStream extends OutputStream {
+        private long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
@@ -1,14 +1,106 @@
 package com.thoughtworks.martdhis2sync;
 
+import com.thoughtworks.martdhis2sync.repository.GzipRequestInterceptor;
+import com.thoughtworks.martdhis2sync.repository.StreamingBodyHttpMessageConverter;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.web.client.RestTemplateBuilder;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.web.client.RestTemplate;
 
+import java.util.concurrent.TimeUnit;
+
 @Configuration
 public class BeanConfigurer {
-    @Bean
-    public RestTemplate restTemplate(RestTemplateBuilder builder) {
+
+    @Value("${http.client.max.connections}")
+    private int maxConnections;
+
+    @Value("${http.client.max.connections.per.route}")
+    private int maxConnectionsPerRoute;
+
+    @Value("${http.client.idle.connection.timeout.seconds}")
+    private long idleConnectionTimeout;
+
+    @Value("${http.client.connect.timeout.millis}")
+    private int connectTimeout;
+
+    @Value("${http.client.read.timeout.millis}")
+    private int readTimeout;
+
+    @Value("${http.client.connection.request.timeout.millis}")
+    private int connectionRequestTimeout;
+
+    @Value("${http.client.response.compression}")
+    private boolean responseCompression;
+
+    @Value("${http.client.request.compression}")
+    private boolean requestCompression;
+
+    @Value("${http.client.request.compression.threshold.bytes}")
+    private long requestCompressionThreshold;
+
+    @Value("${sync.async.queue.capacity}")
+    private int syncQueueCapacity;
+
+    @Value("${sync.concurrency}")
+    private int syncConcurrency;
+
+    @Bean(destroyMethod = "close")
+    public CloseableHttpClient httpClient() {
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(maxConnections);
+        connectionManager.setDefaultMaxPerRoute(maxConnectionsPerRoute);
+
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectTimeout(connectTimeout)
+                .setSocketTimeout(readTimeout)
+                .setConnectionRequestTimeout(connectionRequestTimeout)
+                .build();
+
+        HttpClientBuilder builder = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(requestConfig)
+                .evictExpiredConnections()
+                .evictIdleConnections(idleConnectionTimeout, TimeUnit.SECONDS);
+
+        if (!responseCompression) {
+            builder.disableContentCompression();
+        }
+
+        if (requestCompression) {
+            builder.addInterceptorFirst(new GzipRequestInterceptor(requestCompressionThreshold));
+        }
+
         return builder.build();
     }
+
+    @Bean
+    public RestTemplate restTemplate(RestTemplateBuilder builder, CloseableHttpClient httpClient) {
+        HttpComponentsClientHttpRequestFactory requestFactory = new HttpComponentsClientHttpRequestFactory(httpClient);
+        requestFactory.setBufferRequestBody(false);
+
+        RestTemplate restTemplate = builder.requestFactory(requestFactory).build();
+        restTemplate.getMessageConverters().add(0, new StreamingBodyHttpMessageConverter());
+
+        return restTemplate;
+    }
+
+    // each sync runs in its own SyncContext, the syncs of one service still wait for each other in SyncService
+    @Bean
+    public ThreadPoolTaskExecutor syncExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(syncConcurrency);
+        executor.setMaxPoolSize(syncConcurrency);
+        executor.setQueueCapacity(syncQueueCapacity);
+        executor.setThreadNamePrefix("sync-");
+        return executor;
+    }
 }
@@ -1,22 +1,21 @@
 package com.thoughtworks.martdhis2sync.dao;
 
-import com.google.gson.Gson;
-import com.thoughtworks.martdhis2sync.model.Config;
-import com.thoughtworks.martdhis2sync.model.LookupTable;
-import com.thoughtworks.martdhis2sync.util.BatchUtil;
+import com.thoughtworks.martdhis2sync.model.Mapping;
+import com.thoughtworks.martdhis2sync.util.SqlTemplateRegistry;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
-import org.springframework.beans.factory.annotation.Value;
-import org.springframework.core.io.Resource;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Component;
 import org.springframework.util.StringUtils;
 
-import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
+import static com.thoughtworks.martdhis2sync.util.SqlTemplateRegistry.SEARCHABLE;
+import static com.thoughtworks.martdhis2sync.util.SqlUtil.quotedColumn;
+import static com.thoughtworks.martdhis2sync.util.SqlUtil.table;
+
 @Component
 public class MappingDAO {
 
@@ -24,24 +23,26 @@ public class MappingDAO {
     @Qualifier("jdbcTemplate")
     private JdbcTemplate jdbcTemplate;
 
-    @Value("classpath:sql/Searchable.sql")
-    private Resource searchableResource;
+    @Autowired
+    private SqlTemplateRegistry sqlTemplates;
 
     public Map<String, Object> getMapping(String mapping) {
-        String sql = String.format("SELECT lookup_table, mapping_json, config FROM mapping WHERE mapping_name='%s'", mapping);
+        String sql = "SELECT lookup_table, mapping_json, config FROM mapping WHERE mapping_name = ?";
+
+        return jdbcTemplate.queryForMap(sql, mapping);
+    }
+
+    public String getMappingChecksum(String mapping) {
+        String sql = "SELECT md5(concat_ws('|', lookup_table, mapping_json, config)) FROM mapping WHERE mapping_name = ?";
 
-        return jdbcTemplate.queryForMap(sql);
+        return jdbcTemplate.queryForObject(sql, String.class, mapping);
     }
 
-    public List<Map<String, Object>> getSearchableFields(String mappingName) throws IOException {
+    public List<Map<String, Object>> getSearchableFields(Mapping mapping) {
         StringBuilder columns = new StringBuilder();
-        Gson gson = new Gson();
-        Map<String, Object> mapping = getMapping(mappingName);
 
-        gson.fromJson(mapping.get("config").toString(), Config.class).getSearchable().forEach(column -> {
-            columns.append("\"");
-            columns.append(column);
-            columns.append("\"");
+        mapping.getConfig().getSearchable().forEach(column -> {
+            columns.append(quotedColumn(column));
             columns.append(",");
         });
 
@@ -51,11 +52,11 @@ public class MappingDAO {
 
         return jdbcTemplate.queryForList(
                 String.format(
-                        BatchUtil.convertResourceOutputToString(searchableResource),
+                        sqlTemplates.get(SEARCHABLE),
                         columns.substring(0, columns.length() - 1),
-                        gson.fromJson(mapping.get("lookup_table").toString(), LookupTable.class).getInstance(),
-                        mappingName
-                )
+                        table(mapping.getLookupTable().getInstance())
+                ),
+                mapping.getName()
         );
     }
 }
@@ -1,34 +1,56 @@
 package com.thoughtworks.martdhis2sync.dao;
 
-import com.thoughtworks.martdhis2sync.util.BatchUtil;
+import com.thoughtworks.martdhis2sync.reader.QueryParameterSetter;
+import com.thoughtworks.martdhis2sync.util.SqlTemplateRegistry;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
-import org.springframework.beans.factory.annotation.Value;
-import org.springframework.core.io.Resource;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Component;
 
-import java.io.IOException;
 import java.util.List;
 import java.util.Map;
 
+import static com.thoughtworks.martdhis2sync.util.SqlTemplateRegistry.DELTA_ENROLLMENT_INSTANCES;
+import static com.thoughtworks.martdhis2sync.util.SqlTemplateRegistry.UPDATED_ACTIVE_ENROLLMENT_WITH_EVENTS;
+import static com.thoughtworks.martdhis2sync.util.SqlTemplateRegistry.UPDATED_COMPLETED_ENROLLMENT_WITH_EVENTS;
+import static com.thoughtworks.martdhis2sync.util.SqlUtil.table;
+
 @Component
 public class PatientDAO {
-    @Value("classpath:sql/DeltaEnrollmentInstances.sql")
-    private Resource deltaEnrollmentInstances;
+    private static final String ENROLLMENT_IDS_QUERY = "SELECT DISTINCT updated.enrollment_id FROM (%s) AS updated";
+
+    @Autowired
+    private SqlTemplateRegistry sqlTemplates;
 
     @Autowired
     @Qualifier("jdbcTemplate")
     private JdbcTemplate jdbcTemplate;
 
     public List<Map<String, Object>> getDeltaEnrollmentInstanceIds(String enrollmentTable, String eventTable, String programName) throws Exception {
-        String sql;
-        try {
-            sql = BatchUtil.convertResourceOutputToString(deltaEnrollmentInstances);
-        } catch (IOException e) {
-            throw new Exception("Error in converting sql to string:: " + e.getMessage());
+        String sql = sqlTemplates.get(DELTA_ENROLLMENT_INSTANCES);
+
+        return jdbcTemplate.queryForList(String.format(sql, table(enrollmentTable), table(eventTable), table(enrollmentTable)),
+                programName, programName);
+    }
+
+    public List<String> getUpdatedCompletedEnrollmentIds(String enrollmentTable, String eventTable, String programName) {
+        return getEnrollmentIds(UPDATED_COMPLETED_ENROLLMENT_WITH_EVENTS, enrollmentTable, eventTable, programName);
+    }
+
+    public List<String> getUpdatedActiveEnrollmentIds(String enrollmentTable, String eventTable, String programName) {
+        return getEnrollmentIds(UPDATED_ACTIVE_ENROLLMENT_WITH_EVENTS, enrollmentTable, eventTable, programName);
+    }
+
+    // the enrollments the updated enrollments reader of the template would read now, with nothing ignored
+    private List<String> getEnrollmentIds(String template, String enrollmentTable, String eventTable, String programName) {
+        String sql = String.format(sqlTemplates.get(template), table(enrollmentTable), table(eventTable), table(enrollmentTable))
+                .trim();
+        if (sql.endsWith(";")) {
+            sql = sql.substring(0, sql.length() - 1);
         }
 
-        return jdbcTemplate.queryForList(String.format(sql, enrollmentTable, programName, eventTable, enrollmentTable, programName));
+        return jdbcTemplate.query(String.format(ENROLLMENT_IDS_QUERY, sql),
+                new QueryParameterSetter(programName, programName, new Object[0], null, null),
+                (resultSet, rowNum) -> resultSet.getString("enrollment_id"));
     }
 }
@@ -0,0 +1,32 @@
+package com.thoughtworks.martdhis2sync.listener;
+
+import com.thoughtworks.martdhis2sync.util.BatchUtil;
+import com.thoughtworks.martdhis2sync.util.MarkerUtil;
+import com.thoughtworks.martdhis2sync.util.SyncContext;
+import com.thoughtworks.martdhis2sync.util.TEIUtil;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.ExitStatus;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.listener.StepExecutionListenerSupport;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import static com.thoughtworks.martdhis2sync.util.MarkerUtil.CATEGORY_INSTANCE;
+
+@Component
+public class InstanceMarkerListener extends StepExecutionListenerSupport {
+
+    @Autowired
+    private MarkerUtil markerUtil;
+
+    // the partitions of the instance step only move the marker together, once every one of them has completed
+    @Override
+    public ExitStatus afterStep(StepExecution stepExecution) {
+        if (BatchStatus.COMPLETED.equals(stepExecution.getStatus())) {
+            markerUtil.updateMarkerEntry(stepExecution.getJobParameters().getString("service"), CATEGORY_INSTANCE,
+                    BatchUtil.getStringFromDate(SyncContext.current().getInstanceDate(), BatchUtil.DATEFORMAT_WITH_24HR_TIME));
+        }
+
+        return null;
+    }
+}
@@ -1,5 +1,7 @@
 package com.thoughtworks.martdhis2sync.listener;
 
+import com.thoughtworks.martdhis2sync.service.JobService;
+import com.thoughtworks.martdhis2sync.service.SyncStatusService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.batch.core.JobExecution;
@@ -12,12 +14,21 @@ public class JobCompletionNotificationListener extends JobExecutionListenerSuppo
 
     private Logger logger = LoggerFactory.getLogger(this.getClass());
 
+    @Autowired
+    private SyncStatusService syncStatusService;
+
     @Autowired
     public JobCompletionNotificationListener() {
     }
 
+    @Override
+    public void beforeJob(JobExecution jobExecution) {
+        syncStatusService.jobStarted(jobExecution);
+    }
+
     @Override
     public void afterJob(JobExecution jobExecution) {
+        syncStatusService.jobFinished(jobExecution, JobService.isIS_JOB_FAILED());
         logger.info("Job# " + jobExecution.getJobId()
                 + " triggered by " + jobExecution.getJobParameters().getString("user") + " "
                 + jobExecution.getStatus() + " and took "
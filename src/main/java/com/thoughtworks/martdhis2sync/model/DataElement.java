@@ -10,4 +10,5 @@ import lombok.NoArgsConstructor;
 public class DataElement {
     private String id;
     private String displayName;
+    private String lastUpdated;
 }
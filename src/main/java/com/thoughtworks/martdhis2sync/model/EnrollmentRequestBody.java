@@ -0,0 +1,175 @@
+package com.thoughtworks.martdhis2sync.model;
+
+import org.springframework.http.StreamingHttpOutputMessage;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+public class EnrollmentRequestBody implements StreamingHttpOutputMessage.Body {
+
+    private final List<EnrollmentAPIPayLoad> enrollments;
+    private final List<String> enrollmentIds;
+    private final Function<Event, String> eventId;
+    private final Function<Event, String> eventStatus;
+
+    public EnrollmentRequestBody(Collection<EnrollmentAPIPayLoad> enrollments, List<String> enrollmentIds,
+                                 Function<Event, String> eventId, Function<Event, String> eventStatus) {
+        this.enrollments = new ArrayList<>(enrollments);
+        this.enrollmentIds = enrollmentIds;
+        this.eventId = eventId;
+        this.eventStatus = eventStatus;
+    }
+
+    @Override
+    public void writeTo(OutputStream outputStream) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+
+        writer.write("{\"enrollments\":[");
+        for (int i = 0; i < enrollments.size(); i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            writeEnrollment(writer, enrollments.get(i), enrollmentIds.get(i));
+        }
+        writer.write("]}");
+        writer.flush();
+    }
+
+    public boolean hasIds() {
+        for (int i = 0; i < enrollments.size(); i++) {
+            if (isEmpty(enrollmentIds.get(i))
+                    || enrollments.get(i).getEvents().stream().anyMatch(event -> isEmpty(eventId.apply(event)))) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    public String toJson() {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try {
+            writeTo(outputStream);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        return new String(outputStream.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public String toString() {
+        int events = enrollments.stream().mapToInt(enrollment -> enrollment.getEvents().size()).sum();
+
+        return enrollments.size() + " enrollments with " + events + " events";
+    }
+
+    private void writeEnrollment(Writer writer, EnrollmentAPIPayLoad enrollment, String enrollmentId) throws IOException {
+        writer.write('{');
+        writeField(writer, "enrollment", enrollmentId);
+        writeField(writer, "trackedEntityInstance", enrollment.getInstanceId());
+        writeField(writer, "orgUnit", enrollment.getOrgUnit());
+        writeField(writer, "program", enrollment.getProgram());
+        writeField(writer, "enrollmentDate", enrollment.getProgramStartDate());
+        writeField(writer, "incidentDate", enrollment.getIncidentDate());
+        writeField(writer, "status", EnrollmentAPIPayLoad.STATUS_ACTIVE);
+        writer.write("\"events\":[");
+        Iterator<Event> events = enrollment.getEvents().iterator();
+        while (events.hasNext()) {
+            writeEvent(writer, events.next());
+            if (events.hasNext()) {
+                writer.write(',');
+            }
+        }
+        writer.write("]}");
+    }
+
+    private void writeEvent(Writer writer, Event event) throws IOException {
+        writer.write('{');
+        writeField(writer, "event", eventId.apply(event));
+        writeField(writer, "trackedEntityInstance", event.getTrackedEntityInstance());
+        writeField(writer, "enrollment", event.getEnrollment());
+        writeField(writer, "program", event.getProgram());
+        writeField(writer, "programStage", event.getProgramStage());
+        writeField(writer, "orgUnit", event.getOrgUnit());
+        writeField(writer, "eventDate", event.getEventDate());
+        writeField(writer, "status", eventStatus.apply(event));
+        writer.write("\"dataValues\":[");
+        Iterator<Map.Entry<String, String>> dataValues = event.getDataValues().entrySet().iterator();
+        while (dataValues.hasNext()) {
+            Map.Entry<String, String> dataValue = dataValues.next();
+            writer.write("{\"dataElement\":");
+            writeString(writer, dataValue.getKey());
+            writer.write(", \"value\":");
+            writeString(writer, dataValue.getValue());
+            writer.write('}');
+            if (dataValues.hasNext()) {
+                writer.write(',');
+            }
+        }
+        writer.write("]}");
+    }
+
+    private void writeField(Writer writer, String name, String value) throws IOException {
+        writer.write('"');
+        writer.write(name);
+        writer.write("\":");
+        writeString(writer, value);
+        writer.write(", ");
+    }
+
+    // nulls are written as the string "null", the same as the String.format templates this replaced
+    private void writeString(Writer writer, String value) throws IOException {
+        String string = String.valueOf(value);
+        writer.write('"');
+        for (int i = 0; i < string.length(); i++) {
+            char c = string.charAt(i);
+            switch (c) {
+                case '"':
+                    writer.write("\\\"");
+                    break;
+                case '\\':
+                    writer.write("\\\\");
+                    break;
+                case '\n':
+                    writer.write("\\n");
+                    break;
+                case '\r':
+                    writer.write("\\r");
+                    break;
+                case '\t':
+                    writer.write("\\t");
+                    break;
+                case '\b':
+                    writer.write("\\b");
+                    break;
+                case '\f':
+                    writer.write("\\f");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        writer.write(String.format("\\u%04x", (int) c));
+                    } else {
+                        writer.write(c);
+                    }
+            }
+        }
+        writer.write('"');
+    }
+
+    private boolean isEmpty(String id) {
+        return id == null || id.isEmpty();
+    }
+}
@@ -0,0 +1,19 @@
+package com.thoughtworks.martdhis2sync.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class Mapping {
+    private String name;
+    private String checksum;
+    private LookupTable lookupTable;
+    private MappingJson mappingJson;
+    private Config config;
+    private Map<String, Object> instanceMapping;
+}
@@ -10,4 +10,5 @@ import lombok.NoArgsConstructor;
 public class OrgUnit {
     private String id;
     private String code;
+    private String lastUpdated;
 }
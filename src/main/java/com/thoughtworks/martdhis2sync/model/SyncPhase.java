@@ -0,0 +1,22 @@
+package com.thoughtworks.martdhis2sync.model;
+
+import lombok.Data;
+
+import java.util.Date;
+
+@Data
+public class SyncPhase {
+
+    public enum State {
+        RUNNING, COMPLETED, FAILED
+    }
+
+    private String name;
+    private State state;
+    private Date startedAt;
+    private Date finishedAt;
+    private int readCount;
+    private int writeCount;
+    private int skipCount;
+    private double rowsPerSecond;
+}
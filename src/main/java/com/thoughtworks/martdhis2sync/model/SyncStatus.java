@@ -0,0 +1,25 @@
+package com.thoughtworks.martdhis2sync.model;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+@Data
+public class SyncStatus {
+
+    public enum State {
+        QUEUED, RUNNING, SUCCESS, NO_DELTA, FAILED
+    }
+
+    private String syncId;
+    private String service;
+    private String user;
+    private State state;
+    private String message;
+    private Date submittedAt;
+    private Date startedAt;
+    private Date finishedAt;
+    private List<SyncPhase> phases = new ArrayList<>();
+}
@@ -10,4 +10,5 @@ import lombok.NoArgsConstructor;
 public class TrackedEntityAttribute {
     private String id;
     private String displayName;
+    private String lastUpdated;
 }
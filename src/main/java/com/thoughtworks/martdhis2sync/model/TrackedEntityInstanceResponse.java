@@ -13,4 +13,5 @@ public class TrackedEntityInstanceResponse {
     private List<TrackedEntityInstanceInfo> trackedEntityInstances;
     private String message;
     private int httpStatusCode;
+    private Pager pager;
 }
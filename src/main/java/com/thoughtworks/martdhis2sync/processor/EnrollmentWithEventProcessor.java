@@ -1,18 +1,16 @@
 package com.thoughtworks.martdhis2sync.processor;
 
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.thoughtworks.martdhis2sync.model.EnrollmentAPIPayLoad;
 import com.thoughtworks.martdhis2sync.model.Event;
 import com.thoughtworks.martdhis2sync.model.ProcessedTableRow;
+import com.thoughtworks.martdhis2sync.util.ColumnMapping;
 import org.springframework.stereotype.Component;
 
 import java.util.LinkedList;
 import java.util.List;
 
-import static com.thoughtworks.martdhis2sync.util.BatchUtil.DATEFORMAT_WITH_24HR_TIME;
 import static com.thoughtworks.martdhis2sync.util.BatchUtil.hasValue;
 import static com.thoughtworks.martdhis2sync.util.EnrollmentUtil.updateLatestEnrollmentDateCreated;
 import static com.thoughtworks.martdhis2sync.util.EventUtil.updateLatestEventDateCreated;
@@ -20,20 +18,21 @@ import static com.thoughtworks.martdhis2sync.util.EventUtil.updateLatestEventDat
 @Component
 public abstract class EnrollmentWithEventProcessor {
 
-    public ProcessedTableRow process(Object tableRow, Object mappingObj) {
-        Gson gson = new GsonBuilder().setDateFormat(DATEFORMAT_WITH_24HR_TIME).create();
-        JsonElement tableRowJsonElement = gson.toJsonTree(tableRow);
-        JsonElement mappingObjJsonElement = gson.toJsonTree(mappingObj);
+    private ColumnMapping mapping;
 
-        JsonObject tableRowJsonObject = tableRowJsonElement.getAsJsonObject();
-        JsonObject mappingJsonObject = mappingObjJsonElement.getAsJsonObject();
+    public void setMappingObj(Object mappingObj) {
+        mapping = ColumnMapping.compile(mappingObj);
+    }
+
+    public ProcessedTableRow process(Object tableRow) {
+        JsonObject tableRowJsonObject = ColumnMapping.toJsonObject(tableRow);
 
         JsonElement eventDateCreated = tableRowJsonObject.get("date_created");
         JsonElement enrollmentDateCreated = tableRowJsonObject.get("enrollment_date_created");
         updateLatestEventDateCreated(hasValue(eventDateCreated) ? eventDateCreated.getAsString() : "");
         updateLatestEnrollmentDateCreated(hasValue(enrollmentDateCreated) ? enrollmentDateCreated.getAsString() : "");
 
-        Event event = getEvent(tableRowJsonObject, mappingJsonObject);
+        Event event = getEvent(tableRowJsonObject, mapping);
         List<Event> events = new LinkedList<>();
         if (event != null) {
             events.add(event);
@@ -49,6 +48,6 @@ public abstract class EnrollmentWithEventProcessor {
         );
     }
 
-    abstract Event getEvent(JsonObject tableRow, JsonObject mapping);
+    abstract Event getEvent(JsonObject tableRow, ColumnMapping mapping);
     abstract EnrollmentAPIPayLoad getEnrollmentAPIPayLoad(JsonObject tableRowJsonObject, List<Event> events);
 }
@@ -1,35 +1,35 @@
 package com.thoughtworks.martdhis2sync.processor;
 
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.thoughtworks.martdhis2sync.model.TrackedEntityInstanceInfo;
 import com.thoughtworks.martdhis2sync.util.BatchUtil;
+import com.thoughtworks.martdhis2sync.util.ColumnMapping;
+import com.thoughtworks.martdhis2sync.util.SyncContext;
 import com.thoughtworks.martdhis2sync.util.TEIUtil;
 import lombok.Setter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.batch.item.ItemProcessor;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.ConfigurableBeanFactory;
+import org.springframework.context.annotation.Scope;
 import org.springframework.stereotype.Component;
 
 import java.util.*;
-import java.util.stream.Collectors;
 
 import static com.thoughtworks.martdhis2sync.util.BatchUtil.*;
 
 @Component
+@Scope(ConfigurableBeanFactory.SCOPE_PROTOTYPE)
 public class TrackedEntityInstanceProcessor implements ItemProcessor {
 
-    private static final String EMPTY_STRING = "\"\"";
     private static final String ORGUNIT_UID = "orgunit_id";
 
     @Value("${tracked.entity.type.person.uid}")
     private String teUID;
 
-    @Setter
-    private Object mappingObj;
+    private ColumnMapping mapping;
 
     @Setter
     private List<String> searchableAttributes;
@@ -43,30 +43,24 @@ public class TrackedEntityInstanceProcessor implements ItemProcessor {
     @Override
     public String process(Object tableRow) {
 
-        Gson gson = new GsonBuilder().setDateFormat(DATEFORMAT_WITH_24HR_TIME).create();
-        JsonElement tableRowJsonElement = gson.toJsonTree(tableRow);
-        JsonElement mappingObjJsonElement = gson.toJsonTree(mappingObj);
-
-        JsonObject tableRowJsonObject = tableRowJsonElement.getAsJsonObject();
-        JsonObject mappingJsonObject = mappingObjJsonElement.getAsJsonObject();
+        JsonObject tableRowJsonObject = ColumnMapping.toJsonObject(tableRow);
 
-        getInstanceId(tableRowJsonObject, mappingJsonObject);
+        getInstanceId(tableRowJsonObject);
         TEIUtil.setPatientIds(tableRowJsonObject);
         updateLatestDateCreated(tableRowJsonObject.get("date_created").toString());
 
-        return createRequestBodyForTrackedEntityInstance(tableRowJsonObject, mappingJsonObject);
+        return createRequestBodyForTrackedEntityInstance(tableRowJsonObject);
     }
 
-    private void updateLatestDateCreated(String dateCreated) {
-        Date bahmniDateCreated = getDateFromString(getUnquotedString(dateCreated), DATEFORMAT_WITH_24HR_TIME);
-        if (TEIUtil.date.compareTo(bahmniDateCreated) < 1) {
-            TEIUtil.date = bahmniDateCreated;
-        }
+    public void setMappingObj(Object mappingObj) {
+        mapping = ColumnMapping.compile(mappingObj);
     }
 
-    private String createRequestBodyForTrackedEntityInstance(JsonObject tableRowJsonObject, JsonObject mappingJsonObject) {
-        Set<String> keys = tableRowJsonObject.keySet();
+    private void updateLatestDateCreated(String dateCreated) {
+        SyncContext.current().updateInstanceDate(getDateFromString(getUnquotedString(dateCreated), DATEFORMAT_WITH_24HR_TIME));
+    }
 
+    private String createRequestBodyForTrackedEntityInstance(JsonObject tableRowJsonObject) {
         StringBuilder attributeSet = new StringBuilder(
                 String.format("{\"trackedEntityType\": \"%s\", " +
                                 "\"trackedEntityInstance\": %s, " +
@@ -74,17 +68,15 @@ public class TrackedEntityInstanceProcessor implements ItemProcessor {
                         teUID,
                         tableRowJsonObject.get("instance_id").toString(),
                         tableRowJsonObject.get(ORGUNIT_UID).toString()));
-        for (String key : keys) {
-            if (null != mappingJsonObject.get(key)) {
-                String attribute = mappingJsonObject.get(key).toString();
-                String value = tableRowJsonObject.get(key).toString();
-                if (!EMPTY_STRING.equals(attribute)) {
-                    attributeSet.append(String.format(
-                            "{\"attribute\": %s, \"value\": %s},",
-                            attribute,
-                            changeFormatIfDate(attribute, value)
-                    ));
-                }
+        for (Map.Entry<String, JsonElement> column : tableRowJsonObject.entrySet()) {
+            JsonElement target = mapping.getTarget(column.getKey());
+            if (null != target) {
+                String attribute = target.toString();
+                attributeSet.append(String.format(
+                        "{\"attribute\": %s, \"value\": %s},",
+                        attribute,
+                        changeFormatIfDate(attribute, column.getValue().toString())
+                ));
             }
         }
         attributeSet.deleteCharAt(attributeSet.length() - 1);
@@ -92,47 +84,31 @@ public class TrackedEntityInstanceProcessor implements ItemProcessor {
         return attributeSet.toString();
     }
 
-    private void getInstanceId(JsonObject tableRowJsonObject, JsonObject mappingJsonObject) {
+    private void getInstanceId(JsonObject tableRowJsonObject) {
         String instanceId = tableRowJsonObject.get("instance_id").getAsString();
         Map<String, String> searchableMappings = new HashMap<>();
         Map<String, String> comparableMappings = new HashMap<>();
         List<TrackedEntityInstanceInfo> matchedInstances;
-        Set<String> searchableKeySet;
-        Set<String> comparableKeySet;
         String uid;
 
         if (instanceId.isEmpty()) {
             searchableAttributes.forEach(searchableAttribute ->
                     searchableMappings.put(
-                            mappingJsonObject.get(searchableAttribute).getAsString(),
+                            mapping.get(searchableAttribute).getAsString(),
                             tableRowJsonObject.get(searchableAttribute).getAsString()
                     )
             );
 
             comparableAttributes.forEach(comparableAttribute ->
                     comparableMappings.put(
-                            mappingJsonObject.get(comparableAttribute).getAsString(),
+                            mapping.get(comparableAttribute).getAsString(),
                             tableRowJsonObject.get(comparableAttribute).getAsString()
                     )
             );
 
 
-            searchableKeySet = searchableMappings.keySet();
-            comparableKeySet = comparableMappings.keySet();
-
-            matchedInstances = TEIUtil.getTrackedEntityInstanceInfos().stream().filter(trackedEntityInstance ->
-                    trackedEntityInstance.getAttributes().stream().filter(attribute ->
-                            searchableKeySet.contains(attribute.getAttribute())
-                    ).allMatch(attribute ->
-                            searchableMappings.get(attribute.getAttribute()).equals(attribute.getValue())
-                    )
-            ).filter(trackedEntityInstance ->
-                    trackedEntityInstance.getAttributes().stream().filter(attribute ->
-                            comparableKeySet.contains(attribute.getAttribute())
-                    ).allMatch(attribute ->
-                            comparableMappings.get(attribute.getAttribute()).equals(attribute.getValue())
-                    )
-            ).collect(Collectors.toList());
+            matchedInstances = TEIUtil.getTrackedEntityInstanceIndex()
+                    .getMatchingInstances(searchableMappings, comparableMappings);
 
             if (matchedInstances.size() == 1) {
                 uid = matchedInstances.get(0).getTrackedEntityInstance();
@@ -144,12 +120,14 @@ public class TrackedEntityInstanceProcessor implements ItemProcessor {
 
     private String changeFormatIfDate(String attributeId, String value) {
         logger.debug("TEI Processor : changeFormatIfDate: " + attributeId + ", " + value);
-        if (TEIUtil.getAttributeOfTypeDate() != null && TEIUtil.getAttributeOfTypeDate().contains(getUnquotedString(attributeId))) {
+        Set<String> attributesOfTypeDate = TEIUtil.getAttributeOfTypeDate();
+        Set<String> attributesOfTypeDateTime = TEIUtil.getAttributeOfTypeDateTime();
+        if (attributesOfTypeDate != null && attributesOfTypeDate.contains(getUnquotedString(attributeId))) {
             String result = getQuotedString(BatchUtil.getDateOnly(getUnquotedString(value)));
             logger.debug("TEI Processor : getQuotedString(Date): " + result);
             return result;
         } else {
-            if (TEIUtil.getAttributeOfTypeDateTime() != null && TEIUtil.getAttributeOfTypeDateTime().contains(getUnquotedString(attributeId))) {
+            if (attributesOfTypeDateTime != null && attributesOfTypeDateTime.contains(getUnquotedString(attributeId))) {
                 String result = getQuotedString(
                         BatchUtil.getFormattedDateString(
                                 getUnquotedString(value),
@@ -4,9 +4,10 @@ import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.thoughtworks.martdhis2sync.model.EnrollmentAPIPayLoad;
 import com.thoughtworks.martdhis2sync.model.Event;
-import com.thoughtworks.martdhis2sync.model.ProcessedTableRow;
-import lombok.Setter;
+import com.thoughtworks.martdhis2sync.util.ColumnMapping;
 import org.springframework.batch.item.ItemProcessor;
+import org.springframework.beans.factory.config.ConfigurableBeanFactory;
+import org.springframework.context.annotation.Scope;
 import org.springframework.stereotype.Component;
 import org.springframework.util.StringUtils;
 
@@ -16,16 +17,9 @@ import static com.thoughtworks.martdhis2sync.util.BatchUtil.*;
 import static com.thoughtworks.martdhis2sync.util.EventUtil.getDataValues;
 
 @Component
+@Scope(ConfigurableBeanFactory.SCOPE_PROTOTYPE)
 public class UpdatedEnrollmentWithEventsProcessor extends EnrollmentWithEventProcessor implements ItemProcessor {
 
-    @Setter
-    private Object mappingObj;
-
-    @Override
-    public ProcessedTableRow process(Object tableRow) {
-        return super.process(tableRow, mappingObj);
-    }
-
     EnrollmentAPIPayLoad getEnrollmentAPIPayLoad(JsonObject tableRowJsonObject, List<Event> events) {
         JsonElement enrolledProgram = tableRowJsonObject.get("enrolled_program");
         JsonElement program = tableRowJsonObject.get("program");
@@ -52,7 +46,7 @@ public class UpdatedEnrollmentWithEventsProcessor extends EnrollmentWithEventPro
         );
     }
 
-    Event getEvent(JsonObject tableRow, JsonObject mapping) {
+    Event getEvent(JsonObject tableRow, ColumnMapping mapping) {
         if (!hasValue(tableRow.get("event_unique_id"))) {
             return null;
         }
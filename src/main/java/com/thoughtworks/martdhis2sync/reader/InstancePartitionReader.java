@@ -0,0 +1,59 @@
+package com.thoughtworks.martdhis2sync.reader;
+
+import org.springframework.batch.core.configuration.annotation.StepScope;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStreamReader;
+import org.springframework.batch.item.database.JdbcCursorItemReader;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+import static com.thoughtworks.martdhis2sync.step.TrackedEntityInstancePartitioner.LOOKUP_TABLE;
+import static com.thoughtworks.martdhis2sync.step.TrackedEntityInstancePartitioner.PARTITION;
+import static com.thoughtworks.martdhis2sync.step.TrackedEntityInstancePartitioner.PARTITIONS;
+import static com.thoughtworks.martdhis2sync.step.TrackedEntityInstancePartitioner.PARTITION_COLUMN;
+
+@Component
+@StepScope
+public class InstancePartitionReader implements ItemStreamReader<Map<String, Object>> {
+
+    @Autowired
+    private MappingReader mappingReader;
+
+    @Value("#{jobParameters['service']}")
+    private String programName;
+
+    private JdbcCursorItemReader<Map<String, Object>> reader;
+
+    @Override
+    public void open(ExecutionContext executionContext) {
+        reader = mappingReader.getInstancePartitionReader(
+                executionContext.getString(LOOKUP_TABLE),
+                programName,
+                executionContext.getString(PARTITION_COLUMN),
+                executionContext.getInt(PARTITION),
+                executionContext.getInt(PARTITIONS)
+        );
+        reader.setSaveState(false);
+        reader.open(executionContext);
+    }
+
+    @Override
+    public Map<String, Object> read() throws Exception {
+        return reader.read();
+    }
+
+    @Override
+    public void update(ExecutionContext executionContext) {
+        reader.update(executionContext);
+    }
+
+    @Override
+    public void close() {
+        if (null != reader) {
+            reader.close();
+        }
+    }
+}
@@ -1,132 +1,111 @@
 package com.thoughtworks.martdhis2sync.reader;
 
 import com.thoughtworks.martdhis2sync.model.EnrollmentAPIPayLoad;
-import com.thoughtworks.martdhis2sync.util.BatchUtil;
 import com.thoughtworks.martdhis2sync.util.EnrollmentUtil;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import com.thoughtworks.martdhis2sync.util.SqlTemplateRegistry;
 import org.springframework.batch.item.database.JdbcCursorItemReader;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.core.io.Resource;
 import org.springframework.jdbc.core.ColumnMapRowMapper;
 import org.springframework.stereotype.Component;
-import org.springframework.util.StringUtils;
 
 import javax.sql.DataSource;
-import java.io.IOException;
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
+import static com.thoughtworks.martdhis2sync.util.SqlTemplateRegistry.EVENT_READER;
+import static com.thoughtworks.martdhis2sync.util.SqlTemplateRegistry.INSTANCE_PARTITION_READER;
+import static com.thoughtworks.martdhis2sync.util.SqlTemplateRegistry.INSTANCE_READER;
+import static com.thoughtworks.martdhis2sync.util.SqlTemplateRegistry.NEW_ACTIVE_ENROLLMENT_WITH_EVENTS;
+import static com.thoughtworks.martdhis2sync.util.SqlTemplateRegistry.NEW_COMPLETED_ENROLLMENT_WITH_EVENTS;
+import static com.thoughtworks.martdhis2sync.util.SqlTemplateRegistry.UPDATED_ACTIVE_ENROLLMENT_WITH_EVENTS;
+import static com.thoughtworks.martdhis2sync.util.SqlTemplateRegistry.UPDATED_COMPLETED_ENROLLMENT_WITH_EVENTS;
+import static com.thoughtworks.martdhis2sync.util.SqlUtil.quotedColumn;
+import static com.thoughtworks.martdhis2sync.util.SqlUtil.table;
+
 @Component
 public class MappingReader {
 
     @Autowired
     private DataSource dataSource;
 
-    @Value("classpath:sql/InstanceReader.sql")
-    private Resource instanceResource;
-
-    @Value("classpath:sql/EnrollmentReader.sql")
-    private Resource enrollmentResource;
-
-    @Value("classpath:sql/EventReader.sql")
-    private Resource eventResource;
-
-    @Value("classpath:sql/NewCompletedEnrollmentWithEvents.sql")
-    private Resource newCompletedEnrWithEventsResource;
+    @Value("${reader.fetch.size}")
+    private int fetchSize;
 
-    @Value("classpath:sql/UpdatedCompletedEnrollmentWithEvents.sql")
-    private Resource updatedCompletedEnrWithEventsResource;
-
-    @Value("classpath:sql/NewActiveEnrollmentWithEvents.sql")
-    private Resource newActiveEnrWithEventsResource;
-
-    @Value("classpath:sql/UpdatedActiveEnrollmentWithEvents.sql")
-    private Resource updatedActiveEnrWithEventsResource;
-
-    private Logger logger = LoggerFactory.getLogger(this.getClass());
+    @Autowired
+    private SqlTemplateRegistry sqlTemplates;
 
-    private JdbcCursorItemReader<Map<String, Object>> get(String sql) {
-        JdbcCursorItemReader<Map<String, Object>> reader = new JdbcCursorItemReader<>();
+    private JdbcCursorItemReader<Map<String, Object>> get(String sql, Object... parameters) {
+        JdbcCursorItemReader<Map<String, Object>> reader = new StreamingCursorItemReader<>();
         reader.setDataSource(dataSource);
+        reader.setFetchSize(fetchSize);
         reader.setSql(sql);
+        reader.setPreparedStatementSetter(new QueryParameterSetter(parameters));
         reader.setRowMapper(new ColumnMapRowMapper());
         return reader;
     }
 
-    private String getSql(Resource resource) {
-        String sql = "";
-        try {
-            sql = BatchUtil.convertResourceOutputToString(resource);
-        } catch (IOException e) {
-            logger.error("Error in converting sql to string : " + e.getMessage());
-        }
-
-        return sql;
-    }
-
-    public JdbcCursorItemReader<Map<String, Object>> getEnrollmentReader(String lookupTable, String programName) {
-        String sql = String.format(getSql(enrollmentResource), lookupTable, programName);
-        return get(sql);
+    public JdbcCursorItemReader<Map<String, Object>> getInstanceReader(String lookupTable, String programName) {
+        String sql = String.format(sqlTemplates.get(INSTANCE_READER), table(lookupTable));
+        return get(sql, programName);
     }
 
-    public JdbcCursorItemReader<Map<String, Object>> getInstanceReader(String lookupTable, String programName) {
-        String sql = String.format(getSql(instanceResource), lookupTable, programName);
-        return get(sql);
+    public JdbcCursorItemReader<Map<String, Object>> getInstancePartitionReader(String lookupTable, String programName,
+                                                                                String partitionColumn, int partition, int partitions) {
+        String sql = String.format(sqlTemplates.get(INSTANCE_PARTITION_READER), table(lookupTable), quotedColumn(partitionColumn));
+        return get(sql, programName, partitions, partition);
     }
 
     public JdbcCursorItemReader<Map<String, Object>> getEventReader(String lookupTable, String programName, String enrollmentLookupTable) {
-        String sql = String.format(getSql(eventResource), lookupTable, enrollmentLookupTable, programName);
-        return get(sql);
+        String sql = String.format(sqlTemplates.get(EVENT_READER), table(lookupTable), table(enrollmentLookupTable));
+        return get(sql, programName);
     }
 
     public JdbcCursorItemReader<Map<String, Object>> getNewCompletedEnrollmentWithEventsReader(
             String enrollmentLookupTable, String programName, String eventLookupTable) {
-        String sql = String.format(getSql(newCompletedEnrWithEventsResource), enrollmentLookupTable,
-                                            eventLookupTable, programName);
-        return get(sql);
+        String sql = String.format(sqlTemplates.get(NEW_COMPLETED_ENROLLMENT_WITH_EVENTS), table(enrollmentLookupTable),
+                                            table(eventLookupTable));
+        return get(sql, programName);
     }
 
+    // enrollmentsToSync, when given, keeps the reader to the enrollments partitioned to the job before it started
     public JdbcCursorItemReader<Map<String, Object>> getUpdatedCompletedEnrollmentWithEventsReader(
             String enrollmentLookupTable, String programName, String eventLookupTable,
-            List<EnrollmentAPIPayLoad> enrollmentsToIgnore) {
-
-        String syncedCompletedEnrollmentIds = getEnrollmentIds(enrollmentsToIgnore);
-        String andClause = StringUtils.isEmpty(syncedCompletedEnrollmentIds) ? ""
-                : String.format("AND enrolTracker.enrollment_id NOT IN (%s)", syncedCompletedEnrollmentIds);
-        String sql = String.format(getSql(updatedCompletedEnrWithEventsResource), enrollmentLookupTable, programName,
-                                    eventLookupTable, enrollmentLookupTable, programName, andClause);
-        return get(sql);
+            List<EnrollmentAPIPayLoad> enrollmentsToIgnore, List<String> enrollmentsToSync) {
+
+        String sql = String.format(sqlTemplates.get(UPDATED_COMPLETED_ENROLLMENT_WITH_EVENTS), table(enrollmentLookupTable),
+                                    table(eventLookupTable), table(enrollmentLookupTable));
+        return get(sql, programName, programName, getEnrollmentIds(enrollmentsToIgnore),
+                getEnrollmentsToSync(enrollmentsToSync), getEnrollmentsToSync(enrollmentsToSync));
     }
 
     public JdbcCursorItemReader<Map<String, Object>> getNewActiveEnrollmentWithEventsReader(
             String enrollmentLookupTable, String programName, String eventLookupTable) {
 
-        String sql = String.format(getSql(newActiveEnrWithEventsResource), enrollmentLookupTable,
-                eventLookupTable, programName);
-        return get(sql);
+        String sql = String.format(sqlTemplates.get(NEW_ACTIVE_ENROLLMENT_WITH_EVENTS), table(enrollmentLookupTable),
+                table(eventLookupTable));
+        return get(sql, programName);
     }
 
     public JdbcCursorItemReader<Map<String, Object>> getUpdatedActiveEnrollmentWithEventsReader(
             String enrollmentLookupTable, String programName, String eventLookupTable,
-            List<EnrollmentAPIPayLoad> enrollmentsToIgnore) {
-
-        String syncedCompletedEnrollmentIds = getEnrollmentIds(enrollmentsToIgnore);
-        String andClause = StringUtils.isEmpty(syncedCompletedEnrollmentIds) ? ""
-                : String.format("AND enrolTracker.enrollment_id NOT IN (%s)", syncedCompletedEnrollmentIds);
-        String sql = String.format(getSql(updatedActiveEnrWithEventsResource), enrollmentLookupTable, programName,
-                eventLookupTable, enrollmentLookupTable, programName, andClause);
-        return get(sql);
+            List<EnrollmentAPIPayLoad> enrollmentsToIgnore, List<String> enrollmentsToSync) {
+
+        String sql = String.format(sqlTemplates.get(UPDATED_ACTIVE_ENROLLMENT_WITH_EVENTS), table(enrollmentLookupTable),
+                table(eventLookupTable), table(enrollmentLookupTable));
+        return get(sql, programName, programName, getEnrollmentIds(enrollmentsToIgnore),
+                getEnrollmentsToSync(enrollmentsToSync), getEnrollmentsToSync(enrollmentsToSync));
     }
 
-    private String getEnrollmentIds(List<EnrollmentAPIPayLoad> enrollmentsToIgnore) {
-        List<String> enrollmentIds = new ArrayList<>();
-        enrollmentsToIgnore.forEach(enrollment ->
-                enrollmentIds.add("'" + enrollment.getEnrollmentId() + "'")
-        );
+    private Object[] getEnrollmentsToSync(List<String> enrollmentsToSync) {
+        return enrollmentsToSync == null ? null : enrollmentsToSync.toArray();
+    }
 
-        return String.join(",", enrollmentIds);
+    // the enrollments to ignore are bound as one array, so the sql stays the same size however many there are
+    private Object[] getEnrollmentIds(List<EnrollmentAPIPayLoad> enrollmentsToIgnore) {
+        return enrollmentsToIgnore.stream()
+                .map(EnrollmentAPIPayLoad::getEnrollmentId)
+                .distinct()
+                .toArray();
     }
 }
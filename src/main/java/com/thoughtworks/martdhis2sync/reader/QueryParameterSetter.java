@@ -0,0 +1,33 @@
+package com.thoughtworks.martdhis2sync.reader;
+
+import lombok.EqualsAndHashCode;
+import org.springframework.jdbc.core.PreparedStatementSetter;
+import org.springframework.jdbc.core.SqlTypeValue;
+import org.springframework.jdbc.core.StatementCreatorUtils;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+// binds the reader query values in order, with arrays bound as text[]
+@EqualsAndHashCode
+public class QueryParameterSetter implements PreparedStatementSetter {
+
+    private final Object[] values;
+
+    public QueryParameterSetter(Object... values) {
+        this.values = values;
+    }
+
+    @Override
+    public void setValues(PreparedStatement preparedStatement) throws SQLException {
+        for (int index = 0; index < values.length; index++) {
+            Object value = values[index];
+            if (value instanceof Object[]) {
+                preparedStatement.setArray(index + 1,
+                        preparedStatement.getConnection().createArrayOf("text", (Object[]) value));
+            } else {
+                StatementCreatorUtils.setParameterValue(preparedStatement, index + 1, SqlTypeValue.TYPE_UNKNOWN, value);
+            }
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.thoughtworks.martdhis2sync.reader;
+
+import org.springframework.batch.item.database.JdbcCursorItemReader;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/*
+ * The postgres driver only fetches a cursor in batches of the fetch size when auto commit is off,
+ * otherwise it loads the whole result set before the first row is read.
+ */
+public class StreamingCursorItemReader<T> extends JdbcCursorItemReader<T> {
+
+    private Connection connection;
+
+    private boolean initialAutoCommit;
+
+    @Override
+    protected void openCursor(Connection con) {
+        try {
+            initialAutoCommit = con.getAutoCommit();
+            con.setAutoCommit(false);
+        } catch (SQLException e) {
+            close();
+            throw getExceptionTranslator().translate("Disabling auto commit to stream the cursor", getSql(), e);
+        }
+        connection = con;
+        super.openCursor(con);
+    }
+
+    @Override
+    protected void cleanupOnClose() throws Exception {
+        super.cleanupOnClose();
+        if (connection != null) {
+            connection.setAutoCommit(initialAutoCommit);
+            connection = null;
+        }
+    }
+}
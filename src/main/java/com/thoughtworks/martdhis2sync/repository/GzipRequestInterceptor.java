@@ -0,0 +1,39 @@
+package com.thoughtworks.martdhis2sync.repository;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpRequestInterceptor;
+import org.apache.http.client.entity.GzipCompressingEntity;
+import org.apache.http.protocol.HttpContext;
+
+public class GzipRequestInterceptor implements HttpRequestInterceptor {
+
+    private final long thresholdBytes;
+
+    public GzipRequestInterceptor(long thresholdBytes) {
+        this.thresholdBytes = thresholdBytes;
+    }
+
+    @Override
+    public void process(HttpRequest request, HttpContext context) {
+        if (!(request instanceof HttpEntityEnclosingRequest) || request.containsHeader(HttpHeaders.CONTENT_ENCODING)) {
+            return;
+        }
+
+        HttpEntityEnclosingRequest entityRequest = (HttpEntityEnclosingRequest) request;
+        HttpEntity entity = entityRequest.getEntity();
+        if (null == entity || entity.getContentEncoding() != null) {
+            return;
+        }
+
+        // streamed bodies have no length up front and are the large ones, so they are always compressed
+        long contentLength = entity.getContentLength();
+        if (contentLength >= 0 && contentLength < thresholdBytes) {
+            return;
+        }
+
+        entityRequest.setEntity(new GzipCompressingEntity(entity));
+    }
+}
@@ -0,0 +1,64 @@
+package com.thoughtworks.martdhis2sync.repository;
+
+import com.thoughtworks.martdhis2sync.util.PostFeedback;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.StreamingHttpOutputMessage;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+public class StreamingBodyHttpMessageConverter extends AbstractHttpMessageConverter<StreamingHttpOutputMessage.Body> {
+
+    public StreamingBodyHttpMessageConverter() {
+        super(MediaType.APPLICATION_JSON);
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return StreamingHttpOutputMessage.Body.class.isAssignableFrom(clazz);
+    }
+
+    @Override
+    public boolean canRead(Class<?> clazz, MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    protected StreamingHttpOutputMessage.Body readInternal(Class<? extends StreamingHttpOutputMessage.Body> clazz,
+                                                          HttpInputMessage inputMessage) throws HttpMessageNotReadableException {
+        throw new HttpMessageNotReadableException("Streaming bodies can only be written");
+    }
+
+    @Override
+    protected void writeInternal(StreamingHttpOutputMessage.Body body, HttpOutputMessage outputMessage) throws IOException {
+        CountingOutputStream outputStream = new CountingOutputStream(outputMessage.getBody());
+        body.writeTo(outputStream);
+        PostFeedback.recordBytes(outputStream.count);
+    }
+
+    private static class CountingOutputStream extends FilterOutputStream {
+
+        private long count;
+
+        CountingOutputStream(OutputStream outputStream) {
+            super(outputStream);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+}
@@ -1,13 +1,23 @@
 package com.thoughtworks.martdhis2sync.repository;
 
 import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
 import com.thoughtworks.martdhis2sync.model.DHISEnrollmentSyncResponse;
 import com.thoughtworks.martdhis2sync.model.DHISSyncResponse;
 import com.thoughtworks.martdhis2sync.model.DataElementResponse;
+import com.thoughtworks.martdhis2sync.model.EnrollmentImportSummary;
+import com.thoughtworks.martdhis2sync.model.EnrollmentRequestBody;
 import com.thoughtworks.martdhis2sync.model.OrgUnitResponse;
+import com.thoughtworks.martdhis2sync.model.Response;
 import com.thoughtworks.martdhis2sync.model.TrackedEntityAttributeResponse;
 import com.thoughtworks.martdhis2sync.model.TrackedEntityInstanceResponse;
 import com.thoughtworks.martdhis2sync.service.LoggerService;
+import com.thoughtworks.martdhis2sync.util.PostFeedback;
+import com.thoughtworks.martdhis2sync.util.SyncContext;
 import org.apache.tomcat.util.codec.binary.Base64;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -16,15 +26,24 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Repository;
+import org.springframework.util.StringUtils;
 import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestClientException;
 import org.springframework.web.client.RestTemplate;
 
 
 import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
 
 @Repository
 public class SyncRepository {
@@ -48,6 +67,29 @@ public class SyncRepository {
 
     private static final String LOG_PREFIX = "SyncRepository: ";
 
+    private static final String CREATE_AND_UPDATE = "strategy=CREATE_AND_UPDATE";
+
+    private static final String TRACKED_ENTITY_INSTANCES = "trackedEntityInstances";
+
+    private static final String ENROLLMENTS = "enrollments";
+
+    private static final String EVENTS = "events";
+
+    private static final Set<HttpStatus> TRANSIENT_STATUSES = EnumSet.of(
+            HttpStatus.BAD_GATEWAY, HttpStatus.SERVICE_UNAVAILABLE, HttpStatus.GATEWAY_TIMEOUT);
+
+    @Value("${dhis2.post.retries}")
+    private int postRetries;
+
+    @Value("${dhis2.post.retry.backoff.ms}")
+    private long postRetryBackoffMillis;
+
+    @Value("${dhis2.post.retry.max.backoff.ms}")
+    private long postRetryMaxBackoffMillis;
+
+    @Value("${dhis2.post.retry.budget}")
+    private int postRetryBudget;
+
     public ResponseEntity<DHISSyncResponse> sendData(String uri, String body) {
         return sync(uri, body, DHISSyncResponse.class);
     }
@@ -56,6 +98,10 @@ public class SyncRepository {
         return sync(uri, body, DHISEnrollmentSyncResponse.class);
     }
 
+    public ResponseEntity<DHISEnrollmentSyncResponse> sendEnrollmentData(String uri, EnrollmentRequestBody body) {
+        return sync(uri, body, DHISEnrollmentSyncResponse.class);
+    }
+
     public ResponseEntity<OrgUnitResponse> getOrgUnits(String url) {
         ResponseEntity<OrgUnitResponse> responseEntity = null;
         try {
@@ -98,6 +144,29 @@ public class SyncRepository {
     }
 
     public ResponseEntity<TrackedEntityInstanceResponse> getTrackedEntityInstances(String uri) {
+        return getTrackedEntityInstances(uri, 0);
+    }
+
+    // a GET changes nothing on DHIS2, so it is resent after any transient failure
+    public ResponseEntity<TrackedEntityInstanceResponse> getTrackedEntityInstances(String uri, int retries) {
+        int attempt = 0;
+        while (true) {
+            try {
+                return get(uri);
+            } catch (HttpServerErrorException | ResourceAccessException e) {
+                if (attempt++ >= retries || !isTransient(e)) {
+                    collateFailure(e);
+                    throw e;
+                }
+                long backoff = getBackoff(attempt);
+                logger.warn(LOG_PREFIX + "Retrying (" + attempt + "/" + retries + ") " + uri + " in " + backoff
+                        + " ms after " + e.getMessage());
+                sleep(backoff, e);
+            }
+        }
+    }
+
+    private ResponseEntity<TrackedEntityInstanceResponse> get(String uri) {
         ResponseEntity<TrackedEntityInstanceResponse> responseEntity = null;
         try {
             logger.info("Tracked Entity Request URI---> "+ uri);
@@ -119,8 +188,7 @@ public class SyncRepository {
             loggerService.collateLogMessage(String.format("%s %s", body.getHttpStatusCode(), body.getMessage()));
             logger.error(LOG_PREFIX + e);
             throw e;
-        } catch (HttpServerErrorException e) {
-            loggerService.collateLogMessage(String.format("%s %s", e.getStatusCode(), e.getStatusText()));
+        } catch (HttpServerErrorException | ResourceAccessException e) {
             logger.error(LOG_PREFIX + e);
             throw e;
         }
@@ -138,8 +206,32 @@ public class SyncRepository {
         return httpHeaders;
     }
 
-    private <T> ResponseEntity<T> sync(String uri, String body, Class<T> type) {
-        ResponseEntity<T> responseEntity;
+    // a POST is resent only when the failure is transient and DHIS2 cannot create anything twice from it
+    private <T> ResponseEntity<T> sync(String uri, Object body, Class<T> type) {
+        int attempt = 0;
+        while (true) {
+            try {
+                return post(uri, body, type);
+            } catch (HttpServerErrorException | ResourceAccessException e) {
+                if (attempt++ >= postRetries || !isTransient(e) || !isSafeToResend(uri, body)
+                        || !SyncContext.current().takeRetry(postRetryBudget)) {
+                    collateFailure(e);
+                    throw e;
+                }
+                long backoff = getBackoff(attempt);
+                logger.warn(LOG_PREFIX + "Retrying (" + attempt + "/" + postRetries + ") " + uri + " in " + backoff
+                        + " ms after " + e.getMessage());
+                sleep(backoff, e);
+            }
+        }
+    }
+
+    private <T> ResponseEntity<T> post(String uri, Object body, Class<T> type) {
+        ResponseEntity<T> responseEntity = null;
+        long startTime = System.currentTimeMillis();
+        if (body instanceof String) {
+            PostFeedback.recordBytes(((String) body).getBytes(StandardCharsets.UTF_8).length);
+        }
         try {
 
             logger.info("Request URI---> "+ uri);
@@ -159,11 +251,131 @@ public class SyncRepository {
             loggerService.collateLogMessage(String.format("%s %s", e.getStatusCode(), e.getStatusText()));
             logger.error("HttpClientErrorException -> " + responseEntity.getBody());
             logger.error(LOG_PREFIX + e);
-        } catch (HttpServerErrorException e) {
-            loggerService.collateLogMessage(String.format("%s %s", e.getStatusCode(), e.getStatusText()));
+        } catch (HttpServerErrorException | ResourceAccessException e) {
             logger.error(LOG_PREFIX + e);
             throw e;
+        } finally {
+            PostFeedback.recordRequest(System.currentTimeMillis() - startTime,
+                    responseEntity == null ? 0 : getConflicts(responseEntity.getBody()));
         }
         return responseEntity;
     }
+
+    // only the failure that was given up on reaches the log of the sync, not the attempts that were retried
+    private void collateFailure(RestClientException e) {
+        loggerService.collateLogMessage(e instanceof HttpServerErrorException
+                ? String.format("%s %s", ((HttpServerErrorException) e).getStatusCode(),
+                        ((HttpServerErrorException) e).getStatusText())
+                : e.getMessage());
+    }
+
+    private boolean isTransient(RestClientException e) {
+        return e instanceof ResourceAccessException
+                || TRANSIENT_STATUSES.contains(((HttpServerErrorException) e).getStatusCode());
+    }
+
+    // with CREATE_AND_UPDATE an object that carries the id of its tracker row is updated in place on a resend,
+    // one without an id is created again, so only bodies where every object has its id are resent
+    private boolean isSafeToResend(String uri, Object body) {
+        if (!uri.contains(CREATE_AND_UPDATE)) {
+            return false;
+        }
+        if (body instanceof EnrollmentRequestBody) {
+            return ((EnrollmentRequestBody) body).hasIds();
+        }
+        if (body instanceof String) {
+            try {
+                return hasIds(new JsonParser().parse((String) body).getAsJsonObject());
+            } catch (JsonParseException | IllegalStateException | ClassCastException e) {
+                return false;
+            }
+        }
+
+        return false;
+    }
+
+    // only the payloads the writers build are known, anything else could hold objects without ids
+    private boolean hasIds(JsonObject root) {
+        if (root.entrySet().isEmpty()) {
+            return false;
+        }
+        for (Map.Entry<String, JsonElement> payload : root.entrySet()) {
+            JsonArray objects = payload.getValue().getAsJsonArray();
+            if (TRACKED_ENTITY_INSTANCES.equals(payload.getKey())) {
+                if (!hasIds(objects, "trackedEntityInstance")) {
+                    return false;
+                }
+            } else if (ENROLLMENTS.equals(payload.getKey())) {
+                if (!hasIds(objects, "enrollment")) {
+                    return false;
+                }
+                for (JsonElement enrollment : objects) {
+                    JsonElement events = enrollment.getAsJsonObject().get(EVENTS);
+                    if (events != null && !hasIds(events.getAsJsonArray(), "event")) {
+                        return false;
+                    }
+                }
+            } else {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private boolean hasIds(JsonArray objects, String idField) {
+        for (JsonElement object : objects) {
+            JsonElement id = object.getAsJsonObject().get(idField);
+            if (id == null || id.isJsonNull() || StringUtils.isEmpty(id.getAsString())) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    // exponential, with half of it random so the partitions that failed together do not retry together
+    private long getBackoff(int attempt) {
+        long backoff = Math.min(postRetryMaxBackoffMillis, postRetryBackoffMillis << Math.min(attempt - 1, 30));
+        if (backoff <= 0) {
+            return 0;
+        }
+
+        return backoff / 2 + ThreadLocalRandom.current().nextLong(backoff / 2 + 1);
+    }
+
+    private void sleep(long millis, RestClientException e) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException interrupted) {
+            Thread.currentThread().interrupt();
+            throw e;
+        }
+    }
+
+    private int getConflicts(Object body) {
+        int conflicts = 0;
+        if (body instanceof DHISSyncResponse && ((DHISSyncResponse) body).getResponse() != null) {
+            conflicts += getConflicts(((DHISSyncResponse) body).getResponse());
+        }
+        if (body instanceof DHISEnrollmentSyncResponse && ((DHISEnrollmentSyncResponse) body).getResponse() != null
+                && ((DHISEnrollmentSyncResponse) body).getResponse().getImportSummaries() != null) {
+            for (EnrollmentImportSummary summary : ((DHISEnrollmentSyncResponse) body).getResponse().getImportSummaries()) {
+                conflicts += summary.getConflicts() == null ? 0 : summary.getConflicts().size();
+                conflicts += summary.getEvents() == null ? 0 : getConflicts(summary.getEvents());
+            }
+        }
+
+        return conflicts;
+    }
+
+    private int getConflicts(Response response) {
+        if (response.getImportSummaries() == null) {
+            return 0;
+        }
+
+        return response.getImportSummaries().stream()
+                .mapToInt(summary -> summary.getConflicts() == null ? 0 : summary.getConflicts().size())
+                .sum();
+    }
 }
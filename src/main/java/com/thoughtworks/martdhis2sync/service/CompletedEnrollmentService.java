@@ -55,12 +55,13 @@ public class CompletedEnrollmentService {
     }
 
     public void triggerJobForUpdatedCompletedEnrollments(String service, String user, String enrLookupTable,
-                                                         String evnLookupTable, Object mappingObj, List<EnrollmentAPIPayLoad> enrollmentsToIgnore, String openLatestCompletedEnrollment)
+                                                         String evnLookupTable, Object mappingObj, List<EnrollmentAPIPayLoad> enrollmentsToIgnore,
+                                                         List<String> enrollmentsToSync, String openLatestCompletedEnrollment)
             throws JobParametersInvalidException, JobExecutionAlreadyRunningException,
             JobRestartException, JobInstanceAlreadyCompleteException, SyncFailedException {
 
         LinkedList<Step> steps = new LinkedList<>();
-        steps.add(updatedEnrollmentWithEventsStep.get(enrLookupTable, evnLookupTable, service, mappingObj, enrollmentsToIgnore));
+        steps.add(updatedEnrollmentWithEventsStep.get(enrLookupTable, evnLookupTable, service, mappingObj, enrollmentsToIgnore, enrollmentsToSync));
         steps.add(updatedCompletedEnrollmentStep.get());
         triggerJob(service, user, steps, JOB_UPDATED_COMPLETED_ENROLLMENTS, openLatestCompletedEnrollment);
     }
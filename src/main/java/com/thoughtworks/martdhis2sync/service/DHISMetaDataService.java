@@ -1,6 +1,8 @@
 package com.thoughtworks.martdhis2sync.service;
 
+import com.thoughtworks.martdhis2sync.model.DataElement;
 import com.thoughtworks.martdhis2sync.model.DataElementResponse;
+import com.thoughtworks.martdhis2sync.model.TrackedEntityAttribute;
 import com.thoughtworks.martdhis2sync.model.TrackedEntityAttributeResponse;
 import com.thoughtworks.martdhis2sync.repository.SyncRepository;
 import com.thoughtworks.martdhis2sync.util.EventUtil;
@@ -12,8 +14,11 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Component;
 
-import java.util.LinkedList;
+import javax.annotation.PostConstruct;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 @Component
 public class DHISMetaDataService {
@@ -24,25 +29,38 @@ public class DHISMetaDataService {
     @Value("${dhis2.url}")
     private String dhis2Url;
 
+    @Value("${dhis2.metadata.cache.ttl.minutes}")
+    private long metadataCacheTtlMinutes;
+
     private static final String LOG_PREFIX = "DHIS2 Metadata Service: ";
 
-    private static final String URI_DATE_TIME_DATA_ELEMENTS = "/api/dataElements?pageSize=1000&filter=valueType:eq:DATETIME";
-    private static final String URI_DATE_TIME_T_E_ATTRIBUTES = "/api/trackedEntityAttributes?pageSize=1000&filter=valueType:eq:DATETIME";
+    private static final String DATE_TIME = "DATETIME";
+    private static final String DATE = "DATE";
 
-    private static final String URI_DATE_DATA_ELEMENTS = "/api/dataElements?pageSize=1000&filter=valueType:eq:DATE";
-    private static final String URI_DATE_T_E_ATTRIBUTES = "/api/trackedEntityAttributes?pageSize=1000&filter=valueType:eq:DATE";
+    private static final String URI_DATA_ELEMENTS = "/api/dataElements?pageSize=1000&filter=valueType:eq:";
+    private static final String URI_T_E_ATTRIBUTES = "/api/trackedEntityAttributes?pageSize=1000&filter=valueType:eq:";
 
+    private static final String URI_LAST_UPDATED_DATA_ELEMENT =
+            "/api/dataElements?pageSize=1&fields=id,lastUpdated&order=lastUpdated:desc";
+    private static final String URI_LAST_UPDATED_T_E_ATTRIBUTE =
+            "/api/trackedEntityAttributes?pageSize=1&fields=id,lastUpdated&order=lastUpdated:desc";
 
     private Logger logger = LoggerFactory.getLogger(this.getClass());
-    private String url;
 
-    private List<String> getTEAttributes(String elementType) {
-        List<String> trackedEntityAttributes = new LinkedList<>();
-        url = dhis2Url + elementType;
+    private boolean cached;
+    private boolean fetchFailed;
+    private long lastRefreshTime;
+    private String dataElementsLastUpdated;
+    private String attributesLastUpdated;
+
+    private Set<String> getTEAttributes(String valueType) {
+        Set<String> trackedEntityAttributes = new HashSet<>();
+        String url = dhis2Url + URI_T_E_ATTRIBUTES + valueType;
         do {
             ResponseEntity<TrackedEntityAttributeResponse> typeTEAttribiutes =
                     syncRepository.getTrackedEntityAttributes(url);
             if (null == typeTEAttribiutes) {
+                fetchFailed = true;
                 break;
             }
             url = typeTEAttribiutes.getBody().getPager().getNextPage();
@@ -50,16 +68,17 @@ public class DHISMetaDataService {
                     .forEach(tEA -> trackedEntityAttributes.add(tEA.getId()));
         } while (null != url);
 
-        logger.info(LOG_PREFIX + "Received " + trackedEntityAttributes.size() + " Tracked Entity Attributes of type: " + elementType);
+        logger.info(LOG_PREFIX + "Received " + trackedEntityAttributes.size() + " Tracked Entity Attributes of type " + valueType);
         return trackedEntityAttributes;
     }
 
-    private List<String> getDataElements(String elementType) {
-        List<String> typeDataElements = new LinkedList<>();
-        url = dhis2Url + elementType;
+    private Set<String> getDataElements(String valueType) {
+        Set<String> typeDataElements = new HashSet<>();
+        String url = dhis2Url + URI_DATA_ELEMENTS + valueType;
         do {
             ResponseEntity<DataElementResponse> dataElementResponse = syncRepository.getDataElements(url);
             if (null == dataElementResponse) {
+                fetchFailed = true;
                 break;
             }
             dataElementResponse.getBody().getDataElements()
@@ -67,15 +86,73 @@ public class DHISMetaDataService {
             url = dataElementResponse.getBody().getPager().getNextPage();
         } while (null != url);
 
-        logger.info(LOG_PREFIX + "Received " + typeDataElements.size() + " Data Elements of type: " + elementType);
+        logger.info(LOG_PREFIX + "Received " + typeDataElements.size() + " Data Elements of type " + valueType);
         return typeDataElements;
     }
 
-    public void filterByTypeDateTime() {
-        EventUtil.setElementsOfTypeDateTime(getDataElements(URI_DATE_TIME_DATA_ELEMENTS));
-        TEIUtil.setAttributeOfTypeDateTime(getTEAttributes(URI_DATE_TIME_T_E_ATTRIBUTES));
+    private String getDataElementsLastUpdated() {
+        ResponseEntity<DataElementResponse> response = syncRepository.getDataElements(dhis2Url + URI_LAST_UPDATED_DATA_ELEMENT);
+        if (null == response) {
+            return null;
+        }
+        List<DataElement> dataElements = response.getBody().getDataElements();
+        return dataElements.isEmpty() ? "" : dataElements.get(0).getLastUpdated();
+    }
+
+    private String getAttributesLastUpdated() {
+        ResponseEntity<TrackedEntityAttributeResponse> response =
+                syncRepository.getTrackedEntityAttributes(dhis2Url + URI_LAST_UPDATED_T_E_ATTRIBUTE);
+        if (null == response) {
+            return null;
+        }
+        List<TrackedEntityAttribute> attributes = response.getBody().getTrackedEntityAttributes();
+        return attributes.isEmpty() ? "" : attributes.get(0).getLastUpdated();
+    }
+
+    private boolean isCacheFresh() {
+        return cached && System.currentTimeMillis() - lastRefreshTime < TimeUnit.MINUTES.toMillis(metadataCacheTtlMinutes);
+    }
 
-        EventUtil.setElementsOfTypeDate(getDataElements(URI_DATE_DATA_ELEMENTS));
-        TEIUtil.setAttributeOfTypeDate(getTEAttributes(URI_DATE_T_E_ATTRIBUTES));
+    @PostConstruct
+    public synchronized void filterByTypeDateTime() {
+        if (isCacheFresh()) {
+            logger.info(LOG_PREFIX + "Using cached metadata");
+            return;
+        }
+
+        long startTime = System.currentTimeMillis();
+        String newDataElementsLastUpdated = getDataElementsLastUpdated();
+        String newAttributesLastUpdated = getAttributesLastUpdated();
+        if (cached && null != newDataElementsLastUpdated && null != newAttributesLastUpdated
+                && newDataElementsLastUpdated.equals(dataElementsLastUpdated)
+                && newAttributesLastUpdated.equals(attributesLastUpdated)) {
+            lastRefreshTime = startTime;
+            logger.info(LOG_PREFIX + "Metadata not changed since the last refresh, using cached metadata");
+            return;
+        }
+
+        fetchFailed = false;
+        Set<String> dataElementsOfTypeDateTime = getDataElements(DATE_TIME);
+        Set<String> attributesOfTypeDateTime = getTEAttributes(DATE_TIME);
+        Set<String> dataElementsOfTypeDate = getDataElements(DATE);
+        Set<String> attributesOfTypeDate = getTEAttributes(DATE);
+
+        if (fetchFailed && cached) {
+            logger.error(LOG_PREFIX + "Could not refresh metadata, using cached metadata");
+            return;
+        }
+
+        EventUtil.setElementsOfTypeDateTime(dataElementsOfTypeDateTime);
+        TEIUtil.setAttributeOfTypeDateTime(attributesOfTypeDateTime);
+
+        EventUtil.setElementsOfTypeDate(dataElementsOfTypeDate);
+        TEIUtil.setAttributeOfTypeDate(attributesOfTypeDate);
+
+        if (!fetchFailed && null != newDataElementsLastUpdated && null != newAttributesLastUpdated) {
+            dataElementsLastUpdated = newDataElementsLastUpdated;
+            attributesLastUpdated = newAttributesLastUpdated;
+            lastRefreshTime = startTime;
+            cached = true;
+        }
     }
 }
@@ -0,0 +1,117 @@
+package com.thoughtworks.martdhis2sync.service;
+
+import com.thoughtworks.martdhis2sync.dao.PatientDAO;
+import com.thoughtworks.martdhis2sync.model.Config;
+import com.thoughtworks.martdhis2sync.model.LookupTable;
+import com.thoughtworks.martdhis2sync.model.MappingJson;
+import com.thoughtworks.martdhis2sync.trackerHandler.TrackersHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+@Component
+public class EnrollmentSyncOrchestrator {
+
+    @Value("${enrollment.sync.concurrency}")
+    private int concurrency;
+
+    @Autowired
+    private CompletedEnrollmentService completedEnrollmentService;
+
+    @Autowired
+    private ActiveEnrollmentService activeEnrollmentService;
+
+    @Autowired
+    private PatientDAO patientDAO;
+
+    private Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    private static final String LOG_PREFIX = "Enrollment Sync: ";
+
+    public boolean isConcurrent() {
+        return concurrency > 1;
+    }
+
+    /*
+     * Completed enrollments are synced before active ones, as DHIS2 only takes a new active enrollment
+     * once the previous one of the program is completed. Within each stage the new and the updated job run
+     * side by side: the enrollments of the updated job are read before the stage starts, so it only syncs
+     * those and never the ones the new job starts tracking meanwhile.
+     */
+    public void triggerJobs(String service, String user, LookupTable lookupTable, MappingJson mappingJson, Config config)
+            throws Exception {
+        String enrLookupTable = lookupTable.getEnrollments();
+        String evnLookupTable = lookupTable.getEvent();
+        Object mappingObj = mappingJson.getEvent();
+        String openLatestCompletedEnrollment = config.getOpenLatestCompletedEnrollment();
+
+        List<String> updatedCompletedEnrollments = patientDAO.getUpdatedCompletedEnrollmentIds(enrLookupTable,
+                evnLookupTable, service);
+        runConcurrently("Completed Enrollments",
+                () -> completedEnrollmentService.triggerJobForNewCompletedEnrollments(service, user, enrLookupTable,
+                        evnLookupTable, mappingObj, openLatestCompletedEnrollment),
+                () -> completedEnrollmentService.triggerJobForUpdatedCompletedEnrollments(service, user, enrLookupTable,
+                        evnLookupTable, mappingObj, Collections.emptyList(), updatedCompletedEnrollments,
+                        openLatestCompletedEnrollment)
+        );
+
+        List<String> updatedActiveEnrollments = patientDAO.getUpdatedActiveEnrollmentIds(enrLookupTable,
+                evnLookupTable, service);
+        runConcurrently("Active Enrollments",
+                () -> activeEnrollmentService.triggerJobForNewActiveEnrollments(service, user, enrLookupTable,
+                        evnLookupTable, mappingObj, openLatestCompletedEnrollment),
+                () -> activeEnrollmentService.triggerJobForUpdatedActiveEnrollments(service, user, enrLookupTable,
+                        evnLookupTable, mappingObj, Collections.emptyList(), updatedActiveEnrollments,
+                        openLatestCompletedEnrollment)
+        );
+    }
+
+    private void runConcurrently(String stage, EnrollmentJob... jobs) throws Exception {
+        long startTime = System.currentTimeMillis();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(concurrency, jobs.length)));
+        try {
+            List<Callable<Void>> tasks = new ArrayList<>();
+            Arrays.stream(jobs).forEach(job -> tasks.add(() -> {
+                TrackersHandler.isolateTrackerLists();
+                job.trigger();
+                return null;
+            }));
+
+            // every job of the stage is waited for, so the next stage never overlaps a job still running
+            List<Future<Void>> results = executor.invokeAll(tasks);
+            for (Future<Void> result : results) {
+                getResult(result);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        logger.info(LOG_PREFIX + stage + " took " + (System.currentTimeMillis() - startTime) + " ms");
+    }
+
+    private void getResult(Future<Void> result) throws Exception {
+        try {
+            result.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception) {
+                throw (Exception) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private interface EnrollmentJob {
+        void trigger() throws Exception;
+    }
+}
@@ -1,8 +1,6 @@
 package com.thoughtworks.martdhis2sync.service;
 
 import com.thoughtworks.martdhis2sync.listener.JobCompletionNotificationListener;
-import lombok.Getter;
-import lombok.Setter;
 import org.springframework.batch.core.BatchStatus;
 import org.springframework.batch.core.Job;
 import org.springframework.batch.core.JobExecution;
@@ -23,6 +21,7 @@ import org.springframework.stereotype.Component;
 import java.io.SyncFailedException;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 @Component
 public class JobService {
@@ -39,14 +38,26 @@ public class JobService {
     @Autowired
     private LoggerService loggerService;
 
-    @Setter
-    @Getter
-    private static boolean IS_JOB_FAILED = false;
+    // bound per job, and shared with the chunk threads a job starts, so concurrent jobs don't reset each other's failure
+    private static final InheritableThreadLocal<AtomicBoolean> IS_JOB_FAILED = new InheritableThreadLocal<AtomicBoolean>() {
+        @Override
+        protected AtomicBoolean initialValue() {
+            return new AtomicBoolean(false);
+        }
+    };
+
+    public static boolean isIS_JOB_FAILED() {
+        return IS_JOB_FAILED.get().get();
+    }
+
+    public static void setIS_JOB_FAILED(boolean isJobFailed) {
+        IS_JOB_FAILED.get().set(isJobFailed);
+    }
 
     public void triggerJob(String programName, String user, String jobName, List<Step> steps, String openLatestCompletedEnrollment)
             throws JobParametersInvalidException, JobExecutionAlreadyRunningException,
             JobRestartException, JobInstanceAlreadyCompleteException, SyncFailedException {
-        IS_JOB_FAILED = false;
+        IS_JOB_FAILED.set(new AtomicBoolean(false));
         JobExecution jobExecution = jobLauncher.run(getJob(jobName, steps),
                 new JobParametersBuilder()
                         .addDate("date", new Date())
@@ -55,7 +66,7 @@ public class JobService {
                         .addString("openLatestCompletedEnrollment", openLatestCompletedEnrollment)
                         .toJobParameters());
 
-        if (jobExecution.getStatus() == BatchStatus.FAILED || IS_JOB_FAILED) {
+        if (jobExecution.getStatus() == BatchStatus.FAILED || isIS_JOB_FAILED()) {
             jobExecution.getAllFailureExceptions().forEach(exp -> {
                 String message = exp.getMessage();
                 if(message != null) {
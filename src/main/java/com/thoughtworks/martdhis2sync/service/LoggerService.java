@@ -1,12 +1,10 @@
 package com.thoughtworks.martdhis2sync.service;
 
 import com.thoughtworks.martdhis2sync.dao.LoggerDAO;
+import com.thoughtworks.martdhis2sync.util.SyncContext;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
-import java.util.LinkedHashSet;
-import java.util.Set;
-
 @Component
 public class LoggerService {
 
@@ -21,22 +19,20 @@ public class LoggerService {
 
     public static final String FAILED = "failed";
 
-    private Set<String> logMessage = new LinkedHashSet<>();
-
     public void addLog(String service, String user, String comments) {
-        logMessage.clear();
+        SyncContext.current().getLogMessages().clear();
         loggerDAO.addLog(service, user, comments);
     }
 
     public void updateLog(String service, String status) {
         if (FAILED.equalsIgnoreCase(status)) {
-            logMessage.add(CONTACT_ADMIN);
+            SyncContext.current().getLogMessages().add(CONTACT_ADMIN);
         }
-        String message = logMessage.toString();
+        String message = SyncContext.current().getLogMessages().toString();
         loggerDAO.updateLog(service, status, message.substring(1, message.length() - 1));
     }
 
     public void collateLogMessage(String message) {
-        logMessage.add(message);
+        SyncContext.current().getLogMessages().add(message);
     }
 }
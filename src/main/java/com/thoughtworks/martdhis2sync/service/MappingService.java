@@ -1,10 +1,17 @@
 package com.thoughtworks.martdhis2sync.service;
 
+import com.google.gson.Gson;
+import com.google.gson.internal.LinkedTreeMap;
 import com.thoughtworks.martdhis2sync.dao.MappingDAO;
+import com.thoughtworks.martdhis2sync.model.Config;
+import com.thoughtworks.martdhis2sync.model.LookupTable;
+import com.thoughtworks.martdhis2sync.model.Mapping;
+import com.thoughtworks.martdhis2sync.model.MappingJson;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Component
 public class MappingService {
@@ -12,7 +19,37 @@ public class MappingService {
     @Autowired
     private MappingDAO mappingDAO;
 
-    public Map<String, Object> getMapping(String mapping) {
-        return mappingDAO.getMapping(mapping);
+    private final Map<String, Mapping> mappings = new ConcurrentHashMap<>();
+
+    // the mapping is only read and parsed again when the checksum of its row has changed since the last sync
+    public Mapping getMapping(String mappingName) {
+        String checksum = mappingDAO.getMappingChecksum(mappingName);
+        Mapping cached = mappings.get(mappingName);
+        if (cached != null && cached.getChecksum().equals(checksum)) {
+            return cached;
+        }
+
+        Mapping mapping = parse(mappingName, checksum, mappingDAO.getMapping(mappingName));
+        mappings.put(mappingName, mapping);
+        return mapping;
+    }
+
+    private Mapping parse(String mappingName, String checksum, Map<String, Object> mapping) {
+        Gson gson = new Gson();
+        LookupTable lookupTable = gson.fromJson(mapping.get("lookup_table").toString(), LookupTable.class);
+        MappingJson mappingJson = gson.fromJson(mapping.get("mapping_json").toString(), MappingJson.class);
+        Config config = gson.fromJson(mapping.get("config").toString(), Config.class);
+
+        return new Mapping(mappingName, checksum, lookupTable, mappingJson, config,
+                getInstanceMapping(gson, mappingJson.getInstance()));
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> getInstanceMapping(Gson gson, Object instance) {
+        if (instance instanceof Map) {
+            return (Map<String, Object>) instance;
+        }
+
+        return gson.fromJson(instance.toString(), LinkedTreeMap.class);
     }
 }
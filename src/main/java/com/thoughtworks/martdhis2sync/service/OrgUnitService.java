@@ -5,6 +5,8 @@ import com.thoughtworks.martdhis2sync.model.OrgUnitResponse;
 import com.thoughtworks.martdhis2sync.repository.SyncRepository;
 import com.thoughtworks.martdhis2sync.util.BatchUtil;
 import com.thoughtworks.martdhis2sync.util.OrgUnitUtil;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -15,12 +17,16 @@ import org.springframework.stereotype.Component;
 
 import javax.annotation.PostConstruct;
 import javax.sql.DataSource;
+import java.nio.charset.StandardCharsets;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 @Component
@@ -32,6 +38,9 @@ public class OrgUnitService {
     @Value("${country.org.unit.id.for.patient.data.duplication.check}")
     private String rootOrgUnit;
 
+    @Value("${org.unit.full.reload.interval.hours}")
+    private long fullReloadIntervalHours;
+
     @Autowired
     private DataSource dataSource;
 
@@ -40,14 +49,47 @@ public class OrgUnitService {
 
     private static final String URI_ORG_UNIT = "/api/organisationUnits/";
 
+    private static final String URI_ORG_UNITS = "/api/organisationUnits";
+
     private static final String QUERY_PARAMS = "includeDescendants=true";
 
+    private static final String FIELDS = "fields=id,code,lastUpdated";
+
     private List<OrgUnit> orgUnits = new ArrayList<>();
 
+    // lastUpdated as reported by DHIS2, so the delta query is not affected by clock or time zone differences
+    private String lastUpdated;
+
+    private long lastFullReloadTime;
+
     private Logger logger = LoggerFactory.getLogger(this.getClass());
 
     private static final String LOG_PREFIX = "OrgUnit Service: ";
 
+    private static final String CREATE_STAGING_TABLE = "CREATE TEMP TABLE orgunit_tracker_staging" +
+            "(orgunit text, id text) ON COMMIT DROP";
+
+    private static final String COPY_INTO_STAGING_TABLE = "COPY orgunit_tracker_staging(orgunit, id) " +
+            "FROM STDIN WITH (FORMAT csv)";
+
+    private static final String DELETE_REMOVED_ORG_UNITS = "DELETE FROM public.orgunit_tracker ot " +
+            "WHERE NOT EXISTS (SELECT 1 FROM orgunit_tracker_staging s WHERE s.orgunit = ot.orgunit)";
+
+    // a unit whose code was changed or cleared since the last refresh leaves a row under its old code behind
+    private static final String DELETE_RECODED_ORG_UNITS = "DELETE FROM public.orgunit_tracker ot " +
+            "WHERE EXISTS (SELECT 1 FROM orgunit_tracker_staging s " +
+            "WHERE s.id = ot.id AND s.orgunit IS DISTINCT FROM ot.orgunit)";
+
+    private static final String UPDATE_CHANGED_ORG_UNITS = "UPDATE public.orgunit_tracker ot " +
+            "SET id = s.id, date_created = ? " +
+            "FROM (SELECT DISTINCT ON (orgunit) orgunit, id FROM orgunit_tracker_staging) s " +
+            "WHERE s.orgunit = ot.orgunit AND s.id IS DISTINCT FROM ot.id";
+
+    private static final String INSERT_NEW_ORG_UNITS = "INSERT INTO public.orgunit_tracker(orgunit, id, date_created) " +
+            "SELECT DISTINCT ON (s.orgunit) s.orgunit, s.id, CAST(? AS TIMESTAMP) FROM orgunit_tracker_staging s " +
+            "WHERE s.orgunit IS NOT NULL " +
+            "AND NOT EXISTS (SELECT 1 FROM public.orgunit_tracker ot WHERE ot.orgunit = s.orgunit)";
+
     @Scheduled(cron = "${org.unit.cron.interval}")
     @PostConstruct
     public void getOrgUnitsList() throws SQLException {
@@ -55,15 +97,16 @@ public class OrgUnitService {
 
         logger.info(LOG_PREFIX + "Started.");
         orgUnits.clear();
-        String url = dhis2Url + URI_ORG_UNIT + rootOrgUnit + "?" + QUERY_PARAMS;
+        boolean fullReload = isFullReloadDue();
+        long startTime = System.currentTimeMillis();
+        String url = fullReload ? getFullReloadUrl() : getDeltaUrl();
         ResponseEntity<OrgUnitResponse> responseEntity = syncRepository.getOrgUnits(url);
         if (null == responseEntity) {
             return;
         }
 
-        orgUnitsWithCode = responseEntity
-                .getBody()
-                .getOrganisationUnits()
+        List<OrgUnit> changedOrgUnits = responseEntity.getBody().getOrganisationUnits();
+        orgUnitsWithCode = changedOrgUnits
                 .stream()
                 .filter(orgUnit -> orgUnit.getCode() != null)
                 .collect(Collectors.toList());
@@ -71,29 +114,92 @@ public class OrgUnitService {
         this.orgUnits.addAll(orgUnitsWithCode);
 
         OrgUnitUtil.getOrgUnitMap().clear();
-        int count = updateTracker();
-        logger.info(LOG_PREFIX + "Saved " + count + " Org Units");
+        // a delta also stages the units without a code, so the rows of the codes they had are removed
+        List<OrgUnit> stagedOrgUnits = fullReload ? orgUnitsWithCode : changedOrgUnits;
+        int count = stagedOrgUnits.isEmpty() && !fullReload ? 0 : updateTracker(stagedOrgUnits, fullReload);
+        updateLastUpdated(changedOrgUnits);
+        if (fullReload) {
+            lastFullReloadTime = startTime;
+        }
+        logger.info(LOG_PREFIX + (fullReload ? "Refreshed " : "Received changes for ") + orgUnits.size() +
+                " Org Units, " + count + " changed");
+    }
+
+    private boolean isFullReloadDue() {
+        return null == lastUpdated ||
+                System.currentTimeMillis() - lastFullReloadTime >= TimeUnit.HOURS.toMillis(fullReloadIntervalHours);
+    }
+
+    private String getFullReloadUrl() {
+        return dhis2Url + URI_ORG_UNIT + rootOrgUnit + "?" + QUERY_PARAMS + "&" + FIELDS;
     }
 
-    private int updateTracker() throws SQLException {
+    private String getDeltaUrl() {
+        return dhis2Url + URI_ORG_UNITS + "?paging=false&" + FIELDS +
+                "&filter=path:like:" + rootOrgUnit + "&filter=lastUpdated:ge:" + lastUpdated;
+    }
+
+    private void updateLastUpdated(List<OrgUnit> changedOrgUnits) {
+        changedOrgUnits.stream()
+                .map(OrgUnit::getLastUpdated)
+                .filter(Objects::nonNull)
+                .max(String::compareTo)
+                .filter(max -> null == lastUpdated || max.compareTo(lastUpdated) > 0)
+                .ifPresent(max -> lastUpdated = max);
+    }
 
-        String deleteQuery = "DELETE FROM public.orgunit_tracker";
-        String insertQuery = "INSERT INTO public.orgunit_tracker(orgunit, id, date_created) values (?, ?, ?)";
+    private int updateTracker(List<OrgUnit> stagedOrgUnits, boolean fullReload) throws SQLException {
         int updateCount = 0;
 
         try (Connection connection = dataSource.getConnection()) {
-            try (PreparedStatement ps = connection.prepareStatement(deleteQuery)) {
-                ps.executeUpdate();
-            }
-            try (PreparedStatement ps = connection.prepareStatement(insertQuery)) {
-                for (OrgUnit ou : orgUnits) {
-                    ps.setString(1, ou.getCode());
-                    ps.setString(2, ou.getId());
-                    ps.setTimestamp(3, Timestamp.valueOf(BatchUtil.GetUTCDateTimeAsString()));
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute(CREATE_STAGING_TABLE);
+                }
+                copyIntoStagingTable(connection, stagedOrgUnits);
+
+                Timestamp dateCreated = Timestamp.valueOf(BatchUtil.GetUTCDateTimeAsString());
+                try (Statement statement = connection.createStatement()) {
+                    updateCount += statement.executeUpdate(fullReload ? DELETE_REMOVED_ORG_UNITS : DELETE_RECODED_ORG_UNITS);
+                }
+                try (PreparedStatement ps = connection.prepareStatement(UPDATE_CHANGED_ORG_UNITS)) {
+                    ps.setTimestamp(1, dateCreated);
+                    updateCount += ps.executeUpdate();
+                }
+                try (PreparedStatement ps = connection.prepareStatement(INSERT_NEW_ORG_UNITS)) {
+                    ps.setTimestamp(1, dateCreated);
                     updateCount += ps.executeUpdate();
                 }
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(autoCommit);
             }
         }
         return updateCount;
     }
+
+    private void copyIntoStagingTable(Connection connection, List<OrgUnit> stagedOrgUnits) throws SQLException {
+        CopyIn copyIn = connection.unwrap(PGConnection.class).getCopyAPI().copyIn(COPY_INTO_STAGING_TABLE);
+        try {
+            for (OrgUnit ou : stagedOrgUnits) {
+                byte[] row = (getCsvValue(ou.getCode()) + "," + getCsvValue(ou.getId()) + "\n")
+                        .getBytes(StandardCharsets.UTF_8);
+                copyIn.writeToCopy(row, 0, row.length);
+            }
+            copyIn.endCopy();
+        } finally {
+            if (copyIn.isActive()) {
+                copyIn.cancelCopy();
+            }
+        }
+    }
+
+    private String getCsvValue(String value) {
+        return null == value ? "" : "\"" + value.replace("\"", "\"\"") + "\"";
+    }
 }
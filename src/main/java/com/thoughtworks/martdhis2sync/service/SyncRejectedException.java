@@ -0,0 +1,9 @@
+package com.thoughtworks.martdhis2sync.service;
+
+// thrown when a sync can not be queued, the sync is already recorded as failed by then
+public class SyncRejectedException extends RuntimeException {
+
+    public SyncRejectedException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
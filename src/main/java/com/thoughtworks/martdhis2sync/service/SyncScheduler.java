@@ -0,0 +1,85 @@
+package com.thoughtworks.martdhis2sync.service;
+
+import com.thoughtworks.martdhis2sync.model.DHISSyncRequestBody;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.SchedulingConfigurer;
+import org.springframework.scheduling.config.ScheduledTaskRegistrar;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/*
+ * Runs the syncs of the services configured in sync.schedule, given as "<mapping name>=<cron>;...".
+ * A trigger only queues the sync on the sync executor, so the schedules share its bounded pool and queue.
+ */
+@Component
+public class SyncScheduler implements SchedulingConfigurer {
+
+    @Autowired
+    private SyncService syncService;
+
+    @Autowired
+    private SyncStatusService syncStatusService;
+
+    @Value("${sync.schedule}")
+    private String schedule;
+
+    @Value("${sync.schedule.user}")
+    private String user;
+
+    private static final String COMMENT = "Scheduled sync";
+
+    private static final String LOG_PREFIX = "Sync Scheduler: ";
+
+    private Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    @Override
+    public void configureTasks(ScheduledTaskRegistrar taskRegistrar) {
+        getSchedules().forEach((service, cron) -> {
+            taskRegistrar.addCronTask(() -> trigger(service), cron);
+            logger.info(LOG_PREFIX + "Scheduled " + service + " at " + cron);
+        });
+    }
+
+    // a trigger is dropped while the previous sync of the service is still queued or running,
+    // and when the queue is full because DHIS2 is taking longer than the cadence of the schedules
+    synchronized boolean trigger(String service) {
+        if (syncStatusService.isActive(service)) {
+            logger.info(LOG_PREFIX + "Skipped " + service + ", its previous sync has not finished yet");
+            return false;
+        }
+
+        DHISSyncRequestBody requestBody = new DHISSyncRequestBody();
+        requestBody.setService(service);
+        requestBody.setUser(user);
+        requestBody.setComment(COMMENT);
+        try {
+            syncService.submit(requestBody);
+        } catch (SyncRejectedException e) {
+            logger.warn(LOG_PREFIX + "Skipped " + service + ", " + e.getMessage());
+            return false;
+        }
+
+        return true;
+    }
+
+    Map<String, String> getSchedules() {
+        Map<String, String> schedules = new LinkedHashMap<>();
+        for (String entry : StringUtils.tokenizeToStringArray(schedule, ";")) {
+            int separator = entry.indexOf('=');
+            if (separator < 1) {
+                throw new IllegalArgumentException("Invalid sync schedule " + entry + ", expected <service>=<cron>");
+            }
+            String service = entry.substring(0, separator).trim();
+            String cron = entry.substring(separator + 1).trim();
+            schedules.put(service, cron);
+        }
+
+        return schedules;
+    }
+}
@@ -0,0 +1,235 @@
+package com.thoughtworks.martdhis2sync.service;
+
+import com.thoughtworks.martdhis2sync.model.*;
+import com.thoughtworks.martdhis2sync.trackerHandler.TrackersHandler;
+import com.thoughtworks.martdhis2sync.util.EnrollmentUtil;
+import com.thoughtworks.martdhis2sync.util.EventUtil;
+import com.thoughtworks.martdhis2sync.util.MarkerUtil;
+import com.thoughtworks.martdhis2sync.util.SyncContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpServerErrorException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static com.thoughtworks.martdhis2sync.service.LoggerService.*;
+import static com.thoughtworks.martdhis2sync.util.BatchUtil.DATEFORMAT_WITH_24HR_TIME;
+import static com.thoughtworks.martdhis2sync.util.BatchUtil.getStringFromDate;
+import static com.thoughtworks.martdhis2sync.util.MarkerUtil.CATEGORY_ENROLLMENT;
+import static com.thoughtworks.martdhis2sync.util.MarkerUtil.CATEGORY_EVENT;
+
+/*
+ * Runs the syncs of the pushData endpoints and of the scheduler, either right away or queued on the sync executor.
+ */
+@Component
+public class SyncService {
+
+    @Autowired
+    private MappingService mappingService;
+
+    @Autowired
+    private TEIService teiService;
+
+    @Autowired
+    private LoggerService loggerService;
+
+    @Autowired
+    private DHISMetaDataService dhisMetaDataService;
+
+    @Autowired
+    private CompletedEnrollmentService completedEnrollmentService;
+
+    @Autowired
+    private ActiveEnrollmentService activeEnrollmentService;
+
+    @Autowired
+    private EnrollmentSyncOrchestrator enrollmentSyncOrchestrator;
+
+    @Autowired
+    private MarkerUtil markerUtil;
+
+    @Autowired
+    private SyncStatusService syncStatusService;
+
+    @Autowired
+    @Qualifier("syncExecutor")
+    private TaskExecutor syncExecutor;
+
+    // the syncs of one service share its markers and trackers, so only the syncs of different services overlap
+    private final Map<String, ReentrantLock> serviceLocks = new ConcurrentHashMap<>();
+
+    private Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    private static final String NO_DATA_TO_SYNC = "NO DATA TO SYNC";
+
+    private static final String MARKERS_PHASE = "Update Markers";
+
+    public void sync(DHISSyncRequestBody requestBody) throws HttpServerErrorException {
+        sync(syncStatusService.submit(requestBody.getService(), requestBody.getUser()).getSyncId(), requestBody);
+    }
+
+    public SyncStatus submit(DHISSyncRequestBody requestBody) throws SyncRejectedException {
+        SyncStatus status = syncStatusService.submit(requestBody.getService(), requestBody.getUser());
+        try {
+            syncExecutor.execute(() -> {
+                try {
+                    sync(status.getSyncId(), requestBody);
+                } catch (HttpServerErrorException e) {
+                    logger.info("Sync " + status.getSyncId() + " ended with " + e.getStatusText());
+                }
+            });
+        } catch (TaskRejectedException e) {
+            syncStatusService.finish(status.getSyncId(), SyncStatus.State.FAILED, "Too many syncs are queued");
+            throw new SyncRejectedException("Too many syncs are queued", e);
+        }
+
+        return status;
+    }
+
+    private void sync(String syncId, DHISSyncRequestBody requestBody) throws HttpServerErrorException {
+        ReentrantLock lock = serviceLocks.computeIfAbsent(requestBody.getService(), service -> new ReentrantLock());
+        lock.lock();
+        try {
+            syncStatusService.start(syncId);
+            SyncContext.begin(requestBody.getService());
+            syncStatusService.finish(syncId, push(requestBody), null);
+        } catch (HttpServerErrorException e) {
+            syncStatusService.finish(syncId, NO_DATA_TO_SYNC.equals(e.getStatusText())
+                    ? SyncStatus.State.NO_DELTA : SyncStatus.State.FAILED, e.getStatusText());
+            throw e;
+        } catch (RuntimeException e) {
+            syncStatusService.finish(syncId, SyncStatus.State.FAILED, e.getMessage());
+            throw e;
+        } finally {
+            SyncContext.end();
+            lock.unlock();
+        }
+    }
+
+    private SyncStatus.State push(DHISSyncRequestBody requestBody) throws HttpServerErrorException {
+        SyncStatus.State state = SyncStatus.State.SUCCESS;
+        long timeInMillis = System.currentTimeMillis();
+        loggerService.addLog(requestBody.getService(), requestBody.getUser(), requestBody.getComment());
+
+        dhisMetaDataService.filterByTypeDateTime();
+
+        Mapping mapping = mappingService.getMapping(requestBody.getService());
+        LookupTable lookupTable = mapping.getLookupTable();
+        MappingJson mappingJson = mapping.getMappingJson();
+        Config config = mapping.getConfig();
+        EnrollmentUtil.setDate(markerUtil.getLastSyncedDate(requestBody.getService(), CATEGORY_ENROLLMENT));
+        EventUtil.setDate(markerUtil.getLastSyncedDate(requestBody.getService(), CATEGORY_EVENT));
+
+        try {
+            Map<String,String> invalidPatients = teiService.verifyOrgUnitsForPatients(lookupTable.getInstance());
+            if(invalidPatients.size() > 0) {
+                loggerService.collateLogMessage("Prevalidation for sync service failed. Invalid Org Unit specified for below patients. Update Patient Info in OpenMRS, run Bahmni MART");
+                invalidPatients.forEach((patientID,orgUnit)-> {
+                    loggerService.collateLogMessage("[Patient ID (" + patientID + ") Org Unit ID (" + orgUnit + ")] ");
+                });
+                loggerService.updateLog(requestBody.getService(), FAILED);
+                throw new HttpServerErrorException(HttpStatus.INTERNAL_SERVER_ERROR, "Prevalidation for sync service failed. Invalid Org Unit specified for below patients. Update Patient Info in OpenMRS, run Bahmni MART");
+            }
+            teiService.getTrackedEntityInstances(mapping);
+            teiService.triggerJob(requestBody.getService(), requestBody.getUser(),
+                    lookupTable.getInstance(), mappingJson.getInstance(), config.getSearchable(), config.getComparable());
+            triggerEnrollmentsSync(requestBody, lookupTable, mappingJson, config);
+
+            if (!SyncContext.current().isDeltaExists()) {
+                loggerService.collateLogMessage(NO_DELTA_DATA);
+                loggerService.updateLog(requestBody.getService(), SUCCESS);
+                throw new HttpServerErrorException(HttpStatus.INTERNAL_SERVER_ERROR, NO_DATA_TO_SYNC);
+            } else {
+                updateMarkers(requestBody);
+            }
+            loggerService.updateLog(requestBody.getService(), SUCCESS);
+        } catch (HttpServerErrorException e) {
+            loggerService.updateLog(requestBody.getService(), FAILED);
+            throw e;
+        } catch (Exception e) {
+            loggerService.updateLog(requestBody.getService(), FAILED);
+            state = SyncStatus.State.FAILED;
+//            throw new HttpServerErrorException(HttpStatus.INTERNAL_SERVER_ERROR, "SYNC FAILED");
+            e.printStackTrace();
+        }
+        logger.info("Sync completed and took: " + (System.currentTimeMillis() - timeInMillis)/1000 + " seconds");
+        return state;
+    }
+
+    private void updateMarkers(DHISSyncRequestBody requestBody) {
+        syncStatusService.phaseStarted(MARKERS_PHASE);
+        boolean failed = true;
+        try {
+            markerUtil.updateMarkerEntry(requestBody.getService(), CATEGORY_ENROLLMENT,
+                    getStringFromDate(EnrollmentUtil.getDate(), DATEFORMAT_WITH_24HR_TIME));
+            markerUtil.updateMarkerEntry(requestBody.getService(), CATEGORY_EVENT,
+                    getStringFromDate(EventUtil.getDate(), DATEFORMAT_WITH_24HR_TIME));
+            failed = false;
+        } finally {
+            syncStatusService.phaseFinished(MARKERS_PHASE, failed);
+        }
+    }
+
+    private void triggerEnrollmentsSync(DHISSyncRequestBody requestBody, LookupTable lookupTable, MappingJson mappingJson, Config config) throws Exception {
+        TrackersHandler.clearTrackerLists();
+
+        logger.info("=========================TEI sync Success=========================\n\n" +
+                "=========================Getting enrollments for TEI=========================\n");
+
+        teiService.getEnrollmentsForInstances(lookupTable.getEnrollments(), lookupTable.getEvent(), requestBody.getService());
+
+        if (enrollmentSyncOrchestrator.isConcurrent()) {
+            logger.info("=========================Got enrollments for TEI=========================\n\n" +
+                    "=========================Enrollment Sync Started=========================\n");
+
+            enrollmentSyncOrchestrator.triggerJobs(requestBody.getService(), requestBody.getUser(), lookupTable,
+                    mappingJson, config);
+            return;
+        }
+
+        logger.info("=========================Got enrollments for TEI=========================\n\n" +
+                "=========================New Completed Enrollment Sync Started=========================\n");
+
+        completedEnrollmentService.triggerJobForNewCompletedEnrollments(requestBody.getService(), requestBody.getUser(),
+                lookupTable.getEnrollments(), lookupTable.getEvent(), mappingJson.getEvent(), config.getOpenLatestCompletedEnrollment());
+
+        List<EnrollmentAPIPayLoad> enrollmentsToIgnore = new ArrayList<>(EnrollmentUtil.enrollmentsToSaveInTracker);
+        TrackersHandler.clearTrackerLists();
+
+        logger.info("=========================New Completed Enrollment Sync Success=========================\n\n" +
+                "=========================Update Complete Enrollment Sync Started=========================\n");
+
+        completedEnrollmentService.triggerJobForUpdatedCompletedEnrollments(requestBody.getService(), requestBody.getUser(),
+                lookupTable.getEnrollments(), lookupTable.getEvent(), mappingJson.getEvent(), enrollmentsToIgnore, null,
+                config.getOpenLatestCompletedEnrollment());
+
+        TrackersHandler.clearTrackerLists();
+
+        logger.info("=========================Update Complete Enrollment Sync Success=========================\n\n" +
+                "=========================New Active Enrollment Sync Started=========================\n");
+
+        activeEnrollmentService.triggerJobForNewActiveEnrollments(requestBody.getService(), requestBody.getUser(),
+                lookupTable.getEnrollments(), lookupTable.getEvent(), mappingJson.getEvent(), config.getOpenLatestCompletedEnrollment());
+
+        enrollmentsToIgnore = new ArrayList<>(EnrollmentUtil.enrollmentsToSaveInTracker);
+        TrackersHandler.clearTrackerLists();
+
+
+        logger.info("=========================New Active Enrollment Sync Success=========================\n\n" +
+                "=========================Update Active Enrollment Sync Started");
+        
+        activeEnrollmentService.triggerJobForUpdatedActiveEnrollments(requestBody.getService(), requestBody.getUser(),
+                lookupTable.getEnrollments(), lookupTable.getEvent(), mappingJson.getEvent(), enrollmentsToIgnore, null,
+                config.getOpenLatestCompletedEnrollment());
+    }
+}
@@ -0,0 +1,209 @@
+package com.thoughtworks.martdhis2sync.service;
+
+import com.thoughtworks.martdhis2sync.model.SyncPhase;
+import com.thoughtworks.martdhis2sync.model.SyncStatus;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static com.thoughtworks.martdhis2sync.model.SyncStatus.State.QUEUED;
+import static com.thoughtworks.martdhis2sync.model.SyncStatus.State.RUNNING;
+
+@Component
+public class SyncStatusService {
+
+    @Value("${sync.status.retention}")
+    private int retention;
+
+    // bound for the whole sync, and inherited by the threads its enrollment jobs run on
+    private static final InheritableThreadLocal<String> CURRENT_SYNC = new InheritableThreadLocal<>();
+
+    private final Map<String, SyncStatus> statuses = new LinkedHashMap<>();
+
+    // the executions of the jobs still running, read for the live counts of their phase
+    private final Map<String, Map<String, JobExecution>> runningJobs = new HashMap<>();
+
+    public synchronized SyncStatus submit(String service, String user) {
+        SyncStatus status = new SyncStatus();
+        status.setSyncId(UUID.randomUUID().toString());
+        status.setService(service);
+        status.setUser(user);
+        status.setState(QUEUED);
+        status.setSubmittedAt(new Date());
+        statuses.put(status.getSyncId(), status);
+        evictFinished();
+
+        return snapshot(status);
+    }
+
+    public synchronized void start(String syncId) {
+        CURRENT_SYNC.set(syncId);
+        SyncStatus status = statuses.get(syncId);
+        if (status != null) {
+            status.setState(RUNNING);
+            status.setStartedAt(new Date());
+        }
+    }
+
+    public synchronized void finish(String syncId, SyncStatus.State state, String message) {
+        CURRENT_SYNC.remove();
+        runningJobs.remove(syncId);
+        SyncStatus status = statuses.get(syncId);
+        if (status != null) {
+            status.setState(state);
+            status.setMessage(message);
+            status.setFinishedAt(new Date());
+        }
+    }
+
+    public synchronized void phaseStarted(String name) {
+        SyncStatus status = getCurrentSync();
+        if (status == null) {
+            return;
+        }
+        SyncPhase phase = new SyncPhase();
+        phase.setName(name);
+        phase.setState(SyncPhase.State.RUNNING);
+        phase.setStartedAt(new Date());
+        status.getPhases().add(phase);
+    }
+
+    public synchronized void phaseFinished(String name, boolean failed) {
+        SyncPhase phase = getCurrentPhase(name);
+        if (phase != null) {
+            phase.setState(failed ? SyncPhase.State.FAILED : SyncPhase.State.COMPLETED);
+            phase.setFinishedAt(new Date());
+        }
+    }
+
+    public synchronized void jobStarted(JobExecution jobExecution) {
+        String syncId = CURRENT_SYNC.get();
+        if (syncId == null || !statuses.containsKey(syncId)) {
+            return;
+        }
+        phaseStarted(jobExecution.getJobInstance().getJobName());
+        runningJobs.computeIfAbsent(syncId, id -> new HashMap<>())
+                .put(jobExecution.getJobInstance().getJobName(), jobExecution);
+    }
+
+    public synchronized void jobFinished(JobExecution jobExecution, boolean failed) {
+        String name = jobExecution.getJobInstance().getJobName();
+        SyncPhase phase = getCurrentPhase(name);
+        if (phase == null) {
+            return;
+        }
+        phaseFinished(name, failed || jobExecution.getStatus() == BatchStatus.FAILED);
+        setCounts(phase, jobExecution);
+        runningJobs.getOrDefault(CURRENT_SYNC.get(), new HashMap<>()).remove(name);
+    }
+
+    public synchronized SyncStatus get(String syncId) {
+        SyncStatus status = statuses.get(syncId);
+
+        return status == null ? null : snapshot(status);
+    }
+
+    public synchronized boolean isActive(String service) {
+        return statuses.values().stream()
+                .anyMatch(status -> status.getService().equals(service)
+                        && (status.getState() == QUEUED || status.getState() == RUNNING));
+    }
+
+    private SyncStatus getCurrentSync() {
+        String syncId = CURRENT_SYNC.get();
+
+        return syncId == null ? null : statuses.get(syncId);
+    }
+
+    private SyncPhase getCurrentPhase(String name) {
+        SyncStatus status = getCurrentSync();
+        if (status == null) {
+            return null;
+        }
+
+        return status.getPhases().stream()
+                .filter(phase -> phase.getName().equals(name) && phase.getState() == SyncPhase.State.RUNNING)
+                .findFirst()
+                .orElse(null);
+    }
+
+    private SyncStatus snapshot(SyncStatus status) {
+        Map<String, JobExecution> jobs = runningJobs.getOrDefault(status.getSyncId(), new HashMap<>());
+        SyncStatus copy = new SyncStatus();
+        copy.setSyncId(status.getSyncId());
+        copy.setService(status.getService());
+        copy.setUser(status.getUser());
+        copy.setState(status.getState());
+        copy.setMessage(status.getMessage());
+        copy.setSubmittedAt(status.getSubmittedAt());
+        copy.setStartedAt(status.getStartedAt());
+        copy.setFinishedAt(status.getFinishedAt());
+        status.getPhases().forEach(phase -> {
+            SyncPhase phaseCopy = new SyncPhase();
+            phaseCopy.setName(phase.getName());
+            phaseCopy.setState(phase.getState());
+            phaseCopy.setStartedAt(phase.getStartedAt());
+            phaseCopy.setFinishedAt(phase.getFinishedAt());
+            phaseCopy.setReadCount(phase.getReadCount());
+            phaseCopy.setWriteCount(phase.getWriteCount());
+            phaseCopy.setSkipCount(phase.getSkipCount());
+            phaseCopy.setRowsPerSecond(phase.getRowsPerSecond());
+            if (phase.getState() == SyncPhase.State.RUNNING && jobs.containsKey(phase.getName())) {
+                setCounts(phaseCopy, jobs.get(phase.getName()));
+            }
+            copy.getPhases().add(phaseCopy);
+        });
+
+        return copy;
+    }
+
+    // a partitioned step adds up the counts of its partitions, which are step executions of the job as well
+    private void setCounts(SyncPhase phase, JobExecution jobExecution) {
+        Collection<StepExecution> stepExecutions = jobExecution.getStepExecutions();
+        Set<String> partitionedSteps = stepExecutions.stream()
+                .map(StepExecution::getStepName)
+                .filter(name -> name.contains(":"))
+                .map(name -> name.substring(0, name.indexOf(':')))
+                .collect(Collectors.toSet());
+
+        int readCount = 0;
+        int writeCount = 0;
+        int skipCount = 0;
+        for (StepExecution stepExecution : stepExecutions) {
+            if (!partitionedSteps.contains(stepExecution.getStepName())) {
+                readCount += stepExecution.getReadCount();
+                writeCount += stepExecution.getWriteCount();
+                skipCount += stepExecution.getSkipCount();
+            }
+        }
+
+        long end = phase.getFinishedAt() == null ? System.currentTimeMillis() : phase.getFinishedAt().getTime();
+        long elapsed = end - phase.getStartedAt().getTime();
+        phase.setReadCount(readCount);
+        phase.setWriteCount(writeCount);
+        phase.setSkipCount(skipCount);
+        phase.setRowsPerSecond(elapsed > 0 ? Math.round(writeCount * 100000.0 / elapsed) / 100.0 : 0);
+    }
+
+    private void evictFinished() {
+        Iterator<SyncStatus> iterator = statuses.values().iterator();
+        while (statuses.size() > retention && iterator.hasNext()) {
+            SyncStatus.State state = iterator.next().getState();
+            if (state != QUEUED && state != RUNNING) {
+                iterator.remove();
+            }
+        }
+    }
+}
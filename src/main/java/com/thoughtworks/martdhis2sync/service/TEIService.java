@@ -1,13 +1,12 @@
 package com.thoughtworks.martdhis2sync.service;
 
-import com.google.gson.Gson;
-import com.google.gson.internal.LinkedTreeMap;
 import com.thoughtworks.martdhis2sync.dao.MappingDAO;
 import com.thoughtworks.martdhis2sync.dao.PatientDAO;
 import com.thoughtworks.martdhis2sync.model.*;
 import com.thoughtworks.martdhis2sync.repository.SyncRepository;
 import com.thoughtworks.martdhis2sync.step.TrackedEntityInstanceStep;
 import com.thoughtworks.martdhis2sync.util.TEIUtil;
+import com.thoughtworks.martdhis2sync.util.TrackedEntityInstanceIndex;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.batch.core.JobParametersInvalidException;
@@ -18,11 +17,9 @@ import org.springframework.batch.core.repository.JobRestartException;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.http.ResponseEntity;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Component;
 
-import java.io.IOException;
 import java.io.SyncFailedException;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -30,8 +27,16 @@ import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
+import static com.thoughtworks.martdhis2sync.util.SqlUtil.table;
+
 @Component
 public class TEIService {
     private final String TEI_ENROLLMENTS_URI = "/api/trackedEntityInstances?" +
@@ -48,10 +53,19 @@ public class TEIService {
     @Value("${tracked.entity.filter.uri.limit}")
     private int TEI_FILTER_URI_LIMIT;
 
+    @Value("${tracked.entity.page.size}")
+    private int TEI_PAGE_SIZE;
+
+    @Value("${tracked.entity.fetch.concurrency}")
+    private int TEI_FETCH_CONCURRENCY;
+
+    @Value("${tracked.entity.fetch.retries}")
+    private int TEI_FETCH_RETRIES;
+
     @Autowired
     private MappingDAO mappingDAO;
 
-    private static final String TEI_URI = "/api/trackedEntityInstances?pageSize=10000";
+    private static final String TEI_URI = "/api/trackedEntityInstances?pageSize=%d&totalPages=true";
 
     @Autowired
     private TrackedEntityInstanceStep trackedEntityInstanceStep;
@@ -89,25 +103,29 @@ public class TEIService {
         }
     }
 
-    public void getTrackedEntityInstances(String mappingName, MappingJson mappingJson) throws IOException {
-        List<TrackedEntityInstanceInfo> allTEIInfos = new ArrayList<>();
+    public void getTrackedEntityInstances(Mapping mapping) {
+        List<TrackedEntityInstanceInfo> allTEIInfos = Collections.synchronizedList(new ArrayList<>());
         StringBuilder url = new StringBuilder();
 
-        url.append(TEI_URI);
+        url.append(String.format(TEI_URI, TEI_PAGE_SIZE));
         url.append("&ou=");
         url.append(orgUnitID);
         url.append("&ouMode=DESCENDANTS");
 
-        Gson gson = new Gson();
-        LinkedTreeMap instanceMapping = gson.fromJson(mappingJson.getInstance().toString(), LinkedTreeMap.class);
+        Map<String, Object> instanceMapping = mapping.getInstanceMapping();
 
-        List<Map<String, Object>> searchableFields = mappingDAO.getSearchableFields(mappingName);
+        List<Map<String, Object>> searchableFields = mappingDAO.getSearchableFields(mapping);
 
         if (searchableFields.isEmpty()) {
             TEIUtil.setTrackedEntityInstanceInfos(Collections.emptyList());
+            TEIUtil.setTrackedEntityInstanceIndex(TrackedEntityInstanceIndex.empty());
             return;
         }
 
+        TrackedEntityInstanceIndex index = new TrackedEntityInstanceIndex(
+                getSearchableAttributeIds(searchableFields, instanceMapping), Collections.emptyList());
+        List<Runnable> requests = new ArrayList<>();
+
         separateSearchFieldsBasedOnFilterLimit(searchableFields).forEach(searchableFieldGroup -> {
             StringBuilder uri = new StringBuilder();
             searchableFieldGroup.get(0).keySet().forEach(filter -> {
@@ -121,13 +139,51 @@ public class TEIService {
                 });
             });
             uri.append("&includeAllAttributes=true");
-            allTEIInfos.addAll(syncRepository.getTrackedEntityInstances(url.toString() + uri).getBody().getTrackedEntityInstances());
+            requests.add(() -> {
+                List<TrackedEntityInstanceInfo> instances = getTrackedEntityInstancesOfAllPages(url.toString() + uri);
+                allTEIInfos.addAll(instances);
+                index.addAll(instances);
+            });
         });
 
-        TEIUtil.setTrackedEntityInstanceInfos(allTEIInfos);
+        runConcurrently(requests, TEI_FETCH_CONCURRENCY);
+
+        TEIUtil.setTrackedEntityInstanceInfos(new ArrayList<>(allTEIInfos));
+        TEIUtil.setTrackedEntityInstanceIndex(index);
         logger.info("TEIUtil.getTrackedEntityInstanceInfos().size(): " + TEIUtil.getTrackedEntityInstanceInfos().size());
     }
 
+    private List<TrackedEntityInstanceInfo> getTrackedEntityInstancesOfAllPages(String uri) {
+        List<TrackedEntityInstanceInfo> instances = new ArrayList<>();
+        int page = 1;
+        Pager pager;
+        do {
+            TrackedEntityInstanceResponse response = syncRepository.getTrackedEntityInstances(uri + "&page=" + page).getBody();
+            instances.addAll(response.getTrackedEntityInstances());
+            pager = response.getPager();
+            page++;
+        } while (null != pager && pager.getPage() < pager.getPageCount());
+
+        return instances;
+    }
+
+    private void runConcurrently(List<Runnable> tasks, int concurrency) {
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(concurrency, tasks.size())));
+        try {
+            CompletableFuture.allOf(tasks.stream()
+                    .map(task -> CompletableFuture.runAsync(task, executor))
+                    .toArray(CompletableFuture[]::new)
+            ).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
     public void getEnrollmentsForInstances(String enrollmentTable, String eventTable, String programName) throws Exception {
         logger.info("Enrollment Table is " + enrollmentTable);
         logger.info("Event Table is " + eventTable);
@@ -139,14 +195,16 @@ public class TEIService {
             List<String> instanceIdsList = getInstanceIds(deltaInstanceIds);
             String program = deltaInstanceIds.get(0).get("program").toString();
             logger.info("instanceIdsList : " + instanceIdsList.size());
+            Map<String, List<EnrollmentDetails>> instancesWithEnrollments = new ConcurrentHashMap<>();
+            AtomicInteger resultSize = new AtomicInteger();
+            List<Runnable> requests = new ArrayList<>();
             int lowerLimit = 0;
             int upperLimit = TEI_FILTER_URI_LIMIT;
-            List<TrackedEntityInstanceInfo> result = new ArrayList<>();
             while(lowerLimit < instanceIdsList.size()) {
                 if(upperLimit > instanceIdsList.size()) {
                     upperLimit = instanceIdsList.size();
                 }
-                logger.info("Lower : " + lowerLimit + " Upper " + upperLimit);
+                String window = "Lower : " + lowerLimit + " Upper " + upperLimit;
                 List<String> subInstanceIds  =  instanceIdsList.subList(lowerLimit , upperLimit);
                 lowerLimit = upperLimit;
                 upperLimit += TEI_FILTER_URI_LIMIT;
@@ -154,12 +212,22 @@ public class TEIService {
                 String instanceIds = String.join(";", subInstanceIds);
                 String url = String.format(TEI_ENROLLMENTS_URI, program, instanceIds);
 
-                ResponseEntity<TrackedEntityInstanceResponse> trackedEntityInstances = syncRepository.getTrackedEntityInstances(url);
-                result.addAll(trackedEntityInstances.getBody().getTrackedEntityInstances());
-
+                requests.add(() -> {
+                    long startTime = System.currentTimeMillis();
+                    List<TrackedEntityInstanceInfo> result = syncRepository
+                            .getTrackedEntityInstances(url, TEI_FETCH_RETRIES).getBody().getTrackedEntityInstances();
+                    instancesWithEnrollments.putAll(getMap(result, program));
+                    resultSize.addAndGet(result.size());
+                    logger.info(window + " fetched " + result.size() + " instances in "
+                            + (System.currentTimeMillis() - startTime) + " ms");
+                });
             }
-            TEIUtil.setInstancesWithEnrollments(getMap(result, program));
-            logger.info("Results Size " + result.size());
+
+            long startTime = System.currentTimeMillis();
+            runConcurrently(requests, TEI_FETCH_CONCURRENCY);
+            TEIUtil.setInstancesWithEnrollments(instancesWithEnrollments);
+            logger.info("Results Size " + resultSize.get() + " from " + requests.size() + " requests in "
+                    + (System.currentTimeMillis() - startTime) + " ms");
         }
     }
 
@@ -185,6 +253,13 @@ public class TEIService {
                 .collect(Collectors.toList());
     }
 
+    private List<String> getSearchableAttributeIds(List<Map<String, Object>> searchableFields, Map<String, Object> instanceMapping) {
+        return searchableFields.get(0).keySet()
+                .stream()
+                .map(column -> instanceMapping.get(column).toString())
+                .collect(Collectors.toList());
+    }
+
     private List<List<Map<String, Object>>> separateSearchFieldsBasedOnFilterLimit(List<Map<String, Object>> searchableFields) {
         List<List<Map<String, Object>>> result = new ArrayList<>();
         List<Map<String, Object>> searchableGroup = new ArrayList<>();
@@ -204,7 +279,7 @@ public class TEIService {
     }
 
     public Map<String,String> verifyOrgUnitsForPatients(String instanceTable) {
-        List<Map<String, Object>> rows = jdbcTemplate.queryForList(String.format(PATIENTS_WITH_INVALID_ORG_UNIT_QUERY, instanceTable));
+        List<Map<String, Object>> rows = jdbcTemplate.queryForList(String.format(PATIENTS_WITH_INVALID_ORG_UNIT_QUERY, table(instanceTable)));
         Map<String,String> invalidPatients = new HashMap<>();
         rows.forEach(row -> {
             String patientID = (String)row.get("Patient_Identifier");
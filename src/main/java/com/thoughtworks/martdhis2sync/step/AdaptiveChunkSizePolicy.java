@@ -0,0 +1,92 @@
+package com.thoughtworks.martdhis2sync.step;
+
+import com.thoughtworks.martdhis2sync.util.PostFeedback;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.ChunkListener;
+import org.springframework.batch.core.scope.context.ChunkContext;
+import org.springframework.batch.repeat.RepeatContext;
+import org.springframework.batch.repeat.policy.CompletionPolicySupport;
+
+/*
+ * Sizes the chunks of one step from what the POSTs of its previous chunks cost DHIS2: the chunk is halved when a
+ * request was slower than the target latency, larger than the byte limit or failed, shrunk by a quarter when DHIS2
+ * reported conflicts, and grown by a quarter while requests stay under half of both limits.
+ */
+public class AdaptiveChunkSizePolicy extends CompletionPolicySupport implements ChunkListener {
+
+    private final String stepName;
+
+    private final int minChunkSize;
+
+    private final int maxChunkSize;
+
+    private final long targetLatencyMillis;
+
+    private final long maxBytes;
+
+    private volatile int chunkSize;
+
+    private Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    public AdaptiveChunkSizePolicy(String stepName, int chunkSize, int minChunkSize, int maxChunkSize,
+                                   long targetLatencyMillis, long maxBytes) {
+        this.stepName = stepName;
+        this.minChunkSize = minChunkSize;
+        this.maxChunkSize = maxChunkSize;
+        this.targetLatencyMillis = targetLatencyMillis;
+        this.maxBytes = maxBytes;
+        this.chunkSize = bound(chunkSize);
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    @Override
+    public boolean isComplete(RepeatContext context) {
+        return context.getStartedCount() >= chunkSize;
+    }
+
+    @Override
+    public void beforeChunk(ChunkContext context) {
+        PostFeedback.reset();
+    }
+
+    @Override
+    public synchronized void afterChunk(ChunkContext context) {
+        PostFeedback feedback = PostFeedback.drain();
+        if (feedback.getRequests() == 0) {
+            return;
+        }
+
+        long latency = feedback.getMillis() / feedback.getRequests();
+        long bytes = feedback.getBytes() / feedback.getRequests();
+        if (latency > targetLatencyMillis || bytes > maxBytes) {
+            resize(chunkSize / 2, latency, bytes);
+        } else if (feedback.getConflicts() > 0) {
+            resize(chunkSize - chunkSize / 4, latency, bytes);
+        } else if (latency < targetLatencyMillis / 2 && bytes < maxBytes / 2) {
+            resize(chunkSize + Math.max(1, chunkSize / 4), latency, bytes);
+        }
+    }
+
+    @Override
+    public synchronized void afterChunkError(ChunkContext context) {
+        PostFeedback.reset();
+        resize(chunkSize / 2, -1, -1);
+    }
+
+    private void resize(int size, long latency, long bytes) {
+        int resized = bound(size);
+        if (resized != chunkSize) {
+            logger.info(String.format("%s: chunk size %d -> %d (%d ms, %d bytes per request)",
+                    stepName, chunkSize, resized, latency, bytes));
+            chunkSize = resized;
+        }
+    }
+
+    private int bound(int size) {
+        return Math.max(minChunkSize, Math.min(maxChunkSize, size));
+    }
+}
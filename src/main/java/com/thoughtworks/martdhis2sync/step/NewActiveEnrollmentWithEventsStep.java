@@ -27,7 +27,7 @@ public class NewActiveEnrollmentWithEventsStep {
 
     public Step get(String enrLookupTable, String envLookupTable, String programName, Object mappingObj) {
 
-        return stepFactory.build(STEP_NAME,
+        return stepFactory.buildConcurrent(STEP_NAME,
                 mappingReader.getNewActiveEnrollmentWithEventsReader(enrLookupTable, programName, envLookupTable),
                 getProcessor(mappingObj),
                 writer);
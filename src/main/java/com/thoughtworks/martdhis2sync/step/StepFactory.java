@@ -1,13 +1,22 @@
 package com.thoughtworks.martdhis2sync.step;
 
+import org.springframework.batch.core.ChunkListener;
 import org.springframework.batch.core.Step;
+import org.springframework.batch.core.StepExecutionListener;
 import org.springframework.batch.core.configuration.annotation.StepBuilderFactory;
+import org.springframework.batch.core.partition.support.Partitioner;
+import org.springframework.batch.core.step.builder.SimpleStepBuilder;
+import org.springframework.batch.core.step.builder.StepBuilder;
 import org.springframework.batch.core.step.tasklet.Tasklet;
 import org.springframework.batch.item.ItemProcessor;
+import org.springframework.batch.item.ItemReader;
 import org.springframework.batch.item.ItemWriter;
 import org.springframework.batch.item.database.JdbcCursorItemReader;
+import org.springframework.batch.item.support.SynchronizedItemStreamReader;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.core.task.TaskExecutor;
 import org.springframework.stereotype.Component;
 
 import java.util.Map;
@@ -21,15 +30,90 @@ public class StepFactory {
     @Value("${sync.batch.size}")
     private int syncBatchSize;
 
-    protected Step build(String stepName, JdbcCursorItemReader<Map<String, Object>> reader, ItemProcessor processor, ItemWriter writer) {
-        return stepBuilderFactory.get(stepName)
-                .chunk(syncBatchSize)
-                .reader(reader)
+    @Value("${enrollment.step.concurrency}")
+    private int enrollmentStepConcurrency;
+
+    @Value("${sync.batch.size.min}")
+    private int minSyncBatchSize;
+
+    @Value("${sync.batch.size.max}")
+    private int maxSyncBatchSize;
+
+    @Value("${sync.batch.target.latency.ms}")
+    private long targetLatencyMillis;
+
+    @Value("${sync.batch.max.bytes}")
+    private long maxRequestBytes;
+
+    protected Step build(String stepName, ItemReader<Map<String, Object>> reader, ItemProcessor processor, ItemWriter writer) {
+        return chunkStep(stepName, reader, processor, writer, null).build();
+    }
+
+    // chunks are read, processed and written on enrollmentStepConcurrency threads, each with its own request to DHIS2
+    protected Step buildConcurrent(String stepName, JdbcCursorItemReader<Map<String, Object>> reader, ItemProcessor processor, ItemWriter writer) {
+        if (enrollmentStepConcurrency <= 1) {
+            return build(stepName, reader, processor, writer);
+        }
+
+        reader.setSaveState(false);
+        SynchronizedItemStreamReader<Map<String, Object>> synchronizedReader = new SynchronizedItemStreamReader<>();
+        synchronizedReader.setDelegate(reader);
+
+        SimpleAsyncTaskExecutor taskExecutor = new SimpleAsyncTaskExecutor(stepName);
+        taskExecutor.setConcurrencyLimit(enrollmentStepConcurrency);
+
+        return chunkStep(stepName, synchronizedReader, processor, writer, taskExecutor).build();
+    }
+
+    // the chunk size is fixed at syncBatchSize unless bounds are configured, then a policy of the step adapts it
+    private SimpleStepBuilder<Map<String, Object>, Object> chunkStep(String stepName, ItemReader<Map<String, Object>> reader,
+                                                                    ItemProcessor processor, ItemWriter writer,
+                                                                    TaskExecutor taskExecutor) {
+        AdaptiveChunkSizePolicy policy = isAdaptive() ? getChunkSizePolicy(stepName) : null;
+        StepBuilder stepBuilder = stepBuilderFactory.get(stepName);
+        SimpleStepBuilder<Map<String, Object>, Object> builder = policy == null
+                ? stepBuilder.<Map<String, Object>, Object>chunk(syncBatchSize)
+                : stepBuilder.<Map<String, Object>, Object>chunk(policy);
+        builder = builder.reader(reader)
                 .processor(processor)
-                .writer(writer)
+                .writer(writer);
+
+        if (policy != null) {
+            builder.listener((ChunkListener) policy);
+        }
+        if (taskExecutor != null) {
+            builder.taskExecutor(taskExecutor);
+            builder.throttleLimit(enrollmentStepConcurrency);
+        }
+
+        return builder;
+    }
+
+    // each partition runs workerStep on its own thread, the step completes only when all of them have completed
+    protected Step buildPartitioned(String stepName, Step workerStep, Partitioner partitioner, int partitions,
+                                    StepExecutionListener listener) {
+        SimpleAsyncTaskExecutor taskExecutor = new SimpleAsyncTaskExecutor(stepName);
+        taskExecutor.setConcurrencyLimit(partitions);
+
+        return stepBuilderFactory.get(stepName)
+                .listener(listener)
+                .partitioner(workerStep.getName(), partitioner)
+                .step(workerStep)
+                .gridSize(partitions)
+                .taskExecutor(taskExecutor)
                 .build();
     }
 
+    // a policy per step, as the payloads of the steps differ too much in size and server cost to share a chunk size
+    private AdaptiveChunkSizePolicy getChunkSizePolicy(String stepName) {
+        return new AdaptiveChunkSizePolicy(stepName, syncBatchSize, minSyncBatchSize, maxSyncBatchSize,
+                targetLatencyMillis, maxRequestBytes);
+    }
+
+    private boolean isAdaptive() {
+        return minSyncBatchSize < maxSyncBatchSize;
+    }
+
     protected Step build(String stepName, Tasklet tasklet) {
         return stepBuilderFactory.get(stepName)
                 .tasklet(tasklet)
@@ -0,0 +1,39 @@
+package com.thoughtworks.martdhis2sync.step;
+
+import org.springframework.batch.core.partition.support.Partitioner;
+import org.springframework.batch.item.ExecutionContext;
+
+import java.util.HashMap;
+import java.util.Map;
+
+public class TrackedEntityInstancePartitioner implements Partitioner {
+
+    public static final String LOOKUP_TABLE = "lookupTable";
+    public static final String PARTITION_COLUMN = "partitionColumn";
+    public static final String PARTITION = "partition";
+    public static final String PARTITIONS = "partitions";
+
+    private final String lookupTable;
+
+    private final String partitionColumn;
+
+    public TrackedEntityInstancePartitioner(String lookupTable, String partitionColumn) {
+        this.lookupTable = lookupTable;
+        this.partitionColumn = partitionColumn;
+    }
+
+    @Override
+    public Map<String, ExecutionContext> partition(int gridSize) {
+        Map<String, ExecutionContext> partitions = new HashMap<>();
+        for (int partition = 0; partition < gridSize; partition++) {
+            ExecutionContext context = new ExecutionContext();
+            context.putString(LOOKUP_TABLE, lookupTable);
+            context.putString(PARTITION_COLUMN, partitionColumn);
+            context.putInt(PARTITION, partition);
+            context.putInt(PARTITIONS, gridSize);
+            partitions.put(PARTITION + partition, context);
+        }
+
+        return partitions;
+    }
+}
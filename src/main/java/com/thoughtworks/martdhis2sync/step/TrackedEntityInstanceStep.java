@@ -1,13 +1,17 @@
 package com.thoughtworks.martdhis2sync.step;
 
+import com.thoughtworks.martdhis2sync.listener.InstanceMarkerListener;
 import com.thoughtworks.martdhis2sync.processor.TrackedEntityInstanceProcessor;
+import com.thoughtworks.martdhis2sync.reader.InstancePartitionReader;
 import com.thoughtworks.martdhis2sync.reader.MappingReader;
 import com.thoughtworks.martdhis2sync.util.MarkerUtil;
+import com.thoughtworks.martdhis2sync.util.SyncContext;
 import com.thoughtworks.martdhis2sync.util.TEIUtil;
 import com.thoughtworks.martdhis2sync.writer.TrackedEntityInstanceWriter;
 import org.springframework.batch.core.Step;
 import org.springframework.beans.factory.ObjectFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import java.util.List;
@@ -33,11 +37,29 @@ public class TrackedEntityInstanceStep {
     @Autowired
     private StepFactory stepFactory;
 
+    @Autowired
+    private InstancePartitionReader instancePartitionReader;
+
+    @Autowired
+    private InstanceMarkerListener instanceMarkerListener;
+
+    @Value("${tracked.entity.step.partitions}")
+    private int partitions;
+
+    @Value("${tracked.entity.step.partition.column}")
+    private String partitionColumn;
+
     private static final String TEI_STEP_NAME = "Tracked Entity Step";
 
+    private static final String TEI_PARTITION_STEP_NAME = "Tracked Entity Partition Step";
+
     public Step get(String lookupTable, String programName, Object mappingObj, List<String> searchableAttributes, List<String> comparableAttributes) {
         TEIUtil.resetPatientTEIUidMap();
-        TEIUtil.date = markerUtil.getLastSyncedDate(programName, CATEGORY_INSTANCE);
+        SyncContext.current().setInstanceDate(markerUtil.getLastSyncedDate(programName, CATEGORY_INSTANCE));
+
+        if (partitions > 1) {
+            return getPartitioned(lookupTable, mappingObj, searchableAttributes, comparableAttributes);
+        }
 
         return stepFactory.build(
                 TEI_STEP_NAME,
@@ -47,6 +69,23 @@ public class TrackedEntityInstanceStep {
         );
     }
 
+    private Step getPartitioned(String lookupTable, Object mappingObj, List<String> searchableAttributes, List<String> comparableAttributes) {
+        Step workerStep = stepFactory.build(
+                TEI_PARTITION_STEP_NAME,
+                instancePartitionReader,
+                getProcessor(mappingObj, searchableAttributes, comparableAttributes),
+                writer
+        );
+
+        return stepFactory.buildPartitioned(
+                TEI_STEP_NAME,
+                workerStep,
+                new TrackedEntityInstancePartitioner(lookupTable, partitionColumn),
+                partitions,
+                instanceMarkerListener
+        );
+    }
+
     private TrackedEntityInstanceProcessor getProcessor(Object mappingObj, List<String> searchableAttributes, List<String> comparableAttributes) {
         TrackedEntityInstanceProcessor processor = processorObjectFactory.getObject();
         processor.setMappingObj(mappingObj);
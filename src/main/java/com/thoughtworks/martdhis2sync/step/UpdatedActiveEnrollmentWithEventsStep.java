@@ -29,9 +29,9 @@ public class UpdatedActiveEnrollmentWithEventsStep {
     private static final String STEP_NAME = "Updated Active Enrollment With Events Step:: ";
 
     public Step get(String enrLookupTable, String envLookupTable, String programName, Object mappingObj,
-                    List<EnrollmentAPIPayLoad> enrollmentsToIgnore) {
-        return stepFactory.build(STEP_NAME,
-                mappingReader.getUpdatedActiveEnrollmentWithEventsReader(enrLookupTable, programName, envLookupTable, enrollmentsToIgnore),
+                    List<EnrollmentAPIPayLoad> enrollmentsToIgnore, List<String> enrollmentsToSync) {
+        return stepFactory.buildConcurrent(STEP_NAME,
+                mappingReader.getUpdatedActiveEnrollmentWithEventsReader(enrLookupTable, programName, envLookupTable, enrollmentsToIgnore, enrollmentsToSync),
                 getProcessor(mappingObj),
                 writer);
     }
@@ -28,9 +28,10 @@ public class UpdatedCompletedEnrollmentWithEventsStep {
 
     private static final String STEP_NAME = "Updated Completed Enrollment With Events Step:: ";
 
-    public Step get(String enrLookupTable, String envLookupTable, String programName, Object mappingObj, List<EnrollmentAPIPayLoad> enrollmentsToIgnore) {
-        return stepFactory.build(STEP_NAME,
-                mappingReader.getUpdatedCompletedEnrollmentWithEventsReader(enrLookupTable, programName, envLookupTable, enrollmentsToIgnore),
+    public Step get(String enrLookupTable, String envLookupTable, String programName, Object mappingObj,
+                    List<EnrollmentAPIPayLoad> enrollmentsToIgnore, List<String> enrollmentsToSync) {
+        return stepFactory.buildConcurrent(STEP_NAME,
+                mappingReader.getUpdatedCompletedEnrollmentWithEventsReader(enrLookupTable, programName, envLookupTable, enrollmentsToIgnore, enrollmentsToSync),
                 getProcessor(mappingObj),
                 writer);
     }
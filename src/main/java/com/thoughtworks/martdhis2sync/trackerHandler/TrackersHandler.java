@@ -2,7 +2,6 @@ package com.thoughtworks.martdhis2sync.trackerHandler;
 
 import com.thoughtworks.martdhis2sync.model.EnrollmentAPIPayLoad;
 import com.thoughtworks.martdhis2sync.model.EventTracker;
-import com.thoughtworks.martdhis2sync.util.BatchUtil;
 import com.thoughtworks.martdhis2sync.util.EnrollmentUtil;
 import com.thoughtworks.martdhis2sync.util.EventUtil;
 import org.slf4j.Logger;
@@ -16,6 +15,7 @@ import java.sql.SQLException;
 import java.sql.Timestamp;
 
 import static com.thoughtworks.martdhis2sync.util.BatchUtil.GetUTCDateTimeAsString;
+import static com.thoughtworks.martdhis2sync.util.BatchUtil.executeBatchInTransaction;
 import static com.thoughtworks.martdhis2sync.util.EnrollmentUtil.enrollmentsToSaveInTracker;
 import static com.thoughtworks.martdhis2sync.util.EventUtil.eventsToSaveInTracker;
 
@@ -30,9 +30,9 @@ public class TrackersHandler {
                 "enrollment_id, instance_id, program, status, program_unique_id, created_by, date_created)" +
                 "values (?, ?, ?, ?, ?, ?, ?)";
         int updateCount;
+        Timestamp dateCreated = Timestamp.valueOf(GetUTCDateTimeAsString());
         try (Connection connection = dataSource.getConnection()) {
             try (PreparedStatement ps = connection.prepareStatement(sql)) {
-                updateCount = 0;
                 for (EnrollmentAPIPayLoad enrollment : EnrollmentUtil.enrollmentsToSaveInTracker) {
                     ps.setString(1, enrollment.getEnrollmentId());
                     ps.setString(2, enrollment.getInstanceId());
@@ -40,9 +40,10 @@ public class TrackersHandler {
                     ps.setString(4, enrollment.getStatus());
                     ps.setString(5, enrollment.getProgramUniqueId());
                     ps.setString(6, user);
-                    ps.setTimestamp(7, Timestamp.valueOf(BatchUtil.GetUTCDateTimeAsString()));
-                    updateCount += ps.executeUpdate();
+                    ps.setTimestamp(7, dateCreated);
+                    ps.addBatch();
                 }
+                updateCount = executeBatchInTransaction(connection, ps);
             }
             logger.info(logPrefix + "Successfully inserted " + updateCount + " Enrollment UIDs.");
         } catch (SQLException e) {
@@ -56,9 +57,9 @@ public class TrackersHandler {
                 "event_id, instance_id, program, program_stage, event_unique_id, created_by, date_created)" +
                 "values (?, ?, ?, ?, ?, ?, ?)";
         int updateCount;
+        Timestamp dateCreated = Timestamp.valueOf(GetUTCDateTimeAsString());
         try (Connection connection = dataSource.getConnection()) {
             try (PreparedStatement ps = connection.prepareStatement(sql)) {
-                updateCount = 0;
                 for (EventTracker eventTracker : EventUtil.eventsToSaveInTracker) {
                     ps.setString(1, eventTracker.getEventId());
                     ps.setString(2, eventTracker.getInstanceId());
@@ -66,9 +67,10 @@ public class TrackersHandler {
                     ps.setString(4, eventTracker.getProgramStage());
                     ps.setString(5, eventTracker.getEventUniqueId());
                     ps.setString(6, user);
-                    ps.setTimestamp(7, Timestamp.valueOf(GetUTCDateTimeAsString()));
-                    updateCount += ps.executeUpdate();
+                    ps.setTimestamp(7, dateCreated);
+                    ps.addBatch();
                 }
+                updateCount = executeBatchInTransaction(connection, ps);
             }
             logger.info(logPrefix + "Successfully inserted " + updateCount + " Event UIDs.");
         } catch (SQLException e) {
@@ -82,16 +84,17 @@ public class TrackersHandler {
                 "SET status = ?, created_by = ?, date_created = ? " +
                 "WHERE enrollment_id = ?";
         int updateCount;
+        Timestamp dateCreated = Timestamp.valueOf(GetUTCDateTimeAsString());
         try (Connection connection = dataSource.getConnection()) {
             try (PreparedStatement ps = connection.prepareStatement(sql)) {
-                updateCount = 0;
                 for (EnrollmentAPIPayLoad enrollment : EnrollmentUtil.enrollmentsToSaveInTracker) {
                     ps.setString(1, enrollment.getStatus());
                     ps.setString(2, user);
-                    ps.setTimestamp(3, Timestamp.valueOf(BatchUtil.GetUTCDateTimeAsString()));
+                    ps.setTimestamp(3, dateCreated);
                     ps.setString(4, enrollment.getEnrollmentId());
-                    updateCount += ps.executeUpdate();
+                    ps.addBatch();
                 }
+                updateCount = executeBatchInTransaction(connection, ps);
             }
             logger.info(logPrefix + "Successfully updated " + updateCount + " Enrollment UIDs.");
         } catch (SQLException e) {
@@ -100,6 +103,12 @@ public class TrackersHandler {
         }
     }
 
+    // gives the current thread, and the threads it starts, tracker lists of their own so jobs can run side by side
+    public static void isolateTrackerLists() {
+        EnrollmentUtil.isolateEnrollmentsToSaveInTracker();
+        EventUtil.isolateEventsToSaveInTracker();
+    }
+
     public static void clearTrackerLists() {
         eventsToSaveInTracker.clear();
         enrollmentsToSaveInTracker.clear();
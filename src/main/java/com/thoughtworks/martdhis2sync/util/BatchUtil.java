@@ -6,6 +6,10 @@ import org.springframework.core.io.Resource;
 import org.springframework.util.StringUtils;
 
 import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.Date;
@@ -74,4 +78,32 @@ public class BatchUtil {
         return value.replace("\\","\\\\")
                     .replace("\"","\\\"");
     }
+
+    public static int executeBatchInTransaction(Connection connection, PreparedStatement ps) throws SQLException {
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try {
+            int updateCount = getUpdateCount(ps.executeBatch());
+            connection.commit();
+            return updateCount;
+        } catch (SQLException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+
+    // the driver reports SUCCESS_NO_INFO for rows of batches it rewrites into multi-row inserts
+    private static int getUpdateCount(int[] results) {
+        int updateCount = 0;
+        for (int result : results) {
+            if (result == Statement.SUCCESS_NO_INFO) {
+                updateCount++;
+            } else if (result > 0) {
+                updateCount += result;
+            }
+        }
+        return updateCount;
+    }
 }
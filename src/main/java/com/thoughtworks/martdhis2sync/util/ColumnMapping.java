@@ -0,0 +1,70 @@
+package com.thoughtworks.martdhis2sync.util;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+import lombok.EqualsAndHashCode;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static com.thoughtworks.martdhis2sync.util.BatchUtil.DATEFORMAT_WITH_24HR_TIME;
+import static com.thoughtworks.martdhis2sync.util.BatchUtil.EMPTY_STRING;
+
+@EqualsAndHashCode(of = "mapping")
+public class ColumnMapping {
+
+    private static final Gson GSON = new GsonBuilder().setDateFormat(DATEFORMAT_WITH_24HR_TIME).create();
+
+    private final JsonObject mapping;
+
+    private final Map<String, JsonElement> targets = new HashMap<>();
+
+    private ColumnMapping(JsonObject mapping) {
+        this.mapping = mapping;
+        mapping.entrySet().forEach(entry -> {
+            JsonElement target = entry.getValue();
+            if (null != target && !EMPTY_STRING.equals(target.toString())) {
+                targets.put(entry.getKey(), target);
+            }
+        });
+    }
+
+    public static ColumnMapping compile(Object mappingObj) {
+        return new ColumnMapping(GSON.toJsonTree(mappingObj).getAsJsonObject());
+    }
+
+    public JsonElement get(String column) {
+        return mapping.get(column);
+    }
+
+    public JsonElement getTarget(String column) {
+        return targets.get(column);
+    }
+
+    public static JsonObject toJsonObject(Object tableRow) {
+        if (!(tableRow instanceof Map)) {
+            return GSON.toJsonTree(tableRow).getAsJsonObject();
+        }
+
+        JsonObject row = new JsonObject();
+        ((Map<?, ?>) tableRow).forEach((column, value) -> {
+            if (null == value) {
+                return;
+            }
+            String key = String.valueOf(column);
+            if (value instanceof String) {
+                row.addProperty(key, (String) value);
+            } else if (value instanceof Number) {
+                row.add(key, new JsonPrimitive((Number) value));
+            } else if (value instanceof Boolean) {
+                row.addProperty(key, (Boolean) value);
+            } else {
+                row.add(key, GSON.toJsonTree(value));
+            }
+        });
+        return row;
+    }
+}
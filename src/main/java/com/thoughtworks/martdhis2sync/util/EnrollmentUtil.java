@@ -2,7 +2,6 @@ package com.thoughtworks.martdhis2sync.util;
 
 import com.thoughtworks.martdhis2sync.model.EnrollmentAPIPayLoad;
 
-import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 
@@ -11,13 +10,23 @@ import static com.thoughtworks.martdhis2sync.util.BatchUtil.getDateFromString;
 
 public class EnrollmentUtil {
 
-    public static Date date = new Date(Long.MIN_VALUE);
-    public static List<EnrollmentAPIPayLoad> enrollmentsToSaveInTracker = new ArrayList<>();
+    private static final ThreadScopedList<EnrollmentAPIPayLoad> enrollmentsOfJob = new ThreadScopedList<>();
+
+    public static List<EnrollmentAPIPayLoad> enrollmentsToSaveInTracker = enrollmentsOfJob;
+
+    public static void isolateEnrollmentsToSaveInTracker() {
+        enrollmentsOfJob.isolate();
+    }
+
+    public static Date getDate() {
+        return SyncContext.current().getEnrollmentDate();
+    }
+
+    public static void setDate(Date date) {
+        SyncContext.current().setEnrollmentDate(date);
+    }
 
     public static void updateLatestEnrollmentDateCreated(String dateCreated) {
-        Date bahmniDateCreated = getDateFromString(dateCreated, DATEFORMAT_WITH_24HR_TIME);
-        if (date.compareTo(bahmniDateCreated) < 1) {
-            date = bahmniDateCreated;
-        }
+        SyncContext.current().updateEnrollmentDate(getDateFromString(dateCreated, DATEFORMAT_WITH_24HR_TIME));
     }
 }
@@ -18,26 +18,30 @@ import static com.thoughtworks.martdhis2sync.util.BatchUtil.*;
 
 public class EventUtil {
 
-    public static Date date = new Date(Long.MIN_VALUE);
-
     @Getter
     private static List<EventTracker> existingEventTrackers = new ArrayList<>();
 
     @Getter
     @Setter
-    private static List<String> elementsOfTypeDateTime;
+    private static Set<String> elementsOfTypeDateTime;
 
     @Getter
     @Setter
-    private static List<String> elementsOfTypeDate;
+    private static Set<String> elementsOfTypeDate;
 
     @Getter
     private static List<EventTracker> newEventTrackers = new ArrayList<>();
 
-    public static List<EventTracker> eventsToSaveInTracker = new ArrayList<>();
+    private static final ThreadScopedList<EventTracker> eventsOfJob = new ThreadScopedList<>();
+
+    public static List<EventTracker> eventsToSaveInTracker = eventsOfJob;
 
     private static Logger logger = LoggerFactory.getLogger(EventUtil.class.getName());
 
+    public static void isolateEventsToSaveInTracker() {
+        eventsOfJob.isolate();
+    }
+
     public static void addExistingEventTracker(JsonObject tableRow) {
         existingEventTrackers.add(getEventTracker(tableRow));
     }
@@ -81,22 +85,30 @@ public class EventUtil {
         ).collect(Collectors.toList());
     }
 
+    public static Date getDate() {
+        return SyncContext.current().getEventDate();
+    }
+
+    public static void setDate(Date date) {
+        SyncContext.current().setEventDate(date);
+    }
+
     public static void updateLatestEventDateCreated(String dateCreated) {
-        Date bahmniDateCreated = getDateFromString(dateCreated, DATEFORMAT_WITH_24HR_TIME);
-        if (date.compareTo(bahmniDateCreated) < 1) {
-            date = bahmniDateCreated;
-        }
+        SyncContext.current().updateEventDate(getDateFromString(dateCreated, DATEFORMAT_WITH_24HR_TIME));
     }
 
 
     public static Map<String, String> getDataValues(JsonObject tableRow, JsonObject mapping) {
-        Set<String> keys = tableRow.keySet();
+        return getDataValues(tableRow, ColumnMapping.compile(mapping));
+    }
+
+    public static Map<String, String> getDataValues(JsonObject tableRow, ColumnMapping mapping) {
         Map<String, String> dataValues = new HashMap<>();
 
-        for (String key : keys) {
-            JsonElement dataElement = mapping.get(key);
-            if (hasValue(dataElement)) {
-                String value = tableRow.get(key).getAsString();
+        for (Map.Entry<String, JsonElement> column : tableRow.entrySet()) {
+            JsonElement dataElement = mapping.getTarget(column.getKey());
+            if (null != dataElement) {
+                String value = column.getValue().getAsString();
                 String dataElementInStringFormat = dataElement.getAsString();
                 dataValues.put(
                         dataElementInStringFormat,
@@ -109,12 +121,14 @@ public class EventUtil {
 
     private static String changeFormatIfDate(String elementId, String value) {
         logger.debug("Event Processor : changeFormatIfDate: " + elementId + ", " + value);
-        if (getElementsOfTypeDate() != null && getElementsOfTypeDate().contains(elementId)) {
+        Set<String> elementsOfTypeDate = getElementsOfTypeDate();
+        Set<String> elementsOfTypeDateTime = getElementsOfTypeDateTime();
+        if (elementsOfTypeDate != null && elementsOfTypeDate.contains(elementId)) {
             String result =  BatchUtil.getDateOnly(value);
             logger.debug("Event Processor : (Date): " + result);
             return result;
         } else {
-            if (getElementsOfTypeDateTime() != null && getElementsOfTypeDateTime().contains(elementId)) {
+            if (elementsOfTypeDateTime != null && elementsOfTypeDateTime.contains(elementId)) {
                 String result = getFormattedDateString(
                         value,
                         DATEFORMAT_WITH_24HR_TIME,
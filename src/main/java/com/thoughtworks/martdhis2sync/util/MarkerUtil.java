@@ -23,16 +23,14 @@ public class MarkerUtil {
     private JdbcTemplate jdbcTemplate;
 
     public void updateMarkerEntry(String programName, String category, String date) {
-        String sql = String.format("UPDATE marker SET last_synced_date = '%s' WHERE program_name = '%s' AND category = '%s'",
-                date, programName, category);
-        jdbcTemplate.update(sql);
+        String sql = "UPDATE marker SET last_synced_date = ?::TIMESTAMP WHERE program_name = ? AND category = ?";
+        jdbcTemplate.update(sql, date, programName, category);
     }
 
     public Date getLastSyncedDate(String programName, String category) {
-        String sql = String.format("SELECT last_synced_date FROM marker WHERE program_name='%s' AND category='%s'",
-                programName, category);
+        String sql = "SELECT last_synced_date FROM marker WHERE program_name = ? AND category = ?";
 
-        List<Map<String, Object>> list = jdbcTemplate.queryForList(sql);
+        List<Map<String, Object>> list = jdbcTemplate.queryForList(sql, programName, category);
         Object lastSyncedDate = list.get(0).get("last_synced_date");
 
         if(lastSyncedDate == null) {
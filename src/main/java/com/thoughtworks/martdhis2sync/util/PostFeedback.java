@@ -0,0 +1,40 @@
+package com.thoughtworks.martdhis2sync.util;
+
+import lombok.Getter;
+
+// what the POSTs to DHIS2 of the current chunk cost, recorded on the thread that writes the chunk
+@Getter
+public class PostFeedback {
+
+    private static final ThreadLocal<PostFeedback> CURRENT = ThreadLocal.withInitial(PostFeedback::new);
+
+    private int requests;
+
+    private long millis;
+
+    private long bytes;
+
+    private int conflicts;
+
+    public static void recordRequest(long millis, int conflicts) {
+        PostFeedback feedback = CURRENT.get();
+        feedback.requests++;
+        feedback.millis += millis;
+        feedback.conflicts += conflicts;
+    }
+
+    public static void recordBytes(long bytes) {
+        CURRENT.get().bytes += bytes;
+    }
+
+    public static PostFeedback drain() {
+        PostFeedback feedback = CURRENT.get();
+        CURRENT.remove();
+
+        return feedback;
+    }
+
+    public static void reset() {
+        CURRENT.remove();
+    }
+}
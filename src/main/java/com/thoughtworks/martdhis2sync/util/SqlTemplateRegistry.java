@@ -0,0 +1,89 @@
+package com.thoughtworks.martdhis2sync.util;
+
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@Component
+public class SqlTemplateRegistry {
+
+    public static final String INSTANCE_READER = "InstanceReader";
+    public static final String INSTANCE_PARTITION_READER = "InstancePartitionReader";
+    public static final String EVENT_READER = "EventReader";
+    public static final String NEW_COMPLETED_ENROLLMENT_WITH_EVENTS = "NewCompletedEnrollmentWithEvents";
+    public static final String UPDATED_COMPLETED_ENROLLMENT_WITH_EVENTS = "UpdatedCompletedEnrollmentWithEvents";
+    public static final String NEW_ACTIVE_ENROLLMENT_WITH_EVENTS = "NewActiveEnrollmentWithEvents";
+    public static final String UPDATED_ACTIVE_ENROLLMENT_WITH_EVENTS = "UpdatedActiveEnrollmentWithEvents";
+    public static final String DELTA_ENROLLMENT_INSTANCES = "DeltaEnrollmentInstances";
+    public static final String SEARCHABLE = "Searchable";
+
+    private static final String LOCATION = "classpath:sql/*.sql";
+
+    // the number of %s identifiers and ? parameters the callers fill each template with
+    private static final Map<String, int[]> PLACEHOLDERS = new HashMap<>();
+
+    static {
+        PLACEHOLDERS.put(INSTANCE_READER, new int[]{1, 1});
+        PLACEHOLDERS.put(INSTANCE_PARTITION_READER, new int[]{2, 3});
+        PLACEHOLDERS.put(EVENT_READER, new int[]{2, 1});
+        PLACEHOLDERS.put(NEW_COMPLETED_ENROLLMENT_WITH_EVENTS, new int[]{2, 1});
+        PLACEHOLDERS.put(UPDATED_COMPLETED_ENROLLMENT_WITH_EVENTS, new int[]{3, 5});
+        PLACEHOLDERS.put(NEW_ACTIVE_ENROLLMENT_WITH_EVENTS, new int[]{2, 1});
+        PLACEHOLDERS.put(UPDATED_ACTIVE_ENROLLMENT_WITH_EVENTS, new int[]{3, 5});
+        PLACEHOLDERS.put(DELTA_ENROLLMENT_INSTANCES, new int[]{3, 2});
+        PLACEHOLDERS.put(SEARCHABLE, new int[]{2, 1});
+    }
+
+    private Map<String, String> templates = Collections.emptyMap();
+
+    @PostConstruct
+    public void load() throws IOException {
+        load(new PathMatchingResourcePatternResolver().getResources(LOCATION));
+    }
+
+    void load(Resource... resources) throws IOException {
+        Map<String, String> loaded = new HashMap<>();
+        for (Resource resource : resources) {
+            loaded.put(StringUtils.stripFilenameExtension(resource.getFilename()),
+                    BatchUtil.convertResourceOutputToString(resource));
+        }
+
+        List<String> errors = new ArrayList<>();
+        PLACEHOLDERS.forEach((name, placeholders) -> {
+            String sql = loaded.get(name);
+            if (sql == null) {
+                errors.add(name + ".sql is missing");
+                return;
+            }
+            int identifiers = StringUtils.countOccurrencesOf(sql, "%s");
+            int parameters = StringUtils.countOccurrencesOf(sql, "?");
+            if (identifiers != placeholders[0] || parameters != placeholders[1]) {
+                errors.add(String.format("%s.sql has %d identifiers and %d parameters, expected %d and %d",
+                        name, identifiers, parameters, placeholders[0], placeholders[1]));
+            }
+        });
+        if (!errors.isEmpty()) {
+            throw new IllegalStateException("Invalid sql templates: " + String.join("; ", errors));
+        }
+
+        templates = Collections.unmodifiableMap(loaded);
+    }
+
+    public String get(String name) {
+        String sql = templates.get(name);
+        if (sql == null) {
+            throw new IllegalArgumentException("No sql template named " + name);
+        }
+
+        return sql;
+    }
+}
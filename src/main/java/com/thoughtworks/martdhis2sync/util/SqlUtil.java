@@ -0,0 +1,25 @@
+package com.thoughtworks.martdhis2sync.util;
+
+import java.util.regex.Pattern;
+
+// table and column names come from the mapping config and can't be bound, so only known-safe identifiers reach the sql
+public class SqlUtil {
+
+    private static final Pattern TABLE_NAME = Pattern.compile("[A-Za-z_][A-Za-z0-9_$]*(\\.[A-Za-z_][A-Za-z0-9_$]*)?");
+
+    public static String table(String name) {
+        if (name == null || !TABLE_NAME.matcher(name).matches()) {
+            throw new IllegalArgumentException("Invalid table name: " + name);
+        }
+
+        return name;
+    }
+
+    public static String quotedColumn(String name) {
+        if (name == null || name.isEmpty() || name.indexOf('"') >= 0 || name.indexOf('\0') >= 0) {
+            throw new IllegalArgumentException("Invalid column name: " + name);
+        }
+
+        return "\"" + name + "\"";
+    }
+}
@@ -0,0 +1,109 @@
+package com.thoughtworks.martdhis2sync.util;
+
+import com.thoughtworks.martdhis2sync.model.EnrollmentDetails;
+import com.thoughtworks.martdhis2sync.model.TrackedEntityInstanceInfo;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+ * The state of one sync. It is bound to the thread the sync runs on and inherited by the threads its jobs,
+ * steps and partitions start, so the syncs of different services can run side by side without sharing it.
+ */
+public class SyncContext {
+
+    private static final InheritableThreadLocal<SyncContext> CURRENT = new InheritableThreadLocal<>();
+
+    @Getter
+    private final String service;
+
+    @Getter
+    @Setter
+    private volatile boolean deltaExists;
+
+    @Getter
+    @Setter
+    private volatile Date instanceDate = new Date(Long.MIN_VALUE);
+
+    @Getter
+    @Setter
+    private volatile Date enrollmentDate = new Date(Long.MIN_VALUE);
+
+    @Getter
+    @Setter
+    private volatile Date eventDate = new Date(Long.MIN_VALUE);
+
+    @Getter
+    @Setter
+    private volatile List<TrackedEntityInstanceInfo> trackedEntityInstanceInfos;
+
+    @Getter
+    @Setter
+    private volatile TrackedEntityInstanceIndex trackedEntityInstanceIndex = TrackedEntityInstanceIndex.empty();
+
+    @Getter
+    @Setter
+    private volatile Map<String, List<EnrollmentDetails>> instancesWithEnrollments = new HashMap<>();
+
+    @Getter
+    private final Set<String> logMessages = Collections.synchronizedSet(new LinkedHashSet<>());
+
+    private final AtomicInteger retries = new AtomicInteger();
+
+    public SyncContext(String service) {
+        this.service = service;
+    }
+
+    public static SyncContext begin(String service) {
+        SyncContext context = new SyncContext(service);
+        CURRENT.set(context);
+        EnrollmentUtil.isolateEnrollmentsToSaveInTracker();
+        EventUtil.isolateEventsToSaveInTracker();
+        return context;
+    }
+
+    // a thread outside of a sync fails here rather than keeping state of its own that no sync ever resets
+    public static SyncContext current() {
+        SyncContext context = CURRENT.get();
+        if (context == null) {
+            throw new IllegalStateException("No sync is bound to thread " + Thread.currentThread().getName());
+        }
+
+        return context;
+    }
+
+    public static void end() {
+        CURRENT.remove();
+    }
+
+    // the retries of all the requests of the sync, so a DHIS2 that keeps failing does not get every request several times
+    public boolean takeRetry(int budget) {
+        return retries.incrementAndGet() <= budget;
+    }
+
+    public synchronized void updateInstanceDate(Date dateCreated) {
+        if (instanceDate.compareTo(dateCreated) < 1) {
+            instanceDate = dateCreated;
+        }
+    }
+
+    public synchronized void updateEnrollmentDate(Date dateCreated) {
+        if (enrollmentDate.compareTo(dateCreated) < 1) {
+            enrollmentDate = dateCreated;
+        }
+    }
+
+    public synchronized void updateEventDate(Date dateCreated) {
+        if (eventDate.compareTo(dateCreated) < 1) {
+            eventDate = dateCreated;
+        }
+    }
+}
@@ -11,29 +11,18 @@ import java.util.*;
 
 public class TEIUtil {
 
-    @Getter
-    private static Map<String, String> patientIdTEIUidMap = new LinkedHashMap<>();
+    // filled by the processor and drained by the writer of the same chunk, so each partition thread keeps its own
+    private static ThreadLocal<Map<String, String>> patientIdTEIUidMap = ThreadLocal.withInitial(LinkedHashMap::new);
 
     @Getter
     @Setter
-    private static List<String> attributeOfTypeDateTime;
+    private static Set<String> attributeOfTypeDateTime;
 
     @Getter
     @Setter
-    private static List<String> attributeOfTypeDate;
+    private static Set<String> attributeOfTypeDate;
 
-    @Getter
-    @Setter
-    private static List<TrackedEntityInstanceInfo> trackedEntityInstanceInfos;
-
-    @Getter
-    private static Map<String, String> trackedEntityInstanceIDs = new LinkedHashMap<>();
-
-    @Getter
-    @Setter
-    private static Map<String, List<EnrollmentDetails>> instancesWithEnrollments = new HashMap<>();
-
-    public static Date date = new Date(Long.MIN_VALUE);
+    private static ThreadLocal<Map<String, String>> trackedEntityInstanceIDs = ThreadLocal.withInitial(LinkedHashMap::new);
 
     private static String jsonToString(JsonElement jsonElement) {
         if (null == jsonElement) {
@@ -42,23 +31,55 @@ public class TEIUtil {
         return jsonElement.toString();
     }
 
+    public static List<TrackedEntityInstanceInfo> getTrackedEntityInstanceInfos() {
+        return SyncContext.current().getTrackedEntityInstanceInfos();
+    }
+
+    public static void setTrackedEntityInstanceInfos(List<TrackedEntityInstanceInfo> trackedEntityInstanceInfos) {
+        SyncContext.current().setTrackedEntityInstanceInfos(trackedEntityInstanceInfos);
+    }
+
+    public static TrackedEntityInstanceIndex getTrackedEntityInstanceIndex() {
+        return SyncContext.current().getTrackedEntityInstanceIndex();
+    }
+
+    public static void setTrackedEntityInstanceIndex(TrackedEntityInstanceIndex trackedEntityInstanceIndex) {
+        SyncContext.current().setTrackedEntityInstanceIndex(trackedEntityInstanceIndex);
+    }
+
+    public static Map<String, List<EnrollmentDetails>> getInstancesWithEnrollments() {
+        return SyncContext.current().getInstancesWithEnrollments();
+    }
+
+    public static void setInstancesWithEnrollments(Map<String, List<EnrollmentDetails>> instancesWithEnrollments) {
+        SyncContext.current().setInstancesWithEnrollments(instancesWithEnrollments);
+    }
+
+    public static Map<String, String> getPatientIdTEIUidMap() {
+        return patientIdTEIUidMap.get();
+    }
+
+    public static Map<String, String> getTrackedEntityInstanceIDs() {
+        return trackedEntityInstanceIDs.get();
+    }
+
     public static void setPatientIds(JsonObject tableRowJsonObject) {
-        patientIdTEIUidMap.put(
+        getPatientIdTEIUidMap().put(
                 jsonToString(tableRowJsonObject.get("Patient_Identifier")),
                 jsonToString(tableRowJsonObject.get("instance_id"))
         );
     }
 
     public static void resetPatientTEIUidMap() {
-        patientIdTEIUidMap.clear();
+        getPatientIdTEIUidMap().clear();
     }
 
     public static void resetTrackedEntityInstaceIDs() {
-        trackedEntityInstanceIDs.clear();
+        getTrackedEntityInstanceIDs().clear();
     }
 
     public static void setTrackedEntityInstanceIDs(JsonObject tableRowJsonObject) {
-        trackedEntityInstanceIDs.put(
+        getTrackedEntityInstanceIDs().put(
                 tableRowJsonObject.get("Patient_Identifier").getAsString(),
                 tableRowJsonObject.get("instance_id").getAsString()
         );
@@ -0,0 +1,63 @@
+package com.thoughtworks.martdhis2sync.util;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Consumer;
+
+// a list per job: threads started by a job, like the chunk threads of a multi-threaded step, share the job's list
+public class ThreadScopedList<E> extends AbstractList<E> {
+
+    private final InheritableThreadLocal<List<E>> list = new InheritableThreadLocal<List<E>>() {
+        @Override
+        protected List<E> initialValue() {
+            return Collections.synchronizedList(new ArrayList<>());
+        }
+    };
+
+    public void isolate() {
+        list.set(Collections.synchronizedList(new ArrayList<>()));
+    }
+
+    @Override
+    public E get(int index) {
+        return list.get().get(index);
+    }
+
+    @Override
+    public int size() {
+        return list.get().size();
+    }
+
+    @Override
+    public void add(int index, E element) {
+        list.get().add(index, element);
+    }
+
+    @Override
+    public E set(int index, E element) {
+        return list.get().set(index, element);
+    }
+
+    @Override
+    public E remove(int index) {
+        return list.get().remove(index);
+    }
+
+    @Override
+    public void clear() {
+        list.get().clear();
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return list.get().iterator();
+    }
+
+    @Override
+    public void forEach(Consumer<? super E> action) {
+        list.get().forEach(action);
+    }
+}
@@ -0,0 +1,102 @@
+package com.thoughtworks.martdhis2sync.util;
+
+import com.thoughtworks.martdhis2sync.model.Attribute;
+import com.thoughtworks.martdhis2sync.model.TrackedEntityInstanceInfo;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+public class TrackedEntityInstanceIndex {
+
+    private final List<String> searchableAttributeIds;
+    private final List<TrackedEntityInstanceInfo> allInstances = new ArrayList<>();
+    private final Map<List<String>, List<TrackedEntityInstanceInfo>> instancesBySearchableValues = new HashMap<>();
+
+    // instances missing one of the searchable attributes match any value for it, so they can't be bucketed
+    private final List<TrackedEntityInstanceInfo> partiallySearchableInstances = new ArrayList<>();
+
+    public TrackedEntityInstanceIndex(Collection<String> searchableAttributeIds, List<TrackedEntityInstanceInfo> instances) {
+        this.searchableAttributeIds = new ArrayList<>(new TreeSet<>(searchableAttributeIds));
+        addAll(instances);
+    }
+
+    public static TrackedEntityInstanceIndex empty() {
+        return new TrackedEntityInstanceIndex(Collections.emptyList(), Collections.emptyList());
+    }
+
+    public synchronized void addAll(List<TrackedEntityInstanceInfo> instances) {
+        instances.forEach(this::add);
+    }
+
+    public synchronized int size() {
+        return allInstances.size();
+    }
+
+    public synchronized List<TrackedEntityInstanceInfo> getMatchingInstances(Map<String, String> searchableMappings,
+                                                                             Map<String, String> comparableMappings) {
+        if (!searchableAttributeIds.equals(new ArrayList<>(new TreeSet<>(searchableMappings.keySet())))) {
+            return allInstances.stream()
+                    .filter(instance -> matches(instance, searchableMappings))
+                    .filter(instance -> matches(instance, comparableMappings))
+                    .collect(Collectors.toList());
+        }
+
+        List<String> searchableValues = searchableAttributeIds.stream()
+                .map(searchableMappings::get)
+                .collect(Collectors.toList());
+
+        List<TrackedEntityInstanceInfo> matchedInstances = instancesBySearchableValues
+                .getOrDefault(searchableValues, Collections.emptyList())
+                .stream()
+                .filter(instance -> matches(instance, comparableMappings))
+                .collect(Collectors.toList());
+
+        partiallySearchableInstances.stream()
+                .filter(instance -> matches(instance, searchableMappings))
+                .filter(instance -> matches(instance, comparableMappings))
+                .forEach(matchedInstances::add);
+
+        return matchedInstances;
+    }
+
+    private void add(TrackedEntityInstanceInfo instance) {
+        allInstances.add(instance);
+
+        List<String> searchableValues = new ArrayList<>();
+        for (String attributeId : searchableAttributeIds) {
+            List<String> values = getAttributes(instance).stream()
+                    .filter(attribute -> attributeId.equals(attribute.getAttribute()))
+                    .map(Attribute::getValue)
+                    .distinct()
+                    .collect(Collectors.toList());
+
+            if (values.isEmpty()) {
+                partiallySearchableInstances.add(instance);
+                return;
+            }
+            if (values.size() > 1) {
+                return;
+            }
+            searchableValues.add(values.get(0));
+        }
+
+        instancesBySearchableValues.computeIfAbsent(searchableValues, key -> new ArrayList<>()).add(instance);
+    }
+
+    private static boolean matches(TrackedEntityInstanceInfo instance, Map<String, String> mappings) {
+        return getAttributes(instance).stream()
+                .filter(attribute -> mappings.containsKey(attribute.getAttribute()))
+                .allMatch(attribute -> Objects.equals(mappings.get(attribute.getAttribute()), attribute.getValue()));
+    }
+
+    private static List<Attribute> getAttributes(TrackedEntityInstanceInfo instance) {
+        return instance.getAttributes() == null ? Collections.emptyList() : instance.getAttributes();
+    }
+}
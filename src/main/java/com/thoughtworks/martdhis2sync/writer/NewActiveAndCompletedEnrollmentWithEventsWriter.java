@@ -1,10 +1,10 @@
 package com.thoughtworks.martdhis2sync.writer;
 
-import com.thoughtworks.martdhis2sync.controller.PushController;
 import com.thoughtworks.martdhis2sync.model.DHISEnrollmentSyncResponse;
 import com.thoughtworks.martdhis2sync.model.EnrollmentAPIPayLoad;
 import com.thoughtworks.martdhis2sync.model.EnrollmentDetails;
 import com.thoughtworks.martdhis2sync.model.EnrollmentImportSummary;
+import com.thoughtworks.martdhis2sync.model.EnrollmentRequestBody;
 import com.thoughtworks.martdhis2sync.model.Event;
 import com.thoughtworks.martdhis2sync.model.EventTracker;
 import com.thoughtworks.martdhis2sync.model.ProcessedTableRow;
@@ -12,8 +12,8 @@ import com.thoughtworks.martdhis2sync.repository.SyncRepository;
 import com.thoughtworks.martdhis2sync.responseHandler.EnrollmentResponseHandler;
 import com.thoughtworks.martdhis2sync.responseHandler.EventResponseHandler;
 import com.thoughtworks.martdhis2sync.service.JobService;
-import com.thoughtworks.martdhis2sync.util.BatchUtil;
 import com.thoughtworks.martdhis2sync.util.EventUtil;
+import com.thoughtworks.martdhis2sync.util.SyncContext;
 import com.thoughtworks.martdhis2sync.util.TEIUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -28,7 +28,6 @@ import org.springframework.util.StringUtils;
 
 import java.util.*;
 
-import static com.thoughtworks.martdhis2sync.util.BatchUtil.removeLastChar;
 
 @Component
 @StepScope
@@ -52,43 +51,19 @@ public class NewActiveAndCompletedEnrollmentWithEventsWriter implements ItemWrit
     private static final String YES = "yes";
     private static final String NO = "no";
 
-    private List<EventTracker> eventTrackers = new ArrayList<>();
-
-    private static final String EVENT_API_FORMAT = "{" +
-                "\"event\":\"%s\", " +
-                "\"trackedEntityInstance\":\"%s\", " +
-                "\"enrollment\":\"%s\", " +
-                "\"program\":\"%s\", " +
-                "\"programStage\":\"%s\", " +
-                "\"orgUnit\":\"%s\", " +
-                "\"eventDate\":\"%s\", " +
-                "\"status\":\"%s\", " +
-                "\"dataValues\":[%s]" +
-            "}";
-
-    private static final String ENROLLMENT_API_FORMAT = "{" +
-                "\"enrollment\":\"%s\", " +
-                "\"trackedEntityInstance\":\"%s\", " +
-                "\"orgUnit\":\"%s\", " +
-                "\"program\":\"%s\", " +
-                "\"enrollmentDate\":\"%s\", " +
-                "\"incidentDate\":\"%s\", " +
-                "\"status\":\"%s\", " +
-                "\"events\":[%s]" +
-            "}";
-
     @Override
     public void write(List<? extends ProcessedTableRow> tableRows) throws Exception {
-        PushController.IS_DELTA_EXISTS = true;
-        eventTrackers.clear();
+        SyncContext.current().setDeltaExists(true);
+        List<EventTracker> eventTrackers = new ArrayList<>();
         Map<String, EnrollmentAPIPayLoad> groupedEnrollmentPayLoad = getGroupedEnrollmentPayLoad(tableRows);
         Collection<EnrollmentAPIPayLoad> payLoads = groupedEnrollmentPayLoad.values();
-        String apiBody = getAPIBody(groupedEnrollmentPayLoad);
+        EnrollmentRequestBody apiBody = getAPIBody(payLoads, eventTrackers);
         ResponseEntity<DHISEnrollmentSyncResponse> enrollmentResponse = syncRepository.sendEnrollmentData(URI, apiBody);
-        processResponseEntity(enrollmentResponse, payLoads);
+        processResponseEntity(enrollmentResponse, payLoads, eventTrackers);
     }
 
-    private void processResponseEntity(ResponseEntity<DHISEnrollmentSyncResponse> responseEntity, Collection<EnrollmentAPIPayLoad> payLoads) throws Exception {
+    private void processResponseEntity(ResponseEntity<DHISEnrollmentSyncResponse> responseEntity, Collection<EnrollmentAPIPayLoad> payLoads,
+                                       List<EventTracker> eventTrackers) throws Exception {
         Iterator<EnrollmentAPIPayLoad> iterator = payLoads.iterator();
         List<EnrollmentImportSummary> enrollmentImportSummaries = responseEntity.getBody().getResponse().getImportSummaries();
         if (HttpStatus.OK.equals(responseEntity.getStatusCode())) {
@@ -118,59 +93,14 @@ public class NewActiveAndCompletedEnrollmentWithEventsWriter implements ItemWrit
         return groupedEnrollments;
     }
 
-    private String getAPIBody(Map<String, EnrollmentAPIPayLoad> groupedEnrollmentPayLoad) {
-        StringBuilder body = new StringBuilder("");
-
-        groupedEnrollmentPayLoad.forEach((key, value) -> {
-            List<Event> events = value.getEvents();
-            body
-                .append(String.format(
-                        ENROLLMENT_API_FORMAT,
-                        getEnrollmentId(value),
-                        value.getInstanceId(),
-                        value.getOrgUnit(),
-                        value.getProgram(),
-                        value.getProgramStartDate(),
-                        value.getIncidentDate(),
-                        EnrollmentAPIPayLoad.STATUS_ACTIVE,
-                        getEventBody(events)
-                ))
-                .append(",");
-
-            eventTrackers.addAll(EventUtil.getEventTrackers(events));
-        });
-
-        return String.format("{\"enrollments\":[%s]}", removeLastChar(body));
-    }
-
-    private String getEventBody(List<Event> events) {
-        StringBuilder eventsApiBuilder = new StringBuilder();
-        events.forEach(event -> {
-            eventsApiBuilder
-                .append(String.format(EVENT_API_FORMAT,
-                        "",
-                        event.getTrackedEntityInstance(),
-                        event.getEnrollment(),
-                        event.getProgram(),
-                        event.getProgramStage(),
-                        event.getOrgUnit(),
-                        event.getEventDate(),
-                        event.getStatus(),
-                        getDataValues(event.getDataValues())
-                ))
-                .append(",");
+    private EnrollmentRequestBody getAPIBody(Collection<EnrollmentAPIPayLoad> payLoads, List<EventTracker> eventTrackers) {
+        List<String> enrollmentIds = new ArrayList<>();
+        payLoads.forEach(payLoad -> {
+            enrollmentIds.add(getEnrollmentId(payLoad));
+            eventTrackers.addAll(EventUtil.getEventTrackers(payLoad.getEvents()));
         });
 
-        return removeLastChar(eventsApiBuilder);
-    }
-
-    private String getDataValues(Map<String, String> dataValues) {
-        StringBuilder dataValuesApiBuilder = new StringBuilder();
-        dataValues.forEach((key, value) -> dataValuesApiBuilder.append(
-                String.format("{\"dataElement\":\"%s\", \"value\":\"%s\"},", key, BatchUtil.getEscapedString(value))
-        ));
-
-        return removeLastChar(dataValuesApiBuilder);
+        return new EnrollmentRequestBody(payLoads, enrollmentIds, event -> "", Event::getStatus);
     }
 
     private String getEnrollmentId(EnrollmentAPIPayLoad enrollment) {
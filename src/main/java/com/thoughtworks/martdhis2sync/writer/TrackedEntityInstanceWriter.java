@@ -1,12 +1,12 @@
 package com.thoughtworks.martdhis2sync.writer;
 
-import com.thoughtworks.martdhis2sync.controller.PushController;
 import com.thoughtworks.martdhis2sync.model.DHISSyncResponse;
 import com.thoughtworks.martdhis2sync.model.ImportSummary;
 import com.thoughtworks.martdhis2sync.repository.SyncRepository;
 import com.thoughtworks.martdhis2sync.service.LoggerService;
 import com.thoughtworks.martdhis2sync.util.BatchUtil;
 import com.thoughtworks.martdhis2sync.util.MarkerUtil;
+import com.thoughtworks.martdhis2sync.util.SyncContext;
 import com.thoughtworks.martdhis2sync.util.TEIUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -36,7 +36,7 @@ import static com.thoughtworks.martdhis2sync.util.MarkerUtil.CATEGORY_INSTANCE;
 public class TrackedEntityInstanceWriter implements ItemWriter {
 
     private static final String EMPTY_STRING = "\"\"";
-    private static Map<String, String> newTEIUIDs = new LinkedHashMap<>();
+    private Map<String, String> newTEIUIDs = new LinkedHashMap<>();
     private Logger logger = LoggerFactory.getLogger(this.getClass());
     private static final String LOG_PREFIX = "TEI SYNC: ";
     private boolean isSyncFailure;
@@ -61,11 +61,15 @@ public class TrackedEntityInstanceWriter implements ItemWriter {
     @Value("#{jobParameters['service']}")
     private String programName;
 
+    // set only when running as a partition, whose marker is updated by InstanceMarkerListener instead
+    @Value("#{stepExecutionContext['partition']}")
+    private Integer partition;
+
     private Iterator<Entry<String, String>> mapIterator;
 
     @Override
     public void write(List list) throws Exception {
-        PushController.IS_DELTA_EXISTS = true;
+        SyncContext.current().setDeltaExists(true);
         StringBuilder instanceApiFormat = new StringBuilder("{\"trackedEntityInstances\":[");
         list.forEach(item -> instanceApiFormat.append(item).append(","));
         instanceApiFormat.replace(instanceApiFormat.length() - 1, instanceApiFormat.length(), "]}");
@@ -89,7 +93,7 @@ public class TrackedEntityInstanceWriter implements ItemWriter {
         updateTracker();
         if (isSyncFailure) {
             throw new Exception();
-        } else {
+        } else if (null == partition) {
             updateMarker();
         }
         TEIUtil.resetPatientTEIUidMap();
@@ -148,16 +152,17 @@ public class TrackedEntityInstanceWriter implements ItemWriter {
 
         if (!newTEIUIDs.isEmpty()) {
             int updateCount;
+            Timestamp dateCreated = Timestamp.valueOf(BatchUtil.GetUTCDateTimeAsString());
             try (Connection connection = dataSource.getConnection()) {
                 try (PreparedStatement ps = connection.prepareStatement(sqlQuery)) {
-                    updateCount = 0;
                     for (Entry entry : newTEIUIDs.entrySet()) {
                         ps.setString(1, entry.getKey().toString());
                         ps.setString(2, entry.getValue().toString());
                         ps.setString(3, user);
-                        ps.setTimestamp(4, Timestamp.valueOf(BatchUtil.GetUTCDateTimeAsString()));
-                        updateCount += ps.executeUpdate();
+                        ps.setTimestamp(4, dateCreated);
+                        ps.addBatch();
                     }
+                    updateCount = BatchUtil.executeBatchInTransaction(connection, ps);
                 }
             }
             logger.info(LOG_PREFIX + "Successfully inserted " + updateCount + " TrackedEntityInstance UIDs.");
@@ -166,6 +171,6 @@ public class TrackedEntityInstanceWriter implements ItemWriter {
 
     private void updateMarker() {
         markerUtil.updateMarkerEntry(programName, CATEGORY_INSTANCE,
-                BatchUtil.getStringFromDate(TEIUtil.date, BatchUtil.DATEFORMAT_WITH_24HR_TIME));
+                BatchUtil.getStringFromDate(SyncContext.current().getInstanceDate(), BatchUtil.DATEFORMAT_WITH_24HR_TIME));
     }
 }
@@ -1,10 +1,10 @@
 package com.thoughtworks.martdhis2sync.writer;
 
-import com.thoughtworks.martdhis2sync.controller.PushController;
 import com.thoughtworks.martdhis2sync.model.DHISEnrollmentSyncResponse;
 import com.thoughtworks.martdhis2sync.model.EnrollmentAPIPayLoad;
 import com.thoughtworks.martdhis2sync.model.EnrollmentDetails;
 import com.thoughtworks.martdhis2sync.model.EnrollmentImportSummary;
+import com.thoughtworks.martdhis2sync.model.EnrollmentRequestBody;
 import com.thoughtworks.martdhis2sync.model.EnrollmentResponse;
 import com.thoughtworks.martdhis2sync.model.Event;
 import com.thoughtworks.martdhis2sync.model.EventTracker;
@@ -14,7 +14,7 @@ import com.thoughtworks.martdhis2sync.responseHandler.EnrollmentResponseHandler;
 import com.thoughtworks.martdhis2sync.responseHandler.EventResponseHandler;
 import com.thoughtworks.martdhis2sync.service.JobService;
 import com.thoughtworks.martdhis2sync.service.LoggerService;
-import com.thoughtworks.martdhis2sync.util.BatchUtil;
+import com.thoughtworks.martdhis2sync.util.SyncContext;
 import com.thoughtworks.martdhis2sync.util.TEIUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -34,7 +34,6 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 
-import static com.thoughtworks.martdhis2sync.util.BatchUtil.removeLastChar;
 import static com.thoughtworks.martdhis2sync.util.EventUtil.getEventTrackers;
 import static com.thoughtworks.martdhis2sync.util.EventUtil.placeNewEventsFirst;
 
@@ -58,45 +57,21 @@ public class UpdatedActiveAndCompletedEnrollmentWithEventsWriter implements Item
     private Logger logger = LoggerFactory.getLogger(this.getClass());
     private static final String LOG_PREFIX = "UPDATE COMPLETED ENROLLMENT WITH EVENTS SYNC: ";
 
-    private List<EventTracker> eventTrackers = new ArrayList<>();
-
-    private static final String EVENT_API_FORMAT = "{" +
-            "\"event\":\"%s\", " +
-            "\"trackedEntityInstance\":\"%s\", " +
-            "\"enrollment\":\"%s\", " +
-            "\"program\":\"%s\", " +
-            "\"programStage\":\"%s\", " +
-            "\"orgUnit\":\"%s\", " +
-            "\"eventDate\":\"%s\", " +
-            "\"status\":\"%s\", " +
-            "\"dataValues\":[%s]" +
-            "}";
-
-    private static final String ENROLLMENT_API_FORMAT = "{" +
-            "\"enrollment\":\"%s\", " +
-            "\"trackedEntityInstance\":\"%s\", " +
-            "\"orgUnit\":\"%s\", " +
-            "\"program\":\"%s\", " +
-            "\"enrollmentDate\":\"%s\", " +
-            "\"incidentDate\":\"%s\", " +
-            "\"status\":\"%s\", " +
-            "\"events\":[%s]" +
-            "}";
-
     @Override
     public void write(List<? extends ProcessedTableRow> tableRows) throws Exception {
-        PushController.IS_DELTA_EXISTS = true;
-        eventTrackers.clear();
+        SyncContext.current().setDeltaExists(true);
+        List<EventTracker> eventTrackers = new ArrayList<>();
         Map<String, EnrollmentAPIPayLoad> groupedEnrollmentPayLoad = getGroupedEnrollmentPayLoad(tableRows);
         Collection<EnrollmentAPIPayLoad> payLoads = groupedEnrollmentPayLoad.values();
-        String apiBody = getAPIBody(groupedEnrollmentPayLoad);
+        EnrollmentRequestBody apiBody = getAPIBody(payLoads, eventTrackers);
         if (!JobService.isIS_JOB_FAILED()) {
             ResponseEntity<DHISEnrollmentSyncResponse> enrollmentResponse = syncRepository.sendEnrollmentData(URI, apiBody);
-            processResponseEntity(enrollmentResponse, payLoads);
+            processResponseEntity(enrollmentResponse, payLoads, eventTrackers);
         }
     }
 
-    private void processResponseEntity(ResponseEntity<DHISEnrollmentSyncResponse> responseEntity, Collection<EnrollmentAPIPayLoad> payLoads) throws Exception {
+    private void processResponseEntity(ResponseEntity<DHISEnrollmentSyncResponse> responseEntity, Collection<EnrollmentAPIPayLoad> payLoads,
+                                       List<EventTracker> eventTrackers) throws Exception {
         Iterator<EnrollmentAPIPayLoad> iterator = payLoads.iterator();
         EnrollmentResponse response = responseEntity.getBody().getResponse();
         List<EnrollmentImportSummary> enrollmentImportSummaries = response == null ?
@@ -136,61 +111,14 @@ public class UpdatedActiveAndCompletedEnrollmentWithEventsWriter implements Item
         return groupedEnrollments;
     }
 
-    private String getAPIBody(Map<String, EnrollmentAPIPayLoad> groupedEnrollmentPayLoad) {
-        StringBuilder body = new StringBuilder("");
-
-        groupedEnrollmentPayLoad.forEach((key, value) -> {
-            List<Event> events = value.getEvents();
-            body
-                    .append(String.format(
-                            ENROLLMENT_API_FORMAT,
-                            getEnrollmentId(value),
-                            value.getInstanceId(),
-                            value.getOrgUnit(),
-                            value.getProgram(),
-                            value.getProgramStartDate(),
-                            value.getIncidentDate(),
-                            EnrollmentAPIPayLoad.STATUS_ACTIVE,
-                            getEventBody(events)
-                    ))
-                    .append(",");
-
-            eventTrackers.addAll(getEventTrackers(placeNewEventsFirst(events)));
-        });
-
-        return String.format("{\"enrollments\":[%s]}", removeLastChar(body));
-    }
-
-    private String getEventBody(List<Event> events) {
-        StringBuilder eventsApiBuilder = new StringBuilder();
-        events.forEach(event -> {
-            eventsApiBuilder
-                    .append(String.format(EVENT_API_FORMAT,
-                            event.getEvent(),
-                            event.getTrackedEntityInstance(),
-                            event.getEnrollment(),
-                            event.getProgram(),
-                            event.getProgramStage(),
-                            event.getOrgUnit(),
-                            event.getEventDate(),
-                            event.getStatus().toUpperCase(),
-                            getDataValues(event.getDataValues())
-                    ))
-                    .append(",");
-        });
-
-        return removeLastChar(eventsApiBuilder);
-    }
-
-    private String getDataValues(Map<String, String> dataValues) {
-        StringBuilder dataValuesApiBuilder = new StringBuilder();
-        dataValues.forEach((key, value) -> {
-            dataValuesApiBuilder.append(
-                    String.format("{\"dataElement\":\"%s\", \"value\":\"%s\"},", key, BatchUtil.getEscapedString(value))
-            );
+    private EnrollmentRequestBody getAPIBody(Collection<EnrollmentAPIPayLoad> payLoads, List<EventTracker> eventTrackers) {
+        List<String> enrollmentIds = new ArrayList<>();
+        payLoads.forEach(payLoad -> {
+            enrollmentIds.add(getEnrollmentId(payLoad));
+            eventTrackers.addAll(getEventTrackers(placeNewEventsFirst(payLoad.getEvents())));
         });
 
-        return removeLastChar(dataValuesApiBuilder);
+        return new EnrollmentRequestBody(payLoads, enrollmentIds, Event::getEvent, event -> event.getStatus().toUpperCase());
     }
 
     private String getEnrollmentId(EnrollmentAPIPayLoad enrollment) {
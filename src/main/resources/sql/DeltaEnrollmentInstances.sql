@@ -5,7 +5,7 @@ FROM (SELECT enrTable.*
       FROM %s enrTable
       INNER JOIN marker enrollment_marker
           ON enrTable.date_created :: TIMESTAMP > COALESCE(enrollment_marker.last_synced_date, '-infinity')
-          AND category = 'enrollment' AND program_name = '%s'
+          AND category = 'enrollment' AND program_name = ?
      ) AS enrollmentsTable
 FULL OUTER JOIN (SELECT evnTable.*,
                    enrollments.program_unique_id AS event_program_unique_id
@@ -14,7 +14,7 @@ FULL OUTER JOIN (SELECT evnTable.*,
                               AND evnTable.enrollment_date = COALESCE(enrollments.enrollment_date, evnTable.enrollment_date)
                    INNER JOIN marker event_marker
                        ON evnTable.date_created :: TIMESTAMP > COALESCE(event_marker.last_synced_date, '-infinity')
-                       AND category = 'event' AND program_name = '%s'
+                       AND category = 'event' AND program_name = ?
                 ) AS eventsTable
     ON enrollmentsTable."Patient_Identifier" = eventsTable."Patient_Identifier"
     AND eventsTable.enrollment_date = COALESCE(enrollmentsTable.enrollment_date, eventsTable.enrollment_date)
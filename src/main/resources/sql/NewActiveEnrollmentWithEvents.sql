@@ -17,7 +17,7 @@ FROM %s enrTable
          ON enrTable.program = enrTracker.program AND enrTracker.instance_id = insTracker.instance_id
               AND enrTracker.program_unique_id = enrTable.program_unique_id :: text
 WHERE enrTable.date_created :: TIMESTAMP > COALESCE((SELECT last_synced_date FROM marker WHERE category = 'enrollment'
-                                                                                           AND program_name = '%s'),
+                                                                                           AND program_name = ?),
                                                     '-infinity')
   AND enrTracker.instance_id IS NULL
   AND enrTable.status = 'ACTIVE';
@@ -15,7 +15,7 @@ FROM (SELECT enrTable.*
       FROM %s enrTable
         INNER JOIN marker enrollment_marker
           ON enrTable.date_created :: TIMESTAMP > COALESCE(enrollment_marker.last_synced_date, '-infinity')
-             AND category = 'enrollment' AND program_name = '%s') AS enrollmentsTable
+             AND category = 'enrollment' AND program_name = ?) AS enrollmentsTable
   FULL OUTER JOIN (SELECT evnTable.*,
                    enrollments.program_unique_id AS event_program_unique_id,
                    enrollments.status            AS event_program_status,
@@ -25,7 +25,7 @@ FROM (SELECT enrTable.*
                               AND evnTable.enrollment_date = COALESCE(enrollments.enrollment_date, evnTable.enrollment_date)
                      INNER JOIN marker event_marker
                        ON evnTable.date_created :: TIMESTAMP > COALESCE(event_marker.last_synced_date, '-infinity')
-                          AND category = 'event' AND program_name = '%s') AS eventsTable
+                          AND category = 'event' AND program_name = ?) AS eventsTable
     ON enrollmentsTable."Patient_Identifier" = eventsTable."Patient_Identifier"
        AND eventsTable.enrollment_date = COALESCE(enrollmentsTable.enrollment_date, eventsTable.enrollment_date)
   INNER JOIN orgunit_tracker orgTracker ON COALESCE(eventsTable."OrgUnit", enrollmentsTable."OrgUnit") = orgTracker.orgunit
@@ -38,4 +38,10 @@ FROM (SELECT enrTable.*
                                          AND eventsTable.program = evntTracker.program
                                          AND eventsTable.program_stage = evntTracker.program_stage
 WHERE (enrollmentsTable.status = 'ACTIVE' OR eventsTable.event_program_status = 'ACTIVE')
-                                            AND enrolTracker.instance_id IS NOT NULL %s;
+                                            AND enrolTracker.instance_id IS NOT NULL
+                                            AND NOT EXISTS(SELECT 1
+                                                           FROM unnest(?::TEXT[]) AS ignored(enrollment_id)
+                                                           WHERE ignored.enrollment_id = enrolTracker.enrollment_id)
+                                            AND (?::TEXT[] IS NULL OR EXISTS(SELECT 1
+                                                                             FROM unnest(?::TEXT[]) AS partitioned(enrollment_id)
+                                                                             WHERE partitioned.enrollment_id = enrolTracker.enrollment_id));
@@ -1,8 +1,13 @@
 package com.thoughtworks.martdhis2sync;
 
+import com.thoughtworks.martdhis2sync.model.EnrollmentRequestBody;
+import org.mockito.ArgumentMatcher;
+
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
 
+import static org.mockito.Matchers.argThat;
+
 public class CommonTestHelper {
 
     public static void setValuesForMemberFields(Object classInstance, String fieldName, Object valueForMemberField)
@@ -24,4 +29,13 @@ public class CommonTestHelper {
         modifiersField.setInt(field, field.getModifiers() & ~Modifier.FINAL);
         setField(null, valueForMemberField, field);
     }
+
+    public static EnrollmentRequestBody enrollmentRequestBodyOf(String json) {
+        return argThat(new ArgumentMatcher<EnrollmentRequestBody>() {
+            @Override
+            public boolean matches(Object argument) {
+                return argument instanceof EnrollmentRequestBody && json.equals(((EnrollmentRequestBody) argument).toJson());
+            }
+        });
+    }
 }
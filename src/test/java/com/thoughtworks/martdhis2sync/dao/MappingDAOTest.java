@@ -1,40 +1,42 @@
 package com.thoughtworks.martdhis2sync.dao;
 
-import com.thoughtworks.martdhis2sync.util.BatchUtil;
+import com.thoughtworks.martdhis2sync.model.Config;
+import com.thoughtworks.martdhis2sync.model.LookupTable;
+import com.thoughtworks.martdhis2sync.model.Mapping;
+import com.thoughtworks.martdhis2sync.model.MappingJson;
+import com.thoughtworks.martdhis2sync.util.SqlTemplateRegistry;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.Mock;
-import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
-import org.springframework.core.io.Resource;
 import org.springframework.jdbc.core.JdbcTemplate;
 
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 import static com.thoughtworks.martdhis2sync.CommonTestHelper.setValuesForMemberFields;
+import static com.thoughtworks.martdhis2sync.util.SqlTemplateRegistry.SEARCHABLE;
 import static org.junit.Assert.assertEquals;
 import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.anyVararg;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
-import static org.powermock.api.mockito.PowerMockito.mockStatic;
-import static org.powermock.api.mockito.PowerMockito.verifyStatic;
 import static org.powermock.api.mockito.PowerMockito.when;
 
 @RunWith(PowerMockRunner.class)
-@PrepareForTest({BatchUtil.class})
 public class MappingDAOTest {
 
     @Mock
     private JdbcTemplate jdbcTemplate;
 
     @Mock
-    private Resource searchableResource;
+    private SqlTemplateRegistry sqlTemplates;
 
     private MappingDAO mappingDAO;
     private Map<String, Object> expectedMapping;
@@ -45,10 +47,10 @@ public class MappingDAOTest {
     public void setUp() throws Exception {
         mappingDAO = new MappingDAO();
         setValuesForMemberFields(mappingDAO, "jdbcTemplate", jdbcTemplate);
-        setValuesForMemberFields(mappingDAO, "searchableResource", searchableResource);
+        setValuesForMemberFields(mappingDAO, "sqlTemplates", sqlTemplates);
 
         mappingName = "Patient Identifier Details";
-        getMappingSql = "SELECT lookup_table, mapping_json, config FROM mapping WHERE mapping_name='" + mappingName + "'";
+        getMappingSql = "SELECT lookup_table, mapping_json, config FROM mapping WHERE mapping_name = ?";
         expectedMapping = new HashMap<>();
         expectedMapping.put("lookup_table", "{\"instance\": \"patient_identifier\", \"enrollments\": \"patient_enrollments\"}");
         expectedMapping.put("config", "{\"searchable\": [\"patient_id\"]}");
@@ -57,18 +59,27 @@ public class MappingDAOTest {
                 "\"patient_id\": \"HF8Tu4tg\"" +
                 "}" +
                 "}");
-        mockStatic(BatchUtil.class);
     }
 
     @Test
     public void shouldReturnMappingDetails() {
 
-        when(jdbcTemplate.queryForMap(getMappingSql)).thenReturn(expectedMapping);
+        when(jdbcTemplate.queryForMap(getMappingSql, mappingName)).thenReturn(expectedMapping);
 
         Map<String, Object> actual = mappingDAO.getMapping(mappingName);
 
         assertEquals(expectedMapping, actual);
-        verify(jdbcTemplate, times(1)).queryForMap(getMappingSql);
+        verify(jdbcTemplate, times(1)).queryForMap(getMappingSql, mappingName);
+    }
+
+    @Test
+    public void shouldReturnChecksumOfMapping() {
+        String sql = "SELECT md5(concat_ws('|', lookup_table, mapping_json, config)) FROM mapping WHERE mapping_name = ?";
+
+        when(jdbcTemplate.queryForObject(sql, String.class, mappingName)).thenReturn("2d1f0e5b");
+
+        assertEquals("2d1f0e5b", mappingDAO.getMappingChecksum(mappingName));
+        verify(jdbcTemplate, times(1)).queryForObject(sql, String.class, mappingName);
     }
 
     @Test
@@ -80,12 +91,12 @@ public class MappingDAOTest {
         String sql = "SELECT %s " +
                 "FROM %s pi " +
                 "INNER JOIN marker m ON pi.date_created :: TIMESTAMP > COALESCE(m.last_synced_date, '-infinity') " +
-                "AND category = 'instance' AND program_name = '%s'";
+                "AND category = 'instance' AND program_name = ?";
 
         String actualSql = "SELECT \"patient_id\" " +
                 "FROM patient_identifier pi " +
                 "INNER JOIN marker m ON pi.date_created :: TIMESTAMP > COALESCE(m.last_synced_date, '-infinity') " +
-                "AND category = 'instance' AND program_name = 'Patient Identifier Details'";
+                "AND category = 'instance' AND program_name = ?";
 
 
         record1.put("patient_id", "NINETU190995MT");
@@ -93,11 +104,10 @@ public class MappingDAOTest {
 
         List<Map<String, Object>> expected = Arrays.asList(record1, record2);
 
-        when(BatchUtil.convertResourceOutputToString(searchableResource)).thenReturn(sql);
-        when(jdbcTemplate.queryForMap(getMappingSql)).thenReturn(expectedMapping);
-        when(jdbcTemplate.queryForList(actualSql)).thenReturn(expected);
+        when(sqlTemplates.get(SEARCHABLE)).thenReturn(sql);
+        when(jdbcTemplate.queryForList(actualSql, mappingName)).thenReturn(expected);
 
-        actual = mappingDAO.getSearchableFields(mappingName);
+        actual = mappingDAO.getSearchableFields(getMapping(Collections.singletonList("patient_id")));
 
         assertEquals(expected, actual);
     }
@@ -109,21 +119,20 @@ public class MappingDAOTest {
         String sql = "SELECT %s " +
                 "FROM %s pi " +
                 "INNER JOIN marker m ON pi.date_created :: TIMESTAMP > COALESCE(m.last_synced_date, '-infinity') " +
-                "AND category = 'instance' AND program_name = '%s'";
+                "AND category = 'instance' AND program_name = ?";
 
         String actualSql = "SELECT \"patient_id\" " +
                 "FROM patient_identifier pi " +
                 "INNER JOIN marker m ON pi.date_created :: TIMESTAMP > COALESCE(m.last_synced_date, '-infinity') " +
-                "AND category = 'instance' AND program_name = 'Patient Identifier Details'";
+                "AND category = 'instance' AND program_name = ?";
 
 
         List<Map<String, Object>> expected = new ArrayList<>();
 
-        when(BatchUtil.convertResourceOutputToString(searchableResource)).thenReturn(sql);
-        when(jdbcTemplate.queryForMap(getMappingSql)).thenReturn(expectedMapping);
-        when(jdbcTemplate.queryForList(actualSql)).thenReturn(expected);
+        when(sqlTemplates.get(SEARCHABLE)).thenReturn(sql);
+        when(jdbcTemplate.queryForList(actualSql, mappingName)).thenReturn(expected);
 
-        actual = mappingDAO.getSearchableFields(mappingName);
+        actual = mappingDAO.getSearchableFields(getMapping(Collections.singletonList("patient_id")));
 
         assertEquals(expected, actual);
     }
@@ -135,20 +144,24 @@ public class MappingDAOTest {
         String sql = "SELECT %s " +
                 "FROM %s pi " +
                 "INNER JOIN marker m ON pi.date_created :: TIMESTAMP > COALESCE(m.last_synced_date, '-infinity') " +
-                "AND category = 'instance' AND program_name = '%s'";
+                "AND category = 'instance' AND program_name = ?";
 
-        expectedMapping.put("config", "{\"searchable\": []}");
+        when(sqlTemplates.get(SEARCHABLE)).thenReturn(sql);
 
-        when(BatchUtil.convertResourceOutputToString(searchableResource)).thenReturn(sql);
-        when(jdbcTemplate.queryForMap(getMappingSql)).thenReturn(expectedMapping);
+        actual = mappingDAO.getSearchableFields(getMapping(Collections.emptyList()));
 
-        actual = mappingDAO.getSearchableFields(mappingName);
-
-        verifyStatic(times(0));
-        BatchUtil.convertResourceOutputToString(searchableResource);
-        verify(jdbcTemplate, times(1)).queryForMap(getMappingSql);
-        verify(jdbcTemplate, times(0)).queryForList(anyString());
+        verify(sqlTemplates, times(0)).get(SEARCHABLE);
+        verify(jdbcTemplate, times(0)).queryForMap(getMappingSql, mappingName);
+        verify(jdbcTemplate, times(0)).queryForList(anyString(), (Object[]) anyVararg());
 
         assertEquals(0, actual.size());
     }
-}
+
+    private Mapping getMapping(List<String> searchable) {
+        LookupTable lookupTable = new LookupTable();
+        lookupTable.setInstance("patient_identifier");
+
+        return new Mapping(mappingName, "checksum", lookupTable, new MappingJson(),
+                new Config(searchable, Collections.emptyList(), "no"), Collections.emptyMap());
+    }
+}
\ No newline at end of file
@@ -1,37 +1,41 @@
 package com.thoughtworks.martdhis2sync.dao;
 
-import com.thoughtworks.martdhis2sync.util.BatchUtil;
+import com.thoughtworks.martdhis2sync.reader.QueryParameterSetter;
+import com.thoughtworks.martdhis2sync.util.SqlTemplateRegistry;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.Mock;
-import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
-import org.springframework.core.io.Resource;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementSetter;
+import org.springframework.jdbc.core.RowMapper;
 
-import java.io.IOException;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 import static com.thoughtworks.martdhis2sync.CommonTestHelper.setValuesForMemberFields;
+import static com.thoughtworks.martdhis2sync.util.SqlTemplateRegistry.DELTA_ENROLLMENT_INSTANCES;
+import static com.thoughtworks.martdhis2sync.util.SqlTemplateRegistry.UPDATED_ACTIVE_ENROLLMENT_WITH_EVENTS;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.anyVararg;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
-import static org.powermock.api.mockito.PowerMockito.mockStatic;
-import static org.powermock.api.mockito.PowerMockito.verifyStatic;
 import static org.powermock.api.mockito.PowerMockito.when;
 
 @RunWith(PowerMockRunner.class)
-@PrepareForTest(BatchUtil.class)
 public class PatientDAOTest {
     @Mock
     private JdbcTemplate jdbcTemplate;
 
     @Mock
-    private Resource resource;
+    private SqlTemplateRegistry sqlTemplates;
 
     private PatientDAO patientDAO;
     private String enrollmentTable = "enrollment_table";
@@ -42,23 +46,8 @@ public class PatientDAOTest {
     public void setUp() throws Exception {
         patientDAO = new PatientDAO();
 
-        setValuesForMemberFields(patientDAO, "deltaEnrollmentInstances", resource);
+        setValuesForMemberFields(patientDAO, "sqlTemplates", sqlTemplates);
         setValuesForMemberFields(patientDAO, "jdbcTemplate", jdbcTemplate);
-        mockStatic(BatchUtil.class);
-    }
-
-    @Test
-    public void shouldThrowErrorWhenFileCannotConvertToString() throws IOException {
-        when(BatchUtil.convertResourceOutputToString(resource))
-                .thenThrow(new IOException("Could not convert sql file to string"));
-
-        try {
-            patientDAO.getDeltaEnrollmentInstanceIds(enrollmentTable, eventTable, programName);
-        } catch (Exception e) {
-            verifyStatic(times(1));
-            BatchUtil.convertResourceOutputToString(resource);
-            assertEquals("Error in converting sql to string:: Could not convert sql file to string", e.getMessage());
-        }
     }
 
     @Test
@@ -70,7 +59,7 @@ public class PatientDAOTest {
                 "      FROM %s enrTable\n" +
                 "      INNER JOIN marker enrollment_marker\n" +
                 "          ON enrTable.date_created :: TIMESTAMP > COALESCE(enrollment_marker.last_synced_date, '-infinity')\n" +
-                "          AND category = 'enrollment' AND program_name = '%s'\n" +
+                "          AND category = 'enrollment' AND program_name = ?\n" +
                 "     ) AS enrollmentsTable\n" +
                 "FULL OUTER JOIN (SELECT evnTable.*,\n" +
                 "                   enrollments.program_unique_id AS event_program_unique_id,\n" +
@@ -80,7 +69,7 @@ public class PatientDAOTest {
                 "                              AND evnTable.enrollment_date = COALESCE(enrollments.enrollment_date, evnTable.enrollment_date)\n" +
                 "                   INNER JOIN marker event_marker\n" +
                 "                       ON evnTable.date_created :: TIMESTAMP > COALESCE(event_marker.last_synced_date, '-infinity')\n" +
-                "                       AND category = 'event' AND program_name = '%s'\n" +
+                "                       AND category = 'event' AND program_name = ?\n" +
                 "                ) AS eventsTable\n" +
                 "    ON enrollmentsTable.\"Patient_Identifier\" = eventsTable.\"Patient_Identifier\"\n" +
                 "    AND eventsTable.enrollment_date = COALESCE(enrollmentsTable.enrollment_date, eventsTable.enrollment_date)\n" +
@@ -97,7 +86,7 @@ public class PatientDAOTest {
                 "      FROM enrollment_table enrTable\n" +
                 "      INNER JOIN marker enrollment_marker\n" +
                 "          ON enrTable.date_created :: TIMESTAMP > COALESCE(enrollment_marker.last_synced_date, '-infinity')\n" +
-                "          AND category = 'enrollment' AND program_name = 'hts'\n" +
+                "          AND category = 'enrollment' AND program_name = ?\n" +
                 "     ) AS enrollmentsTable\n" +
                 "FULL OUTER JOIN (SELECT evnTable.*,\n" +
                 "                   enrollments.program_unique_id AS event_program_unique_id,\n" +
@@ -107,7 +96,7 @@ public class PatientDAOTest {
                 "                              AND evnTable.enrollment_date = COALESCE(enrollments.enrollment_date, evnTable.enrollment_date)\n" +
                 "                   INNER JOIN marker event_marker\n" +
                 "                       ON evnTable.date_created :: TIMESTAMP > COALESCE(event_marker.last_synced_date, '-infinity')\n" +
-                "                       AND category = 'event' AND program_name = 'hts'\n" +
+                "                       AND category = 'event' AND program_name = ?\n" +
                 "                ) AS eventsTable\n" +
                 "    ON enrollmentsTable.\"Patient_Identifier\" = eventsTable.\"Patient_Identifier\"\n" +
                 "    AND eventsTable.enrollment_date = COALESCE(enrollmentsTable.enrollment_date, eventsTable.enrollment_date)\n" +
@@ -124,14 +113,45 @@ public class PatientDAOTest {
 
         List<Map<String, Object>> expected = Arrays.asList(instance1, instance2);
 
-        when(BatchUtil.convertResourceOutputToString(resource)).thenReturn(sql);
-        when(jdbcTemplate.queryForList(formattedSql)).thenReturn(expected);
+        when(sqlTemplates.get(DELTA_ENROLLMENT_INSTANCES)).thenReturn(sql);
+        when(jdbcTemplate.queryForList(formattedSql, programName, programName)).thenReturn(expected);
 
         List<Map<String, Object>> actual = patientDAO.getDeltaEnrollmentInstanceIds(enrollmentTable, eventTable, programName);
 
-        verifyStatic(times(1));
-        BatchUtil.convertResourceOutputToString(resource);
-        verify(jdbcTemplate, times(1)).queryForList(formattedSql);
+        verify(jdbcTemplate, times(1)).queryForList(formattedSql, programName, programName);
         assertEquals(expected, actual);
     }
+
+    @Test
+    public void shouldNotQueryWhenTheLookupTableIsNotAPlainTableName() throws Exception {
+        when(sqlTemplates.get(DELTA_ENROLLMENT_INSTANCES)).thenReturn("SELECT * FROM %s, %s, %s");
+
+        try {
+            patientDAO.getDeltaEnrollmentInstanceIds("enrollment_table; DROP TABLE marker", eventTable, programName);
+            fail("Should have thrown IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            assertEquals("Invalid table name: enrollment_table; DROP TABLE marker", e.getMessage());
+        }
+
+        verify(jdbcTemplate, times(0)).queryForList(anyString(), (Object[]) anyVararg());
+    }
+
+    @Test
+    public void shouldReadTheEnrollmentIdsOfTheUpdatedEnrollmentsWithNothingIgnored() {
+        List<String> enrollmentIds = Arrays.asList("enrollment1", "enrollment2");
+        when(sqlTemplates.get(UPDATED_ACTIVE_ENROLLMENT_WITH_EVENTS)).thenReturn(
+                "SELECT enrolTracker.enrollment_id FROM %s, %s, %s WHERE program_name = ? AND program_name = ?" +
+                        " AND NOT EXISTS(?::TEXT[]) AND (?::TEXT[] IS NULL OR EXISTS(?::TEXT[]));\n");
+        when(jdbcTemplate.query(anyString(), any(PreparedStatementSetter.class), any(RowMapper.class)))
+                .thenReturn(enrollmentIds);
+
+        List<String> actual = patientDAO.getUpdatedActiveEnrollmentIds(enrollmentTable, eventTable, programName);
+
+        assertEquals(enrollmentIds, actual);
+        verify(jdbcTemplate, times(1)).query(eq("SELECT DISTINCT updated.enrollment_id FROM (" +
+                        "SELECT enrolTracker.enrollment_id FROM enrollment_table, event_table, enrollment_table " +
+                        "WHERE program_name = ? AND program_name = ? AND NOT EXISTS(?::TEXT[]) " +
+                        "AND (?::TEXT[] IS NULL OR EXISTS(?::TEXT[]))) AS updated"),
+                eq(new QueryParameterSetter(programName, programName, new Object[0], null, null)), any(RowMapper.class));
+    }
 }
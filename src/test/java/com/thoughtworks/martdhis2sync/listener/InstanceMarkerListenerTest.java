@@ -0,0 +1,73 @@
+package com.thoughtworks.martdhis2sync.listener;
+
+import com.thoughtworks.martdhis2sync.util.MarkerUtil;
+import com.thoughtworks.martdhis2sync.util.SyncContext;
+import com.thoughtworks.martdhis2sync.util.TEIUtil;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.powermock.core.classloader.annotations.PowerMockIgnore;
+import org.powermock.modules.junit4.PowerMockRunner;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.JobParameters;
+import org.springframework.batch.core.JobParametersBuilder;
+import org.springframework.batch.core.StepExecution;
+
+import static com.thoughtworks.martdhis2sync.CommonTestHelper.setValuesForMemberFields;
+import static com.thoughtworks.martdhis2sync.util.BatchUtil.DATEFORMAT_WITH_24HR_TIME;
+import static com.thoughtworks.martdhis2sync.util.BatchUtil.getDateFromString;
+import static com.thoughtworks.martdhis2sync.util.MarkerUtil.CATEGORY_INSTANCE;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.powermock.api.mockito.PowerMockito.when;
+
+@RunWith(PowerMockRunner.class)
+@PowerMockIgnore("javax.management.*")
+public class InstanceMarkerListenerTest {
+
+    @Mock
+    private MarkerUtil markerUtil;
+
+    @Mock
+    private StepExecution stepExecution;
+
+    private InstanceMarkerListener listener;
+
+    @Before
+    public void setUp() throws Exception {
+        SyncContext.begin("HT Service");
+        listener = new InstanceMarkerListener();
+        setValuesForMemberFields(listener, "markerUtil", markerUtil);
+
+        JobParameters jobParameters = new JobParametersBuilder().addString("service", "HTS Service").toJobParameters();
+        when(stepExecution.getJobParameters()).thenReturn(jobParameters);
+        SyncContext.current().setInstanceDate(getDateFromString("2018-10-13 11:30:15", DATEFORMAT_WITH_24HR_TIME));
+    }
+
+    @After
+    public void tearDown() {
+        SyncContext.end();
+    }
+
+    @Test
+    public void shouldUpdateInstanceMarkerWhenAllPartitionsHaveCompleted() {
+        when(stepExecution.getStatus()).thenReturn(BatchStatus.COMPLETED);
+
+        listener.afterStep(stepExecution);
+
+        verify(markerUtil, times(1)).updateMarkerEntry("HTS Service", CATEGORY_INSTANCE, "2018-10-13 11:30:15");
+    }
+
+    @Test
+    public void shouldNotUpdateInstanceMarkerWhenAPartitionHasFailed() {
+        when(stepExecution.getStatus()).thenReturn(BatchStatus.FAILED);
+
+        listener.afterStep(stepExecution);
+
+        verify(markerUtil, never()).updateMarkerEntry(anyString(), anyString(), anyString());
+    }
+}
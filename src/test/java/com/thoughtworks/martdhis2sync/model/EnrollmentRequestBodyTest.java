@@ -0,0 +1,116 @@
+package com.thoughtworks.martdhis2sync.model;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class EnrollmentRequestBodyTest {
+
+    @Test
+    public void shouldWriteEnrollmentsWithEventsAndDataValues() {
+        Map<String, String> dataValues = new LinkedHashMap<>();
+        dataValues.put("gXNu7zJBTDN", "no");
+        dataValues.put("jkEjtKqlJtN", "event value");
+        Event event = new Event("", "xhjKKwoq", "", "UoZQdIJuv1R", "m6Yfksc81Tg", "ofmUIu4tg",
+                "2018-10-11", "COMPLETED", "1", dataValues);
+        EnrollmentAPIPayLoad enrollment = new EnrollmentAPIPayLoad("", "xhjKKwoq", "UoZQdIJuv1R", "ofmUIu4tg",
+                "2018-10-11", "2018-10-11", "ACTIVE", "1", Collections.singletonList(event));
+
+        EnrollmentRequestBody body = new EnrollmentRequestBody(Collections.singletonList(enrollment),
+                Collections.singletonList("rleFtLk_1"), Event::getEvent, Event::getStatus);
+
+        String expected = "{\"enrollments\":[{" +
+                "\"enrollment\":\"rleFtLk_1\", " +
+                "\"trackedEntityInstance\":\"xhjKKwoq\", " +
+                "\"orgUnit\":\"ofmUIu4tg\", " +
+                "\"program\":\"UoZQdIJuv1R\", " +
+                "\"enrollmentDate\":\"2018-10-11\", " +
+                "\"incidentDate\":\"2018-10-11\", " +
+                "\"status\":\"ACTIVE\", " +
+                "\"events\":[{" +
+                    "\"event\":\"\", " +
+                    "\"trackedEntityInstance\":\"xhjKKwoq\", " +
+                    "\"enrollment\":\"\", " +
+                    "\"program\":\"UoZQdIJuv1R\", " +
+                    "\"programStage\":\"m6Yfksc81Tg\", " +
+                    "\"orgUnit\":\"ofmUIu4tg\", " +
+                    "\"eventDate\":\"2018-10-11\", " +
+                    "\"status\":\"COMPLETED\", " +
+                    "\"dataValues\":[" +
+                        "{\"dataElement\":\"gXNu7zJBTDN\", \"value\":\"no\"}," +
+                        "{\"dataElement\":\"jkEjtKqlJtN\", \"value\":\"event value\"}" +
+                    "]" +
+                "}]" +
+            "}]}";
+
+        assertEquals(expected, body.toJson());
+        assertEquals("1 enrollments with 1 events", body.toString());
+    }
+
+    @Test
+    public void shouldEscapeSpecialCharactersInValues() {
+        Map<String, String> dataValues = new LinkedHashMap<>();
+        dataValues.put("gXNu7zJBTDN", "line1\nline2\t\"quoted\" back\\slash \u0001");
+        Event event = new Event("", "xhjKKwoq", "", "UoZQdIJuv1R", "m6Yfksc81Tg", "ofmUIu4tg",
+                "2018-10-11", "COMPLETED", "1", dataValues);
+        EnrollmentAPIPayLoad enrollment = new EnrollmentAPIPayLoad("", "xhjKKwoq", "UoZQdIJuv1R", "ofmUIu4tg",
+                "2018-10-11", null, "ACTIVE", "1", Collections.singletonList(event));
+
+        String json = new EnrollmentRequestBody(Collections.singletonList(enrollment),
+                Collections.singletonList(""), Event::getEvent, Event::getStatus).toJson();
+
+        assertTrue(json.contains("\"incidentDate\":\"null\", "));
+        assertTrue(json.contains(
+                "\"value\":\"line1\\nline2\\t\\\"quoted\\\" back\\\\slash \\u0001\""));
+    }
+
+    @Test
+    public void shouldWriteEmptyEnrollmentsAndEvents() {
+        EnrollmentAPIPayLoad enrollment1 = new EnrollmentAPIPayLoad("", "xhjKKwoq", "UoZQdIJuv1R", "ofmUIu4tg",
+                "2018-10-11", "2018-10-11", "ACTIVE", "1", Collections.emptyList());
+        EnrollmentAPIPayLoad enrollment2 = new EnrollmentAPIPayLoad("", "KwoqxhjK", "UoZQdIJuv1R", "ofmUIu4tg",
+                "2018-10-12", "2018-10-12", "ACTIVE", "2", Collections.emptyList());
+
+        assertEquals("{\"enrollments\":[]}", new EnrollmentRequestBody(Collections.emptyList(),
+                Collections.emptyList(), Event::getEvent, Event::getStatus).toJson());
+        String expected = "{\"enrollments\":[" +
+                "{\"enrollment\":\"\", \"trackedEntityInstance\":\"xhjKKwoq\", \"orgUnit\":\"ofmUIu4tg\", " +
+                "\"program\":\"UoZQdIJuv1R\", \"enrollmentDate\":\"2018-10-11\", \"incidentDate\":\"2018-10-11\", " +
+                "\"status\":\"ACTIVE\", \"events\":[]}," +
+                "{\"enrollment\":\"\", \"trackedEntityInstance\":\"KwoqxhjK\", \"orgUnit\":\"ofmUIu4tg\", " +
+                "\"program\":\"UoZQdIJuv1R\", \"enrollmentDate\":\"2018-10-12\", \"incidentDate\":\"2018-10-12\", " +
+                "\"status\":\"ACTIVE\", \"events\":[]}" +
+            "]}";
+
+        assertEquals(expected, new EnrollmentRequestBody(Arrays.asList(enrollment1, enrollment2), Arrays.asList("", ""),
+                Event::getEvent, Event::getStatus).toJson());
+    }
+
+    @Test
+    public void shouldHaveIdsOnlyWhenEveryEnrollmentAndEventHasOne() {
+        Event event = new Event("ieVWNhBpsI2", "xhjKKwoq", "rleFtLk_1", "UoZQdIJuv1R", "m6Yfksc81Tg", "ofmUIu4tg",
+                "2018-10-11", "COMPLETED", "1", new LinkedHashMap<>());
+        Event newEvent = new Event("", "xhjKKwoq", "rleFtLk_1", "UoZQdIJuv1R", "m6Yfksc81Tg", "ofmUIu4tg",
+                "2018-10-12", "COMPLETED", "2", new LinkedHashMap<>());
+        EnrollmentAPIPayLoad enrollment = new EnrollmentAPIPayLoad("rleFtLk_1", "xhjKKwoq", "UoZQdIJuv1R", "ofmUIu4tg",
+                "2018-10-11", "2018-10-11", "ACTIVE", "1", Collections.singletonList(event));
+        EnrollmentAPIPayLoad withNewEvent = new EnrollmentAPIPayLoad("rleFtLk_1", "xhjKKwoq", "UoZQdIJuv1R",
+                "ofmUIu4tg", "2018-10-11", "2018-10-11", "ACTIVE", "1", Arrays.asList(event, newEvent));
+
+        assertTrue(new EnrollmentRequestBody(Collections.singletonList(enrollment),
+                Collections.singletonList("rleFtLk_1"), Event::getEvent, Event::getStatus).hasIds());
+        assertFalse(new EnrollmentRequestBody(Collections.singletonList(enrollment),
+                Collections.singletonList(""), Event::getEvent, Event::getStatus).hasIds());
+        assertFalse(new EnrollmentRequestBody(Collections.singletonList(withNewEvent),
+                Collections.singletonList("rleFtLk_1"), Event::getEvent, Event::getStatus).hasIds());
+        assertFalse(new EnrollmentRequestBody(Collections.singletonList(enrollment),
+                Collections.singletonList("rleFtLk_1"), newEventId -> "", Event::getStatus).hasIds());
+    }
+}
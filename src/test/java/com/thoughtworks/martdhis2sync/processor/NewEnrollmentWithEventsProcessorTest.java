@@ -5,6 +5,7 @@ import com.thoughtworks.martdhis2sync.model.EnrollmentAPIPayLoad;
 import com.thoughtworks.martdhis2sync.model.Event;
 import com.thoughtworks.martdhis2sync.model.ProcessedTableRow;
 import com.thoughtworks.martdhis2sync.util.BatchUtil;
+import com.thoughtworks.martdhis2sync.util.ColumnMapping;
 import com.thoughtworks.martdhis2sync.util.EnrollmentUtil;
 import com.thoughtworks.martdhis2sync.util.EventUtil;
 import org.junit.Before;
@@ -77,7 +78,7 @@ public class NewEnrollmentWithEventsProcessorTest {
         EventUtil.updateLatestEventDateCreated(eventDateCreated);
         doNothing().when(EnrollmentUtil.class);
         EnrollmentUtil.updateLatestEnrollmentDateCreated(enrollmentDateCreated);
-        when(EventUtil.getDataValues(tableRowObject, mappingJsonObj)).thenReturn(dataValues);
+        when(EventUtil.getDataValues(tableRowObject, ColumnMapping.compile(mappingJsonObj))).thenReturn(dataValues);
 
         processor.setMappingObj(mappingJsonObj);
 
@@ -100,7 +101,7 @@ public class NewEnrollmentWithEventsProcessorTest {
         EventUtil.updateLatestEventDateCreated("");
         doNothing().when(EnrollmentUtil.class);
         EnrollmentUtil.updateLatestEnrollmentDateCreated(enrollmentDateCreated);
-        when(EventUtil.getDataValues(tableRowObject, mappingJsonObj)).thenReturn(dataValues);
+        when(EventUtil.getDataValues(tableRowObject, ColumnMapping.compile(mappingJsonObj))).thenReturn(dataValues);
 
         processor.setMappingObj(mappingJsonObj);
 
@@ -135,7 +136,7 @@ public class NewEnrollmentWithEventsProcessorTest {
         EventUtil.updateLatestEventDateCreated(eventDateCreated);
         doNothing().when(EnrollmentUtil.class);
         EnrollmentUtil.updateLatestEnrollmentDateCreated(enrollmentDateCreated);
-        when(EventUtil.getDataValues(tableRowObject, mappingJsonObj)).thenReturn(dataValues);
+        when(EventUtil.getDataValues(tableRowObject, ColumnMapping.compile(mappingJsonObj))).thenReturn(dataValues);
 
         processor.setMappingObj(mappingJsonObj);
 
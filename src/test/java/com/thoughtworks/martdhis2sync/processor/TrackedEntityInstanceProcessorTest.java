@@ -4,7 +4,10 @@ import com.google.gson.JsonObject;
 import com.thoughtworks.martdhis2sync.model.Attribute;
 import com.thoughtworks.martdhis2sync.model.TrackedEntityInstanceInfo;
 import com.thoughtworks.martdhis2sync.util.BatchUtil;
+import com.thoughtworks.martdhis2sync.util.SyncContext;
 import com.thoughtworks.martdhis2sync.util.TEIUtil;
+import com.thoughtworks.martdhis2sync.util.TrackedEntityInstanceIndex;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -29,11 +32,12 @@ public class TrackedEntityInstanceProcessorTest {
     private TrackedEntityInstanceProcessor processor;
     private Date bahmniDate = new Date(Long.MIN_VALUE);
     private String dateCreated = "2018-02-02 13:46:23";
-    private List<String> dateTimeAttributes = new LinkedList();
+    private Set<String> dateTimeAttributes = new HashSet<>();
     private String dhisAcceptableDate = "2018-02-02T13:46:23";
 
     @Before
     public void setUp() throws Exception {
+        SyncContext.begin("HT Service");
         processor = new TrackedEntityInstanceProcessor();
         setValuesForMemberFields(processor, "teUID", "o0kaqrZaY");
         dateTimeAttributes.add("aQLSyCrOb34");
@@ -44,7 +48,7 @@ public class TrackedEntityInstanceProcessorTest {
         TEIUtil.setTrackedEntityInstanceInfos(getTrackedEntityInstances());
         processor.setSearchableAttributes(Collections.singletonList("UIC"));
         processor.setComparableAttributes(Arrays.asList("patient_id", "prepID"));
-        TEIUtil.date = teiDate;
+        SyncContext.current().setInstanceDate(teiDate);
 
         mockStatic(BatchUtil.class);
         when(getUnquotedString("\"" + dateCreated + "\"")).thenReturn(dateCreated);
@@ -56,6 +60,11 @@ public class TrackedEntityInstanceProcessorTest {
         when(TEIUtil.getAttributeOfTypeDateTime()).thenReturn(dateTimeAttributes);
     }
 
+    @After
+    public void tearDown() {
+        SyncContext.end();
+    }
+
     @Test
     public void shouldReturnTeiRequestBodyForAPatientAndShouldUpdateTEIUtilDateIfTheDateCreatedOfTheRecordIsGreater() {
         when(teiDate.compareTo(bahmniDate)).thenReturn(0);
@@ -66,7 +75,7 @@ public class TrackedEntityInstanceProcessorTest {
         mockVerify();
 
         assertEquals(getExpected(), actual);
-        assertEquals(bahmniDate, TEIUtil.date);
+        assertEquals(bahmniDate, SyncContext.current().getInstanceDate());
     }
 
     @Test
@@ -79,7 +88,7 @@ public class TrackedEntityInstanceProcessorTest {
         mockVerify();
 
         assertEquals(getExpected(), actual);
-        assertEquals(teiDate, TEIUtil.date);
+        assertEquals(teiDate, SyncContext.current().getInstanceDate());
     }
 
     @Test
@@ -94,12 +103,12 @@ public class TrackedEntityInstanceProcessorTest {
         mockVerify();
 
         assertEquals(getExpected(), actual);
-        assertEquals(teiDate, TEIUtil.date);
+        assertEquals(teiDate, SyncContext.current().getInstanceDate());
     }
 
     @Test
     public void shouldAddTheTrackedEntityInstanceIdToRequestBodyIfPatientAlreadyCreatedInDHISAndBahmniDidNotHaveAnyTEI() {
-        when(TEIUtil.getTrackedEntityInstanceInfos()).thenReturn(getTrackedEntityInstances());
+        when(TEIUtil.getTrackedEntityInstanceIndex()).thenReturn(getTrackedEntityInstanceIndex(getTrackedEntityInstances()));
 
         JsonObject tableRowObject = getTableRowObject();
         tableRowObject.addProperty("instance_id", "");
@@ -122,9 +131,9 @@ public class TrackedEntityInstanceProcessorTest {
         TEIUtil.getAttributeOfTypeDateTime();
         verifyStatic(times(1));
         BatchUtil.getQuotedString(dhisAcceptableDate);
-        verifyStatic(times(1));
+        verifyStatic(times(2));
         BatchUtil.getUnquotedString("\"rOb34aQLSyC\"");
-        verifyStatic(times(1));
+        verifyStatic(times(2));
         BatchUtil.getUnquotedString("\"aQLSyCrOb34\"");
         verifyStatic(times(2));
         BatchUtil.getUnquotedString("\"" + dateCreated + "\"");
@@ -136,7 +145,7 @@ public class TrackedEntityInstanceProcessorTest {
     public void shouldNotAddAnyTrackedEntityInstanceToTheRequestBodyIfPatientIsNotCreatedInDHIS() {
         List<TrackedEntityInstanceInfo> trackedEntityInstanceInfos = getTrackedEntityInstances();
         trackedEntityInstanceInfos.get(0).getAttributes().get(0).setValue("UIC00014");
-        when(TEIUtil.getTrackedEntityInstanceInfos()).thenReturn(trackedEntityInstanceInfos);
+        when(TEIUtil.getTrackedEntityInstanceIndex()).thenReturn(getTrackedEntityInstanceIndex(trackedEntityInstanceInfos));
 
         JsonObject tableRowObject = getTableRowObject();
         tableRowObject.addProperty("instance_id", "");
@@ -158,9 +167,9 @@ public class TrackedEntityInstanceProcessorTest {
         TEIUtil.getAttributeOfTypeDateTime();
         verifyStatic(times(1));
         BatchUtil.getQuotedString(dhisAcceptableDate);
-        verifyStatic(times(1));
+        verifyStatic(times(2));
         BatchUtil.getUnquotedString("\"rOb34aQLSyC\"");
-        verifyStatic(times(1));
+        verifyStatic(times(2));
         BatchUtil.getUnquotedString("\"aQLSyCrOb34\"");
         verifyStatic(times(2));
         BatchUtil.getUnquotedString("\"" + dateCreated + "\"");
@@ -170,7 +179,7 @@ public class TrackedEntityInstanceProcessorTest {
 
     @Test
     public void shouldNotAddAnyTrackedEntityInstanceToRequestBodyIfPatientSearchableAttributeIsMatchingButComparableAttributesAreNot() {
-        when(TEIUtil.getTrackedEntityInstanceInfos()).thenReturn(getTrackedEntityInstances());
+        when(TEIUtil.getTrackedEntityInstanceIndex()).thenReturn(getTrackedEntityInstanceIndex(getTrackedEntityInstances()));
 
         JsonObject tableRowObject = getTableRowObject();
         tableRowObject.addProperty("instance_id", "");
@@ -192,9 +201,9 @@ public class TrackedEntityInstanceProcessorTest {
         TEIUtil.getAttributeOfTypeDateTime();
         verifyStatic(times(1));
         BatchUtil.getQuotedString(dhisAcceptableDate);
-        verifyStatic(times(1));
+        verifyStatic(times(2));
         BatchUtil.getUnquotedString("\"rOb34aQLSyC\"");
-        verifyStatic(times(1));
+        verifyStatic(times(2));
         BatchUtil.getUnquotedString("\"aQLSyCrOb34\"");
         verifyStatic(times(2));
         BatchUtil.getUnquotedString("\"" + dateCreated + "\"");
@@ -213,9 +222,9 @@ public class TrackedEntityInstanceProcessorTest {
         TEIUtil.getAttributeOfTypeDateTime();
         verifyStatic(times(1));
         BatchUtil.getQuotedString(dhisAcceptableDate);
-        verifyStatic(times(1));
+        verifyStatic(times(2));
         BatchUtil.getUnquotedString("\"rOb34aQLSyC\"");
-        verifyStatic(times(1));
+        verifyStatic(times(2));
         BatchUtil.getUnquotedString("\"aQLSyCrOb34\"");
         verifyStatic(times(2));
         BatchUtil.getUnquotedString("\"" + dateCreated + "\"");
@@ -231,6 +240,10 @@ public class TrackedEntityInstanceProcessorTest {
         return mappingJsonObj;
     }
 
+    private TrackedEntityInstanceIndex getTrackedEntityInstanceIndex(List<TrackedEntityInstanceInfo> instances) {
+        return new TrackedEntityInstanceIndex(Collections.singletonList("rOb34aQLSyC"), instances);
+    }
+
     private List<TrackedEntityInstanceInfo> getTrackedEntityInstances() {
         LinkedList<TrackedEntityInstanceInfo> trackedEntityInstanceInfos = new LinkedList<>();
         List<Attribute> attributesOfPatient1 = new LinkedList<>();
@@ -5,6 +5,7 @@ import com.thoughtworks.martdhis2sync.model.EnrollmentAPIPayLoad;
 import com.thoughtworks.martdhis2sync.model.Event;
 import com.thoughtworks.martdhis2sync.model.ProcessedTableRow;
 import com.thoughtworks.martdhis2sync.util.BatchUtil;
+import com.thoughtworks.martdhis2sync.util.ColumnMapping;
 import com.thoughtworks.martdhis2sync.util.EnrollmentUtil;
 import com.thoughtworks.martdhis2sync.util.EventUtil;
 import org.junit.Before;
@@ -80,7 +81,7 @@ public class UpdatedEnrollmentWithEventsProcessorTest {
         EventUtil.updateLatestEventDateCreated(eventDateCreated);
         doNothing().when(EnrollmentUtil.class);
         EnrollmentUtil.updateLatestEnrollmentDateCreated(enrollmentDateCreated);
-        when(EventUtil.getDataValues(tableRowObject, mappingJsonObj)).thenReturn(dataValues);
+        when(EventUtil.getDataValues(tableRowObject, ColumnMapping.compile(mappingJsonObj))).thenReturn(dataValues);
 
         processor.setMappingObj(mappingJsonObj);
 
@@ -105,7 +106,7 @@ public class UpdatedEnrollmentWithEventsProcessorTest {
         EventUtil.updateLatestEventDateCreated(eventDateCreated);
         doNothing().when(EnrollmentUtil.class);
         EnrollmentUtil.updateLatestEnrollmentDateCreated(enrollmentDateCreated);
-        when(EventUtil.getDataValues(tableRowObject, mappingJsonObj)).thenReturn(dataValues);
+        when(EventUtil.getDataValues(tableRowObject, ColumnMapping.compile(mappingJsonObj))).thenReturn(dataValues);
 
         processor.setMappingObj(mappingJsonObj);
 
@@ -128,7 +129,7 @@ public class UpdatedEnrollmentWithEventsProcessorTest {
         EventUtil.updateLatestEventDateCreated(eventDateCreated);
         doNothing().when(EnrollmentUtil.class);
         EnrollmentUtil.updateLatestEnrollmentDateCreated(enrollmentDateCreated);
-        when(EventUtil.getDataValues(tableRowObject, mappingJsonObj)).thenReturn(dataValues);
+        when(EventUtil.getDataValues(tableRowObject, ColumnMapping.compile(mappingJsonObj))).thenReturn(dataValues);
         when(hasValue(getTableRowObjectWithEvent().get("enrolled_program"))).thenReturn(true);
 
         processor.setMappingObj(mappingJsonObj);
@@ -169,7 +170,7 @@ public class UpdatedEnrollmentWithEventsProcessorTest {
         EventUtil.updateLatestEventDateCreated(eventDateCreated);
         doNothing().when(EnrollmentUtil.class);
         EnrollmentUtil.updateLatestEnrollmentDateCreated(enrollmentDateCreated);
-        when(EventUtil.getDataValues(tableRowObject, mappingJsonObj)).thenReturn(dataValues);
+        when(EventUtil.getDataValues(tableRowObject, ColumnMapping.compile(mappingJsonObj))).thenReturn(dataValues);
         when(hasValue(getTableRowObjectWithEvent().get("enrolled_program"))).thenReturn(true);
         when(hasValue(getTableRowObjectWithEvent().get("enrollment_status"))).thenReturn(false);
 
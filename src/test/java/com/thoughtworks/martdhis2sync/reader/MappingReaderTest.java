@@ -1,8 +1,8 @@
 package com.thoughtworks.martdhis2sync.reader;
 
 import com.thoughtworks.martdhis2sync.model.EnrollmentAPIPayLoad;
-import com.thoughtworks.martdhis2sync.util.BatchUtil;
 import com.thoughtworks.martdhis2sync.util.EnrollmentUtil;
+import com.thoughtworks.martdhis2sync.util.SqlTemplateRegistry;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -10,26 +10,32 @@ import org.mockito.Mock;
 import org.powermock.core.classloader.annotations.PowerMockIgnore;
 import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
-import org.slf4j.Logger;
 import org.springframework.batch.item.database.JdbcCursorItemReader;
-import org.springframework.core.io.Resource;
 import org.springframework.jdbc.core.ColumnMapRowMapper;
 
 import javax.sql.DataSource;
-import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Map;
 
 import static com.thoughtworks.martdhis2sync.CommonTestHelper.setValuesForMemberFields;
+import static com.thoughtworks.martdhis2sync.util.SqlTemplateRegistry.EVENT_READER;
+import static com.thoughtworks.martdhis2sync.util.SqlTemplateRegistry.INSTANCE_PARTITION_READER;
+import static com.thoughtworks.martdhis2sync.util.SqlTemplateRegistry.INSTANCE_READER;
+import static com.thoughtworks.martdhis2sync.util.SqlTemplateRegistry.NEW_ACTIVE_ENROLLMENT_WITH_EVENTS;
+import static com.thoughtworks.martdhis2sync.util.SqlTemplateRegistry.NEW_COMPLETED_ENROLLMENT_WITH_EVENTS;
+import static com.thoughtworks.martdhis2sync.util.SqlTemplateRegistry.UPDATED_ACTIVE_ENROLLMENT_WITH_EVENTS;
+import static com.thoughtworks.martdhis2sync.util.SqlTemplateRegistry.UPDATED_COMPLETED_ENROLLMENT_WITH_EVENTS;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.powermock.api.mockito.PowerMockito.doNothing;
-import static org.powermock.api.mockito.PowerMockito.mockStatic;
 import static org.powermock.api.mockito.PowerMockito.when;
 import static org.powermock.api.mockito.PowerMockito.whenNew;
 
 @RunWith(PowerMockRunner.class)
-@PrepareForTest({MappingReader.class, BatchUtil.class})
+@PrepareForTest({MappingReader.class})
 @PowerMockIgnore("javax.management.*")
 public class MappingReaderTest {
 
@@ -37,16 +43,13 @@ public class MappingReaderTest {
     private DataSource dataSource;
 
     @Mock
-    private JdbcCursorItemReader jdbcCursorItemReader;
+    private StreamingCursorItemReader jdbcCursorItemReader;
 
     @Mock
     private ColumnMapRowMapper columnMapRowMapper;
 
     @Mock
-    private Resource resource;
-
-    @Mock
-    private Logger logger;
+    private SqlTemplateRegistry sqlTemplates;
 
     private MappingReader mappingReader;
 
@@ -56,14 +59,8 @@ public class MappingReaderTest {
     public void setUp() throws Exception {
         mappingReader = new MappingReader();
         setValuesForMemberFields(mappingReader, "dataSource", dataSource);
-        setValuesForMemberFields(mappingReader, "instanceResource", resource);
-        setValuesForMemberFields(mappingReader, "enrollmentResource", resource);
-        setValuesForMemberFields(mappingReader, "eventResource", resource);
-        setValuesForMemberFields(mappingReader, "newCompletedEnrWithEventsResource", resource);
-        setValuesForMemberFields(mappingReader, "updatedCompletedEnrWithEventsResource", resource);
-        setValuesForMemberFields(mappingReader, "newActiveEnrWithEventsResource", resource);
-        setValuesForMemberFields(mappingReader, "updatedActiveEnrWithEventsResource", resource);
-        mockStatic(BatchUtil.class);
+        setValuesForMemberFields(mappingReader, "fetchSize", 1000);
+        setValuesForMemberFields(mappingReader, "sqlTemplates", sqlTemplates);
     }
 
     @Test
@@ -74,12 +71,11 @@ public class MappingReaderTest {
                         "FROM patient_identifier lt LEFT join instance_tracker i ON  lt.\"Patient_Identifier\" = i.patient_id " +
                         "WHERE date_created > COALESCE((SELECT last_synced_date\n" +
                         "                                    FROM marker\n" +
-                        "                                    WHERE category='instance' AND program_name='%s'), '-infinity');",
-                programName);
+                        "                                    WHERE category='instance' AND program_name=?), '-infinity');");
 
-        whenNew(JdbcCursorItemReader.class).withNoArguments().thenReturn(jdbcCursorItemReader);
+        whenNew(StreamingCursorItemReader.class).withNoArguments().thenReturn(jdbcCursorItemReader);
         whenNew(ColumnMapRowMapper.class).withNoArguments().thenReturn(columnMapRowMapper);
-        when(BatchUtil.convertResourceOutputToString(resource)).thenReturn(sql);
+        when(sqlTemplates.get(INSTANCE_READER)).thenReturn(sql);
         doNothing().when(jdbcCursorItemReader).setDataSource(dataSource);
         doNothing().when(jdbcCursorItemReader).setSql(sql);
         doNothing().when(jdbcCursorItemReader).setRowMapper(columnMapRowMapper);
@@ -89,61 +85,37 @@ public class MappingReaderTest {
         assertEquals(jdbcCursorItemReader, actual);
 
         verify(jdbcCursorItemReader, times(1)).setDataSource(dataSource);
+        verify(jdbcCursorItemReader, times(1)).setFetchSize(1000);
         verify(jdbcCursorItemReader, times(1)).setSql(sql);
         verify(jdbcCursorItemReader, times(1)).setRowMapper(columnMapRowMapper);
+        verify(jdbcCursorItemReader, times(1)).setPreparedStatementSetter(new QueryParameterSetter(programName));
     }
 
     @Test
-    public void shouldLogWhenResourceCanNotBeConvertedToString() throws Exception {
+    public void shouldReturnInstanceReaderForOnePartitionOfTheDelta() throws Exception {
         String lookupTable = "patient_identifier";
 
-        setValuesForMemberFields(mappingReader, "logger", logger);
-        whenNew(JdbcCursorItemReader.class).withNoArguments().thenReturn(jdbcCursorItemReader);
-        when(BatchUtil.convertResourceOutputToString(resource))
-                .thenThrow(new IOException("Could not convert sql file to string"));
+        String sqlTemplate = "SELECT lt.* FROM %s lt WHERE lt.date_created > COALESCE((SELECT last_synced_date " +
+                "FROM marker WHERE category='instance' AND program_name=?), '-infinity') " +
+                "AND mod(abs(hashtext(COALESCE(lt.%s::TEXT, ''))::BIGINT), ?) = ?;";
+        String sql = "SELECT lt.* FROM patient_identifier lt WHERE lt.date_created > COALESCE((SELECT last_synced_date " +
+                "FROM marker WHERE category='instance' AND program_name=?), '-infinity') " +
+                "AND mod(abs(hashtext(COALESCE(lt.\"OrgUnit\"::TEXT, ''))::BIGINT), ?) = ?;";
 
-        try {
-            mappingReader.getInstanceReader(lookupTable, programName);
-        } catch (Exception e) {
-            verify(logger, times(1))
-                    .error("Error in converting sql to string : Could not convert sql file to string");
-        }
-    }
-
-    @Test
-    public void shouldReturnReaderForProgramEnrollment() throws Exception {
-        String lookupTable = "programs";
-
-        String sql = String.format("SELECT mappedTable. *, insTracker.instance_id, orgTracker.id as orgunit_id,\n" +
-                "  CASE WHEN enrTracker.enrollment_id is NULL THEN '' ELSE enrTracker.enrollment_id END AS enrollment_id\n" +
-                        "FROM %s mappedTable\n" +
-                        "INNER JOIN instance_tracker insTracker\n" +
-                        "  ON insTracker.patient_id = mappedTable.\"Patient_Identifier\"\n" +
-                        "INNER JOIN orgunit_tracker orgTracker\n" +
-                        "  ON orgTracker.orgUnit = mappedTable.\"OrgUnit\"\n" +
-                        "LEFT JOIN enrollment_tracker enrTracker\n" +
-                        "  ON mappedTable.program = enrTracker.program\n" +
-                        "    AND enrTracker.instance_id = insTracker.instance_id\n" +
-                        "    AND enrTracker.program_unique_id = mappedTable.program_unique_id\n" +
-                        "  WHERE mappedTable.date_created > COALESCE((SELECT last_synced_date\n" +
-                        "                                    FROM marker\n" +
-                        "                                    WHERE category='enrollment' AND program_name='%s'), '-infinity');\n",
-                        lookupTable, programName);
-
-        whenNew(JdbcCursorItemReader.class).withNoArguments().thenReturn(jdbcCursorItemReader);
+        whenNew(StreamingCursorItemReader.class).withNoArguments().thenReturn(jdbcCursorItemReader);
         whenNew(ColumnMapRowMapper.class).withNoArguments().thenReturn(columnMapRowMapper);
-        when(BatchUtil.convertResourceOutputToString(resource)).thenReturn(sql);
-        doNothing().when(jdbcCursorItemReader).setDataSource(dataSource);
-        doNothing().when(jdbcCursorItemReader).setSql(sql);
-        doNothing().when(jdbcCursorItemReader).setRowMapper(columnMapRowMapper);
+        when(sqlTemplates.get(INSTANCE_PARTITION_READER)).thenReturn(sqlTemplate);
 
-        JdbcCursorItemReader<Map<String, Object>> actual = mappingReader.getEnrollmentReader(lookupTable, programName);
+        JdbcCursorItemReader<Map<String, Object>> actual =
+                mappingReader.getInstancePartitionReader(lookupTable, programName, "OrgUnit", 1, 4);
 
         assertEquals(jdbcCursorItemReader, actual);
 
         verify(jdbcCursorItemReader, times(1)).setDataSource(dataSource);
+        verify(jdbcCursorItemReader, times(1)).setFetchSize(1000);
         verify(jdbcCursorItemReader, times(1)).setSql(sql);
         verify(jdbcCursorItemReader, times(1)).setRowMapper(columnMapRowMapper);
+        verify(jdbcCursorItemReader, times(1)).setPreparedStatementSetter(new QueryParameterSetter(programName, 4, 1));
     }
 
     @Test
@@ -167,12 +139,12 @@ public class MappingReaderTest {
                         "  AND event.program = event_tracker.program\n" +
                         "WHERE event.date_created > COALESCE((SELECT last_synced_date\n" +
                         "  FROM marker\n" +
-                        "  WHERE category='event' AND program_name='%s'), '-infinity');",
-                        lookupTable, enrollmentLookupTable, programName);
+                        "  WHERE category='event' AND program_name=?), '-infinity');",
+                        lookupTable, enrollmentLookupTable);
 
-        whenNew(JdbcCursorItemReader.class).withNoArguments().thenReturn(jdbcCursorItemReader);
+        whenNew(StreamingCursorItemReader.class).withNoArguments().thenReturn(jdbcCursorItemReader);
         whenNew(ColumnMapRowMapper.class).withNoArguments().thenReturn(columnMapRowMapper);
-        when(BatchUtil.convertResourceOutputToString(resource)).thenReturn(sql);
+        when(sqlTemplates.get(EVENT_READER)).thenReturn(sql);
         doNothing().when(jdbcCursorItemReader).setDataSource(dataSource);
         doNothing().when(jdbcCursorItemReader).setSql(sql);
         doNothing().when(jdbcCursorItemReader).setRowMapper(columnMapRowMapper);
@@ -182,8 +154,10 @@ public class MappingReaderTest {
         assertEquals(jdbcCursorItemReader, actual);
 
         verify(jdbcCursorItemReader, times(1)).setDataSource(dataSource);
+        verify(jdbcCursorItemReader, times(1)).setFetchSize(1000);
         verify(jdbcCursorItemReader, times(1)).setSql(sql);
         verify(jdbcCursorItemReader, times(1)).setRowMapper(columnMapRowMapper);
+        verify(jdbcCursorItemReader, times(1)).setPreparedStatementSetter(new QueryParameterSetter(programName));
     }
 
     @Test
@@ -206,15 +180,15 @@ public class MappingReaderTest {
                         "         ON enrTable.program = enrTracker.program AND enrTracker.instance_id = insTracker.instance_id\n" +
                         "              AND enrTracker.program_unique_id = enrTable.program_unique_id :: text\n" +
                         "WHERE enrTable.date_created :: TIMESTAMP > COALESCE((SELECT last_synced_date FROM marker WHERE category = 'enrollment'\n" +
-                        "                                                                                           AND program_name = '%s'),\n" +
+                        "                                                                                           AND program_name = ?),\n" +
                         "                                                    '-infinity')\n" +
                         "  AND enrTable.status = 'COMPLETED'\n" +
                         "  AND enrTracker.instance_id IS NULL;\n",
-                enrollmentLookupTable, eventLookupTable, programName);
+                enrollmentLookupTable, eventLookupTable);
 
-        whenNew(JdbcCursorItemReader.class).withNoArguments().thenReturn(jdbcCursorItemReader);
+        whenNew(StreamingCursorItemReader.class).withNoArguments().thenReturn(jdbcCursorItemReader);
         whenNew(ColumnMapRowMapper.class).withNoArguments().thenReturn(columnMapRowMapper);
-        when(BatchUtil.convertResourceOutputToString(resource)).thenReturn(sql);
+        when(sqlTemplates.get(NEW_COMPLETED_ENROLLMENT_WITH_EVENTS)).thenReturn(sql);
         doNothing().when(jdbcCursorItemReader).setDataSource(dataSource);
         doNothing().when(jdbcCursorItemReader).setSql(sql);
         doNothing().when(jdbcCursorItemReader).setRowMapper(columnMapRowMapper);
@@ -224,8 +198,10 @@ public class MappingReaderTest {
         assertEquals(jdbcCursorItemReader, actual);
 
         verify(jdbcCursorItemReader, times(1)).setDataSource(dataSource);
+        verify(jdbcCursorItemReader, times(1)).setFetchSize(1000);
         verify(jdbcCursorItemReader, times(1)).setSql(sql);
         verify(jdbcCursorItemReader, times(1)).setRowMapper(columnMapRowMapper);
+        verify(jdbcCursorItemReader, times(1)).setPreparedStatementSetter(new QueryParameterSetter(programName));
     }
 
     @Test
@@ -260,14 +236,14 @@ public class MappingReaderTest {
                 "      FROM %s enrTable\n" +
                 "        INNER JOIN marker enrollment_marker\n" +
                 "          ON enrTable.date_created :: TIMESTAMP > COALESCE(enrollment_marker.last_synced_date, '-infinity')\n" +
-                "             AND category = 'enrollment' AND program_name = '%s') AS enrollmentsTable\n" +
+                "             AND category = 'enrollment' AND program_name = ?) AS enrollmentsTable\n" +
                 "  FULL OUTER JOIN (SELECT evnTable.*, enrollments.program_unique_id AS event_program_unique_id\n" +
                 "                   FROM %s evnTable\n" +
                 "                     INNER JOIN %s enrollments ON evnTable.\"Patient_Identifier\" = enrollments.\"Patient_Identifier\"\n" +
                 "                              AND evnTable.enrollment_date = enrollments.enrollment_date\n" +
                 "                     INNER JOIN marker event_marker\n" +
                 "                       ON evnTable.date_created :: TIMESTAMP > COALESCE(event_marker.last_synced_date, '-infinity')\n" +
-                "                          AND category = 'event' AND program_name = '%s') AS eventsTable\n" +
+                "                          AND category = 'event' AND program_name = ?) AS eventsTable\n" +
                 "    ON enrollmentsTable.\"Patient_Identifier\" = eventsTable.\"Patient_Identifier\"\n" +
                 "       AND eventsTable.enrollment_date = enrollmentsTable.enrollment_date\n" +
                 "  INNER JOIN orgunit_tracker orgTracker ON COALESCE(eventsTable.\"OrgUnit\", enrollmentsTable.\"OrgUnit\") = orgTracker.orgunit\n" +
@@ -280,7 +256,8 @@ public class MappingReaderTest {
                 "                                         AND eventsTable.program = evntTracker.program\n" +
                 "                                         AND eventsTable.program_stage = evntTracker.program_stage\n" +
                 "WHERE (enrollmentsTable.status = 'COMPLETED' OR enrollmentsTable.status = 'CANCELLED')\n" +
-                "                                            AND enrolTracker.instance_id IS NOT NULL %s;\n";
+                "                                            AND enrolTracker.instance_id IS NOT NULL AND (?::TEXT[] IS NULL OR EXISTS(SELECT 1 FROM unnest(?::TEXT[]) AS partitioned(enrollment_id) " +
+                "WHERE partitioned.enrollment_id = enrolTracker.enrollment_id));\n";
 
         String formattedSql = "SELECT\n" +
                 "  enrollmentsTable.incident_date,\n" +
@@ -299,14 +276,14 @@ public class MappingReaderTest {
                 "      FROM enrollment enrTable\n" +
                 "        INNER JOIN marker enrollment_marker\n" +
                 "          ON enrTable.date_created :: TIMESTAMP > COALESCE(enrollment_marker.last_synced_date, '-infinity')\n" +
-                "             AND category = 'enrollment' AND program_name = 'HTS Service') AS enrollmentsTable\n" +
+                "             AND category = 'enrollment' AND program_name = ?) AS enrollmentsTable\n" +
                 "  FULL OUTER JOIN (SELECT evnTable.*, enrollments.program_unique_id AS event_program_unique_id\n" +
                 "                   FROM event evnTable\n" +
                 "                     INNER JOIN enrollment enrollments ON evnTable.\"Patient_Identifier\" = enrollments.\"Patient_Identifier\"\n" +
                 "                              AND evnTable.enrollment_date = enrollments.enrollment_date\n" +
                 "                     INNER JOIN marker event_marker\n" +
                 "                       ON evnTable.date_created :: TIMESTAMP > COALESCE(event_marker.last_synced_date, '-infinity')\n" +
-                "                          AND category = 'event' AND program_name = 'HTS Service') AS eventsTable\n" +
+                "                          AND category = 'event' AND program_name = ?) AS eventsTable\n" +
                 "    ON enrollmentsTable.\"Patient_Identifier\" = eventsTable.\"Patient_Identifier\"\n" +
                 "       AND eventsTable.enrollment_date = enrollmentsTable.enrollment_date\n" +
                 "  INNER JOIN orgunit_tracker orgTracker ON COALESCE(eventsTable.\"OrgUnit\", enrollmentsTable.\"OrgUnit\") = orgTracker.orgunit\n" +
@@ -319,21 +296,25 @@ public class MappingReaderTest {
                 "                                         AND eventsTable.program = evntTracker.program\n" +
                 "                                         AND eventsTable.program_stage = evntTracker.program_stage\n" +
                 "WHERE (enrollmentsTable.status = 'COMPLETED' OR enrollmentsTable.status = 'CANCELLED')\n" +
-                "                                            AND enrolTracker.instance_id IS NOT NULL AND enrolTracker.enrollment_id NOT IN ('NAH0000000009','NAH0000000004','NAH0000000004');\n";
-        whenNew(JdbcCursorItemReader.class).withNoArguments().thenReturn(jdbcCursorItemReader);
+                "                                            AND enrolTracker.instance_id IS NOT NULL AND (?::TEXT[] IS NULL OR EXISTS(SELECT 1 FROM unnest(?::TEXT[]) AS partitioned(enrollment_id) " +
+                "WHERE partitioned.enrollment_id = enrolTracker.enrollment_id));\n";
+        whenNew(StreamingCursorItemReader.class).withNoArguments().thenReturn(jdbcCursorItemReader);
         whenNew(ColumnMapRowMapper.class).withNoArguments().thenReturn(columnMapRowMapper);
-        when(BatchUtil.convertResourceOutputToString(resource)).thenReturn(sql);
+        when(sqlTemplates.get(UPDATED_COMPLETED_ENROLLMENT_WITH_EVENTS)).thenReturn(sql);
         doNothing().when(jdbcCursorItemReader).setDataSource(dataSource);
         doNothing().when(jdbcCursorItemReader).setSql(formattedSql);
         doNothing().when(jdbcCursorItemReader).setRowMapper(columnMapRowMapper);
 
-        JdbcCursorItemReader<Map<String, Object>> actual = mappingReader.getUpdatedCompletedEnrollmentWithEventsReader(enrollmentLookupTable, programName, eventLookupTable, EnrollmentUtil.enrollmentsToSaveInTracker);
+        JdbcCursorItemReader<Map<String, Object>> actual = mappingReader.getUpdatedCompletedEnrollmentWithEventsReader(enrollmentLookupTable, programName, eventLookupTable, EnrollmentUtil.enrollmentsToSaveInTracker, null);
 
         assertEquals(jdbcCursorItemReader, actual);
 
         verify(jdbcCursorItemReader, times(1)).setDataSource(dataSource);
+        verify(jdbcCursorItemReader, times(1)).setFetchSize(1000);
         verify(jdbcCursorItemReader, times(1)).setSql(formattedSql);
         verify(jdbcCursorItemReader, times(1)).setRowMapper(columnMapRowMapper);
+        verify(jdbcCursorItemReader, times(1)).setPreparedStatementSetter(new QueryParameterSetter(programName, programName,
+                new Object[]{"NAH0000000009", "NAH0000000004"}, null, null));
         EnrollmentUtil.enrollmentsToSaveInTracker.clear();
     }
 
@@ -360,14 +341,14 @@ public class MappingReaderTest {
                 "      FROM %s enrTable\n" +
                 "        INNER JOIN marker enrollment_marker\n" +
                 "          ON enrTable.date_created :: TIMESTAMP > COALESCE(enrollment_marker.last_synced_date, '-infinity')\n" +
-                "             AND category = 'enrollment' AND program_name = '%s') AS enrollmentsTable\n" +
+                "             AND category = 'enrollment' AND program_name = ?) AS enrollmentsTable\n" +
                 "  FULL OUTER JOIN (SELECT evnTable.*, enrollments.program_unique_id AS event_program_unique_id\n" +
                 "                   FROM %s evnTable\n" +
                 "                     INNER JOIN %s enrollments ON evnTable.\"Patient_Identifier\" = enrollments.\"Patient_Identifier\"\n" +
                 "                              AND evnTable.enrollment_date = enrollments.enrollment_date\n" +
                 "                     INNER JOIN marker event_marker\n" +
                 "                       ON evnTable.date_created :: TIMESTAMP > COALESCE(event_marker.last_synced_date, '-infinity')\n" +
-                "                          AND category = 'event' AND program_name = '%s') AS eventsTable\n" +
+                "                          AND category = 'event' AND program_name = ?) AS eventsTable\n" +
                 "    ON enrollmentsTable.\"Patient_Identifier\" = eventsTable.\"Patient_Identifier\"\n" +
                 "       AND eventsTable.enrollment_date = enrollmentsTable.enrollment_date\n" +
                 "  INNER JOIN orgunit_tracker orgTracker ON COALESCE(eventsTable.\"OrgUnit\", enrollmentsTable.\"OrgUnit\") = orgTracker.orgunit\n" +
@@ -380,7 +361,8 @@ public class MappingReaderTest {
                 "                                         AND eventsTable.program = evntTracker.program\n" +
                 "                                         AND eventsTable.program_stage = evntTracker.program_stage\n" +
                 "WHERE (enrollmentsTable.status = 'COMPLETED' OR enrollmentsTable.status = 'CANCELLED')\n" +
-                "                                            AND enrolTracker.instance_id IS NOT NULL %s;\n";
+                "                                            AND enrolTracker.instance_id IS NOT NULL AND (?::TEXT[] IS NULL OR EXISTS(SELECT 1 FROM unnest(?::TEXT[]) AS partitioned(enrollment_id) " +
+                "WHERE partitioned.enrollment_id = enrolTracker.enrollment_id));\n";
 
         String formattedSql = "SELECT\n" +
                 "  enrollmentsTable.incident_date,\n" +
@@ -399,14 +381,14 @@ public class MappingReaderTest {
                 "      FROM enrollment enrTable\n" +
                 "        INNER JOIN marker enrollment_marker\n" +
                 "          ON enrTable.date_created :: TIMESTAMP > COALESCE(enrollment_marker.last_synced_date, '-infinity')\n" +
-                "             AND category = 'enrollment' AND program_name = 'HTS Service') AS enrollmentsTable\n" +
+                "             AND category = 'enrollment' AND program_name = ?) AS enrollmentsTable\n" +
                 "  FULL OUTER JOIN (SELECT evnTable.*, enrollments.program_unique_id AS event_program_unique_id\n" +
                 "                   FROM event evnTable\n" +
                 "                     INNER JOIN enrollment enrollments ON evnTable.\"Patient_Identifier\" = enrollments.\"Patient_Identifier\"\n" +
                 "                              AND evnTable.enrollment_date = enrollments.enrollment_date\n" +
                 "                     INNER JOIN marker event_marker\n" +
                 "                       ON evnTable.date_created :: TIMESTAMP > COALESCE(event_marker.last_synced_date, '-infinity')\n" +
-                "                          AND category = 'event' AND program_name = 'HTS Service') AS eventsTable\n" +
+                "                          AND category = 'event' AND program_name = ?) AS eventsTable\n" +
                 "    ON enrollmentsTable.\"Patient_Identifier\" = eventsTable.\"Patient_Identifier\"\n" +
                 "       AND eventsTable.enrollment_date = enrollmentsTable.enrollment_date\n" +
                 "  INNER JOIN orgunit_tracker orgTracker ON COALESCE(eventsTable.\"OrgUnit\", enrollmentsTable.\"OrgUnit\") = orgTracker.orgunit\n" +
@@ -419,21 +401,25 @@ public class MappingReaderTest {
                 "                                         AND eventsTable.program = evntTracker.program\n" +
                 "                                         AND eventsTable.program_stage = evntTracker.program_stage\n" +
                 "WHERE (enrollmentsTable.status = 'COMPLETED' OR enrollmentsTable.status = 'CANCELLED')\n" +
-                "                                            AND enrolTracker.instance_id IS NOT NULL ;\n";
-        whenNew(JdbcCursorItemReader.class).withNoArguments().thenReturn(jdbcCursorItemReader);
+                "                                            AND enrolTracker.instance_id IS NOT NULL AND (?::TEXT[] IS NULL OR EXISTS(SELECT 1 FROM unnest(?::TEXT[]) AS partitioned(enrollment_id) " +
+                "WHERE partitioned.enrollment_id = enrolTracker.enrollment_id));\n";
+        whenNew(StreamingCursorItemReader.class).withNoArguments().thenReturn(jdbcCursorItemReader);
         whenNew(ColumnMapRowMapper.class).withNoArguments().thenReturn(columnMapRowMapper);
-        when(BatchUtil.convertResourceOutputToString(resource)).thenReturn(sql);
+        when(sqlTemplates.get(UPDATED_COMPLETED_ENROLLMENT_WITH_EVENTS)).thenReturn(sql);
         doNothing().when(jdbcCursorItemReader).setDataSource(dataSource);
         doNothing().when(jdbcCursorItemReader).setSql(formattedSql);
         doNothing().when(jdbcCursorItemReader).setRowMapper(columnMapRowMapper);
 
-        JdbcCursorItemReader<Map<String, Object>> actual = mappingReader.getUpdatedCompletedEnrollmentWithEventsReader(enrollmentLookupTable, programName, eventLookupTable, EnrollmentUtil.enrollmentsToSaveInTracker);
+        JdbcCursorItemReader<Map<String, Object>> actual = mappingReader.getUpdatedCompletedEnrollmentWithEventsReader(enrollmentLookupTable, programName, eventLookupTable, EnrollmentUtil.enrollmentsToSaveInTracker, null);
 
         assertEquals(jdbcCursorItemReader, actual);
 
         verify(jdbcCursorItemReader, times(1)).setDataSource(dataSource);
+        verify(jdbcCursorItemReader, times(1)).setFetchSize(1000);
         verify(jdbcCursorItemReader, times(1)).setSql(formattedSql);
         verify(jdbcCursorItemReader, times(1)).setRowMapper(columnMapRowMapper);
+        verify(jdbcCursorItemReader, times(1)).setPreparedStatementSetter(new QueryParameterSetter(programName, programName,
+                new Object[]{}, null, null));
         EnrollmentUtil.enrollmentsToSaveInTracker.clear();
     }
 
@@ -461,15 +447,15 @@ public class MappingReaderTest {
                         "         ON enrTable.program = enrTracker.program AND enrTracker.instance_id = insTracker.instance_id\n" +
                         "              AND enrTracker.program_unique_id = enrTable.program_unique_id :: text\n" +
                         "WHERE enrTable.date_created :: TIMESTAMP > COALESCE((SELECT last_synced_date FROM marker WHERE category = 'enrollment'\n" +
-                        "                                                                                           AND program_name = '%s'),\n" +
+                        "                                                                                           AND program_name = ?),\n" +
                         "                                                    '-infinity')\n" +
                         "  AND enrTracker.instance_id IS NULL\n" +
                         "  AND enrTable.status = 'ACTIVE';\n",
-                enrollmentLookupTable, eventLookupTable, programName);
+                enrollmentLookupTable, eventLookupTable);
 
-        whenNew(JdbcCursorItemReader.class).withNoArguments().thenReturn(jdbcCursorItemReader);
+        whenNew(StreamingCursorItemReader.class).withNoArguments().thenReturn(jdbcCursorItemReader);
         whenNew(ColumnMapRowMapper.class).withNoArguments().thenReturn(columnMapRowMapper);
-        when(BatchUtil.convertResourceOutputToString(resource)).thenReturn(sql);
+        when(sqlTemplates.get(NEW_ACTIVE_ENROLLMENT_WITH_EVENTS)).thenReturn(sql);
         doNothing().when(jdbcCursorItemReader).setDataSource(dataSource);
         doNothing().when(jdbcCursorItemReader).setSql(sql);
         doNothing().when(jdbcCursorItemReader).setRowMapper(columnMapRowMapper);
@@ -479,8 +465,10 @@ public class MappingReaderTest {
         assertEquals(jdbcCursorItemReader, actual);
 
         verify(jdbcCursorItemReader, times(1)).setDataSource(dataSource);
+        verify(jdbcCursorItemReader, times(1)).setFetchSize(1000);
         verify(jdbcCursorItemReader, times(1)).setSql(sql);
         verify(jdbcCursorItemReader, times(1)).setRowMapper(columnMapRowMapper);
+        verify(jdbcCursorItemReader, times(1)).setPreparedStatementSetter(new QueryParameterSetter(programName));
     }
 
     @Test
@@ -515,7 +503,7 @@ public class MappingReaderTest {
                 "      FROM %s enrTable\n" +
                 "        INNER JOIN marker enrollment_marker\n" +
                 "          ON enrTable.date_created :: TIMESTAMP > COALESCE(enrollment_marker.last_synced_date, '-infinity')\n" +
-                "             AND category = 'enrollment' AND program_name = '%s') AS enrollmentsTable\n" +
+                "             AND category = 'enrollment' AND program_name = ?) AS enrollmentsTable\n" +
                 "  FULL OUTER JOIN (SELECT evnTable.*,\n" +
                 "                   enrollments.program_unique_id AS event_program_unique_id,\n" +
                 "                   enrollments.status            AS event_program_status,\n" +
@@ -525,7 +513,7 @@ public class MappingReaderTest {
                 "                              AND evnTable.enrollment_date = COALESCE(enrollments.enrollment_date, evnTable.enrollment_date)\n" +
                 "                     INNER JOIN marker event_marker\n" +
                 "                       ON evnTable.date_created :: TIMESTAMP > COALESCE(event_marker.last_synced_date, '-infinity')\n" +
-                "                          AND category = 'event' AND program_name = '%s') AS eventsTable\n" +
+                "                          AND category = 'event' AND program_name = ?) AS eventsTable\n" +
                 "    ON enrollmentsTable.\"Patient_Identifier\" = eventsTable.\"Patient_Identifier\"\n" +
                 "       AND eventsTable.enrollment_date = COALESCE(enrollmentsTable.enrollment_date, eventsTable.enrollment_date)\n" +
                 "  INNER JOIN orgunit_tracker orgTracker ON COALESCE(eventsTable.\"OrgUnit\", enrollmentsTable.\"OrgUnit\") = orgTracker.orgunit\n" +
@@ -538,7 +526,8 @@ public class MappingReaderTest {
                 "                                         AND eventsTable.program = evntTracker.program\n" +
                 "                                         AND eventsTable.program_stage = evntTracker.program_stage\n" +
                 "WHERE (enrollmentsTable.status = 'ACTIVE' OR eventsTable.event_program_status = 'ACTIVE')\n" +
-                "                                            AND enrolTracker.instance_id IS NOT NULL %s;\n";
+                "                                            AND enrolTracker.instance_id IS NOT NULL AND (?::TEXT[] IS NULL OR EXISTS(SELECT 1 FROM unnest(?::TEXT[]) AS partitioned(enrollment_id) " +
+                "WHERE partitioned.enrollment_id = enrolTracker.enrollment_id));\n";
 
         String formattedSql = "SELECT\n" +
                 "  enrollmentsTable.incident_date,\n" +
@@ -557,7 +546,7 @@ public class MappingReaderTest {
                 "      FROM enrollment enrTable\n" +
                 "        INNER JOIN marker enrollment_marker\n" +
                 "          ON enrTable.date_created :: TIMESTAMP > COALESCE(enrollment_marker.last_synced_date, '-infinity')\n" +
-                "             AND category = 'enrollment' AND program_name = 'HTS Service') AS enrollmentsTable\n" +
+                "             AND category = 'enrollment' AND program_name = ?) AS enrollmentsTable\n" +
                 "  FULL OUTER JOIN (SELECT evnTable.*,\n" +
                 "                   enrollments.program_unique_id AS event_program_unique_id,\n" +
                 "                   enrollments.status            AS event_program_status,\n" +
@@ -567,7 +556,7 @@ public class MappingReaderTest {
                 "                              AND evnTable.enrollment_date = COALESCE(enrollments.enrollment_date, evnTable.enrollment_date)\n" +
                 "                     INNER JOIN marker event_marker\n" +
                 "                       ON evnTable.date_created :: TIMESTAMP > COALESCE(event_marker.last_synced_date, '-infinity')\n" +
-                "                          AND category = 'event' AND program_name = 'HTS Service') AS eventsTable\n" +
+                "                          AND category = 'event' AND program_name = ?) AS eventsTable\n" +
                 "    ON enrollmentsTable.\"Patient_Identifier\" = eventsTable.\"Patient_Identifier\"\n" +
                 "       AND eventsTable.enrollment_date = COALESCE(enrollmentsTable.enrollment_date, eventsTable.enrollment_date)\n" +
                 "  INNER JOIN orgunit_tracker orgTracker ON COALESCE(eventsTable.\"OrgUnit\", enrollmentsTable.\"OrgUnit\") = orgTracker.orgunit\n" +
@@ -580,22 +569,63 @@ public class MappingReaderTest {
                 "                                         AND eventsTable.program = evntTracker.program\n" +
                 "                                         AND eventsTable.program_stage = evntTracker.program_stage\n" +
                 "WHERE (enrollmentsTable.status = 'ACTIVE' OR eventsTable.event_program_status = 'ACTIVE')\n" +
-                "                                            AND enrolTracker.instance_id IS NOT NULL AND enrolTracker.enrollment_id NOT IN ('NAH0000000009','NAH0000000004','NAH0000000004');\n";
-        whenNew(JdbcCursorItemReader.class).withNoArguments().thenReturn(jdbcCursorItemReader);
+                "                                            AND enrolTracker.instance_id IS NOT NULL AND (?::TEXT[] IS NULL OR EXISTS(SELECT 1 FROM unnest(?::TEXT[]) AS partitioned(enrollment_id) " +
+                "WHERE partitioned.enrollment_id = enrolTracker.enrollment_id));\n";
+        whenNew(StreamingCursorItemReader.class).withNoArguments().thenReturn(jdbcCursorItemReader);
         whenNew(ColumnMapRowMapper.class).withNoArguments().thenReturn(columnMapRowMapper);
-        when(BatchUtil.convertResourceOutputToString(resource)).thenReturn(sql);
+        when(sqlTemplates.get(UPDATED_COMPLETED_ENROLLMENT_WITH_EVENTS)).thenReturn(sql);
         doNothing().when(jdbcCursorItemReader).setDataSource(dataSource);
         doNothing().when(jdbcCursorItemReader).setSql(formattedSql);
         doNothing().when(jdbcCursorItemReader).setRowMapper(columnMapRowMapper);
 
-        JdbcCursorItemReader<Map<String, Object>> actual = mappingReader.getUpdatedCompletedEnrollmentWithEventsReader(enrollmentLookupTable, programName, eventLookupTable, EnrollmentUtil.enrollmentsToSaveInTracker);
+        JdbcCursorItemReader<Map<String, Object>> actual = mappingReader.getUpdatedCompletedEnrollmentWithEventsReader(enrollmentLookupTable, programName, eventLookupTable, EnrollmentUtil.enrollmentsToSaveInTracker, null);
 
         assertEquals(jdbcCursorItemReader, actual);
 
         verify(jdbcCursorItemReader, times(1)).setDataSource(dataSource);
+        verify(jdbcCursorItemReader, times(1)).setFetchSize(1000);
         verify(jdbcCursorItemReader, times(1)).setSql(formattedSql);
         verify(jdbcCursorItemReader, times(1)).setRowMapper(columnMapRowMapper);
+        verify(jdbcCursorItemReader, times(1)).setPreparedStatementSetter(new QueryParameterSetter(programName, programName,
+                new Object[]{"NAH0000000009", "NAH0000000004"}, null, null));
         EnrollmentUtil.enrollmentsToSaveInTracker.clear();
     }
 
+    @Test
+    public void shouldOnlyReadTheEnrollmentsToSyncWhenTheyAreGiven() throws Exception {
+        String sqlTemplate = "SELECT * FROM %s enrTable INNER JOIN marker ON program_name = ? " +
+                "FULL OUTER JOIN %s evnTable INNER JOIN %s enrollments ON program_name = ? " +
+                "WHERE enrolTracker.instance_id IS NOT NULL " +
+                "AND (?::TEXT[] IS NULL OR EXISTS(SELECT 1 FROM unnest(?::TEXT[]) AS partitioned(enrollment_id) " +
+                "WHERE partitioned.enrollment_id = enrolTracker.enrollment_id));";
+        String formattedSql = "SELECT * FROM enrollment enrTable INNER JOIN marker ON program_name = ? " +
+                "FULL OUTER JOIN event evnTable INNER JOIN enrollment enrollments ON program_name = ? " +
+                "WHERE enrolTracker.instance_id IS NOT NULL " +
+                "AND (?::TEXT[] IS NULL OR EXISTS(SELECT 1 FROM unnest(?::TEXT[]) AS partitioned(enrollment_id) " +
+                "WHERE partitioned.enrollment_id = enrolTracker.enrollment_id));";
+
+        whenNew(StreamingCursorItemReader.class).withNoArguments().thenReturn(jdbcCursorItemReader);
+        whenNew(ColumnMapRowMapper.class).withNoArguments().thenReturn(columnMapRowMapper);
+        when(sqlTemplates.get(UPDATED_ACTIVE_ENROLLMENT_WITH_EVENTS)).thenReturn(sqlTemplate);
+
+        JdbcCursorItemReader<Map<String, Object>> actual = mappingReader.getUpdatedActiveEnrollmentWithEventsReader(
+                "enrollment", programName, "event", new ArrayList<>(), Arrays.asList("enrollment1", "enrollment2"));
+
+        assertEquals(jdbcCursorItemReader, actual);
+        verify(jdbcCursorItemReader, times(1)).setSql(formattedSql);
+        verify(jdbcCursorItemReader, times(1)).setPreparedStatementSetter(new QueryParameterSetter(programName, programName,
+                new Object[]{}, new Object[]{"enrollment1", "enrollment2"}, new Object[]{"enrollment1", "enrollment2"}));
+    }
+
+    @Test
+    public void shouldNotBuildTheReaderForALookupTableThatIsNotAPlainTableName() throws Exception {
+        when(sqlTemplates.get(INSTANCE_READER)).thenReturn("SELECT * FROM %s lt WHERE program_name = ?;");
+
+        try {
+            mappingReader.getInstanceReader("patient_identifier lt; DELETE FROM marker; --", programName);
+            fail("Should have thrown IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            assertEquals("Invalid table name: patient_identifier lt; DELETE FROM marker; --", e.getMessage());
+        }
+    }
 }
@@ -0,0 +1,68 @@
+package com.thoughtworks.martdhis2sync.reader;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.powermock.core.classloader.annotations.PowerMockIgnore;
+import org.powermock.modules.junit4.PowerMockRunner;
+
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Types;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(PowerMockRunner.class)
+@PowerMockIgnore("javax.management.*")
+public class QueryParameterSetterTest {
+
+    @Mock
+    private PreparedStatement preparedStatement;
+
+    @Mock
+    private Connection connection;
+
+    @Mock
+    private Array array;
+
+    @Test
+    public void shouldBindTheValuesInOrder() throws Exception {
+        new QueryParameterSetter("HTS Service", 4, 1).setValues(preparedStatement);
+
+        verify(preparedStatement, times(1)).setString(1, "HTS Service");
+        verify(preparedStatement, times(1)).setObject(2, 4);
+        verify(preparedStatement, times(1)).setObject(3, 1);
+    }
+
+    @Test
+    public void shouldBindArraysAsTextArrays() throws Exception {
+        Object[] enrollmentIds = {"NAH0000000009", "NAH0000000004"};
+        when(preparedStatement.getConnection()).thenReturn(connection);
+        when(connection.createArrayOf("text", enrollmentIds)).thenReturn(array);
+
+        new QueryParameterSetter("HTS Service", enrollmentIds).setValues(preparedStatement);
+
+        verify(preparedStatement, times(1)).setString(1, "HTS Service");
+        verify(preparedStatement, times(1)).setArray(2, array);
+    }
+
+    @Test
+    public void shouldBindNullValues() throws Exception {
+        new QueryParameterSetter((Object) null).setValues(preparedStatement);
+
+        verify(preparedStatement, times(1)).setNull(1, Types.NULL);
+    }
+
+    @Test
+    public void shouldBeEqualWhenTheValuesAreEqual() {
+        assertEquals(new QueryParameterSetter("HTS Service", new Object[]{"NAH0000000009"}, null),
+                new QueryParameterSetter("HTS Service", new Object[]{"NAH0000000009"}, null));
+        assertNotEquals(new QueryParameterSetter("HTS Service", new Object[]{"NAH0000000009"}),
+                new QueryParameterSetter("HTS Service", new Object[]{"NAH0000000004"}));
+    }
+}
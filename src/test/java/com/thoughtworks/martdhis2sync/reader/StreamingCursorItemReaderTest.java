@@ -0,0 +1,93 @@
+package com.thoughtworks.martdhis2sync.reader;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.powermock.core.classloader.annotations.PowerMockIgnore;
+import org.powermock.modules.junit4.PowerMockRunner;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.jdbc.core.ColumnMapRowMapper;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.Map;
+
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(PowerMockRunner.class)
+@PowerMockIgnore("javax.management.*")
+public class StreamingCursorItemReaderTest {
+
+    @Mock
+    private DataSource dataSource;
+
+    @Mock
+    private Connection connection;
+
+    @Mock
+    private PreparedStatement preparedStatement;
+
+    @Mock
+    private ResultSet resultSet;
+
+    private StreamingCursorItemReader<Map<String, Object>> reader;
+
+    @Before
+    public void setUp() throws Exception {
+        when(dataSource.getConnection()).thenReturn(connection);
+        when(connection.prepareStatement(anyString(), anyInt(), anyInt())).thenReturn(preparedStatement);
+        when(preparedStatement.executeQuery()).thenReturn(resultSet);
+
+        reader = new StreamingCursorItemReader<>();
+        reader.setDataSource(dataSource);
+        reader.setSql("SELECT * FROM patient");
+        reader.setFetchSize(500);
+        reader.setRowMapper(new ColumnMapRowMapper());
+        reader.afterPropertiesSet();
+    }
+
+    @Test
+    public void shouldTurnOffAutoCommitBeforeTheCursorIsOpened() throws Exception {
+        when(connection.getAutoCommit()).thenReturn(true);
+
+        reader.open(new ExecutionContext());
+
+        InOrder inOrder = inOrder(connection, preparedStatement);
+        inOrder.verify(connection, times(1)).setAutoCommit(false);
+        inOrder.verify(preparedStatement, times(1)).setFetchSize(500);
+        inOrder.verify(preparedStatement, times(1)).executeQuery();
+    }
+
+    @Test
+    public void shouldRestoreAutoCommitBeforeTheConnectionIsClosed() throws Exception {
+        when(connection.getAutoCommit()).thenReturn(true);
+
+        reader.open(new ExecutionContext());
+        reader.close();
+
+        InOrder inOrder = inOrder(connection);
+        inOrder.verify(connection, times(1)).setAutoCommit(false);
+        inOrder.verify(connection, times(1)).setAutoCommit(true);
+        inOrder.verify(connection, times(1)).close();
+    }
+
+    @Test
+    public void shouldLeaveAutoCommitOffWhenItWasOffBeforeTheCursorWasOpened() throws Exception {
+        when(connection.getAutoCommit()).thenReturn(false);
+
+        reader.open(new ExecutionContext());
+        reader.close();
+
+        verify(connection, times(2)).setAutoCommit(false);
+        verify(connection, times(0)).setAutoCommit(true);
+    }
+}
@@ -0,0 +1,85 @@
+package com.thoughtworks.martdhis2sync.repository;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.client.entity.GzipCompressingEntity;
+import org.apache.http.entity.BasicHttpEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.message.BasicHttpEntityEnclosingRequest;
+import org.apache.http.message.BasicHttpRequest;
+import org.apache.http.protocol.BasicHttpContext;
+import org.apache.http.util.EntityUtils;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class GzipRequestInterceptorTest {
+
+    private static final String BODY = "{\"enrollments\":[{\"enrollment\":\"rleFtLk_1\"}]}";
+
+    private GzipRequestInterceptor interceptor = new GzipRequestInterceptor(10);
+
+    @Test
+    public void shouldCompressBodiesLargerThanTheThreshold() throws IOException {
+        BasicHttpEntityEnclosingRequest request = new BasicHttpEntityEnclosingRequest("POST", "/api/enrollments");
+        request.setEntity(new StringEntity(BODY, ContentType.APPLICATION_JSON));
+
+        interceptor.process(request, new BasicHttpContext());
+
+        HttpEntity entity = request.getEntity();
+        assertTrue(entity instanceof GzipCompressingEntity);
+        assertEquals("gzip", entity.getContentEncoding().getValue());
+        assertEquals(BODY, decompress(entity));
+    }
+
+    @Test
+    public void shouldCompressStreamedBodiesOfUnknownLength() {
+        BasicHttpEntityEnclosingRequest request = new BasicHttpEntityEnclosingRequest("POST", "/api/enrollments");
+        BasicHttpEntity entity = new BasicHttpEntity();
+        entity.setContent(new ByteArrayInputStream(BODY.getBytes()));
+        entity.setContentLength(-1);
+        request.setEntity(entity);
+
+        interceptor.process(request, new BasicHttpContext());
+
+        assertTrue(request.getEntity() instanceof GzipCompressingEntity);
+    }
+
+    @Test
+    public void shouldNotCompressBodiesSmallerThanTheThreshold() {
+        BasicHttpEntityEnclosingRequest request = new BasicHttpEntityEnclosingRequest("POST", "/api/enrollments");
+        StringEntity entity = new StringEntity("{}", ContentType.APPLICATION_JSON);
+        request.setEntity(entity);
+
+        interceptor.process(request, new BasicHttpContext());
+
+        assertSame(entity, request.getEntity());
+        assertNull(request.getEntity().getContentEncoding());
+    }
+
+    @Test
+    public void shouldNotTouchRequestsWithoutBody() {
+        BasicHttpRequest request = new BasicHttpRequest("GET", "/api/trackedEntityInstances");
+
+        interceptor.process(request, new BasicHttpContext());
+
+        assertEquals(0, request.getAllHeaders().length);
+    }
+
+    private String decompress(HttpEntity entity) throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        entity.writeTo(compressed);
+        BasicHttpEntity decompressed = new BasicHttpEntity();
+        decompressed.setContent(new GZIPInputStream(new ByteArrayInputStream(compressed.toByteArray())));
+
+        return EntityUtils.toString(decompressed);
+    }
+}
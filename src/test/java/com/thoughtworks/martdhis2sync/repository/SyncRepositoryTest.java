@@ -3,14 +3,20 @@ package com.thoughtworks.martdhis2sync.repository;
 import com.thoughtworks.martdhis2sync.model.DHISEnrollmentSyncResponse;
 import com.thoughtworks.martdhis2sync.model.DHISSyncResponse;
 import com.thoughtworks.martdhis2sync.model.DataElementResponse;
+import com.thoughtworks.martdhis2sync.model.EnrollmentAPIPayLoad;
 import com.thoughtworks.martdhis2sync.model.EnrollmentImportSummary;
+import com.thoughtworks.martdhis2sync.model.EnrollmentRequestBody;
 import com.thoughtworks.martdhis2sync.model.EnrollmentResponse;
+import com.thoughtworks.martdhis2sync.model.Event;
 import com.thoughtworks.martdhis2sync.model.ImportSummary;
 import com.thoughtworks.martdhis2sync.model.OrgUnitResponse;
 import com.thoughtworks.martdhis2sync.model.Response;
 import com.thoughtworks.martdhis2sync.model.TrackedEntityAttributeResponse;
 import com.thoughtworks.martdhis2sync.model.TrackedEntityInstanceResponse;
 import com.thoughtworks.martdhis2sync.service.LoggerService;
+import com.thoughtworks.martdhis2sync.util.PostFeedback;
+import com.thoughtworks.martdhis2sync.util.SyncContext;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -24,17 +30,21 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
 import org.springframework.web.client.RestClientException;
 import org.springframework.web.client.RestTemplate;
 
 import java.nio.charset.Charset;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 
 import static com.thoughtworks.martdhis2sync.CommonTestHelper.setValuesForMemberFields;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.powermock.api.mockito.PowerMockito.doNothing;
@@ -87,14 +97,22 @@ public class SyncRepositoryTest {
             "]" +
             "}";
 
+    private static final String URI = "/api/trackedEntityInstances?strategy=CREATE_AND_UPDATE";
+
     @Before
     public void setUp() throws Exception {
+        SyncContext.begin("HT Service");
         syncRepository = new SyncRepository();
         setValuesForMemberFields(syncRepository, "logger", logger);
         setValuesForMemberFields(syncRepository, "restTemplate", restTemplate);
         setValuesForMemberFields(syncRepository, "loggerService", loggerService);
     }
 
+    @After
+    public void tearDown() {
+        SyncContext.end();
+    }
+
     @Test
     public void shouldReturnResponseEntityAndCallLoggerInfo() {
         when(restTemplate.exchange(anyString(), any(HttpMethod.class), any(HttpEntity.class), any(Class.class)))
@@ -152,6 +170,26 @@ public class SyncRepositoryTest {
         assertEquals(errorResponse, actualResponse);
     }
 
+    @Test
+    public void shouldRecordTheSizeAndConflictsOfThePostForTheChunk() {
+        String response = "{\"response\":{\"importSummaries\": [" +
+                "{\"conflicts\": [{\"object\": \"rOb34aQLSyC\", \"value\": \"Invalid\"}]}, " +
+                "{\"conflicts\": [{\"object\": \"aQLSyCrOb34\", \"value\": \"Invalid\"}]}" +
+                "]}}";
+        when(restTemplate.exchange(anyString(), any(HttpMethod.class), any(HttpEntity.class), any(Class.class)))
+                .thenThrow(new HttpClientErrorException(HttpStatus.CONFLICT, "CONFLICT", response.getBytes(),
+                        Charset.forName("UTF-8")));
+        String bodyWithAccents = body.replace("UIC00014", "Zo\u00eb Bront\u00eb");
+        PostFeedback.reset();
+
+        syncRepository.sendData("/api/trackedEntityInstance", bodyWithAccents);
+        PostFeedback feedback = PostFeedback.drain();
+
+        assertEquals(1, feedback.getRequests());
+        assertEquals(bodyWithAccents.length() + 2, feedback.getBytes());
+        assertEquals(2, feedback.getConflicts());
+    }
+
     @Test
     public void shouldThrowExceptionAndCallLoggerErrorAndLoggerServiceToCollateMessage() {
         when(restTemplate.exchange(anyString(), any(HttpMethod.class), any(HttpEntity.class), any(Class.class)))
@@ -280,6 +318,51 @@ public class SyncRepositoryTest {
         }
     }
 
+    @Test
+    public void shouldRefetchTheInstancesAfterATransientFailureWithoutLoggingIt() {
+        when(restTemplate.exchange(anyString(), any(HttpMethod.class), any(HttpEntity.class), any(Class.class)))
+                .thenThrow(new HttpServerErrorException(HttpStatus.SERVICE_UNAVAILABLE, "Service Unavailable"))
+                .thenThrow(new ResourceAccessException("Read timed out"))
+                .thenReturn(trackedEntityInstanceResponse);
+        when(trackedEntityInstanceResponse.getStatusCode()).thenReturn(HttpStatus.OK);
+
+        ResponseEntity<TrackedEntityInstanceResponse> trackedEntityInstances = syncRepository.getTrackedEntityInstances("", 2);
+
+        assertEquals(trackedEntityInstanceResponse, trackedEntityInstances);
+        verify(restTemplate, times(3)).exchange(anyString(), any(HttpMethod.class), any(HttpEntity.class), any(Class.class));
+        verify(loggerService, never()).collateLogMessage(anyString());
+    }
+
+    @Test
+    public void shouldLogOnlyTheLastFailureWhenTheRefetchesAreSpent() {
+        when(restTemplate.exchange(anyString(), any(HttpMethod.class), any(HttpEntity.class), any(Class.class)))
+                .thenThrow(new HttpServerErrorException(HttpStatus.BAD_GATEWAY, "Bad Gateway"));
+
+        try {
+            syncRepository.getTrackedEntityInstances("", 2);
+            fail("Should have thrown the last failure");
+        } catch (HttpServerErrorException e) {
+            assertEquals(HttpStatus.BAD_GATEWAY, e.getStatusCode());
+        }
+
+        verify(restTemplate, times(3)).exchange(anyString(), any(HttpMethod.class), any(HttpEntity.class), any(Class.class));
+        verify(loggerService, times(1)).collateLogMessage("502 Bad Gateway");
+    }
+
+    @Test
+    public void shouldNotRefetchTheInstancesAfterAnErrorThatIsNotTransient() {
+        when(restTemplate.exchange(anyString(), any(HttpMethod.class), any(HttpEntity.class), any(Class.class)))
+                .thenThrow(new HttpServerErrorException(HttpStatus.INTERNAL_SERVER_ERROR, "Internal Server Error"));
+
+        try {
+            syncRepository.getTrackedEntityInstances("", 2);
+            fail("Should not have refetched the instances");
+        } catch (HttpServerErrorException e) {
+            verify(restTemplate, times(1)).exchange(anyString(), any(HttpMethod.class), any(HttpEntity.class), any(Class.class));
+            verify(loggerService, times(1)).collateLogMessage("500 Internal Server Error");
+        }
+    }
+
     @Test
     public void shouldThrowExceptionWhenGettingDataElementsInfoAndLogThat() {
         when(restTemplate.exchange(anyString(), any(HttpMethod.class), any(HttpEntity.class), any(Class.class)))
@@ -380,4 +463,174 @@ public class SyncRepositoryTest {
             verify(loggerService, times(1)).collateLogMessage("409 CONFLICT");
         }
     }
+
+    @Test
+    public void shouldResendAnUpdateOfExistingInstancesAfterATransientFailure() throws Exception {
+        setRetries(2, 10);
+        when(restTemplate.exchange(anyString(), any(HttpMethod.class), any(HttpEntity.class), any(Class.class)))
+                .thenThrow(new HttpServerErrorException(HttpStatus.BAD_GATEWAY, "Bad Gateway"))
+                .thenThrow(new ResourceAccessException("Read timed out"))
+                .thenReturn(responseEntity);
+        when(responseEntity.getStatusCode()).thenReturn(HttpStatus.OK);
+
+        ResponseEntity<DHISSyncResponse> actualResponse = syncRepository.sendData(URI, instances(body));
+
+        assertEquals(responseEntity, actualResponse);
+        verify(restTemplate, times(3)).exchange(anyString(), any(HttpMethod.class), any(HttpEntity.class), any(Class.class));
+        verify(loggerService, never()).collateLogMessage(anyString());
+    }
+
+    @Test
+    public void shouldGiveUpAfterTheRetries() throws Exception {
+        setRetries(2, 10);
+        when(restTemplate.exchange(anyString(), any(HttpMethod.class), any(HttpEntity.class), any(Class.class)))
+                .thenThrow(new HttpServerErrorException(HttpStatus.GATEWAY_TIMEOUT, "Gateway Timeout"));
+
+        try {
+            syncRepository.sendData(URI, instances(body));
+            fail("Should have thrown the last failure");
+        } catch (HttpServerErrorException e) {
+            assertEquals(HttpStatus.GATEWAY_TIMEOUT, e.getStatusCode());
+        }
+
+        verify(restTemplate, times(3)).exchange(anyString(), any(HttpMethod.class), any(HttpEntity.class), any(Class.class));
+        verify(loggerService, times(1)).collateLogMessage("504 Gateway Timeout");
+    }
+
+    @Test
+    public void shouldNotResendANewInstanceAsDHISMayHaveCreatedItAlready() throws Exception {
+        setRetries(2, 10);
+        String newInstance = body.replace("\"EmACSYDCxhu\"", "null");
+        when(restTemplate.exchange(anyString(), any(HttpMethod.class), any(HttpEntity.class), any(Class.class)))
+                .thenThrow(new HttpServerErrorException(HttpStatus.BAD_GATEWAY, "Bad Gateway"));
+
+        try {
+            syncRepository.sendData(URI, instances(body + "," + newInstance));
+            fail("Should not have resent the instances");
+        } catch (HttpServerErrorException e) {
+            verify(restTemplate, times(1)).exchange(anyString(), any(HttpMethod.class), any(HttpEntity.class), any(Class.class));
+        }
+    }
+
+    @Test
+    public void shouldNotResendWithoutTheCreateAndUpdateStrategy() throws Exception {
+        setRetries(2, 10);
+        when(restTemplate.exchange(anyString(), any(HttpMethod.class), any(HttpEntity.class), any(Class.class)))
+                .thenThrow(new ResourceAccessException("Read timed out"));
+
+        try {
+            syncRepository.sendData("/api/trackedEntityInstances", instances(body));
+            fail("Should not have resent the instances");
+        } catch (ResourceAccessException e) {
+            verify(restTemplate, times(1)).exchange(anyString(), any(HttpMethod.class), any(HttpEntity.class), any(Class.class));
+            verify(loggerService, times(1)).collateLogMessage("Read timed out");
+        }
+    }
+
+    @Test
+    public void shouldNotResendAfterAnErrorThatIsNotTransient() throws Exception {
+        setRetries(2, 10);
+        when(restTemplate.exchange(anyString(), any(HttpMethod.class), any(HttpEntity.class), any(Class.class)))
+                .thenThrow(new HttpServerErrorException(HttpStatus.INTERNAL_SERVER_ERROR, "Internal Server Error"));
+
+        try {
+            syncRepository.sendData(URI, instances(body));
+            fail("Should not have resent the instances");
+        } catch (HttpServerErrorException e) {
+            verify(restTemplate, times(1)).exchange(anyString(), any(HttpMethod.class), any(HttpEntity.class), any(Class.class));
+        }
+    }
+
+    @Test
+    public void shouldStopResendingOnceTheRetryBudgetOfTheSyncIsSpent() throws Exception {
+        setRetries(2, 1);
+        when(restTemplate.exchange(anyString(), any(HttpMethod.class), any(HttpEntity.class), any(Class.class)))
+                .thenThrow(new HttpServerErrorException(HttpStatus.SERVICE_UNAVAILABLE, "Service Unavailable"));
+
+        try {
+            syncRepository.sendData(URI, instances(body));
+            fail("Should have thrown the last failure");
+        } catch (HttpServerErrorException e) {
+            verify(restTemplate, times(2)).exchange(anyString(), any(HttpMethod.class), any(HttpEntity.class), any(Class.class));
+        }
+    }
+
+    @Test
+    public void shouldResendEnrollmentsOnlyWhenTheyAndTheirEventsHaveIds() throws Exception {
+        setRetries(1, 10);
+        Event event = new Event("ieVWNhBpsI2", "EmACSYDCxhu", "rleFtLk_1", "UoZQdIJuv1R", "m6Yfksc81Tg",
+                "SxgCPPeiq3c", "2018-10-11", "COMPLETED", "1", new LinkedHashMap<>());
+        EnrollmentAPIPayLoad enrollment = new EnrollmentAPIPayLoad("rleFtLk_1", "EmACSYDCxhu", "UoZQdIJuv1R",
+                "SxgCPPeiq3c", "2018-10-11", "2018-10-11", "ACTIVE", "1", Collections.singletonList(event));
+        when(restTemplate.exchange(anyString(), any(HttpMethod.class), any(HttpEntity.class), any(Class.class)))
+                .thenThrow(new ResourceAccessException("Read timed out"))
+                .thenReturn(enrollmentResponseEntity)
+                .thenThrow(new ResourceAccessException("Read timed out"));
+        when(enrollmentResponseEntity.getStatusCode()).thenReturn(HttpStatus.OK);
+
+        ResponseEntity<DHISEnrollmentSyncResponse> actualResponse = syncRepository.sendEnrollmentData(
+                "/api/enrollments?strategy=CREATE_AND_UPDATE", new EnrollmentRequestBody(Collections.singletonList(enrollment),
+                        Collections.singletonList("rleFtLk_1"), Event::getEvent, Event::getStatus));
+        assertEquals(enrollmentResponseEntity, actualResponse);
+
+        try {
+            syncRepository.sendEnrollmentData("/api/enrollments?strategy=CREATE_AND_UPDATE",
+                    new EnrollmentRequestBody(Collections.singletonList(enrollment), Collections.singletonList(""),
+                            Event::getEvent, Event::getStatus));
+            fail("Should not have resent the new enrollment");
+        } catch (ResourceAccessException e) {
+            verify(restTemplate, times(3)).exchange(anyString(), any(HttpMethod.class), any(HttpEntity.class), any(Class.class));
+        }
+    }
+
+    @Test
+    public void shouldNotResendABodyThatIsNotAKnownPayload() throws Exception {
+        setRetries(2, 10);
+        when(restTemplate.exchange(anyString(), any(HttpMethod.class), any(HttpEntity.class), any(Class.class)))
+                .thenThrow(new HttpServerErrorException(HttpStatus.BAD_GATEWAY, "Bad Gateway"));
+        String[] bodies = {
+                body,
+                body.replace("\"EmACSYDCxhu\"", "\"\""),
+                "{\"events\":[{\"event\":\"ieVWNhBpsI2\"}]}",
+                "{\"trackedEntityInstances\":[" + body + "], \"events\":[]}",
+                "{}",
+                "[" + body + "]"
+        };
+
+        for (String unknownBody : bodies) {
+            try {
+                syncRepository.sendData(URI, unknownBody);
+                fail("Should not have resent " + unknownBody);
+            } catch (HttpServerErrorException e) {
+                assertEquals(HttpStatus.BAD_GATEWAY, e.getStatusCode());
+            }
+        }
+
+        verify(restTemplate, times(bodies.length))
+                .exchange(anyString(), any(HttpMethod.class), any(HttpEntity.class), any(Class.class));
+    }
+
+    @Test
+    public void shouldNotResendEnrollmentsWhoseEventsHaveNoIds() throws Exception {
+        setRetries(2, 10);
+        when(restTemplate.exchange(anyString(), any(HttpMethod.class), any(HttpEntity.class), any(Class.class)))
+                .thenThrow(new HttpServerErrorException(HttpStatus.BAD_GATEWAY, "Bad Gateway"));
+
+        try {
+            syncRepository.sendData("/api/enrollments?strategy=CREATE_AND_UPDATE",
+                    "{\"enrollments\":[{\"enrollment\":\"rleFtLk_1\", \"events\":[{\"event\":\"\"}]}]}");
+            fail("Should not have resent the new event");
+        } catch (HttpServerErrorException e) {
+            verify(restTemplate, times(1)).exchange(anyString(), any(HttpMethod.class), any(HttpEntity.class), any(Class.class));
+        }
+    }
+
+    private String instances(String instances) {
+        return "{\"trackedEntityInstances\":[" + instances + "]}";
+    }
+
+    private void setRetries(int retries, int budget) throws Exception {
+        setValuesForMemberFields(syncRepository, "postRetries", retries);
+        setValuesForMemberFields(syncRepository, "postRetryBudget", budget);
+    }
 }
@@ -18,8 +18,9 @@ import org.powermock.modules.junit4.PowerMockRunner;
 import org.slf4j.Logger;
 import org.springframework.http.ResponseEntity;
 
-import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -36,6 +37,10 @@ import static org.powermock.api.mockito.PowerMockito.verifyStatic;
 public class DHISMetaDataServiceTest {
     public static final String DATA_ELEMENT = "/api/dataElements?pageSize=1000&filter=valueType:eq:DATETIME";
     public static final String TRACKED_ENTITY_ATTRIBUTE = "/api/trackedEntityAttributes?pageSize=1000&filter=valueType:eq:DATETIME";
+    public static final String DATE_DATA_ELEMENT = "/api/dataElements?pageSize=1000&filter=valueType:eq:DATE";
+    public static final String DATE_TRACKED_ENTITY_ATTRIBUTE = "/api/trackedEntityAttributes?pageSize=1000&filter=valueType:eq:DATE";
+    public static final String LAST_UPDATED_DATA_ELEMENT = "/api/dataElements?pageSize=1&fields=id,lastUpdated&order=lastUpdated:desc";
+    public static final String LAST_UPDATED_TRACKED_ENTITY_ATTRIBUTE = "/api/trackedEntityAttributes?pageSize=1&fields=id,lastUpdated&order=lastUpdated:desc";
     private DHISMetaDataService dhisMetaDataService;
 
     @Mock
@@ -59,12 +64,13 @@ public class DHISMetaDataServiceTest {
         setValuesForMemberFields(dhisMetaDataService, "syncRepository", syncRepository);
         setValuesForMemberFields(dhisMetaDataService, "dhis2Url", dhis2Url);
         setValuesForMemberFields(dhisMetaDataService, "logger", logger);
+        setValuesForMemberFields(dhisMetaDataService, "metadataCacheTtlMinutes", 60L);
 
-        dataElements.add(new DataElement("asfasdfs", "date"));
-        dataElements.add(new DataElement("asfasdfs", "time"));
+        dataElements.add(new DataElement("asfasdfs", "date", "2019-01-17T10:22:33.456"));
+        dataElements.add(new DataElement("asfasdfs", "time", "2019-01-17T10:22:33.456"));
 
-        trackedEntityAttributes.add(new TrackedEntityAttribute("dfgdfd", "date"));
-        trackedEntityAttributes.add(new TrackedEntityAttribute("okpfgf", "time"));
+        trackedEntityAttributes.add(new TrackedEntityAttribute("dfgdfd", "date", "2019-01-17T10:22:33.456"));
+        trackedEntityAttributes.add(new TrackedEntityAttribute("okpfgf", "time", "2019-01-17T10:22:33.456"));
 
         mockStatic(EventUtil.class);
         mockStatic(TEIUtil.class);
@@ -84,9 +90,9 @@ public class DHISMetaDataServiceTest {
         verify(syncRepository, times(1)).getTrackedEntityAttributes(dhis2Url + TRACKED_ENTITY_ATTRIBUTE);
 
         verifyStatic(times(1));
-        EventUtil.setElementsOfTypeDateTime(Arrays.asList("asfasdfs", "asfasdfs"));
+        EventUtil.setElementsOfTypeDateTime(new HashSet<>(Collections.singletonList("asfasdfs")));
         verifyStatic(times(1));
-        TEIUtil.setAttributeOfTypeDateTime(Arrays.asList("dfgdfd", "okpfgf"));
+        TEIUtil.setAttributeOfTypeDateTime(new HashSet<>(Arrays.asList("dfgdfd", "okpfgf")));
     }
 
     @Test
@@ -98,19 +104,19 @@ public class DHISMetaDataServiceTest {
 
         verify(syncRepository, times(1)).getDataElements(dhis2Url + DATA_ELEMENT);
         verify(syncRepository, times(1)).getTrackedEntityAttributes(dhis2Url + TRACKED_ENTITY_ATTRIBUTE);
-        verify(logger, times(1)).info("DHIS2 Metadata Service: Received 0 Tracked Entity Attributes of type DateTime");
-        verify(logger, times(1)).info("DHIS2 Metadata Service: Received 0 Data Elements of type DateTime");
+        verify(logger, times(1)).info("DHIS2 Metadata Service: Received 0 Tracked Entity Attributes of type DATETIME");
+        verify(logger, times(1)).info("DHIS2 Metadata Service: Received 0 Data Elements of type DATETIME");
 
         verifyStatic(times(1));
-        EventUtil.setElementsOfTypeDateTime(new ArrayList<>());
+        EventUtil.setElementsOfTypeDateTime(new HashSet<>());
         verifyStatic(times(1));
-        TEIUtil.setAttributeOfTypeDateTime(new LinkedList<>());
+        TEIUtil.setAttributeOfTypeDateTime(new HashSet<>());
     }
 
     @Test
     public void shouldMakeCallToDHISAgainIfTheNextPageIsNotNullForDataElements() {
         List<DataElement> secondPageDataElements = new LinkedList<>();
-        secondPageDataElements.add(new DataElement("newDataElement", "dateofbirth"));
+        secondPageDataElements.add(new DataElement("newDataElement", "dateofbirth", "2019-01-17T10:22:33.456"));
         String dataElementsSecondPage = "/api/dataElements?pageSize=1000&filter=valueType:eq:DATETIME&page=2";
 
         dataElementResponseResponse = ResponseEntity.ok(new DataElementResponse(pager, dataElements));
@@ -127,20 +133,20 @@ public class DHISMetaDataServiceTest {
         verify(syncRepository, times(1)).getDataElements(dhis2Url + DATA_ELEMENT);
         verify(syncRepository, times(1)).getTrackedEntityAttributes(dhis2Url + TRACKED_ENTITY_ATTRIBUTE);
         verify(syncRepository, times(1)).getDataElements(dhis2Url + dataElementsSecondPage);
-        verify(logger, times(1)).info("DHIS2 Metadata Service: Received 3 Data Elements of type DateTime");
-        verify(logger, times(1)).info("DHIS2 Metadata Service: Received 2 Tracked Entity Attributes of type DateTime");
+        verify(logger, times(1)).info("DHIS2 Metadata Service: Received 2 Data Elements of type DATETIME");
+        verify(logger, times(1)).info("DHIS2 Metadata Service: Received 2 Tracked Entity Attributes of type DATETIME");
 
         verifyStatic(times(1));
-        EventUtil.setElementsOfTypeDateTime(Arrays.asList("asfasdfs", "asfasdfs", "newDataElement"));
+        EventUtil.setElementsOfTypeDateTime(new HashSet<>(Arrays.asList("asfasdfs", "newDataElement")));
         verifyStatic(times(1));
-        TEIUtil.setAttributeOfTypeDateTime(Arrays.asList("dfgdfd", "okpfgf"));
+        TEIUtil.setAttributeOfTypeDateTime(new HashSet<>(Arrays.asList("dfgdfd", "okpfgf")));
     }
 
 
     @Test
     public void shouldMakeCallToDHISAgainIfTheNextPageIsNotNullForAttributes() {
         List<TrackedEntityAttribute> secondPageTrackedEntityAttributes = new LinkedList<>();
-        secondPageTrackedEntityAttributes.add(new TrackedEntityAttribute("newAttr", "dateOfRegister"));
+        secondPageTrackedEntityAttributes.add(new TrackedEntityAttribute("newAttr", "dateOfRegister", "2019-01-17T10:22:33.456"));
         String attributesSecondPage = "/api/trackedEntityAttributes?pageSize=1000&filter=valueType:eq:DATETIME&page=2";
 
         dataElementResponseResponse = ResponseEntity.ok(new DataElementResponse(new Pager(), dataElements));
@@ -157,12 +163,93 @@ public class DHISMetaDataServiceTest {
         verify(syncRepository, times(1)).getDataElements(dhis2Url + DATA_ELEMENT);
         verify(syncRepository, times(1)).getTrackedEntityAttributes(dhis2Url + TRACKED_ENTITY_ATTRIBUTE);
         verify(syncRepository, times(1)).getTrackedEntityAttributes(dhis2Url + attributesSecondPage);
-        verify(logger, times(1)).info("DHIS2 Metadata Service: Received 3 Tracked Entity Attributes of type DateTime");
-        verify(logger, times(1)).info("DHIS2 Metadata Service: Received 2 Data Elements of type DateTime");
+        verify(logger, times(1)).info("DHIS2 Metadata Service: Received 3 Tracked Entity Attributes of type DATETIME");
+        verify(logger, times(1)).info("DHIS2 Metadata Service: Received 1 Data Elements of type DATETIME");
 
         verifyStatic(times(1));
-        EventUtil.setElementsOfTypeDateTime(Arrays.asList("asfasdfs", "asfasdfs"));
+        EventUtil.setElementsOfTypeDateTime(new HashSet<>(Collections.singletonList("asfasdfs")));
         verifyStatic(times(1));
-        TEIUtil.setAttributeOfTypeDateTime(Arrays.asList("dfgdfd", "okpfgf", "newAttr"));
+        TEIUtil.setAttributeOfTypeDateTime(new HashSet<>(Arrays.asList("dfgdfd", "okpfgf", "newAttr")));
+    }
+
+    @Test
+    public void shouldUseTheCachedMetadataUntilTheTtlExpires() {
+        mockMetadata("2019-01-17T10:22:33.456");
+
+        dhisMetaDataService.filterByTypeDateTime();
+        dhisMetaDataService.filterByTypeDateTime();
+
+        verify(syncRepository, times(1)).getDataElements(dhis2Url + LAST_UPDATED_DATA_ELEMENT);
+        verify(syncRepository, times(1)).getDataElements(dhis2Url + DATA_ELEMENT);
+        verify(syncRepository, times(1)).getTrackedEntityAttributes(dhis2Url + TRACKED_ENTITY_ATTRIBUTE);
+        verify(logger, times(1)).info("DHIS2 Metadata Service: Using cached metadata");
+
+        verifyStatic(times(1));
+        EventUtil.setElementsOfTypeDateTime(new HashSet<>(Collections.singletonList("asfasdfs")));
+    }
+
+    @Test
+    public void shouldNotFetchTheMetadataAgainAfterTheTtlWhenNothingChangedInDHIS() throws Exception {
+        setValuesForMemberFields(dhisMetaDataService, "metadataCacheTtlMinutes", 0L);
+        mockMetadata("2019-01-17T10:22:33.456");
+
+        dhisMetaDataService.filterByTypeDateTime();
+        dhisMetaDataService.filterByTypeDateTime();
+
+        verify(syncRepository, times(2)).getDataElements(dhis2Url + LAST_UPDATED_DATA_ELEMENT);
+        verify(syncRepository, times(2)).getTrackedEntityAttributes(dhis2Url + LAST_UPDATED_TRACKED_ENTITY_ATTRIBUTE);
+        verify(syncRepository, times(1)).getDataElements(dhis2Url + DATA_ELEMENT);
+        verify(syncRepository, times(1)).getTrackedEntityAttributes(dhis2Url + DATE_TRACKED_ENTITY_ATTRIBUTE);
+    }
+
+    @Test
+    public void shouldFetchTheMetadataAgainAfterTheTtlWhenItChangedInDHIS() throws Exception {
+        setValuesForMemberFields(dhisMetaDataService, "metadataCacheTtlMinutes", 0L);
+        mockMetadata("2019-01-17T10:22:33.456");
+
+        dhisMetaDataService.filterByTypeDateTime();
+        mockMetadata("2019-02-01T08:00:00.000");
+        dhisMetaDataService.filterByTypeDateTime();
+
+        verify(syncRepository, times(2)).getDataElements(dhis2Url + DATA_ELEMENT);
+        verify(syncRepository, times(2)).getTrackedEntityAttributes(dhis2Url + DATE_TRACKED_ENTITY_ATTRIBUTE);
+
+        verifyStatic(times(2));
+        EventUtil.setElementsOfTypeDateTime(new HashSet<>(Collections.singletonList("asfasdfs")));
+    }
+
+    @Test
+    public void shouldKeepTheCachedMetadataWhenTheRefreshFails() throws Exception {
+        setValuesForMemberFields(dhisMetaDataService, "metadataCacheTtlMinutes", 0L);
+        mockMetadata("2019-01-17T10:22:33.456");
+
+        dhisMetaDataService.filterByTypeDateTime();
+        mockMetadata("2019-02-01T08:00:00.000");
+        when(syncRepository.getDataElements(dhis2Url + DATE_DATA_ELEMENT)).thenReturn(null);
+        dhisMetaDataService.filterByTypeDateTime();
+
+        verify(syncRepository, times(2)).getDataElements(dhis2Url + DATA_ELEMENT);
+        verify(logger, times(1)).error("DHIS2 Metadata Service: Could not refresh metadata, using cached metadata");
+
+        verifyStatic(times(1));
+        EventUtil.setElementsOfTypeDateTime(new HashSet<>(Collections.singletonList("asfasdfs")));
+    }
+
+    private void mockMetadata(String lastUpdated) {
+        DataElement lastUpdatedDataElement = new DataElement("asfasdfs", "date", lastUpdated);
+        TrackedEntityAttribute lastUpdatedAttribute = new TrackedEntityAttribute("dfgdfd", "date", lastUpdated);
+
+        when(syncRepository.getDataElements(dhis2Url + LAST_UPDATED_DATA_ELEMENT))
+                .thenReturn(ResponseEntity.ok(new DataElementResponse(new Pager(), Collections.singletonList(lastUpdatedDataElement))));
+        when(syncRepository.getTrackedEntityAttributes(dhis2Url + LAST_UPDATED_TRACKED_ENTITY_ATTRIBUTE))
+                .thenReturn(ResponseEntity.ok(new TrackedEntityAttributeResponse(new Pager(), Collections.singletonList(lastUpdatedAttribute))));
+        when(syncRepository.getDataElements(dhis2Url + DATA_ELEMENT))
+                .thenReturn(ResponseEntity.ok(new DataElementResponse(new Pager(), dataElements)));
+        when(syncRepository.getTrackedEntityAttributes(dhis2Url + TRACKED_ENTITY_ATTRIBUTE))
+                .thenReturn(ResponseEntity.ok(new TrackedEntityAttributeResponse(new Pager(), trackedEntityAttributes)));
+        when(syncRepository.getDataElements(dhis2Url + DATE_DATA_ELEMENT))
+                .thenReturn(ResponseEntity.ok(new DataElementResponse(new Pager(), new LinkedList<>())));
+        when(syncRepository.getTrackedEntityAttributes(dhis2Url + DATE_TRACKED_ENTITY_ATTRIBUTE))
+                .thenReturn(ResponseEntity.ok(new TrackedEntityAttributeResponse(new Pager(), new LinkedList<>())));
     }
 }
@@ -0,0 +1,161 @@
+package com.thoughtworks.martdhis2sync.service;
+
+import com.thoughtworks.martdhis2sync.dao.PatientDAO;
+import com.thoughtworks.martdhis2sync.model.Config;
+import com.thoughtworks.martdhis2sync.model.LookupTable;
+import com.thoughtworks.martdhis2sync.model.MappingJson;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.powermock.core.classloader.annotations.PowerMockIgnore;
+import org.powermock.modules.junit4.PowerMockRunner;
+
+import java.io.SyncFailedException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static com.thoughtworks.martdhis2sync.CommonTestHelper.setValuesForMemberFields;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(PowerMockRunner.class)
+@PowerMockIgnore("javax.management.*")
+public class EnrollmentSyncOrchestratorTest {
+
+    @Mock
+    private CompletedEnrollmentService completedEnrollmentService;
+
+    @Mock
+    private ActiveEnrollmentService activeEnrollmentService;
+
+    @Mock
+    private PatientDAO patientDAO;
+
+    private EnrollmentSyncOrchestrator orchestrator;
+
+    private String service = "HT Service";
+    private String user = "superman";
+    private String enrLookupTable = "enrollment_table";
+    private String evnLookupTable = "event_table";
+    private String mappingObj = "";
+    private String openLatestCompletedEnrollment = "no";
+    private LookupTable lookupTable = new LookupTable();
+    private MappingJson mappingJson = new MappingJson();
+    private Config config = new Config(null, null, openLatestCompletedEnrollment);
+    private List<String> updatedCompletedEnrollments = Arrays.asList("enrollment1", "enrollment2");
+    private List<String> updatedActiveEnrollments = Collections.singletonList("enrollment3");
+
+    @Before
+    public void setUp() throws Exception {
+        orchestrator = new EnrollmentSyncOrchestrator();
+        setValuesForMemberFields(orchestrator, "concurrency", 2);
+        setValuesForMemberFields(orchestrator, "completedEnrollmentService", completedEnrollmentService);
+        setValuesForMemberFields(orchestrator, "activeEnrollmentService", activeEnrollmentService);
+        setValuesForMemberFields(orchestrator, "patientDAO", patientDAO);
+
+        lookupTable.setEnrollments(enrLookupTable);
+        lookupTable.setEvent(evnLookupTable);
+        mappingJson.setEvent(mappingObj);
+        when(patientDAO.getUpdatedCompletedEnrollmentIds(enrLookupTable, evnLookupTable, service))
+                .thenReturn(updatedCompletedEnrollments);
+        when(patientDAO.getUpdatedActiveEnrollmentIds(enrLookupTable, evnLookupTable, service))
+                .thenReturn(updatedActiveEnrollments);
+    }
+
+    @Test
+    public void shouldBeConcurrentOnlyWhenMoreThanOneJobCanRunAtATime() throws Exception {
+        assertTrue(orchestrator.isConcurrent());
+
+        setValuesForMemberFields(orchestrator, "concurrency", 1);
+
+        assertFalse(orchestrator.isConcurrent());
+    }
+
+    @Test
+    public void shouldSyncCompletedEnrollmentsBeforeActiveEnrollments() throws Exception {
+        orchestrator.triggerJobs(service, user, lookupTable, mappingJson, config);
+
+        InOrder inOrder = inOrder(completedEnrollmentService, activeEnrollmentService);
+        inOrder.verify(completedEnrollmentService, times(1)).triggerJobForUpdatedCompletedEnrollments(eq(service),
+                eq(user), eq(enrLookupTable), eq(evnLookupTable), eq(mappingObj), eq(Collections.emptyList()),
+                eq(updatedCompletedEnrollments), eq(openLatestCompletedEnrollment));
+        inOrder.verify(activeEnrollmentService, times(1)).triggerJobForUpdatedActiveEnrollments(eq(service),
+                eq(user), eq(enrLookupTable), eq(evnLookupTable), eq(mappingObj), eq(Collections.emptyList()),
+                eq(updatedActiveEnrollments), eq(openLatestCompletedEnrollment));
+        verify(completedEnrollmentService, times(1)).triggerJobForNewCompletedEnrollments(service, user,
+                enrLookupTable, evnLookupTable, mappingObj, openLatestCompletedEnrollment);
+        verify(activeEnrollmentService, times(1)).triggerJobForNewActiveEnrollments(service, user,
+                enrLookupTable, evnLookupTable, mappingObj, openLatestCompletedEnrollment);
+    }
+
+    @Test
+    public void shouldReadTheEnrollmentsOfEachUpdatedJobBeforeItsStageStarts() throws Exception {
+        orchestrator.triggerJobs(service, user, lookupTable, mappingJson, config);
+
+        InOrder inOrder = inOrder(patientDAO, completedEnrollmentService, activeEnrollmentService);
+        inOrder.verify(patientDAO, times(1)).getUpdatedCompletedEnrollmentIds(enrLookupTable, evnLookupTable, service);
+        inOrder.verify(completedEnrollmentService, times(1)).triggerJobForNewCompletedEnrollments(service, user,
+                enrLookupTable, evnLookupTable, mappingObj, openLatestCompletedEnrollment);
+        inOrder.verify(patientDAO, times(1)).getUpdatedActiveEnrollmentIds(enrLookupTable, evnLookupTable, service);
+        inOrder.verify(activeEnrollmentService, times(1)).triggerJobForNewActiveEnrollments(service, user,
+                enrLookupTable, evnLookupTable, mappingObj, openLatestCompletedEnrollment);
+    }
+
+    @Test
+    public void shouldRunTheNewAndUpdatedJobsOfAStageSideBySide() throws Exception {
+        CountDownLatch bothJobsStarted = new CountDownLatch(2);
+        doAnswer(invocation -> {
+            bothJobsStarted.countDown();
+            assertTrue(bothJobsStarted.await(10, TimeUnit.SECONDS));
+            return null;
+        }).when(completedEnrollmentService).triggerJobForNewCompletedEnrollments(anyString(), anyString(),
+                anyString(), anyString(), any(), anyString());
+        doAnswer(invocation -> {
+            bothJobsStarted.countDown();
+            assertTrue(bothJobsStarted.await(10, TimeUnit.SECONDS));
+            return null;
+        }).when(completedEnrollmentService).triggerJobForUpdatedCompletedEnrollments(anyString(), anyString(),
+                anyString(), anyString(), any(), any(), any(), anyString());
+
+        orchestrator.triggerJobs(service, user, lookupTable, mappingJson, config);
+
+        assertEquals(0, bothJobsStarted.getCount());
+    }
+
+    @Test
+    public void shouldNotSyncActiveEnrollmentsWhenACompletedEnrollmentJobFails() throws Exception {
+        doThrow(new SyncFailedException("NEW COMPLETED ENROLLMENTS FAILED")).when(completedEnrollmentService)
+                .triggerJobForNewCompletedEnrollments(anyString(), anyString(), anyString(), anyString(), any(), anyString());
+
+        try {
+            orchestrator.triggerJobs(service, user, lookupTable, mappingJson, config);
+            fail("Should have thrown SyncFailedException");
+        } catch (SyncFailedException e) {
+            assertEquals("NEW COMPLETED ENROLLMENTS FAILED", e.getMessage());
+        }
+
+        verify(completedEnrollmentService, times(1)).triggerJobForUpdatedCompletedEnrollments(anyString(),
+                anyString(), anyString(), anyString(), any(), any(), any(), anyString());
+        verify(activeEnrollmentService, never()).triggerJobForNewActiveEnrollments(anyString(), anyString(),
+                anyString(), anyString(), any(), anyString());
+        verify(activeEnrollmentService, never()).triggerJobForUpdatedActiveEnrollments(anyString(), anyString(),
+                anyString(), anyString(), any(), any(), any(), anyString());
+    }
+}
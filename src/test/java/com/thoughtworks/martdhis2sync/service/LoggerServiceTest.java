@@ -2,6 +2,8 @@ package com.thoughtworks.martdhis2sync.service;
 
 import com.thoughtworks.martdhis2sync.CommonTestHelper;
 import com.thoughtworks.martdhis2sync.dao.LoggerDAO;
+import com.thoughtworks.martdhis2sync.util.SyncContext;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -25,6 +27,12 @@ public class LoggerServiceTest {
     public void setUp() throws Exception {
         loggerService = new LoggerService();
         CommonTestHelper.setValuesForMemberFields(loggerService, "loggerDAO", loggerDAO);
+        SyncContext.begin("HT Service");
+    }
+
+    @After
+    public void tearDown() {
+        SyncContext.end();
     }
 
     @Test
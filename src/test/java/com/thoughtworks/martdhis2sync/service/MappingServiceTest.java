@@ -1,17 +1,21 @@
 package com.thoughtworks.martdhis2sync.service;
 
 import com.thoughtworks.martdhis2sync.dao.MappingDAO;
+import com.thoughtworks.martdhis2sync.model.Mapping;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.powermock.modules.junit4.PowerMockRunner;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
 import static com.thoughtworks.martdhis2sync.CommonTestHelper.setValuesForMemberFields;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.powermock.api.mockito.PowerMockito.when;
@@ -24,28 +28,66 @@ public class MappingServiceTest {
 
     private MappingService mappingService;
 
+    private String mapping = "HTS Service";
+
+    private Map<String, Object> expected;
+
     @Before
     public void setUp() throws Exception {
         mappingService = new MappingService();
         setValuesForMemberFields(mappingService, "mappingDAO", mappingDAO);
-    }
 
-    @Test
-    public void shouldReturnMappingDetailsOnCallToGetMappingOfMappingDAO() {
-        String mapping = "HTS Service";
-        Map<String, Object> expected = new HashMap<>();
+        expected = new HashMap<>();
         expected.put("lookup_table", "{\"instance\": \"patient_identifier\", \"enrollments\": \"patient_enrollments\"}");
         expected.put("mapping_json", "{\"instance\": " +
                 "{" +
                 "\"patient_id\": \"HF8Tu4tg\"" +
                 "}" +
                 "}");
+        expected.put("config", "{\"searchable\": [\"patient_id\"], \"comparable\": [], " +
+                "\"openLatestCompletedEnrollment\": \"no\"}");
+    }
 
+    @Test
+    public void shouldReturnParsedMappingDetailsOnCallToGetMappingOfMappingDAO() {
+        when(mappingDAO.getMappingChecksum(mapping)).thenReturn("checksum");
         when(mappingDAO.getMapping(mapping)).thenReturn(expected);
 
-        Map<String, Object> actual = mappingService.getMapping(mapping);
+        Mapping actual = mappingService.getMapping(mapping);
 
-        assertEquals(expected, actual);
+        assertEquals(mapping, actual.getName());
+        assertEquals("checksum", actual.getChecksum());
+        assertEquals("patient_identifier", actual.getLookupTable().getInstance());
+        assertEquals("patient_enrollments", actual.getLookupTable().getEnrollments());
+        assertEquals(Collections.singletonList("patient_id"), actual.getConfig().getSearchable());
+        assertEquals("no", actual.getConfig().getOpenLatestCompletedEnrollment());
+        assertEquals(Collections.singletonMap("patient_id", "HF8Tu4tg"), actual.getInstanceMapping());
         verify(mappingDAO, times(1)).getMapping(mapping);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void shouldReuseTheParsedMappingWhileTheChecksumIsUnchanged() {
+        when(mappingDAO.getMappingChecksum(mapping)).thenReturn("checksum");
+        when(mappingDAO.getMapping(mapping)).thenReturn(expected);
+
+        Mapping first = mappingService.getMapping(mapping);
+        Mapping second = mappingService.getMapping(mapping);
+
+        assertSame(first, second);
+        verify(mappingDAO, times(2)).getMappingChecksum(mapping);
+        verify(mappingDAO, times(1)).getMapping(mapping);
+    }
+
+    @Test
+    public void shouldParseTheMappingAgainWhenTheChecksumChanges() {
+        when(mappingDAO.getMappingChecksum(mapping)).thenReturn("checksum", "changed checksum");
+        when(mappingDAO.getMapping(mapping)).thenReturn(expected);
+
+        Mapping first = mappingService.getMapping(mapping);
+        Mapping second = mappingService.getMapping(mapping);
+
+        assertNotSame(first, second);
+        assertEquals("changed checksum", second.getChecksum());
+        verify(mappingDAO, times(2)).getMapping(mapping);
+    }
+}
@@ -9,6 +9,9 @@ import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.Mock;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.postgresql.copy.CopyManager;
 import org.powermock.core.classloader.annotations.PowerMockIgnore;
 import org.powermock.modules.junit4.PowerMockRunner;
 import org.springframework.http.HttpStatus;
@@ -18,10 +21,13 @@ import javax.sql.DataSource;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 import static com.thoughtworks.martdhis2sync.CommonTestHelper.setValuesForMemberFields;
+import static org.mockito.AdditionalMatchers.aryEq;
 import static org.mockito.Mockito.*;
 import static org.powermock.api.mockito.PowerMockito.when;
 
@@ -42,9 +48,21 @@ public class OrgUnitServiceTest {
     @Mock
     private PreparedStatement preparedStatement;
 
+    @Mock
+    private Statement statement;
+
+    @Mock
+    private PGConnection pgConnection;
+
+    @Mock
+    private CopyManager copyManager;
+
+    @Mock
+    private CopyIn copyIn;
+
     private List<OrgUnit> orgUnitList = Arrays.asList(
-            new OrgUnit("OU1", "abcdef"),
-            new OrgUnit("OU2", "ghijkl"));
+            new OrgUnit("OU1", "abcdef", "2019-01-17T10:22:33.456"),
+            new OrgUnit("OU2", "ghijkl", "2019-02-03T08:00:00.000"));
 
     private OrgUnitService orgUnitService;
 
@@ -52,8 +70,10 @@ public class OrgUnitServiceTest {
     private String dhis2Url = "http://play.dhis2.org";
     private String URI_ORG_UNIT = "/api/organisationUnits/";
     private String ROOT_ORG_UNIT = "SxgCPPeiq3c";
-    private String QUERY_PARAMS = "?includeDescendants=true";
+    private String QUERY_PARAMS = "?includeDescendants=true&fields=id,code,lastUpdated";
     private String URLToGetOrgUnits = dhis2Url + URI_ORG_UNIT + ROOT_ORG_UNIT + QUERY_PARAMS;
+    private String URLToGetChangedOrgUnits = dhis2Url + "/api/organisationUnits?paging=false&fields=id,code,lastUpdated" +
+            "&filter=path:like:" + ROOT_ORG_UNIT + "&filter=lastUpdated:ge:2019-02-03T08:00:00.000";
 
     @Before
     public void setUp() throws Exception {
@@ -62,6 +82,7 @@ public class OrgUnitServiceTest {
         setValuesForMemberFields(orgUnitService, "dataSource", dataSource);
         setValuesForMemberFields(orgUnitService, "dhis2Url", dhis2Url);
         setValuesForMemberFields(orgUnitService, "rootOrgUnit", ROOT_ORG_UNIT);
+        setValuesForMemberFields(orgUnitService, "fullReloadIntervalHours", 24L);
     }
 
     @Test
@@ -69,9 +90,7 @@ public class OrgUnitServiceTest {
     public void shouldGetAllOrgUnitsFromDHIS() {
         responseEntity = ResponseEntity.ok(new OrgUnitResponse(new Pager(), orgUnitList));
 
-        when(syncRepository.getOrgUnits(URLToGetOrgUnits)).thenReturn(responseEntity);
-        when(dataSource.getConnection()).thenReturn(connection);
-        when(connection.prepareStatement(any())).thenReturn(preparedStatement);
+        mockCopy();
 
         orgUnitService.getOrgUnitsList();
 
@@ -105,92 +124,171 @@ public class OrgUnitServiceTest {
     }
 
     @Test
-    public void shouldThrowExceptionWhenPrepareStatementWithDeleteQueryIsFailed() throws SQLException {
-        String deleteQuery = "DELETE FROM public.orgunit_tracker";
+    public void shouldCopyOrgUnitsIntoStagingTableAndApplyOnlyTheChangesInOneTransaction() throws SQLException {
+        responseEntity = ResponseEntity.ok(new OrgUnitResponse(new Pager(), orgUnitList));
+
+        mockCopy();
+        when(statement.executeUpdate(anyString())).thenReturn(1);
+        when(preparedStatement.executeUpdate()).thenReturn(0, 1);
 
+        orgUnitService.getOrgUnitsList();
+
+        verify(statement, times(1)).execute("CREATE TEMP TABLE orgunit_tracker_staging" +
+                "(orgunit text, id text) ON COMMIT DROP");
+        verify(copyManager, times(1)).copyIn("COPY orgunit_tracker_staging(orgunit, id) FROM STDIN WITH (FORMAT csv)");
+        verify(copyIn, times(1)).writeToCopy(aryEq("\"abcdef\",\"OU1\"\n".getBytes()), eq(0), eq(15));
+        verify(copyIn, times(1)).writeToCopy(aryEq("\"ghijkl\",\"OU2\"\n".getBytes()), eq(0), eq(15));
+        verify(copyIn, times(1)).endCopy();
+        verify(statement, times(1)).executeUpdate(startsWith("DELETE FROM public.orgunit_tracker ot WHERE NOT EXISTS"));
+        verify(connection, times(1)).prepareStatement(startsWith("UPDATE public.orgunit_tracker ot"));
+        verify(connection, times(1)).prepareStatement(startsWith("INSERT INTO public.orgunit_tracker"));
+        verify(preparedStatement, times(2)).executeUpdate();
+        verify(connection, times(1)).setAutoCommit(false);
+        verify(connection, times(1)).commit();
+        verify(connection, times(0)).rollback();
+        verify(connection, times(1)).setAutoCommit(true);
+    }
+
+    @Test
+    public void shouldRollbackAndKeepTheTrackerWhenCopyFails() throws SQLException {
         responseEntity = ResponseEntity.ok(new OrgUnitResponse(new Pager(), orgUnitList));
 
-        when(syncRepository.getOrgUnits(URLToGetOrgUnits)).thenReturn(responseEntity);
-        when(dataSource.getConnection()).thenReturn(connection);
-        when(connection.prepareStatement(deleteQuery)).thenThrow(new SQLException());
+        mockCopy();
+        when(copyIn.endCopy()).thenThrow(new SQLException());
+        when(copyIn.isActive()).thenReturn(true);
 
         try {
             orgUnitService.getOrgUnitsList();
         } catch (SQLException e) {
-            verify(syncRepository, times(1)).getOrgUnits(URLToGetOrgUnits);
-            verify(dataSource, times(1)).getConnection();
-            verify(connection, times(1)).prepareStatement(deleteQuery);
+            verify(copyIn, times(1)).cancelCopy();
+            verify(statement, times(0)).executeUpdate(anyString());
+            verify(preparedStatement, times(0)).executeUpdate();
+            verify(connection, times(1)).rollback();
+            verify(connection, times(0)).commit();
         }
     }
 
     @Test
-    public void shouldThrowExceptionWhenExecuteUpdateWithDeleteQueryIsFailed() throws SQLException {
-        String deleteQuery = "DELETE FROM public.orgunit_tracker";
-
+    public void shouldRollbackWhenApplyingTheChangesFails() throws SQLException {
         responseEntity = ResponseEntity.ok(new OrgUnitResponse(new Pager(), orgUnitList));
 
-        when(syncRepository.getOrgUnits(URLToGetOrgUnits)).thenReturn(responseEntity);
-        when(dataSource.getConnection()).thenReturn(connection);
-        when(connection.prepareStatement(deleteQuery)).thenReturn(preparedStatement);
-        when(preparedStatement.executeUpdate()).thenThrow(new SQLException());
+        mockCopy();
+        when(preparedStatement.executeUpdate())
+                .thenReturn(1)
+                .thenThrow(new SQLException());
 
         try {
             orgUnitService.getOrgUnitsList();
         } catch (SQLException e) {
-            verify(syncRepository, times(1)).getOrgUnits(URLToGetOrgUnits);
-            verify(dataSource, times(1)).getConnection();
-            verify(connection, times(1)).prepareStatement(deleteQuery);
-            verify(preparedStatement, times(1)).executeUpdate();
+            verify(preparedStatement, times(2)).executeUpdate();
+            verify(connection, times(1)).rollback();
+            verify(connection, times(0)).commit();
         }
     }
 
     @Test
-    public void shouldThrowExceptionWhenPrepareStatementWithSelectQueryIsFailed() throws SQLException {
-        String deleteQuery = "DELETE FROM public.orgunit_tracker";
-        String selectQuery = "INSERT INTO public.orgunit_tracker(orgunit, id, date_created) values (?, ?, ?)";
+    public void shouldOnlyAskForOrgUnitsChangedSinceTheLastRefreshAndNotDeleteAnything() throws SQLException {
+        responseEntity = ResponseEntity.ok(new OrgUnitResponse(new Pager(), orgUnitList));
+        mockCopy();
+        orgUnitService.getOrgUnitsList();
+
+        List<OrgUnit> changedOrgUnits = Arrays.asList(
+                new OrgUnit("OU2", "ghijkl", "2019-02-03T08:00:00.000"),
+                new OrgUnit("OU3", "mnopqr", "2019-03-01T09:30:00.000"));
+        when(syncRepository.getOrgUnits(URLToGetChangedOrgUnits))
+                .thenReturn(ResponseEntity.ok(new OrgUnitResponse(new Pager(), changedOrgUnits)));
+
+        orgUnitService.getOrgUnitsList();
 
+        verify(syncRepository, times(1)).getOrgUnits(URLToGetOrgUnits);
+        verify(syncRepository, times(1)).getOrgUnits(URLToGetChangedOrgUnits);
+        verify(copyIn, times(1)).writeToCopy(aryEq("\"mnopqr\",\"OU3\"\n".getBytes()), eq(0), eq(15));
+        verify(statement, times(1)).executeUpdate(startsWith("DELETE FROM public.orgunit_tracker ot WHERE NOT EXISTS"));
+        verify(connection, times(2)).commit();
+    }
+
+    @Test
+    public void shouldRemoveTheRowOfTheOldCodeWhenTheCodeOfAnOrgUnitChanged() throws SQLException {
         responseEntity = ResponseEntity.ok(new OrgUnitResponse(new Pager(), orgUnitList));
+        mockCopy();
+        orgUnitService.getOrgUnitsList();
 
-        when(syncRepository.getOrgUnits(URLToGetOrgUnits)).thenReturn(responseEntity);
-        when(dataSource.getConnection()).thenReturn(connection);
-        when(connection.prepareStatement(deleteQuery)).thenReturn(preparedStatement);
-        when(preparedStatement.executeUpdate()).thenReturn(1);
-        when(connection.prepareStatement(selectQuery)).thenThrow(new SQLException());
+        when(syncRepository.getOrgUnits(URLToGetChangedOrgUnits)).thenReturn(ResponseEntity.ok(new OrgUnitResponse(
+                new Pager(), Collections.singletonList(new OrgUnit("OU1", "uvwxyz", "2019-03-01T09:30:00.000")))));
 
-        try {
-            orgUnitService.getOrgUnitsList();
-        } catch (SQLException e) {
-            verify(syncRepository, times(1)).getOrgUnits(URLToGetOrgUnits);
-            verify(dataSource, times(1)).getConnection();
-            verify(connection, times(1)).prepareStatement(deleteQuery);
-            verify(connection, times(1)).prepareStatement(selectQuery);
-            verify(preparedStatement, times(1)).executeUpdate();
-        }
+        orgUnitService.getOrgUnitsList();
+
+        verify(copyIn, times(1)).writeToCopy(aryEq("\"uvwxyz\",\"OU1\"\n".getBytes()), eq(0), eq(15));
+        verify(statement, times(1)).executeUpdate("DELETE FROM public.orgunit_tracker ot " +
+                "WHERE EXISTS (SELECT 1 FROM orgunit_tracker_staging s " +
+                "WHERE s.id = ot.id AND s.orgunit IS DISTINCT FROM ot.orgunit)");
+        verify(connection, times(2)).commit();
     }
 
     @Test
-    public void shouldThrowExceptionWhenExecuteUpdateWithSelectQueryIsFailed() throws SQLException {
-        String deleteQuery = "DELETE FROM public.orgunit_tracker";
-        String selectQuery = "INSERT INTO public.orgunit_tracker(orgunit, id, date_created) values (?, ?, ?)";
+    public void shouldStageAnOrgUnitWhoseCodeWasClearedSoItsOldRowIsRemoved() throws SQLException {
+        responseEntity = ResponseEntity.ok(new OrgUnitResponse(new Pager(), orgUnitList));
+        mockCopy();
+        orgUnitService.getOrgUnitsList();
 
+        when(syncRepository.getOrgUnits(URLToGetChangedOrgUnits)).thenReturn(ResponseEntity.ok(new OrgUnitResponse(
+                new Pager(), Collections.singletonList(new OrgUnit("OU1", null, "2019-03-01T09:30:00.000")))));
+
+        orgUnitService.getOrgUnitsList();
+
+        verify(copyIn, times(1)).writeToCopy(aryEq(",\"OU1\"\n".getBytes()), eq(0), eq(7));
+        verify(statement, times(1)).executeUpdate(startsWith("DELETE FROM public.orgunit_tracker ot WHERE EXISTS"));
+        verify(connection, times(2)).prepareStatement(contains("WHERE s.orgunit IS NOT NULL AND NOT EXISTS"));
+        verify(connection, times(2)).commit();
+    }
+
+    @Test
+    public void shouldNotTouchTheTrackerWhenNoOrgUnitsChanged() throws SQLException {
         responseEntity = ResponseEntity.ok(new OrgUnitResponse(new Pager(), orgUnitList));
+        mockCopy();
+        orgUnitService.getOrgUnitsList();
+
+        when(syncRepository.getOrgUnits(URLToGetChangedOrgUnits))
+                .thenReturn(ResponseEntity.ok(new OrgUnitResponse(new Pager(), Collections.emptyList())));
+
+        orgUnitService.getOrgUnitsList();
+
+        verify(syncRepository, times(1)).getOrgUnits(URLToGetChangedOrgUnits);
+        verify(dataSource, times(1)).getConnection();
+    }
+
+    @Test
+    public void shouldReloadAllOrgUnitsOnceTheFullReloadIntervalHasPassed() throws Exception {
+        responseEntity = ResponseEntity.ok(new OrgUnitResponse(new Pager(), orgUnitList));
+        setValuesForMemberFields(orgUnitService, "fullReloadIntervalHours", 0L);
+        mockCopy();
+
+        orgUnitService.getOrgUnitsList();
+        orgUnitService.getOrgUnitsList();
+
+        verify(syncRepository, times(2)).getOrgUnits(URLToGetOrgUnits);
+        verify(syncRepository, times(0)).getOrgUnits(URLToGetChangedOrgUnits);
+        verify(statement, times(2)).executeUpdate(startsWith("DELETE FROM public.orgunit_tracker"));
+    }
+
+    @Test
+    public void shouldReloadAllOrgUnitsAgainWhenTheFirstReloadFailed() throws SQLException {
+        when(syncRepository.getOrgUnits(URLToGetOrgUnits)).thenReturn(null);
+
+        orgUnitService.getOrgUnitsList();
+        orgUnitService.getOrgUnitsList();
+
+        verify(syncRepository, times(2)).getOrgUnits(URLToGetOrgUnits);
+    }
 
+    private void mockCopy() throws SQLException {
         when(syncRepository.getOrgUnits(URLToGetOrgUnits)).thenReturn(responseEntity);
         when(dataSource.getConnection()).thenReturn(connection);
-        when(connection.prepareStatement(deleteQuery)).thenReturn(preparedStatement);
-        when(connection.prepareStatement(selectQuery)).thenReturn(preparedStatement);
-        when(preparedStatement.executeUpdate())
-                .thenReturn(1)
-                .thenThrow(new SQLException());
-
-        try {
-            orgUnitService.getOrgUnitsList();
-        } catch (SQLException e) {
-            verify(syncRepository, times(1)).getOrgUnits(URLToGetOrgUnits);
-            verify(dataSource, times(1)).getConnection();
-            verify(connection, times(1)).prepareStatement(deleteQuery);
-            verify(connection, times(1)).prepareStatement(selectQuery);
-            verify(preparedStatement, times(2)).executeUpdate();
-        }
+        when(connection.getAutoCommit()).thenReturn(true);
+        when(connection.createStatement()).thenReturn(statement);
+        when(connection.prepareStatement(anyString())).thenReturn(preparedStatement);
+        when(connection.unwrap(PGConnection.class)).thenReturn(pgConnection);
+        when(pgConnection.getCopyAPI()).thenReturn(copyManager);
+        when(copyManager.copyIn(anyString())).thenReturn(copyIn);
     }
 }
@@ -0,0 +1,120 @@
+package com.thoughtworks.martdhis2sync.service;
+
+import com.thoughtworks.martdhis2sync.model.DHISSyncRequestBody;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.powermock.modules.junit4.PowerMockRunner;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.config.CronTask;
+import org.springframework.scheduling.config.ScheduledTaskRegistrar;
+
+import java.util.List;
+import java.util.Map;
+
+import static com.thoughtworks.martdhis2sync.CommonTestHelper.setValuesForMemberFields;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.powermock.api.mockito.PowerMockito.doThrow;
+
+@RunWith(PowerMockRunner.class)
+public class SyncSchedulerTest {
+
+    @Mock
+    private SyncService syncService;
+
+    @Mock
+    private SyncStatusService syncStatusService;
+
+    private SyncScheduler syncScheduler;
+
+    private String service = "HTS Service";
+
+    @Before
+    public void setUp() throws Exception {
+        syncScheduler = new SyncScheduler();
+        setValuesForMemberFields(syncScheduler, "syncService", syncService);
+        setValuesForMemberFields(syncScheduler, "syncStatusService", syncStatusService);
+        setValuesForMemberFields(syncScheduler, "schedule", "HTS Service=0 */15 * * * *; TB Service = 0 0 2 * * *;");
+        setValuesForMemberFields(syncScheduler, "user", "scheduler");
+    }
+
+    @Test
+    public void shouldReadTheCronOfEachService() {
+        Map<String, String> schedules = syncScheduler.getSchedules();
+
+        assertEquals(2, schedules.size());
+        assertEquals("0 */15 * * * *", schedules.get("HTS Service"));
+        assertEquals("0 0 2 * * *", schedules.get("TB Service"));
+    }
+
+    @Test
+    public void shouldNotScheduleAnythingWhenNoServiceIsConfigured() throws Exception {
+        setValuesForMemberFields(syncScheduler, "schedule", "");
+
+        assertTrue(syncScheduler.getSchedules().isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectAScheduleWithoutAService() throws Exception {
+        setValuesForMemberFields(syncScheduler, "schedule", "0 */15 * * * *");
+
+        syncScheduler.getSchedules();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectAnInvalidCron() throws Exception {
+        setValuesForMemberFields(syncScheduler, "schedule", "HTS Service=every 15 minutes");
+
+        syncScheduler.configureTasks(new ScheduledTaskRegistrar());
+    }
+
+    @Test
+    public void shouldRegisterACronTaskPerService() {
+        ScheduledTaskRegistrar taskRegistrar = new ScheduledTaskRegistrar();
+
+        syncScheduler.configureTasks(taskRegistrar);
+
+        List<CronTask> cronTasks = taskRegistrar.getCronTaskList();
+        assertEquals(2, cronTasks.size());
+        assertEquals("0 */15 * * * *", cronTasks.get(0).getExpression());
+        assertEquals("0 0 2 * * *", cronTasks.get(1).getExpression());
+    }
+
+    @Test
+    public void shouldQueueTheSyncOfTheService() {
+        ArgumentCaptor<DHISSyncRequestBody> captor = ArgumentCaptor.forClass(DHISSyncRequestBody.class);
+
+        assertTrue(syncScheduler.trigger(service));
+
+        verify(syncService, times(1)).submit(captor.capture());
+        assertEquals(service, captor.getValue().getService());
+        assertEquals("scheduler", captor.getValue().getUser());
+        assertEquals("Scheduled sync", captor.getValue().getComment());
+    }
+
+    @Test
+    public void shouldSkipTheTriggerWhileThePreviousSyncOfTheServiceHasNotFinished() {
+        when(syncStatusService.isActive(service)).thenReturn(true);
+
+        assertFalse(syncScheduler.trigger(service));
+
+        verify(syncService, never()).submit(any());
+    }
+
+    @Test
+    public void shouldSkipTheTriggerWhenTheSyncQueueIsFull() {
+        doThrow(new SyncRejectedException("Too many syncs are queued", new TaskRejectedException("queue is full")))
+                .when(syncService).submit(any());
+
+        assertFalse(syncScheduler.trigger(service));
+    }
+}
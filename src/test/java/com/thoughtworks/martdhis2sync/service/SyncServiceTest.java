@@ -0,0 +1,419 @@
+package com.thoughtworks.martdhis2sync.service;
+
+import com.google.gson.Gson;
+import com.thoughtworks.martdhis2sync.model.Config;
+import com.thoughtworks.martdhis2sync.model.DHISSyncRequestBody;
+import com.thoughtworks.martdhis2sync.model.LookupTable;
+import com.thoughtworks.martdhis2sync.model.Mapping;
+import com.thoughtworks.martdhis2sync.model.MappingJson;
+import com.thoughtworks.martdhis2sync.model.SyncStatus;
+import com.thoughtworks.martdhis2sync.trackerHandler.TrackersHandler;
+import com.thoughtworks.martdhis2sync.util.MarkerUtil;
+import com.thoughtworks.martdhis2sync.util.SyncContext;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.web.client.HttpServerErrorException;
+
+import java.io.SyncFailedException;
+import java.util.Date;
+import java.util.Map;
+
+import static com.thoughtworks.martdhis2sync.CommonTestHelper.setValuesForMemberFields;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyList;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.*;
+import static org.mockito.Mockito.when;
+import static org.powermock.api.mockito.PowerMockito.doAnswer;
+import static org.powermock.api.mockito.PowerMockito.doNothing;
+import static org.powermock.api.mockito.PowerMockito.doThrow;
+import static org.powermock.api.mockito.PowerMockito.*;
+
+@RunWith(PowerMockRunner.class)
+@PrepareForTest(TrackersHandler.class)
+public class SyncServiceTest {
+    @Mock
+    private MappingService mappingService;
+
+    @Mock
+    private TEIService teiService;
+
+    @Mock
+    private LoggerService loggerService;
+
+    @Mock
+    private DHISMetaDataService dhisMetaDataService;
+
+    @Mock
+    private CompletedEnrollmentService completedEnrollmentService;
+
+    @Mock
+    private ActiveEnrollmentService activeEnrollmentService;
+
+    @Mock
+    private EnrollmentSyncOrchestrator enrollmentSyncOrchestrator;
+
+    @Mock
+    private MarkerUtil markerUtil;
+
+    @Mock
+    private SyncStatusService syncStatusService;
+
+    @Mock
+    private TaskExecutor syncExecutor;
+
+    private SyncService syncService;
+    private String service = "HT Service";
+    private String user = "admin";
+    private String comment = "";
+    private String syncId = "4f1c2a9e-sync";
+    Date lastSyncedDate = new Date(Long.MIN_VALUE);
+
+    @Before
+    public void setUp() throws Exception {
+        syncService = new SyncService();
+        setValuesForMemberFields(syncService, "mappingService", mappingService);
+        setValuesForMemberFields(syncService, "teiService", teiService);
+        setValuesForMemberFields(syncService, "loggerService", loggerService);
+        setValuesForMemberFields(syncService, "dhisMetaDataService", dhisMetaDataService);
+        setValuesForMemberFields(syncService, "completedEnrollmentService", completedEnrollmentService);
+        setValuesForMemberFields(syncService, "activeEnrollmentService", activeEnrollmentService);
+        setValuesForMemberFields(syncService, "enrollmentSyncOrchestrator", enrollmentSyncOrchestrator);
+        setValuesForMemberFields(syncService, "markerUtil", markerUtil);
+        setValuesForMemberFields(syncService, "syncStatusService", syncStatusService);
+        setValuesForMemberFields(syncService, "syncExecutor", syncExecutor);
+
+        mockStatic(TrackersHandler.class);
+        doNothing().when(TrackersHandler.class);
+        TrackersHandler.clearTrackerLists();
+        when(markerUtil.getLastSyncedDate(service, "enrollment")).thenReturn(lastSyncedDate);
+        when(markerUtil.getLastSyncedDate(service, "event")).thenReturn(lastSyncedDate);
+        when(syncStatusService.submit(service, user)).thenReturn(getSyncStatus());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        TrackersHandler.clearTrackerLists();
+    }
+
+    @Test
+    public void shouldNotCallEnrollmentServiceWhenTeiServiceIsFailed() throws Exception {
+        Mapping mapping = getMapping();
+        DHISSyncRequestBody dhisSyncRequestBody = getDhisSyncRequestBody();
+
+        doNothing().when(dhisMetaDataService).filterByTypeDateTime();
+        doNothing().when(teiService).getTrackedEntityInstances(mapping);
+        doNothing().when(loggerService).addLog(service, user, comment);
+        doNothing().when(loggerService).updateLog(service, "failed");
+        when(mappingService.getMapping(service)).thenReturn(mapping);
+        doThrow(new SyncFailedException("instance sync failed")).when(teiService).triggerJob(anyString(), anyString(), anyString(), any(), anyList(), anyList());
+
+        try {
+            syncService.sync(dhisSyncRequestBody);
+        } catch (HttpServerErrorException e) {
+            verify(dhisMetaDataService, times(1)).filterByTypeDateTime();
+            verify(teiService, times(1)).getTrackedEntityInstances(mapping);
+            verify(loggerService, times(1)).addLog(service, user, comment);
+            verify(loggerService, times(1)).updateLog(service, "failed");
+            verify(mappingService, times(1)).getMapping(service);
+            verify(teiService, times(1)).triggerJob(anyString(), anyString(), anyString(), any(), anyList(), anyList());
+            verify(markerUtil, times(1)).getLastSyncedDate(service, "enrollment");
+            verify(markerUtil, times(1)).getLastSyncedDate(service, "event");
+            verifyStatic(times(0));
+            assertEquals("500 SYNC FAILED", e.getMessage());
+        }
+    }
+
+    @Test
+    public void shouldNotCallUpdatedCompletedEnrollmentServiceWhenNewCompletedEnrollmentIsFailed() throws Exception {
+        Mapping mapping = getMapping();
+        DHISSyncRequestBody dhisSyncRequestBody = getDhisSyncRequestBody();
+
+        doNothing().when(dhisMetaDataService).filterByTypeDateTime();
+        doNothing().when(loggerService).addLog(service, user, comment);
+        doNothing().when(loggerService).updateLog(service, "failed");
+        when(mappingService.getMapping(service)).thenReturn(mapping);
+        doNothing().when(teiService).getTrackedEntityInstances(mapping);
+        doNothing().when(teiService).triggerJob(anyString(), anyString(), anyString(), any(), anyList(), anyList());
+        doThrow(new SyncFailedException("instance sync failed")).when(completedEnrollmentService)
+                .triggerJobForNewCompletedEnrollments(anyString(), anyString(), anyString(), anyString(), any(), anyString());
+        doNothing().when(teiService).getEnrollmentsForInstances("hts_program_enrollment_table", "hts_program_events_table", service);
+
+        try {
+            syncService.sync(dhisSyncRequestBody);
+        } catch (HttpServerErrorException e) {
+            verify(dhisMetaDataService, times(1)).filterByTypeDateTime();
+            verify(loggerService, times(1)).addLog(service, user, comment);
+            verify(loggerService, times(1)).updateLog(service, "failed");
+            verify(mappingService, times(1)).getMapping(service);
+            verify(teiService, times(1)).getTrackedEntityInstances(mapping);
+            verify(teiService, times(1)).triggerJob(anyString(), anyString(), anyString(), any(), anyList(), anyList());
+            verify(completedEnrollmentService, times(1))
+                    .triggerJobForNewCompletedEnrollments(anyString(), anyString(), anyString(), anyString(), any(), anyString());
+            verify(completedEnrollmentService, times(0)).triggerJobForUpdatedCompletedEnrollments(anyString(), anyString(), anyString(), anyString(), any(), any(), any(), anyString());
+            verify(markerUtil, times(1)).getLastSyncedDate(service, "enrollment");
+            verify(markerUtil, times(1)).getLastSyncedDate(service, "event");
+            verifyStatic(times(1));
+            TrackersHandler.clearTrackerLists();
+            verify(teiService, times(1)).getEnrollmentsForInstances("hts_program_enrollment_table", "hts_program_events_table", service);
+            assertEquals("500 SYNC FAILED", e.getMessage());
+        }
+    }
+
+    @Test
+    public void shouldThrowExceptionWithNoDataToSync() throws Exception {
+        Mapping mapping = getMapping();
+        DHISSyncRequestBody dhisSyncRequestBody = getDhisSyncRequestBody();
+
+        doNothing().when(teiService).getTrackedEntityInstances(mapping);
+        doNothing().when(loggerService).addLog(service, user, comment);
+        doNothing().when(loggerService).updateLog(service, "success");
+        doNothing().when(loggerService).collateLogMessage("No delta data to sync.");
+        when(mappingService.getMapping(service)).thenReturn(mapping);
+        doNothing().when(teiService).triggerJob(anyString(), anyString(), anyString(), any(), anyList(), anyList());
+        doNothing().when(completedEnrollmentService).triggerJobForNewCompletedEnrollments(anyString(), anyString(), anyString(), anyString(), any(), anyString());
+        doNothing().when(completedEnrollmentService).triggerJobForUpdatedCompletedEnrollments(anyString(), anyString(), anyString(), anyString(), any(), any(), any(), anyString());
+
+        try {
+            syncService.sync(dhisSyncRequestBody);
+        } catch (Exception e) {
+            verify(loggerService, times(1)).addLog(service, user, comment);
+            verify(teiService, times(1)).getTrackedEntityInstances(mapping);
+            verify(loggerService, times(1)).updateLog(service, "success");
+            verify(loggerService, times(1)).collateLogMessage("No delta data to sync.");
+            verify(mappingService, times(1)).getMapping(service);
+            verify(teiService, times(1)).triggerJob(anyString(), anyString(), anyString(), any(), anyList(), anyList());
+            verify(completedEnrollmentService, times(1)).triggerJobForNewCompletedEnrollments(anyString(), anyString(), anyString(), anyString(), any(), anyString());
+            verify(markerUtil, times(1)).getLastSyncedDate(service, "enrollment");
+            verify(markerUtil, times(1)).getLastSyncedDate(service, "event");
+            verifyStatic(times(4));
+            TrackersHandler.clearTrackerLists();
+            verify(teiService, times(1)).getEnrollmentsForInstances("hts_program_enrollment_table", "hts_program_events_table", service);
+
+            assertEquals("500 NO DATA TO SYNC", e.getMessage());
+        }
+    }
+
+    @Test
+    public void shouldLeaveTheEnrollmentJobsToTheOrchestratorWhenItIsConcurrent() throws Exception {
+        Mapping mapping = getMapping();
+        DHISSyncRequestBody dhisSyncRequestBody = getDhisSyncRequestBody();
+
+        when(mappingService.getMapping(service)).thenReturn(mapping);
+        when(enrollmentSyncOrchestrator.isConcurrent()).thenReturn(true);
+
+        try {
+            syncService.sync(dhisSyncRequestBody);
+        } catch (Exception e) {
+            verify(teiService, times(1)).getEnrollmentsForInstances("hts_program_enrollment_table", "hts_program_events_table", service);
+            verify(enrollmentSyncOrchestrator, times(1)).triggerJobs(eq(service), eq(user), any(), any(), any());
+            verify(completedEnrollmentService, times(0)).triggerJobForNewCompletedEnrollments(anyString(), anyString(), anyString(), anyString(), any(), anyString());
+            verify(activeEnrollmentService, times(0)).triggerJobForNewActiveEnrollments(anyString(), anyString(), anyString(), anyString(), any(), anyString());
+
+            assertEquals("500 NO DATA TO SYNC", e.getMessage());
+        }
+    }
+
+    @Test
+    public void shouldNotCallActiveEnrollmentServiceWhenCompletedEnrollmentServiceIsFailed() throws Exception {
+        Mapping mapping = getMapping();
+        DHISSyncRequestBody dhisSyncRequestBody = getDhisSyncRequestBody();
+
+        doNothing().when(dhisMetaDataService).filterByTypeDateTime();
+        doNothing().when(loggerService).addLog(service, user, comment);
+        doNothing().when(loggerService).updateLog(service, "failed");
+        when(mappingService.getMapping(service)).thenReturn(mapping);
+        doNothing().when(teiService).triggerJob(anyString(), anyString(), anyString(), any(), anyList(), anyList());
+        doNothing().when(completedEnrollmentService)
+                .triggerJobForNewCompletedEnrollments(anyString(), anyString(), anyString(), anyString(), any(), anyString());
+        doNothing().when(completedEnrollmentService)
+                .triggerJobForUpdatedCompletedEnrollments(anyString(), anyString(), anyString(), anyString(), any(), any(), any(), anyString());
+        doThrow(new SyncFailedException("instance sync failed")).when(completedEnrollmentService)
+                .triggerJobForNewCompletedEnrollments(anyString(), anyString(), anyString(), anyString(), any(), anyString());
+
+        try {
+            syncService.sync(dhisSyncRequestBody);
+        } catch (HttpServerErrorException e) {
+            verify(dhisMetaDataService, times(1)).filterByTypeDateTime();
+            verify(loggerService, times(1)).addLog(service, user, comment);
+            verify(loggerService, times(1)).updateLog(service, "failed");
+            verify(mappingService, times(1)).getMapping(service);
+            verify(completedEnrollmentService, times(1))
+                    .triggerJobForNewCompletedEnrollments(anyString(), anyString(), anyString(), anyString(), any(), anyString());
+            verify(activeEnrollmentService, times(0))
+                    .triggerJobForNewActiveEnrollments(anyString(), anyString(), anyString(), anyString(), any(), anyString());
+            verify(markerUtil, times(1)).getLastSyncedDate(service, "enrollment");
+            verify(markerUtil, times(1)).getLastSyncedDate(service, "event");
+            verifyStatic(times(1));
+            assertEquals("500 SYNC FAILED", e.getMessage());
+        }
+    }
+
+    @Test
+    public void shouldNotInvokeSecondJobOfActiveEnrollmentServiceIfFirstJobFails() throws Exception {
+        Mapping mapping = getMapping();
+        DHISSyncRequestBody dhisSyncRequestBody = getDhisSyncRequestBody();
+
+        doNothing().when(dhisMetaDataService).filterByTypeDateTime();
+        doNothing().when(loggerService).addLog(service, user, comment);
+        doNothing().when(loggerService).updateLog(service, "failed");
+        when(mappingService.getMapping(service)).thenReturn(mapping);
+        doNothing().when(teiService).triggerJob(anyString(), anyString(), anyString(), any(), anyList(), anyList());
+        doNothing().when(completedEnrollmentService)
+                .triggerJobForNewCompletedEnrollments(anyString(), anyString(), anyString(), anyString(), any(), anyString());
+        doNothing().when(completedEnrollmentService)
+                .triggerJobForUpdatedCompletedEnrollments(anyString(), anyString(), anyString(), anyString(), any(), any(), any(), anyString());
+        doThrow(new SyncFailedException("instance sync failed")).when(activeEnrollmentService)
+                .triggerJobForNewActiveEnrollments(anyString(), anyString(), anyString(), anyString(), any(), anyString());
+
+        try {
+            syncService.sync(dhisSyncRequestBody);
+        } catch (HttpServerErrorException e) {
+            verify(dhisMetaDataService, times(1)).filterByTypeDateTime();
+            verify(loggerService, times(1)).addLog(service, user, comment);
+            verify(loggerService, times(1)).updateLog(service, "failed");
+            verify(mappingService, times(1)).getMapping(service);
+            verify(activeEnrollmentService, times(1))
+                    .triggerJobForNewActiveEnrollments(anyString(), anyString(), anyString(), anyString(), any(), anyString());
+            verify(activeEnrollmentService, times(0))
+                    .triggerJobForUpdatedActiveEnrollments(anyString(), anyString(), anyString(), anyString(), any(), any(), any(), anyString());
+            verify(markerUtil, times(1)).getLastSyncedDate(service, "enrollment");
+            verify(markerUtil, times(1)).getLastSyncedDate(service, "event");
+            verifyStatic(times(3));
+            assertEquals("500 SYNC FAILED", e.getMessage());
+        }
+    }
+
+    @Test
+    public void shouldRecordTheSyncAsHavingNoDeltaWhenThereIsNoDataToSync() {
+        when(mappingService.getMapping(service)).thenReturn(getMapping());
+
+        try {
+            syncService.sync(getDhisSyncRequestBody());
+        } catch (HttpServerErrorException e) {
+            verify(syncStatusService, times(1)).submit(service, user);
+            verify(syncStatusService, times(1)).start(syncId);
+            verify(syncStatusService, times(1)).finish(syncId, SyncStatus.State.NO_DELTA, "NO DATA TO SYNC");
+            assertEquals("500 NO DATA TO SYNC", e.getMessage());
+        }
+    }
+
+    @Test
+    public void shouldUpdateTheMarkersAsAPhaseOfTheSync() throws Exception {
+        when(mappingService.getMapping(service)).thenReturn(getMapping());
+        doAnswer(invocation -> {
+            SyncContext.current().setDeltaExists(true);
+            return null;
+        }).when(teiService)
+                .triggerJob(anyString(), anyString(), anyString(), any(), anyList(), anyList());
+
+        syncService.sync(getDhisSyncRequestBody());
+
+        verify(markerUtil, times(1)).updateMarkerEntry(eq(service), eq("enrollment"), anyString());
+        verify(markerUtil, times(1)).updateMarkerEntry(eq(service), eq("event"), anyString());
+        verify(syncStatusService, times(1)).phaseStarted("Update Markers");
+        verify(syncStatusService, times(1)).phaseFinished("Update Markers", false);
+        verify(syncStatusService, times(1)).finish(syncId, SyncStatus.State.SUCCESS, null);
+    }
+
+    @Test
+    public void shouldSubmitTheSyncAndReturnItsIdWithoutWaitingForIt() {
+        SyncStatus status = syncService.submit(getDhisSyncRequestBody());
+
+        assertEquals(syncId, status.getSyncId());
+        verify(syncExecutor, times(1)).execute(any(Runnable.class));
+        verify(syncStatusService, times(0)).start(anyString());
+        verify(mappingService, times(0)).getMapping(anyString());
+    }
+
+    @Test
+    public void shouldRunTheSubmittedSyncOnTheSyncExecutor() {
+        ArgumentCaptor<Runnable> sync = ArgumentCaptor.forClass(Runnable.class);
+        when(mappingService.getMapping(service)).thenReturn(getMapping());
+
+        syncService.submit(getDhisSyncRequestBody());
+        verify(syncExecutor).execute(sync.capture());
+        sync.getValue().run();
+
+        verify(syncStatusService, times(1)).start(syncId);
+        verify(mappingService, times(1)).getMapping(service);
+        verify(syncStatusService, times(1)).finish(syncId, SyncStatus.State.NO_DELTA, "NO DATA TO SYNC");
+    }
+
+    @Test
+    public void shouldRejectTheSyncWhenTooManySyncsAreQueued() {
+        doThrow(new TaskRejectedException("queue is full")).when(syncExecutor).execute(any(Runnable.class));
+
+        try {
+            syncService.submit(getDhisSyncRequestBody());
+        } catch (SyncRejectedException e) {
+            verify(syncStatusService, times(1)).finish(syncId, SyncStatus.State.FAILED, "Too many syncs are queued");
+            return;
+        }
+        fail("Expected the sync to be rejected");
+    }
+
+    private SyncStatus getSyncStatus() {
+        SyncStatus status = new SyncStatus();
+        status.setSyncId(syncId);
+        status.setService(service);
+        status.setUser(user);
+        status.setState(SyncStatus.State.QUEUED);
+        return status;
+    }
+
+    private DHISSyncRequestBody getDhisSyncRequestBody() {
+        DHISSyncRequestBody dhisSyncRequestBody = new DHISSyncRequestBody();
+        dhisSyncRequestBody.setService(service);
+        dhisSyncRequestBody.setUser(user);
+        dhisSyncRequestBody.setComment(comment);
+        return dhisSyncRequestBody;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Mapping getMapping() {
+        String lookupTable = "{" +
+                "\"instance\":\"hts_instance_table\"," +
+                "\"enrollments\":\"hts_program_enrollment_table\"," +
+                "\"event\":\"hts_program_events_table\"" +
+                "}";
+
+        String mappingJson = "{" +
+                "\"instance\":" +
+                "{" +
+                "\"Patient_Identifier\":\"\"," +
+                "\"UIC\":\"rOb34aQLSyC\"" +
+                "}," +
+                "\"event\":" +
+                "{" +
+                "\"self_testing_outcome\":\"gwatO1kb3Fy\"," +
+                "\"client_received\":\"gXNu7zJBTDN\"" +
+                "}" +
+                "}";
+
+        String config = "{" +
+                "\"searchable\":[" +
+                "\"UIC\"" +
+                "]," +
+                "\"comparable\":[" +
+                "Patient_Identifier" +
+                "]," +
+                "\"openLatestCompletedEnrollment\": \"no\"" +
+                "}";
+
+        Gson gson = new Gson();
+        MappingJson parsedMappingJson = gson.fromJson(mappingJson, MappingJson.class);
+        return new Mapping(service, "checksum", gson.fromJson(lookupTable, LookupTable.class), parsedMappingJson,
+                gson.fromJson(config, Config.class), (Map<String, Object>) parsedMappingJson.getInstance());
+    }
+}
@@ -0,0 +1,211 @@
+package com.thoughtworks.martdhis2sync.service;
+
+import com.thoughtworks.martdhis2sync.model.SyncPhase;
+import com.thoughtworks.martdhis2sync.model.SyncStatus;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobInstance;
+import org.springframework.batch.core.JobParameters;
+import org.springframework.batch.core.StepExecution;
+
+import static com.thoughtworks.martdhis2sync.CommonTestHelper.setValuesForMemberFields;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class SyncStatusServiceTest {
+
+    private SyncStatusService syncStatusService;
+
+    private String service = "HTS Service";
+
+    private String user = "admin";
+
+    @Before
+    public void setUp() throws Exception {
+        syncStatusService = new SyncStatusService();
+        setValuesForMemberFields(syncStatusService, "retention", 2);
+    }
+
+    @Test
+    public void shouldQueueTheSubmittedSync() {
+        SyncStatus submitted = syncStatusService.submit(service, user);
+
+        SyncStatus status = syncStatusService.get(submitted.getSyncId());
+
+        assertNotNull(submitted.getSyncId());
+        assertEquals(SyncStatus.State.QUEUED, status.getState());
+        assertEquals(service, status.getService());
+        assertEquals(user, status.getUser());
+        assertNotNull(status.getSubmittedAt());
+        assertNull(status.getStartedAt());
+    }
+
+    @Test
+    public void shouldReturnNullForAnUnknownSync() {
+        assertNull(syncStatusService.get("unknown"));
+    }
+
+    @Test
+    public void shouldRecordTheStateOfTheSync() {
+        String syncId = syncStatusService.submit(service, user).getSyncId();
+
+        syncStatusService.start(syncId);
+        assertEquals(SyncStatus.State.RUNNING, syncStatusService.get(syncId).getState());
+
+        syncStatusService.finish(syncId, SyncStatus.State.NO_DELTA, "NO DATA TO SYNC");
+        SyncStatus status = syncStatusService.get(syncId);
+
+        assertEquals(SyncStatus.State.NO_DELTA, status.getState());
+        assertEquals("NO DATA TO SYNC", status.getMessage());
+        assertNotNull(status.getStartedAt());
+        assertNotNull(status.getFinishedAt());
+    }
+
+    @Test
+    public void shouldRecordTheCountsOfEachJobAsAPhase() {
+        String syncId = syncStatusService.submit(service, user).getSyncId();
+        JobExecution instanceJob = getJobExecution("Sync Tracked Entity Instance");
+        JobExecution enrollmentJob = getJobExecution("New Completed Enrollments");
+
+        syncStatusService.start(syncId);
+        syncStatusService.jobStarted(instanceJob);
+        addStep(instanceJob, "Tracked Entity Instance Step", 10, 8, 1);
+        syncStatusService.jobFinished(instanceJob, false);
+        syncStatusService.jobStarted(enrollmentJob);
+        enrollmentJob.setStatus(BatchStatus.FAILED);
+        syncStatusService.jobFinished(enrollmentJob, false);
+        syncStatusService.finish(syncId, SyncStatus.State.FAILED, null);
+
+        SyncStatus status = syncStatusService.get(syncId);
+        SyncPhase instancePhase = status.getPhases().get(0);
+        SyncPhase enrollmentPhase = status.getPhases().get(1);
+
+        assertEquals(2, status.getPhases().size());
+        assertEquals("Sync Tracked Entity Instance", instancePhase.getName());
+        assertEquals(SyncPhase.State.COMPLETED, instancePhase.getState());
+        assertEquals(10, instancePhase.getReadCount());
+        assertEquals(8, instancePhase.getWriteCount());
+        assertEquals(1, instancePhase.getSkipCount());
+        assertNotNull(instancePhase.getFinishedAt());
+        assertEquals("New Completed Enrollments", enrollmentPhase.getName());
+        assertEquals(SyncPhase.State.FAILED, enrollmentPhase.getState());
+    }
+
+    @Test
+    public void shouldReadTheCountsOfTheRunningJobOnEachCall() {
+        String syncId = syncStatusService.submit(service, user).getSyncId();
+        JobExecution jobExecution = getJobExecution("Sync Tracked Entity Instance");
+
+        syncStatusService.start(syncId);
+        syncStatusService.jobStarted(jobExecution);
+        StepExecution stepExecution = addStep(jobExecution, "Tracked Entity Instance Step", 100, 50, 0);
+
+        SyncPhase before = syncStatusService.get(syncId).getPhases().get(0);
+        stepExecution.setWriteCount(100);
+        SyncPhase after = syncStatusService.get(syncId).getPhases().get(0);
+        syncStatusService.finish(syncId, SyncStatus.State.SUCCESS, null);
+
+        assertEquals(SyncPhase.State.RUNNING, before.getState());
+        assertEquals(50, before.getWriteCount());
+        assertEquals(100, after.getWriteCount());
+        assertTrue(after.getRowsPerSecond() >= 0);
+    }
+
+    @Test
+    public void shouldNotCountThePartitionedStepOnTopOfItsPartitions() {
+        String syncId = syncStatusService.submit(service, user).getSyncId();
+        JobExecution jobExecution = getJobExecution("Sync Tracked Entity Instance");
+
+        syncStatusService.start(syncId);
+        syncStatusService.jobStarted(jobExecution);
+        addStep(jobExecution, "Tracked Entity Instance Step", 30, 30, 0);
+        addStep(jobExecution, "Tracked Entity Instance Step:partition0", 10, 10, 0);
+        addStep(jobExecution, "Tracked Entity Instance Step:partition1", 20, 20, 0);
+        syncStatusService.jobFinished(jobExecution, false);
+        syncStatusService.finish(syncId, SyncStatus.State.SUCCESS, null);
+
+        SyncPhase phase = syncStatusService.get(syncId).getPhases().get(0);
+
+        assertEquals(30, phase.getReadCount());
+        assertEquals(30, phase.getWriteCount());
+    }
+
+    @Test
+    public void shouldRecordTheOtherPhasesOfTheSync() {
+        String syncId = syncStatusService.submit(service, user).getSyncId();
+
+        syncStatusService.start(syncId);
+        syncStatusService.phaseStarted("Update Markers");
+        syncStatusService.phaseFinished("Update Markers", false);
+        syncStatusService.finish(syncId, SyncStatus.State.SUCCESS, null);
+
+        SyncPhase phase = syncStatusService.get(syncId).getPhases().get(0);
+
+        assertEquals("Update Markers", phase.getName());
+        assertEquals(SyncPhase.State.COMPLETED, phase.getState());
+    }
+
+    @Test
+    public void shouldIgnoreJobsRunOutsideOfASync() {
+        String syncId = syncStatusService.submit(service, user).getSyncId();
+        JobExecution jobExecution = getJobExecution("Sync Tracked Entity Instance");
+
+        syncStatusService.jobStarted(jobExecution);
+        syncStatusService.jobFinished(jobExecution, false);
+
+        assertTrue(syncStatusService.get(syncId).getPhases().isEmpty());
+    }
+
+    @Test
+    public void shouldEvictTheOldestFinishedSyncsBeyondTheRetention() {
+        String running = syncStatusService.submit(service, user).getSyncId();
+        syncStatusService.start(running);
+        String finished = syncStatusService.submit(service, user).getSyncId();
+        syncStatusService.finish(finished, SyncStatus.State.SUCCESS, null);
+        String queued = syncStatusService.submit(service, user).getSyncId();
+        syncStatusService.finish(running, SyncStatus.State.SUCCESS, null);
+
+        assertNotNull(syncStatusService.get(running));
+        assertNull(syncStatusService.get(finished));
+        assertNotNull(syncStatusService.get(queued));
+    }
+
+    @Test
+    public void shouldReturnACopyOfTheStatus() {
+        String syncId = syncStatusService.submit(service, user).getSyncId();
+
+        syncStatusService.get(syncId).setState(SyncStatus.State.FAILED);
+
+        assertEquals(SyncStatus.State.QUEUED, syncStatusService.get(syncId).getState());
+    }
+
+    @Test
+    public void shouldBeActiveUntilTheSyncOfTheServiceFinishes() {
+        String syncId = syncStatusService.submit(service, user).getSyncId();
+        assertTrue(syncStatusService.isActive(service));
+        assertFalse(syncStatusService.isActive("TB Service"));
+
+        syncStatusService.start(syncId);
+        assertTrue(syncStatusService.isActive(service));
+
+        syncStatusService.finish(syncId, SyncStatus.State.SUCCESS, null);
+        assertFalse(syncStatusService.isActive(service));
+    }
+
+    private JobExecution getJobExecution(String jobName) {
+        return new JobExecution(new JobInstance(1L, jobName), 1L, new JobParameters(), null);
+    }
+
+    private StepExecution addStep(JobExecution jobExecution, String stepName, int read, int write, int skip) {
+        StepExecution stepExecution = jobExecution.createStepExecution(stepName);
+        stepExecution.setReadCount(read);
+        stepExecution.setWriteCount(write);
+        stepExecution.setReadSkipCount(skip);
+        return stepExecution;
+    }
+}
@@ -3,13 +3,19 @@ package com.thoughtworks.martdhis2sync.service;
 import com.thoughtworks.martdhis2sync.dao.MappingDAO;
 import com.thoughtworks.martdhis2sync.dao.PatientDAO;
 import com.thoughtworks.martdhis2sync.model.Attribute;
+import com.thoughtworks.martdhis2sync.model.Config;
 import com.thoughtworks.martdhis2sync.model.EnrollmentDetails;
+import com.thoughtworks.martdhis2sync.model.LookupTable;
+import com.thoughtworks.martdhis2sync.model.Mapping;
 import com.thoughtworks.martdhis2sync.model.MappingJson;
+import com.thoughtworks.martdhis2sync.model.Pager;
 import com.thoughtworks.martdhis2sync.model.TrackedEntityInstanceInfo;
 import com.thoughtworks.martdhis2sync.model.TrackedEntityInstanceResponse;
 import com.thoughtworks.martdhis2sync.repository.SyncRepository;
 import com.thoughtworks.martdhis2sync.step.TrackedEntityInstanceStep;
+import com.thoughtworks.martdhis2sync.util.SyncContext;
 import com.thoughtworks.martdhis2sync.util.TEIUtil;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -20,6 +26,7 @@ import org.springframework.batch.core.Step;
 import org.springframework.batch.core.repository.JobExecutionAlreadyRunningException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.web.client.HttpServerErrorException;
 
 import java.io.IOException;
@@ -28,12 +35,14 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 
 import static com.thoughtworks.martdhis2sync.CommonTestHelper.setValuesForMemberFields;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
 import static org.mockito.Mockito.anyString;
 import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.doThrow;
@@ -70,30 +79,45 @@ public class TEIServiceTest {
     @Mock
     private TrackedEntityInstanceResponse response;
 
-    public static final String TRACKED_ENTITY_INSTANCE_URI = "/api/trackedEntityInstances?pageSize=10000";
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    public static final String TRACKED_ENTITY_INSTANCE_URI = "/api/trackedEntityInstances?pageSize=10000&totalPages=true";
     private String ORG_UNIT_ID = "DiszpKrYNg8";
     private int TEI_FILTER_URI_LIMIT = 5;
+    private int TEI_PAGE_SIZE = 10000;
+    private int TEI_FETCH_CONCURRENCY = 2;
+    private int TEI_FETCH_RETRIES = 1;
     private ResponseEntity<TrackedEntityInstanceResponse> trackedEntityInstanceResponse;
-    private HashMap<String, Object> expectedMapping;
     private TEIService teiService;
     private LinkedList<Step> steps = new LinkedList<>();
 
     @Before
     public void setUp() throws Exception {
+        SyncContext.begin("HT Service");
         teiService = new TEIService();
         setValuesForMemberFields(teiService, "trackedEntityInstanceStep", instanceStep);
         setValuesForMemberFields(teiService, "jobService", jobService);
         setValuesForMemberFields(teiService, "mappingDAO", mappingDAO);
         setValuesForMemberFields(teiService, "patientDAO", patientDAO);
         setValuesForMemberFields(teiService, "syncRepository", syncRepository);
+        setValuesForMemberFields(teiService, "jdbcTemplate", jdbcTemplate);
         setValuesForMemberFields(teiService, "orgUnitID", ORG_UNIT_ID);
         setValuesForMemberFields(teiService, "TEI_FILTER_URI_LIMIT", TEI_FILTER_URI_LIMIT);
+        setValuesForMemberFields(teiService, "TEI_PAGE_SIZE", TEI_PAGE_SIZE);
+        setValuesForMemberFields(teiService, "TEI_FETCH_CONCURRENCY", TEI_FETCH_CONCURRENCY);
+        setValuesForMemberFields(teiService, "TEI_FETCH_RETRIES", TEI_FETCH_RETRIES);
 
         steps.add(step);
 
         TEIUtil.setInstancesWithEnrollments(new HashMap<>());
     }
 
+    @After
+    public void tearDown() {
+        SyncContext.end();
+    }
+
     @Test
     public void shouldTriggerTheJob() throws Exception {
         String lookUpTable = "patient_identifier";
@@ -196,7 +220,7 @@ public class TEIServiceTest {
         trackedEntityInstance2.setEnrollments(Collections.emptyList());
 
         when(patientDAO.getDeltaEnrollmentInstanceIds(enrollment, eventTable, programName)).thenReturn(Arrays.asList(map1, map2));
-        when(syncRepository.getTrackedEntityInstances(url)).thenReturn(responseEntity);
+        when(syncRepository.getTrackedEntityInstances(url, TEI_FETCH_RETRIES)).thenReturn(responseEntity);
         when(responseEntity.getBody()).thenReturn(response);
         when(response.getTrackedEntityInstances()).thenReturn(Arrays.asList(trackedEntityInstance1, trackedEntityInstance2));
 
@@ -208,6 +232,52 @@ public class TEIServiceTest {
         assertEquals(expected, TEIUtil.getInstancesWithEnrollments());
     }
 
+    @Test
+    public void shouldFetchEnrollmentsOfAllWindowsWithTheFetchRetries() throws Exception {
+        String enrollment = "enrollmentTable";
+        String programName = "HTS";
+        String eventTable = "eventTable";
+        List<Map<String, Object>> deltaInstanceIds = new ArrayList<>();
+        for (int i = 1; i <= 7; i++) {
+            Map<String, Object> map = new HashMap<>();
+            map.put("instance_id", "instance" + i);
+            map.put("program", "program");
+            deltaInstanceIds.add(map);
+        }
+
+        String urlPrefix = "/api/trackedEntityInstances?" +
+                "fields=trackedEntityInstance,enrollments[program,enrollment,enrollmentDate,completedDate,status]&" +
+                "program=program&trackedEntityInstance=";
+        String firstWindowUrl = urlPrefix + "instance1;instance2;instance3;instance4;instance5";
+        String secondWindowUrl = urlPrefix + "instance6;instance7";
+
+        EnrollmentDetails enrollment1 = new EnrollmentDetails("program", "enrollment1", "2018-10-22", "2018-12-10", "COMPLETED");
+        EnrollmentDetails enrollment2 = new EnrollmentDetails("program", "enrollment2", "2018-10-22", null, "ACTIVE");
+
+        TrackedEntityInstanceInfo trackedEntityInstance1 = new TrackedEntityInstanceInfo();
+        trackedEntityInstance1.setTrackedEntityInstance("instance1");
+        trackedEntityInstance1.setEnrollments(Collections.singletonList(enrollment1));
+        TrackedEntityInstanceInfo trackedEntityInstance7 = new TrackedEntityInstanceInfo();
+        trackedEntityInstance7.setTrackedEntityInstance("instance7");
+        trackedEntityInstance7.setEnrollments(Collections.singletonList(enrollment2));
+
+        when(patientDAO.getDeltaEnrollmentInstanceIds(enrollment, eventTable, programName)).thenReturn(deltaInstanceIds);
+        when(syncRepository.getTrackedEntityInstances(firstWindowUrl, TEI_FETCH_RETRIES)).thenReturn(ResponseEntity.ok(
+                new TrackedEntityInstanceResponse(Collections.singletonList(trackedEntityInstance1), "", 200, null)));
+        when(syncRepository.getTrackedEntityInstances(secondWindowUrl, TEI_FETCH_RETRIES)).thenReturn(ResponseEntity.ok(
+                new TrackedEntityInstanceResponse(Collections.singletonList(trackedEntityInstance7), "", 200, null)));
+
+        teiService.getEnrollmentsForInstances(enrollment, eventTable, programName);
+
+        Map<String, List<EnrollmentDetails>> expected = new HashMap<>();
+        expected.put("instance1", Collections.singletonList(enrollment1));
+        expected.put("instance7", Collections.singletonList(enrollment2));
+
+        assertEquals(expected, TEIUtil.getInstancesWithEnrollments());
+        verify(syncRepository, times(1)).getTrackedEntityInstances(firstWindowUrl, TEI_FETCH_RETRIES);
+        verify(syncRepository, times(1)).getTrackedEntityInstances(secondWindowUrl, TEI_FETCH_RETRIES);
+    }
+
     @Test
     public void shouldReturnAddAnyEnrollmentsIfSyncRepoThrowsError() throws Exception {
         String enrollment = "enrollmentTable";
@@ -226,7 +296,7 @@ public class TEIServiceTest {
                 "program=program&trackedEntityInstance=instance1;instance2";
 
         when(patientDAO.getDeltaEnrollmentInstanceIds(enrollment, eventTable, programName)).thenReturn(Arrays.asList(map1, map2));
-        when(syncRepository.getTrackedEntityInstances(url)).thenThrow(new HttpServerErrorException(HttpStatus.CONFLICT));
+        when(syncRepository.getTrackedEntityInstances(url, TEI_FETCH_RETRIES)).thenThrow(new HttpServerErrorException(HttpStatus.CONFLICT));
 
         try {
             teiService.getEnrollmentsForInstances(enrollment, eventTable, programName);
@@ -238,26 +308,21 @@ public class TEIServiceTest {
     @Test
     public void shouldGetTrackedEntityInstanceFromDHIS() throws IOException {
         String program = "HIV Testing Service";
-        String queryParams = "&filter=HF8Tu4tg:IN:NINETU190995MT;JKAPTA170994MT;";
+        String queryParams = "&filter=HF8Tu4tg:IN:NINETU190995MT;JKAPTA170994MT;&includeAllAttributes=true&page=1";
         String uri = TRACKED_ENTITY_INSTANCE_URI + "&ou=" + ORG_UNIT_ID + "&ouMode=DESCENDANTS" + queryParams;
         Map<String, Object> searchableMapping = new HashMap<>();
 
-        trackedEntityInstanceResponse = ResponseEntity.ok(new TrackedEntityInstanceResponse(getTrackedEntityInstances(), "", 200));
+        trackedEntityInstanceResponse = ResponseEntity.ok(new TrackedEntityInstanceResponse(getTrackedEntityInstances(), "", 200, null));
 
-        MappingJson mappingJson = new MappingJson();
-        mappingJson.setInstance("{" +
-                "\"UIC\": \"HF8Tu4tg\"," +
-                "\"date_created\": \"ojmUIu4tg\"" +
-                "}");
+        Mapping mapping = getMapping(program);
         searchableMapping.put("UIC", "HF8Tu4tg");
 
-        when(mappingDAO.getSearchableFields(program)).thenReturn(getSearchableValues());
-        when(mappingDAO.getMapping(program)).thenReturn(expectedMapping);
+        when(mappingDAO.getSearchableFields(mapping)).thenReturn(getSearchableValues());
         when(syncRepository.getTrackedEntityInstances(uri)).thenReturn(trackedEntityInstanceResponse);
 
-        teiService.getTrackedEntityInstances(program, mappingJson);
+        teiService.getTrackedEntityInstances(mapping);
 
-        verify(mappingDAO, times(1)).getSearchableFields(program);
+        verify(mappingDAO, times(1)).getSearchableFields(mapping);
         verify(syncRepository, times(1)).getTrackedEntityInstances(uri);
         verifyStatic(times(1));
         TEIUtil.setTrackedEntityInstanceInfos(getTrackedEntityInstances());
@@ -267,17 +332,13 @@ public class TEIServiceTest {
     public void shouldNotGetTrackedEntityInstanceIfSearchblesIsEmpty() throws IOException {
         String program = "HIV Testing Service";
 
-        MappingJson mappingJson = new MappingJson();
-        mappingJson.setInstance("{" +
-                "\"UIC\": \"HF8Tu4tg\"," +
-                "\"date_created\": \"ojmUIu4tg\"" +
-                "}");
+        Mapping mapping = getMapping(program);
 
-        when(mappingDAO.getSearchableFields(program)).thenReturn(new ArrayList<>());
+        when(mappingDAO.getSearchableFields(mapping)).thenReturn(new ArrayList<>());
 
-        teiService.getTrackedEntityInstances(program, mappingJson);
+        teiService.getTrackedEntityInstances(mapping);
 
-        verify(mappingDAO, times(1)).getSearchableFields(program);
+        verify(mappingDAO, times(1)).getSearchableFields(mapping);
         verifyStatic(times(1));
         TEIUtil.setTrackedEntityInstanceInfos(Collections.emptyList());
 
@@ -292,25 +353,79 @@ public class TEIServiceTest {
         String queryParams = "&filter=HF8Tu4tg:IN:";
         String uriWithoutSearchValues = TRACKED_ENTITY_INSTANCE_URI + "&ou=" + ORG_UNIT_ID + "&ouMode=DESCENDANTS";
 
-        trackedEntityInstanceResponse = ResponseEntity.ok(new TrackedEntityInstanceResponse(getTrackedEntityInstances(), "", 200));
+        trackedEntityInstanceResponse = ResponseEntity.ok(new TrackedEntityInstanceResponse(getTrackedEntityInstances(), "", 200, null));
+
+        Mapping mapping = getMapping(program);
+
+        when(mappingDAO.getSearchableFields(mapping)).thenReturn(getTenSearchableValues());
+        when(syncRepository.getTrackedEntityInstances(anyString())).thenReturn(trackedEntityInstanceResponse);
+
+        teiService.getTrackedEntityInstances(mapping);
+
+        verify(mappingDAO, times(1)).getSearchableFields(mapping);
+        verify(syncRepository, times(1)).getTrackedEntityInstances(
+                uriWithoutSearchValues + queryParams + firstFiveUICs + "&includeAllAttributes=true&page=1");
+        verify(syncRepository, times(1)).getTrackedEntityInstances(
+                uriWithoutSearchValues + queryParams + lastFourUICs + "&includeAllAttributes=true&page=1");
+        verifyStatic(times(1));
+        TEIUtil.setTrackedEntityInstanceInfos(getTrackedEntityInstances());
+    }
+
+    @Test
+    public void shouldFetchAllPagesOfTrackedEntityInstances() throws IOException {
+        String program = "HIV Testing Service";
+        String uri = TRACKED_ENTITY_INSTANCE_URI + "&ou=" + ORG_UNIT_ID + "&ouMode=DESCENDANTS" +
+                "&filter=HF8Tu4tg:IN:NINETU190995MT;JKAPTA170994MT;&includeAllAttributes=true&page=";
+        List<TrackedEntityInstanceInfo> instances = getTrackedEntityInstances();
 
+        Mapping mapping = getMapping(program);
+
+        when(mappingDAO.getSearchableFields(mapping)).thenReturn(getSearchableValues());
+        when(syncRepository.getTrackedEntityInstances(uri + 1)).thenReturn(ResponseEntity.ok(
+                new TrackedEntityInstanceResponse(instances.subList(0, 1), "", 200, getPager(1, 2))));
+        when(syncRepository.getTrackedEntityInstances(uri + 2)).thenReturn(ResponseEntity.ok(
+                new TrackedEntityInstanceResponse(instances.subList(1, 2), "", 200, getPager(2, 2))));
+
+        teiService.getTrackedEntityInstances(mapping);
+
+        verify(syncRepository, times(1)).getTrackedEntityInstances(uri + 1);
+        verify(syncRepository, times(1)).getTrackedEntityInstances(uri + 2);
+        assertEquals(2, TEIUtil.getTrackedEntityInstanceInfos().size());
+        assertEquals(2, TEIUtil.getTrackedEntityInstanceIndex().size());
+    }
+
+    @Test
+    public void shouldNotQueryWhenTheInstanceTableIsNotAPlainTableName() {
+        try {
+            teiService.verifyOrgUnitsForPatients("hts_instance; DROP TABLE marker");
+            fail("Should have thrown IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            assertEquals("Invalid table name: hts_instance; DROP TABLE marker", e.getMessage());
+        }
+
+        verify(jdbcTemplate, times(0)).queryForList(anyString());
+    }
+
+    private Mapping getMapping(String program) {
         MappingJson mappingJson = new MappingJson();
         mappingJson.setInstance("{" +
                 "\"UIC\": \"HF8Tu4tg\"," +
                 "\"date_created\": \"ojmUIu4tg\"" +
                 "}");
+        Map<String, Object> instanceMapping = new LinkedHashMap<>();
+        instanceMapping.put("UIC", "HF8Tu4tg");
+        instanceMapping.put("date_created", "ojmUIu4tg");
 
-        when(mappingDAO.getSearchableFields(program)).thenReturn(getTenSearchableValues());
-        when(mappingDAO.getMapping(program)).thenReturn(expectedMapping);
-        when(syncRepository.getTrackedEntityInstances(anyString())).thenReturn(trackedEntityInstanceResponse);
+        return new Mapping(program, "checksum", new LookupTable(), mappingJson,
+                new Config(Collections.singletonList("UIC"), Collections.emptyList(), "no"), instanceMapping);
+    }
 
-        teiService.getTrackedEntityInstances(program, mappingJson);
+    private Pager getPager(int page, int pageCount) {
+        Pager pager = new Pager();
+        pager.setPage(page);
+        pager.setPageCount(pageCount);
 
-        verify(mappingDAO, times(1)).getSearchableFields(program);
-        verify(syncRepository, times(1)).getTrackedEntityInstances(uriWithoutSearchValues + queryParams + firstFiveUICs);
-        verify(syncRepository, times(1)).getTrackedEntityInstances(uriWithoutSearchValues + queryParams + lastFourUICs);
-        verifyStatic(times(1));
-        TEIUtil.setTrackedEntityInstanceInfos(getTrackedEntityInstances());
+        return pager;
     }
 
     private List<TrackedEntityInstanceInfo> getTrackedEntityInstances() {
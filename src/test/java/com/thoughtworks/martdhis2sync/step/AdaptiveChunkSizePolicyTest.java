@@ -0,0 +1,130 @@
+package com.thoughtworks.martdhis2sync.step;
+
+import com.thoughtworks.martdhis2sync.util.PostFeedback;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.batch.repeat.RepeatContext;
+import org.springframework.batch.repeat.RepeatStatus;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class AdaptiveChunkSizePolicyTest {
+
+    private AdaptiveChunkSizePolicy policy;
+
+    @Before
+    public void setUp() {
+        policy = new AdaptiveChunkSizePolicy("Step Name", 100, 10, 200, 1000, 10000);
+    }
+
+    @After
+    public void tearDown() {
+        PostFeedback.reset();
+    }
+
+    @Test
+    public void shouldCompleteTheChunkAtTheChunkSize() {
+        RepeatContext context = policy.start(null);
+        for (int i = 0; i < 99; i++) {
+            policy.update(context);
+        }
+        assertFalse(policy.isComplete(context, RepeatStatus.CONTINUABLE));
+
+        policy.update(context);
+
+        assertTrue(policy.isComplete(context, RepeatStatus.CONTINUABLE));
+    }
+
+    @Test
+    public void shouldKeepTheInitialChunkSizeWithinTheBounds() {
+        assertEquals(200, new AdaptiveChunkSizePolicy("Step Name", 500, 10, 200, 1000, 10000).getChunkSize());
+        assertEquals(10, new AdaptiveChunkSizePolicy("Step Name", 1, 10, 200, 1000, 10000).getChunkSize());
+    }
+
+    @Test
+    public void shouldGrowTheChunkWhileTheRequestsAreFastAndSmall() {
+        policy.beforeChunk(null);
+        PostFeedback.recordBytes(2000);
+        PostFeedback.recordRequest(200, 0);
+
+        policy.afterChunk(null);
+
+        assertEquals(125, policy.getChunkSize());
+    }
+
+    @Test
+    public void shouldHalveTheChunkWhenTheRequestIsSlowerThanTheTarget() {
+        policy.beforeChunk(null);
+        PostFeedback.recordBytes(2000);
+        PostFeedback.recordRequest(1500, 0);
+
+        policy.afterChunk(null);
+
+        assertEquals(50, policy.getChunkSize());
+    }
+
+    @Test
+    public void shouldHalveTheChunkWhenTheRequestIsLargerThanTheLimit() {
+        policy.beforeChunk(null);
+        PostFeedback.recordBytes(20000);
+        PostFeedback.recordRequest(200, 0);
+
+        policy.afterChunk(null);
+
+        assertEquals(50, policy.getChunkSize());
+    }
+
+    @Test
+    public void shouldShrinkTheChunkWhenDHISReportsConflicts() {
+        policy.beforeChunk(null);
+        PostFeedback.recordBytes(2000);
+        PostFeedback.recordRequest(200, 3);
+
+        policy.afterChunk(null);
+
+        assertEquals(75, policy.getChunkSize());
+    }
+
+    @Test
+    public void shouldKeepTheChunkWhenTheRequestIsCloseToTheTarget() {
+        policy.beforeChunk(null);
+        PostFeedback.recordBytes(2000);
+        PostFeedback.recordRequest(800, 0);
+
+        policy.afterChunk(null);
+
+        assertEquals(100, policy.getChunkSize());
+    }
+
+    @Test
+    public void shouldKeepTheChunkWhenNothingWasSent() {
+        policy.beforeChunk(null);
+
+        policy.afterChunk(null);
+
+        assertEquals(100, policy.getChunkSize());
+    }
+
+    @Test
+    public void shouldNotShrinkBelowTheMinimum() {
+        for (int i = 0; i < 10; i++) {
+            policy.afterChunkError(null);
+        }
+
+        assertEquals(10, policy.getChunkSize());
+    }
+
+    @Test
+    public void shouldNotGrowBeyondTheMaximum() {
+        for (int i = 0; i < 10; i++) {
+            policy.beforeChunk(null);
+            PostFeedback.recordRequest(10, 0);
+            policy.afterChunk(null);
+        }
+
+        assertEquals(200, policy.getChunkSize());
+    }
+}
@@ -66,12 +66,12 @@ public class NewActiveEnrollmentWithEventsStepTest {
 
         when(mappingReader.getNewActiveEnrollmentWithEventsReader(enrLookupTable, programName, envLookupTable)).thenReturn(jdbcCursorItemReader);
         when(objectFactory.getObject()).thenReturn(processor);
-        when(stepFactory.build(stepName, jdbcCursorItemReader, processor, writer)).thenReturn(step);
+        when(stepFactory.buildConcurrent(stepName, jdbcCursorItemReader, processor, writer)).thenReturn(step);
 
         Step actual = eventStep.get(enrLookupTable, envLookupTable, programName, mappingObj);
 
         verify(mappingReader, times(1)).getNewActiveEnrollmentWithEventsReader(enrLookupTable, programName, envLookupTable);
-        verify(stepFactory, times(1)).build(stepName, jdbcCursorItemReader, processor, writer);
+        verify(stepFactory, times(1)).buildConcurrent(stepName, jdbcCursorItemReader, processor, writer);
         assertEquals(step, actual);
     }
 }
@@ -5,9 +5,11 @@ import com.thoughtworks.martdhis2sync.writer.TrackedEntityInstanceWriter;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.powermock.core.classloader.annotations.PowerMockIgnore;
 import org.powermock.modules.junit4.PowerMockRunner;
+import org.springframework.batch.core.ChunkListener;
 import org.springframework.batch.core.configuration.annotation.StepBuilderFactory;
 import org.springframework.batch.core.step.builder.SimpleStepBuilder;
 import org.springframework.batch.core.step.builder.StepBuilder;
@@ -15,10 +17,17 @@ import org.springframework.batch.core.step.builder.TaskletStepBuilder;
 import org.springframework.batch.core.step.tasklet.Tasklet;
 import org.springframework.batch.core.step.tasklet.TaskletStep;
 import org.springframework.batch.item.database.JdbcCursorItemReader;
+import org.springframework.batch.item.support.SynchronizedItemStreamReader;
+import org.springframework.batch.repeat.CompletionPolicy;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.core.task.TaskExecutor;
 
 import java.util.Map;
 
 import static com.thoughtworks.martdhis2sync.CommonTestHelper.setValuesForMemberFields;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.powermock.api.mockito.PowerMockito.when;
@@ -60,6 +69,8 @@ public class StepFactoryTest {
     public void setUp() throws Exception {
         stepFactory = new StepFactory();
         setValuesForMemberFields(stepFactory, "stepBuilderFactory", stepBuilderFactory);
+        setValuesForMemberFields(stepFactory, "syncBatchSize", 500);
+        setValuesForMemberFields(stepFactory, "enrollmentStepConcurrency", 1);
     }
 
     @Test
@@ -97,4 +108,68 @@ public class StepFactoryTest {
         verify(stepBuilder, times(1)).tasklet(tasklet);
         verify(taskletStepBuilder, times(1)).build();
     }
+
+    @Test
+    public void shouldReturnSingleThreadedStepWhenConcurrencyIsOne() {
+        String stepName = "Step Name";
+
+        when(stepBuilderFactory.get(stepName)).thenReturn(stepBuilder);
+        when(stepBuilder.chunk(500)).thenReturn(simpleStepBuilder);
+        when(simpleStepBuilder.reader(jdbcCursorItemReader)).thenReturn(simpleStepBuilder);
+        when(simpleStepBuilder.processor(processor)).thenReturn(simpleStepBuilder);
+        when(simpleStepBuilder.writer(writer)).thenReturn(simpleStepBuilder);
+        when(simpleStepBuilder.build()).thenReturn(step);
+
+        stepFactory.buildConcurrent(stepName, jdbcCursorItemReader, processor, writer);
+
+        verify(simpleStepBuilder, times(1)).reader(jdbcCursorItemReader);
+        verify(simpleStepBuilder, never()).taskExecutor(any(TaskExecutor.class));
+        verify(jdbcCursorItemReader, never()).setSaveState(false);
+    }
+
+    @Test
+    public void shouldReturnMultiThreadedStepWithSynchronizedReader() throws Exception {
+        String stepName = "Step Name";
+        setValuesForMemberFields(stepFactory, "enrollmentStepConcurrency", 4);
+
+        when(stepBuilderFactory.get(stepName)).thenReturn(stepBuilder);
+        when(stepBuilder.chunk(500)).thenReturn(simpleStepBuilder);
+        when(simpleStepBuilder.reader(any(SynchronizedItemStreamReader.class))).thenReturn(simpleStepBuilder);
+        when(simpleStepBuilder.processor(processor)).thenReturn(simpleStepBuilder);
+        when(simpleStepBuilder.writer(writer)).thenReturn(simpleStepBuilder);
+        when(simpleStepBuilder.taskExecutor(any(TaskExecutor.class))).thenReturn(simpleStepBuilder);
+        when(simpleStepBuilder.throttleLimit(4)).thenReturn(simpleStepBuilder);
+        when(simpleStepBuilder.build()).thenReturn(step);
+
+        stepFactory.buildConcurrent(stepName, jdbcCursorItemReader, processor, writer);
+
+        verify(jdbcCursorItemReader, times(1)).setSaveState(false);
+        verify(simpleStepBuilder, times(1)).reader(any(SynchronizedItemStreamReader.class));
+        verify(simpleStepBuilder, times(1)).taskExecutor(any(SimpleAsyncTaskExecutor.class));
+        verify(simpleStepBuilder, times(1)).throttleLimit(4);
+        verify(simpleStepBuilder, times(1)).build();
+    }
+
+    @Test
+    public void shouldSizeTheChunksOfTheStepFromTheRequestsToDHISWhenTheBoundsDiffer() throws Exception {
+        String stepName = "Step Name";
+        setValuesForMemberFields(stepFactory, "minSyncBatchSize", 10);
+        setValuesForMemberFields(stepFactory, "maxSyncBatchSize", 1000);
+        ArgumentCaptor<AdaptiveChunkSizePolicy> policy = ArgumentCaptor.forClass(AdaptiveChunkSizePolicy.class);
+
+        when(stepBuilderFactory.get(stepName)).thenReturn(stepBuilder);
+        when(stepBuilder.chunk(any(CompletionPolicy.class))).thenReturn(simpleStepBuilder);
+        when(simpleStepBuilder.reader(jdbcCursorItemReader)).thenReturn(simpleStepBuilder);
+        when(simpleStepBuilder.processor(processor)).thenReturn(simpleStepBuilder);
+        when(simpleStepBuilder.writer(writer)).thenReturn(simpleStepBuilder);
+        when(simpleStepBuilder.listener(any(ChunkListener.class))).thenReturn(simpleStepBuilder);
+        when(simpleStepBuilder.build()).thenReturn(step);
+
+        stepFactory.build(stepName, jdbcCursorItemReader, processor, writer);
+
+        verify(stepBuilder, never()).chunk(500);
+        verify(stepBuilder, times(1)).chunk(policy.capture());
+        verify(simpleStepBuilder, times(1)).listener((ChunkListener) policy.getValue());
+        assertEquals(500, policy.getValue().getChunkSize());
+    }
 }
@@ -0,0 +1,27 @@
+package com.thoughtworks.martdhis2sync.step;
+
+import org.junit.Test;
+import org.springframework.batch.item.ExecutionContext;
+
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+public class TrackedEntityInstancePartitionerTest {
+
+    @Test
+    public void shouldCreateOneExecutionContextPerPartition() {
+        TrackedEntityInstancePartitioner partitioner = new TrackedEntityInstancePartitioner("patient_identifier", "OrgUnit");
+
+        Map<String, ExecutionContext> partitions = partitioner.partition(3);
+
+        assertEquals(3, partitions.size());
+        for (int partition = 0; partition < 3; partition++) {
+            ExecutionContext context = partitions.get("partition" + partition);
+            assertEquals("patient_identifier", context.getString("lookupTable"));
+            assertEquals("OrgUnit", context.getString("partitionColumn"));
+            assertEquals(partition, context.getInt("partition"));
+            assertEquals(3, context.getInt("partitions"));
+        }
+    }
+}
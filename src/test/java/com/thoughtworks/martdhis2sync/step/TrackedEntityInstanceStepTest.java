@@ -1,16 +1,21 @@
 package com.thoughtworks.martdhis2sync.step;
 
+import com.thoughtworks.martdhis2sync.listener.InstanceMarkerListener;
 import com.thoughtworks.martdhis2sync.processor.TrackedEntityInstanceProcessor;
+import com.thoughtworks.martdhis2sync.reader.InstancePartitionReader;
 import com.thoughtworks.martdhis2sync.reader.MappingReader;
 import com.thoughtworks.martdhis2sync.util.MarkerUtil;
+import com.thoughtworks.martdhis2sync.util.SyncContext;
 import com.thoughtworks.martdhis2sync.util.TEIUtil;
 import com.thoughtworks.martdhis2sync.writer.TrackedEntityInstanceWriter;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.powermock.core.classloader.annotations.PowerMockIgnore;
 import org.powermock.modules.junit4.PowerMockRunner;
+import org.springframework.batch.core.partition.support.PartitionStep;
 import org.springframework.batch.core.step.tasklet.TaskletStep;
 import org.springframework.batch.item.database.JdbcCursorItemReader;
 import org.springframework.beans.factory.ObjectFactory;
@@ -20,7 +25,10 @@ import java.util.*;
 import static com.thoughtworks.martdhis2sync.CommonTestHelper.setValuesForMemberFields;
 import static com.thoughtworks.martdhis2sync.util.MarkerUtil.CATEGORY_INSTANCE;
 import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.powermock.api.mockito.PowerMockito.when;
@@ -53,16 +61,35 @@ public class TrackedEntityInstanceStepTest {
     @Mock
     private StepFactory stepFactory;
 
+    @Mock
+    private InstancePartitionReader instancePartitionReader;
+
+    @Mock
+    private InstanceMarkerListener instanceMarkerListener;
+
+    @Mock
+    private PartitionStep partitionStep;
+
     private TrackedEntityInstanceStep teiStep;
 
     @Before
     public void setUp() throws Exception {
+        SyncContext.begin("HT Service");
         teiStep = new TrackedEntityInstanceStep();
         setValuesForMemberFields(teiStep, "mappingReader", mappingReader);
         setValuesForMemberFields(teiStep, "processorObjectFactory", processorObjectFactory);
         setValuesForMemberFields(teiStep, "writer", writer);
         setValuesForMemberFields(teiStep, "markerUtil", markerUtil);
         setValuesForMemberFields(teiStep, "stepFactory", stepFactory);
+        setValuesForMemberFields(teiStep, "instancePartitionReader", instancePartitionReader);
+        setValuesForMemberFields(teiStep, "instanceMarkerListener", instanceMarkerListener);
+        setValuesForMemberFields(teiStep, "partitions", 1);
+        setValuesForMemberFields(teiStep, "partitionColumn", "Patient_Identifier");
+    }
+
+    @After
+    public void tearDown() {
+        SyncContext.end();
     }
 
     @Test
@@ -87,6 +114,29 @@ public class TrackedEntityInstanceStepTest {
         verify(processor, times(1)).setSearchableAttributes(searchableAttributes);
         verify(processor, times(1)).setComparableAttributes(comparableAttributes);
 
-        assertEquals("Sun Dec 02 22:17:04 IST 292269055", TEIUtil.date.toString());
+        assertEquals("Sun Dec 02 22:17:04 IST 292269055", SyncContext.current().getInstanceDate().toString());
+    }
+
+    @Test
+    public void shouldReturnPartitionedStepWhenMoreThanOnePartitionIsConfigured() throws Exception {
+        String lookupTable = "patient_identifier";
+        Object mappingObj = "";
+        String programName = "TB Service";
+        List<String> searchableAttributes = Collections.singletonList("UIC");
+        List<String> comparableAttributes = Arrays.asList("patient_id", "prepID");
+        setValuesForMemberFields(teiStep, "partitions", 4);
+
+        when(markerUtil.getLastSyncedDate(programName, CATEGORY_INSTANCE)).thenReturn(new Date(Long.MIN_VALUE));
+        when(processorObjectFactory.getObject()).thenReturn(processor);
+        when(stepFactory.build("Tracked Entity Partition Step", instancePartitionReader, processor, writer)).thenReturn(step);
+        when(stepFactory.buildPartitioned(eq("Tracked Entity Step"), eq(step), any(TrackedEntityInstancePartitioner.class),
+                eq(4), eq(instanceMarkerListener))).thenReturn(partitionStep);
+
+        assertEquals(partitionStep, teiStep.get(lookupTable, programName, mappingObj, searchableAttributes, comparableAttributes));
+
+        verify(mappingReader, never()).getInstanceReader(anyString(), anyString());
+        verify(stepFactory, times(1)).build("Tracked Entity Partition Step", instancePartitionReader, processor, writer);
+        verify(stepFactory, times(1)).buildPartitioned(eq("Tracked Entity Step"), eq(step),
+                any(TrackedEntityInstancePartitioner.class), eq(4), eq(instanceMarkerListener));
     }
-}
\ No newline at end of file
+}
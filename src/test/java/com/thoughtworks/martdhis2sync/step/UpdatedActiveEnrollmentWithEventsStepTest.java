@@ -69,16 +69,16 @@ public class UpdatedActiveEnrollmentWithEventsStepTest {
         List<EnrollmentAPIPayLoad> enrollmentsToIgnore = new ArrayList<>();
 
         when(mappingReader
-                .getUpdatedActiveEnrollmentWithEventsReader(enrLookupTable, programName, envLookupTable, enrollmentsToIgnore))
+                .getUpdatedActiveEnrollmentWithEventsReader(enrLookupTable, programName, envLookupTable, enrollmentsToIgnore, null))
                 .thenReturn(jdbcCursorItemReader);
         when(objectFactory.getObject()).thenReturn(processor);
-        when(stepFactory.build(stepName, jdbcCursorItemReader, processor, writer)).thenReturn(step);
+        when(stepFactory.buildConcurrent(stepName, jdbcCursorItemReader, processor, writer)).thenReturn(step);
 
-        Step actual = eventStep.get(enrLookupTable, envLookupTable, programName, mappingObj, enrollmentsToIgnore);
+        Step actual = eventStep.get(enrLookupTable, envLookupTable, programName, mappingObj, enrollmentsToIgnore, null);
 
         verify(mappingReader, times(1))
-                .getUpdatedActiveEnrollmentWithEventsReader(enrLookupTable, programName, envLookupTable, enrollmentsToIgnore);
-        verify(stepFactory, times(1)).build(stepName, jdbcCursorItemReader, processor, writer);
+                .getUpdatedActiveEnrollmentWithEventsReader(enrLookupTable, programName, envLookupTable, enrollmentsToIgnore, null);
+        verify(stepFactory, times(1)).buildConcurrent(stepName, jdbcCursorItemReader, processor, writer);
         assertEquals(step, actual);
     }
 
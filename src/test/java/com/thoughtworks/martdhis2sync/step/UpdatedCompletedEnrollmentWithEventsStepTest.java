@@ -66,14 +66,14 @@ public class UpdatedCompletedEnrollmentWithEventsStepTest {
         String envLookupTable = "patient_event";
         List<EnrollmentAPIPayLoad> enrollmentsToIgnore = new ArrayList<>();
 
-        when(mappingReader.getUpdatedCompletedEnrollmentWithEventsReader(enrLookupTable, programName, envLookupTable, enrollmentsToIgnore)).thenReturn(jdbcCursorItemReader);
+        when(mappingReader.getUpdatedCompletedEnrollmentWithEventsReader(enrLookupTable, programName, envLookupTable, enrollmentsToIgnore, null)).thenReturn(jdbcCursorItemReader);
         when(objectFactory.getObject()).thenReturn(processor);
-        when(stepFactory.build(stepName, jdbcCursorItemReader, processor, writer)).thenReturn(step);
+        when(stepFactory.buildConcurrent(stepName, jdbcCursorItemReader, processor, writer)).thenReturn(step);
 
-        Step actual = eventStep.get(enrLookupTable, envLookupTable, programName, mappingObj, enrollmentsToIgnore);
+        Step actual = eventStep.get(enrLookupTable, envLookupTable, programName, mappingObj, enrollmentsToIgnore, null);
 
-        verify(mappingReader, times(1)).getUpdatedCompletedEnrollmentWithEventsReader(enrLookupTable, programName, envLookupTable, enrollmentsToIgnore);
-        verify(stepFactory, times(1)).build(stepName, jdbcCursorItemReader, processor, writer);
+        verify(mappingReader, times(1)).getUpdatedCompletedEnrollmentWithEventsReader(enrLookupTable, programName, envLookupTable, enrollmentsToIgnore, null);
+        verify(stepFactory, times(1)).buildConcurrent(stepName, jdbcCursorItemReader, processor, writer);
         assertEquals(step, actual);
     }
 }
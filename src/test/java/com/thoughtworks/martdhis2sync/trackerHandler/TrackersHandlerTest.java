@@ -69,7 +69,7 @@ public class TrackersHandlerTest {
         );
         when(dataSource.getConnection()).thenReturn(connection);
         when(connection.prepareStatement(sql)).thenReturn(preparedStatement);
-        when(preparedStatement.executeUpdate()).thenReturn(1);
+        when(preparedStatement.executeBatch()).thenReturn(new int[]{1});
 
         EnrollmentUtil.enrollmentsToSaveInTracker.add(apiPayLoad);
 
@@ -83,7 +83,9 @@ public class TrackersHandlerTest {
         verify(preparedStatement, times(1)).setString(4, "COMPLETED");
         verify(preparedStatement, times(1)).setString(5, "1");
         verify(preparedStatement, times(1)).setString(6, "admin");
-        verify(preparedStatement, times(1)).executeUpdate();
+        verify(preparedStatement, times(1)).addBatch();
+        verify(preparedStatement, times(1)).executeBatch();
+        verify(connection, times(1)).commit();
         verify(logger, times(1)).info(logPrefix + "Successfully inserted 1 Enrollment UIDs.");
 
         EnrollmentUtil.enrollmentsToSaveInTracker.clear();
@@ -338,7 +340,7 @@ public class TrackersHandlerTest {
 
         when(dataSource.getConnection()).thenReturn(connection);
         when(connection.prepareStatement(sql)).thenReturn(preparedStatement);
-        when(preparedStatement.executeUpdate()).thenThrow(new SQLException("Could not execute update"));
+        when(preparedStatement.executeBatch()).thenThrow(new SQLException("Could not execute update"));
 
         trackersHandler.insertInEnrollmentTracker("admin", logPrefix, logger);
 
@@ -350,7 +352,9 @@ public class TrackersHandlerTest {
         verify(preparedStatement, times(1)).setString(4, "COMPLETED");
         verify(preparedStatement, times(1)).setString(5, "1");
         verify(preparedStatement, times(1)).setString(6, "admin");
-        verify(preparedStatement, times(1)).executeUpdate();
+        verify(preparedStatement, times(1)).addBatch();
+        verify(preparedStatement, times(1)).executeBatch();
+        verify(connection, times(1)).rollback();
         verify(logger, times(1)).error(logPrefix + "Exception occurred while inserting " +
                 "Program Enrollment UIDs: Could not execute update");
     }
@@ -368,7 +372,7 @@ public class TrackersHandlerTest {
 
         when(dataSource.getConnection()).thenReturn(connection);
         when(connection.prepareStatement(sql)).thenReturn(preparedStatement);
-        when(preparedStatement.executeUpdate()).thenReturn(1);
+        when(preparedStatement.executeBatch()).thenReturn(new int[]{1, 1});
 
         trackersHandler.insertInEventTracker("admin", logPrefix, logger);
 
@@ -382,7 +386,9 @@ public class TrackersHandlerTest {
         verify(preparedStatement, times(1)).setString(5, "1");
         verify(preparedStatement, times(1)).setString(5, "2");
         verify(preparedStatement, times(2)).setString(6, "admin");
-        verify(preparedStatement, times(2)).executeUpdate();
+        verify(preparedStatement, times(2)).addBatch();
+        verify(preparedStatement, times(1)).executeBatch();
+        verify(connection, times(1)).commit();
         verify(logger, times(1)).info(logPrefix + "Successfully inserted 2 Event UIDs.");
     }
 
@@ -428,19 +434,23 @@ public class TrackersHandlerTest {
 
         when(dataSource.getConnection()).thenReturn(connection);
         when(connection.prepareStatement(sql)).thenReturn(preparedStatement);
-        when(preparedStatement.executeUpdate()).thenThrow(new SQLException("Could not execute update"));
+        when(preparedStatement.executeBatch()).thenThrow(new SQLException("Could not execute update"));
 
         trackersHandler.insertInEventTracker("admin", logPrefix, logger);
 
         verify(dataSource, times(1)).getConnection();
         verify(connection, times(1)).prepareStatement(sql);
         verify(preparedStatement, times(1)).setString(1, "eventId1");
-        verify(preparedStatement, times(1)).setString(2, "instanceId1");
-        verify(preparedStatement, times(1)).setString(3, "xhjKKwoq");
-        verify(preparedStatement, times(1)).setString(4, "dkjfErjA");
+        verify(preparedStatement, times(1)).setString(1, "eventId2");
+        verify(preparedStatement, times(2)).setString(2, "instanceId1");
+        verify(preparedStatement, times(2)).setString(3, "xhjKKwoq");
+        verify(preparedStatement, times(2)).setString(4, "dkjfErjA");
         verify(preparedStatement, times(1)).setString(5, "1");
-        verify(preparedStatement, times(1)).setString(6, "admin");
-        verify(preparedStatement, times(1)).executeUpdate();
+        verify(preparedStatement, times(1)).setString(5, "2");
+        verify(preparedStatement, times(2)).setString(6, "admin");
+        verify(preparedStatement, times(2)).addBatch();
+        verify(preparedStatement, times(1)).executeBatch();
+        verify(connection, times(1)).rollback();
         verify(logger, times(1)).error(logPrefix + "Exception occurred while inserting " +
                 "Event UIDs: Could not execute update");
     }
@@ -593,7 +603,7 @@ public class TrackersHandlerTest {
         );
         when(dataSource.getConnection()).thenReturn(connection);
         when(connection.prepareStatement(sql)).thenReturn(preparedStatement);
-        when(preparedStatement.executeUpdate()).thenReturn(1);
+        when(preparedStatement.executeBatch()).thenReturn(new int[]{1});
 
         LinkedList<EnrollmentAPIPayLoad> apiPayLoads = new LinkedList<>();
         apiPayLoads.add(apiPayLoad);
@@ -606,7 +616,9 @@ public class TrackersHandlerTest {
         verify(preparedStatement, times(1)).setString(1, "COMPLETED");
         verify(preparedStatement, times(1)).setString(2, "admin");
         verify(preparedStatement, times(1)).setString(4, "enrId");
-        verify(preparedStatement, times(1)).executeUpdate();
+        verify(preparedStatement, times(1)).addBatch();
+        verify(preparedStatement, times(1)).executeBatch();
+        verify(connection, times(1)).commit();
         verify(logger, times(1)).info(logPrefix + "Successfully updated 1 Enrollment UIDs.");
     }
 
@@ -633,7 +645,7 @@ public class TrackersHandlerTest {
 
         when(dataSource.getConnection()).thenReturn(connection);
         when(connection.prepareStatement(sql)).thenReturn(preparedStatement);
-        when(preparedStatement.executeUpdate()).thenThrow(new SQLException("Could not execute update"));
+        when(preparedStatement.executeBatch()).thenThrow(new SQLException("Could not execute update"));
 
         trackersHandler.updateInEnrollmentTracker("admin", logPrefix, logger);
 
@@ -642,7 +654,9 @@ public class TrackersHandlerTest {
         verify(preparedStatement, times(1)).setString(1, "COMPLETED");
         verify(preparedStatement, times(1)).setString(2, "admin");
         verify(preparedStatement, times(1)).setString(4, "enrId");
-        verify(preparedStatement, times(1)).executeUpdate();
+        verify(preparedStatement, times(1)).addBatch();
+        verify(preparedStatement, times(1)).executeBatch();
+        verify(connection, times(1)).rollback();
         verify(logger, times(1)).error(logPrefix + "Exception occurred while updating " +
                 "Program Enrollment UIDs: Could not execute update");
     }
@@ -11,11 +11,16 @@ import org.springframework.core.io.ClassPathResource;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.Date;
 
 import static com.thoughtworks.martdhis2sync.util.BatchUtil.DATEFORMAT_WITHOUT_TIME;
 import static com.thoughtworks.martdhis2sync.util.BatchUtil.DATEFORMAT_WITH_24HR_TIME;
 import static com.thoughtworks.martdhis2sync.util.BatchUtil.convertResourceOutputToString;
+import static com.thoughtworks.martdhis2sync.util.BatchUtil.executeBatchInTransaction;
 import static com.thoughtworks.martdhis2sync.util.BatchUtil.getDateFromString;
 import static com.thoughtworks.martdhis2sync.util.BatchUtil.getFormattedDateString;
 import static com.thoughtworks.martdhis2sync.util.BatchUtil.getQuotedString;
@@ -152,4 +157,36 @@ public class BatchUtilTest {
     public void shouldGetEscapedStringForQuote() {
         assertEquals("some\\\"Value", getEscapedString("some\"Value"));
     }
+
+    @Test
+    public void shouldCommitTheBatchAndCountRowsReportedWithoutInfo() throws SQLException {
+        Connection connection = mock(Connection.class);
+        PreparedStatement preparedStatement = mock(PreparedStatement.class);
+        when(connection.getAutoCommit()).thenReturn(true);
+        when(preparedStatement.executeBatch()).thenReturn(new int[]{1, Statement.SUCCESS_NO_INFO, 0, Statement.SUCCESS_NO_INFO});
+
+        assertEquals(3, executeBatchInTransaction(connection, preparedStatement));
+
+        verify(connection, times(1)).setAutoCommit(false);
+        verify(connection, times(1)).commit();
+        verify(connection, times(1)).setAutoCommit(true);
+    }
+
+    @Test
+    public void shouldRollbackTheBatchWhenItFails() throws SQLException {
+        Connection connection = mock(Connection.class);
+        PreparedStatement preparedStatement = mock(PreparedStatement.class);
+        when(connection.getAutoCommit()).thenReturn(true);
+        when(preparedStatement.executeBatch()).thenThrow(new SQLException("Could not execute batch"));
+
+        try {
+            executeBatchInTransaction(connection, preparedStatement);
+        } catch (SQLException e) {
+            assertEquals("Could not execute batch", e.getMessage());
+        }
+
+        verify(connection, times(1)).rollback();
+        verify(connection, times(0)).commit();
+        verify(connection, times(1)).setAutoCommit(true);
+    }
 }
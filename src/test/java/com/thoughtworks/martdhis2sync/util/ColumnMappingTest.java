@@ -0,0 +1,65 @@
+package com.thoughtworks.martdhis2sync.util;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonObject;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static com.thoughtworks.martdhis2sync.util.BatchUtil.DATEFORMAT_WITH_24HR_TIME;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class ColumnMappingTest {
+
+    @Test
+    public void shouldConvertTheRowTheSameWayAsGson() {
+        Map<String, Object> tableRow = new LinkedHashMap<>();
+        tableRow.put("Patient_Identifier", "NAH0000123");
+        tableRow.put("age", 32);
+        tableRow.put("weight", new BigDecimal("61.50"));
+        tableRow.put("is_pregnant", false);
+        tableRow.put("date_created", Timestamp.valueOf("2018-02-02 13:46:23"));
+        tableRow.put("instance_id", null);
+
+        JsonObject expected = new GsonBuilder().setDateFormat(DATEFORMAT_WITH_24HR_TIME).create()
+                .toJsonTree(tableRow).getAsJsonObject();
+        JsonObject actual = ColumnMapping.toJsonObject(tableRow);
+
+        assertEquals(expected, actual);
+        assertEquals("[Patient_Identifier, age, weight, is_pregnant, date_created]", actual.keySet().toString());
+        assertEquals("2018-02-02 13:46:23", actual.get("date_created").getAsString());
+        assertEquals("61.50", actual.get("weight").getAsString());
+    }
+
+    @Test
+    public void shouldOnlyKeepTheColumnsMappedToAnAttributeOrDataElement() {
+        Map<String, Object> mappingObj = new LinkedHashMap<>();
+        mappingObj.put("UIC", "rOb34aQLSyC");
+        mappingObj.put("Patient_Identifier", "");
+        mappingObj.put("prepID", null);
+
+        ColumnMapping mapping = ColumnMapping.compile(mappingObj);
+
+        assertEquals("rOb34aQLSyC", mapping.getTarget("UIC").getAsString());
+        assertNull(mapping.getTarget("Patient_Identifier"));
+        assertNull(mapping.getTarget("prepID"));
+        assertNull(mapping.getTarget("unknown"));
+        assertEquals("", mapping.get("Patient_Identifier").getAsString());
+    }
+
+    @Test
+    public void shouldCompileMappingGivenAsJson() {
+        JsonObject mappingJsonObj = new Gson().fromJson("{\"UIC\":\"rOb34aQLSyC\",\"crptc\":\"gXNu7zJBTDN\"}",
+                JsonObject.class);
+
+        ColumnMapping mapping = ColumnMapping.compile(mappingJsonObj);
+
+        assertEquals("gXNu7zJBTDN", mapping.getTarget("crptc").getAsString());
+        assertEquals(ColumnMapping.compile(mappingJsonObj), mapping);
+    }
+}
@@ -1,5 +1,7 @@
 package com.thoughtworks.martdhis2sync.util;
 
+import org.junit.After;
+import org.junit.Before;
 import org.junit.Test;
 
 import java.util.Date;
@@ -8,24 +10,34 @@ import static org.junit.Assert.assertEquals;
 
 public class EnrollmentUtilTest {
 
+    @Before
+    public void setUp() {
+        SyncContext.begin("HT Service");
+    }
+
+    @After
+    public void tearDown() {
+        SyncContext.end();
+    }
+
     @Test
     public void shouldUpdateEventDateWhenTheGivenDateIsGreater() {
-        EnrollmentUtil.date = new Date(Long.MIN_VALUE);
+        EnrollmentUtil.setDate(new Date(Long.MIN_VALUE));
         String givenDate = "2018-10-28 12:00:03";
 
         EnrollmentUtil.updateLatestEnrollmentDateCreated(givenDate);
 
-        assertEquals(givenDate, BatchUtil.getStringFromDate(EnrollmentUtil.date, BatchUtil.DATEFORMAT_WITH_24HR_TIME));
+        assertEquals(givenDate, BatchUtil.getStringFromDate(EnrollmentUtil.getDate(), BatchUtil.DATEFORMAT_WITH_24HR_TIME));
     }
 
     @Test
     public void shouldNotUpdateEventDateWhenTheGivenDateIsLesser() {
         String actualDate = "2018-11-12 12:10:10";
-        EnrollmentUtil.date = BatchUtil.getDateFromString(actualDate, BatchUtil.DATEFORMAT_WITH_24HR_TIME);
+        EnrollmentUtil.setDate(BatchUtil.getDateFromString(actualDate, BatchUtil.DATEFORMAT_WITH_24HR_TIME));
         String givenDate = "2018-10-28 12:00:03";
 
         EnrollmentUtil.updateLatestEnrollmentDateCreated(givenDate);
 
-        assertEquals(actualDate, BatchUtil.getStringFromDate(EnrollmentUtil.date, BatchUtil.DATEFORMAT_WITH_24HR_TIME));
+        assertEquals(actualDate, BatchUtil.getStringFromDate(EnrollmentUtil.getDate(), BatchUtil.DATEFORMAT_WITH_24HR_TIME));
     }
 }
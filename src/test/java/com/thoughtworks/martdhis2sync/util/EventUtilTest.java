@@ -3,6 +3,7 @@ package com.thoughtworks.martdhis2sync.util;
 import com.google.gson.JsonObject;
 import com.thoughtworks.martdhis2sync.model.Event;
 import com.thoughtworks.martdhis2sync.model.EventTracker;
+import org.junit.After;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
@@ -15,6 +16,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -31,6 +33,7 @@ public class EventUtilTest {
 
     @Before
     public void setUp() throws Exception {
+        SyncContext.begin("HT Service");
         mockStatic(BatchUtil.class);
         JsonObject tableRow = getTableRow("");
         when(BatchUtil.getUnquotedString(tableRow.get("instance_id").toString())).thenReturn("nLGUkAmW1YS");
@@ -39,6 +42,11 @@ public class EventUtilTest {
         when(BatchUtil.getUnquotedString(tableRow.get("program_stage").toString())).thenReturn("PiGF5LQjHrW");
     }
 
+    @After
+    public void tearDown() {
+        SyncContext.end();
+    }
+
     @Test
     public void shouldAddTheGivenObjectToExistingEventTracker() throws NoSuchFieldException, IllegalAccessException {
         JsonObject tableRow = getTableRow("8hUkh8G");
@@ -102,7 +110,7 @@ public class EventUtilTest {
 
     @Test
     public void shouldReturnDataValue() throws ParseException {
-        EventUtil.setElementsOfTypeDateTime(new ArrayList<>());
+        EventUtil.setElementsOfTypeDateTime(new HashSet<>());
         JsonObject mappingJsonObj = new JsonObject();
         mappingJsonObj.addProperty("crptc", "gXNu7zJBTDN");
 
@@ -121,7 +129,7 @@ public class EventUtilTest {
 
     @Test
     public void shouldChangeTheFormatForDataValueIfTheDataTypeIsTIMESTAMP() throws ParseException {
-        EventUtil.setElementsOfTypeDateTime(Collections.singletonList("gXNu7zJBTDN"));
+        EventUtil.setElementsOfTypeDateTime(Collections.singleton("gXNu7zJBTDN"));
         JsonObject mappingJsonObj = new JsonObject();
         mappingJsonObj.addProperty("crptc", "gXNu7zJBTDN");
 
@@ -165,14 +173,14 @@ public class EventUtilTest {
 
     @Test
     public void shouldUpdateEventDateWhenTheGivenDateIsGreater() {
-        EventUtil.date = new Date(Long.MIN_VALUE);
+        EventUtil.setDate(new Date(Long.MIN_VALUE));
         String givenDate = "2018-10-28 12:00:03";
 
         Date dateMock = mock(Date.class);
         when(BatchUtil.getDateFromString(givenDate, DATEFORMAT_WITH_24HR_TIME)).thenReturn(dateMock);
         EventUtil.updateLatestEventDateCreated(givenDate);
 
-        assertEquals(dateMock, EventUtil.date);
+        assertEquals(dateMock, EventUtil.getDate());
     }
 
     private JsonObject getTableRow(String eventId) {
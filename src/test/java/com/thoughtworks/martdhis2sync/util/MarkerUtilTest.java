@@ -39,14 +39,13 @@ public class MarkerUtilTest {
         String category = CATEGORY_INSTANCE;
         String date = "292269055-12-02 22:17:04";
 
-        String sql = String.format("UPDATE marker SET last_synced_date = '%s' WHERE program_name = '%s' AND category = '%s'",
-                date, programName, category);
+        String sql = "UPDATE marker SET last_synced_date = ?::TIMESTAMP WHERE program_name = ? AND category = ?";
 
-        when(jdbcTemplate.update(sql)).thenReturn(1);
+        when(jdbcTemplate.update(sql, date, programName, category)).thenReturn(1);
 
         markerUtil.updateMarkerEntry(programName, category, date);
 
-        verify(jdbcTemplate, times(1)).update(sql);
+        verify(jdbcTemplate, times(1)).update(sql, date, programName, category);
     }
 
     @Test
@@ -56,10 +55,9 @@ public class MarkerUtilTest {
         String category = CATEGORY_INSTANCE;
         Map<String, Object> syncedDate = new HashMap<>();
         syncedDate.put("last_synced_date", null);
-        String sql = String.format("SELECT last_synced_date FROM marker WHERE program_name='%s' AND category='%s'",
-                programName, category);
+        String sql = "SELECT last_synced_date FROM marker WHERE program_name = ? AND category = ?";
 
-        when(jdbcTemplate.queryForList(sql)).thenReturn(Collections.singletonList(syncedDate));
+        when(jdbcTemplate.queryForList(sql, programName, category)).thenReturn(Collections.singletonList(syncedDate));
 
         Date lastSyncedDate = markerUtil.getLastSyncedDate(programName, category);
 
@@ -73,10 +71,9 @@ public class MarkerUtilTest {
         String category = CATEGORY_INSTANCE;
         Map<String, Object> syncedDate = new HashMap<>();
         syncedDate.put("last_synced_date", "2018-12-02 22:17:04");
-        String sql = String.format("SELECT last_synced_date FROM marker WHERE program_name='%s' AND category='%s'",
-                programName, category);
+        String sql = "SELECT last_synced_date FROM marker WHERE program_name = ? AND category = ?";
 
-        when(jdbcTemplate.queryForList(sql)).thenReturn(Collections.singletonList(syncedDate));
+        when(jdbcTemplate.queryForList(sql, programName, category)).thenReturn(Collections.singletonList(syncedDate));
 
         Date lastSyncedDate = markerUtil.getLastSyncedDate(programName, category);
 
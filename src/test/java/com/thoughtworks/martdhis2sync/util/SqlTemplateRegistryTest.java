@@ -0,0 +1,91 @@
+package com.thoughtworks.martdhis2sync.util;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.thoughtworks.martdhis2sync.util.SqlTemplateRegistry.INSTANCE_READER;
+import static com.thoughtworks.martdhis2sync.util.SqlTemplateRegistry.SEARCHABLE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class SqlTemplateRegistryTest {
+
+    private SqlTemplateRegistry registry;
+
+    @Before
+    public void setUp() {
+        registry = new SqlTemplateRegistry();
+    }
+
+    @Test
+    public void shouldLoadTheSqlResourcesOfTheApplication() throws Exception {
+        registry.load();
+
+        assertEquals("SELECT %s FROM %s pi INNER JOIN marker m ON pi.date_created :: TIMESTAMP > " +
+                "COALESCE(m.last_synced_date, '-infinity') AND category = 'instance' AND program_name = ?;",
+                registry.get(SEARCHABLE).trim());
+        assertTrue(registry.get(INSTANCE_READER).startsWith("SELECT lt.*"));
+    }
+
+    @Test
+    public void shouldFailWhenATemplateHasADifferentNumberOfPlaceholders() throws Exception {
+        List<Resource> resources = getApplicationResourcesExcept("Searchable.sql");
+        resources.add(sql("Searchable.sql", "SELECT %s FROM %s pi WHERE program_name = '%s';"));
+
+        try {
+            registry.load(resources.toArray(new Resource[0]));
+            fail("Should have thrown IllegalStateException");
+        } catch (IllegalStateException e) {
+            assertEquals("Invalid sql templates: Searchable.sql has 3 identifiers and 0 parameters, expected 2 and 1",
+                    e.getMessage());
+        }
+    }
+
+    @Test
+    public void shouldFailWhenATemplateIsMissing() throws Exception {
+        List<Resource> resources = getApplicationResourcesExcept("Searchable.sql");
+
+        try {
+            registry.load(resources.toArray(new Resource[0]));
+            fail("Should have thrown IllegalStateException");
+        } catch (IllegalStateException e) {
+            assertEquals("Invalid sql templates: Searchable.sql is missing", e.getMessage());
+        }
+    }
+
+    @Test
+    public void shouldFailForATemplateThatIsNotLoaded() throws Exception {
+        registry.load();
+
+        try {
+            registry.get("EnrollmentReader");
+            fail("Should have thrown IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            assertEquals("No sql template named EnrollmentReader", e.getMessage());
+        }
+    }
+
+    private List<Resource> getApplicationResourcesExcept(String filename) throws Exception {
+        List<Resource> resources = new ArrayList<>(Arrays.asList(
+                new PathMatchingResourcePatternResolver().getResources("classpath:sql/*.sql")));
+        resources.removeIf(resource -> filename.equals(resource.getFilename()));
+        return resources;
+    }
+
+    private Resource sql(String filename, String sql) {
+        return new ByteArrayResource(sql.getBytes()) {
+            @Override
+            public String getFilename() {
+                return filename;
+            }
+        };
+    }
+}
@@ -0,0 +1,50 @@
+package com.thoughtworks.martdhis2sync.util;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class SqlUtilTest {
+
+    @Test
+    public void shouldAcceptPlainAndSchemaQualifiedTableNames() {
+        assertEquals("hts_instance", SqlUtil.table("hts_instance"));
+        assertEquals("public.hts_instance", SqlUtil.table("public.hts_instance"));
+    }
+
+    @Test
+    public void shouldRejectTableNamesThatAreNotPlainIdentifiers() {
+        assertInvalidTable("hts_instance; DROP TABLE marker");
+        assertInvalidTable("hts_instance lt");
+        assertInvalidTable("\"hts_instance\"");
+        assertInvalidTable("1hts_instance");
+        assertInvalidTable("");
+        assertInvalidTable(null);
+    }
+
+    @Test
+    public void shouldQuoteColumnNames() {
+        assertEquals("\"Patient_Identifier\"", SqlUtil.quotedColumn("Patient_Identifier"));
+        assertEquals("\"First Name\"", SqlUtil.quotedColumn("First Name"));
+    }
+
+    @Test
+    public void shouldRejectColumnNamesThatCanEndTheQuotes() {
+        try {
+            SqlUtil.quotedColumn("patient_id\" FROM marker; --");
+            fail("Should have thrown IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            assertEquals("Invalid column name: patient_id\" FROM marker; --", e.getMessage());
+        }
+    }
+
+    private void assertInvalidTable(String name) {
+        try {
+            SqlUtil.table(name);
+            fail("Should have thrown IllegalArgumentException for " + name);
+        } catch (IllegalArgumentException e) {
+            assertEquals("Invalid table name: " + name, e.getMessage());
+        }
+    }
+}
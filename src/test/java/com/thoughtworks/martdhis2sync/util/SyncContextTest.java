@@ -0,0 +1,109 @@
+package com.thoughtworks.martdhis2sync.util;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SyncContextTest {
+
+    @After
+    public void tearDown() {
+        SyncContext.end();
+    }
+
+    @Test
+    public void shouldShareTheContextWithTheThreadsStartedByTheSync() throws Exception {
+        SyncContext context = SyncContext.begin("HT Service");
+
+        Thread thread = new Thread(() -> {
+            SyncContext.current().setDeltaExists(true);
+            SyncContext.current().getLogMessages().add("child");
+        });
+        thread.start();
+        thread.join();
+
+        assertTrue(context.isDeltaExists());
+        assertEquals(Arrays.asList("child"), new ArrayList<>(context.getLogMessages()));
+    }
+
+    @Test
+    public void shouldKeepTheSyncsOfDifferentServicesApart() throws Exception {
+        SyncContext context = SyncContext.begin("HT Service");
+        context.getLogMessages().add("HT");
+
+        List<String> seenByOtherSync = new ArrayList<>();
+        Thread thread = new Thread(() -> {
+            SyncContext.begin("TB Service").getLogMessages().add("TB");
+            SyncContext.current().setDeltaExists(true);
+            seenByOtherSync.add(SyncContext.current().getService());
+            seenByOtherSync.addAll(SyncContext.current().getLogMessages());
+        });
+        thread.start();
+        thread.join();
+
+        assertEquals(Arrays.asList("TB Service", "TB"), seenByOtherSync);
+        assertEquals("HT Service", SyncContext.current().getService());
+        assertEquals(Arrays.asList("HT"), new ArrayList<>(context.getLogMessages()));
+        assertFalse(context.isDeltaExists());
+    }
+
+    @Test
+    public void shouldKeepTheLatestDateCreated() {
+        SyncContext context = SyncContext.begin("HT Service");
+        Date earlier = new Date(1000);
+        Date later = new Date(2000);
+
+        context.updateInstanceDate(later);
+        context.updateInstanceDate(earlier);
+        context.updateEnrollmentDate(earlier);
+        context.updateEnrollmentDate(later);
+        context.updateEventDate(later);
+
+        assertEquals(later, context.getInstanceDate());
+        assertEquals(later, context.getEnrollmentDate());
+        assertEquals(later, context.getEventDate());
+    }
+
+    @Test
+    public void shouldStartEachSyncWithoutTheStateOfThePreviousOne() {
+        SyncContext.begin("HT Service").setDeltaExists(true);
+        SyncContext.current().setInstanceDate(new Date(1000));
+
+        SyncContext.begin("HT Service");
+
+        assertFalse(SyncContext.current().isDeltaExists());
+        assertEquals(new Date(Long.MIN_VALUE), SyncContext.current().getInstanceDate());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void shouldFailOnAThreadWithoutASync() {
+        SyncContext.current();
+    }
+
+    @Test
+    public void shouldNotBeBoundOnceTheSyncEnds() throws Exception {
+        SyncContext.begin("HT Service");
+        SyncContext.end();
+
+        List<Exception> failures = new ArrayList<>();
+        Thread thread = new Thread(() -> {
+            try {
+                SyncContext.current();
+            } catch (IllegalStateException e) {
+                failures.add(e);
+            }
+        });
+        thread.start();
+        thread.join();
+
+        assertEquals(1, failures.size());
+    }
+}
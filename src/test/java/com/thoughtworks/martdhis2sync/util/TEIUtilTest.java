@@ -5,10 +5,6 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.powermock.modules.junit4.PowerMockRunner;
 
-import java.util.LinkedHashMap;
-import java.util.Map;
-
-import static com.thoughtworks.martdhis2sync.CommonTestHelper.setValueForStaticField;
 import static org.junit.Assert.assertEquals;
 
 @RunWith(PowerMockRunner.class)
@@ -37,10 +33,9 @@ public class TEIUtilTest {
     }
 
     @Test
-    public void shouldClearTheList() throws NoSuchFieldException, IllegalAccessException {
-        Map<String, String> patientTeiIds = new LinkedHashMap<>();
-        patientTeiIds.put("key", "value");
-        setValueForStaticField(TEIUtil.class, "patientIdTEIUidMap", patientTeiIds);
+    public void shouldClearTheList() {
+        TEIUtil.resetPatientTEIUidMap();
+        TEIUtil.getPatientIdTEIUidMap().put("key", "value");
 
         assertEquals(1, TEIUtil.getPatientIdTEIUidMap().size());
 
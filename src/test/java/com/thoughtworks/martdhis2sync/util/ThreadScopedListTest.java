@@ -0,0 +1,52 @@
+package com.thoughtworks.martdhis2sync.util;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class ThreadScopedListTest {
+
+    @Test
+    public void shouldKeepAListPerIsolatedThread() throws Exception {
+        ThreadScopedList<String> list = new ThreadScopedList<>();
+        list.add("main");
+
+        List<String> seenByOtherThread = new ArrayList<>();
+        Thread thread = new Thread(() -> {
+            list.isolate();
+            list.add("other");
+            seenByOtherThread.addAll(list);
+        });
+        thread.start();
+        thread.join();
+
+        assertEquals(Arrays.asList("other"), seenByOtherThread);
+        assertEquals(Arrays.asList("main"), new ArrayList<>(list));
+    }
+
+    @Test
+    public void shouldShareTheListWithTheThreadsStartedByTheOwningThread() throws Exception {
+        ThreadScopedList<String> list = new ThreadScopedList<>();
+        list.add("main");
+
+        Thread thread = new Thread(() -> list.add("child"));
+        thread.start();
+        thread.join();
+
+        assertEquals(Arrays.asList("main", "child"), new ArrayList<>(list));
+    }
+
+    @Test
+    public void shouldClearOnlyTheListOfTheCurrentThread() {
+        ThreadScopedList<String> list = new ThreadScopedList<>();
+        list.add("main");
+
+        list.clear();
+
+        assertEquals(0, list.size());
+    }
+}
@@ -0,0 +1,141 @@
+package com.thoughtworks.martdhis2sync.util;
+
+import com.thoughtworks.martdhis2sync.model.Attribute;
+import com.thoughtworks.martdhis2sync.model.TrackedEntityInstanceInfo;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TrackedEntityInstanceIndexTest {
+
+    private static final String UIC = "rOb34aQLSyC";
+    private static final String PREP_ID = "SyCrOb34aQL";
+    private static final String PATIENT_ID = "4aQLSyCrOb3";
+
+    @Test
+    public void shouldReturnTheInstanceMatchingSearchableAndComparableAttributes() {
+        TrackedEntityInstanceInfo instance1 = getInstance("w3MoRtzP4SO",
+                getAttribute(UIC, "UIC00015"), getAttribute(PREP_ID, "0097"));
+        TrackedEntityInstanceInfo instance2 = getInstance("tzP4SOw3MoR",
+                getAttribute(UIC, "UIC00016"), getAttribute(PREP_ID, "0097"));
+        TrackedEntityInstanceIndex index = new TrackedEntityInstanceIndex(
+                Collections.singletonList(UIC), Arrays.asList(instance1, instance2));
+
+        List<TrackedEntityInstanceInfo> actual = index.getMatchingInstances(
+                getMappings(UIC, "UIC00015"), getMappings(PREP_ID, "0097"));
+
+        assertEquals(Collections.singletonList(instance1), actual);
+    }
+
+    @Test
+    public void shouldNotReturnTheInstanceWhenComparableAttributesAreNotMatching() {
+        TrackedEntityInstanceInfo instance = getInstance("w3MoRtzP4SO",
+                getAttribute(UIC, "UIC00015"), getAttribute(PREP_ID, "0097"));
+        TrackedEntityInstanceIndex index = new TrackedEntityInstanceIndex(
+                Collections.singletonList(UIC), Collections.singletonList(instance));
+
+        List<TrackedEntityInstanceInfo> actual = index.getMatchingInstances(
+                getMappings(UIC, "UIC00015"), getMappings(PREP_ID, "0098"));
+
+        assertTrue(actual.isEmpty());
+    }
+
+    @Test
+    public void shouldReturnAllInstancesWithTheSameSearchableValues() {
+        TrackedEntityInstanceInfo instance1 = getInstance("w3MoRtzP4SO", getAttribute(UIC, "UIC00015"));
+        TrackedEntityInstanceInfo instance2 = getInstance("tzP4SOw3MoR", getAttribute(UIC, "UIC00015"));
+        TrackedEntityInstanceIndex index = new TrackedEntityInstanceIndex(
+                Collections.singletonList(UIC), Arrays.asList(instance1, instance2));
+
+        List<TrackedEntityInstanceInfo> actual = index.getMatchingInstances(
+                getMappings(UIC, "UIC00015"), getMappings(PREP_ID, "0097"));
+
+        assertEquals(Arrays.asList(instance1, instance2), actual);
+    }
+
+    @Test
+    public void shouldMatchInstanceWhichDoesNotHaveTheSearchableAttribute() {
+        TrackedEntityInstanceInfo instance = getInstance("w3MoRtzP4SO", getAttribute(PATIENT_ID, "NAH0000123"));
+        TrackedEntityInstanceIndex index = new TrackedEntityInstanceIndex(
+                Collections.singletonList(UIC), Collections.singletonList(instance));
+
+        List<TrackedEntityInstanceInfo> actual = index.getMatchingInstances(
+                getMappings(UIC, "UIC00015"), getMappings(PATIENT_ID, "NAH0000123"));
+
+        assertEquals(Collections.singletonList(instance), actual);
+    }
+
+    @Test
+    public void shouldNotMatchInstanceHavingConflictingValuesForTheSearchableAttribute() {
+        TrackedEntityInstanceInfo instance = getInstance("w3MoRtzP4SO",
+                getAttribute(UIC, "UIC00015"), getAttribute(UIC, "UIC00016"));
+        TrackedEntityInstanceIndex index = new TrackedEntityInstanceIndex(
+                Collections.singletonList(UIC), Collections.singletonList(instance));
+
+        assertTrue(index.getMatchingInstances(getMappings(UIC, "UIC00015"), new HashMap<>()).isEmpty());
+        assertTrue(index.getMatchingInstances(getMappings(UIC, "UIC00016"), new HashMap<>()).isEmpty());
+    }
+
+    @Test
+    public void shouldScanAllInstancesWhenSearchableAttributesDifferFromTheIndexedOnes() {
+        TrackedEntityInstanceInfo instance1 = getInstance("w3MoRtzP4SO",
+                getAttribute(UIC, "UIC00015"), getAttribute(PREP_ID, "0097"));
+        TrackedEntityInstanceInfo instance2 = getInstance("tzP4SOw3MoR",
+                getAttribute(UIC, "UIC00016"), getAttribute(PREP_ID, "0098"));
+        TrackedEntityInstanceIndex index = new TrackedEntityInstanceIndex(
+                Collections.singletonList(UIC), Arrays.asList(instance1, instance2));
+
+        List<TrackedEntityInstanceInfo> actual = index.getMatchingInstances(
+                getMappings(PREP_ID, "0098"), new HashMap<>());
+
+        assertEquals(Collections.singletonList(instance2), actual);
+    }
+
+    @Test
+    public void shouldIndexInstancesAddedLater() {
+        TrackedEntityInstanceInfo instance = getInstance("w3MoRtzP4SO", getAttribute(UIC, "UIC00015"));
+        TrackedEntityInstanceIndex index = new TrackedEntityInstanceIndex(
+                Collections.singletonList(UIC), Collections.emptyList());
+
+        index.addAll(Collections.singletonList(instance));
+
+        assertEquals(1, index.size());
+        assertEquals(Collections.singletonList(instance),
+                index.getMatchingInstances(getMappings(UIC, "UIC00015"), new HashMap<>()));
+    }
+
+    private Map<String, String> getMappings(String attribute, String value) {
+        Map<String, String> mappings = new HashMap<>();
+        mappings.put(attribute, value);
+
+        return mappings;
+    }
+
+    private Attribute getAttribute(String attribute, String value) {
+        return new Attribute(
+                "2018-11-26T09:24:57.158",
+                "admin",
+                "",
+                "",
+                "2018-11-26T09:24:57.158",
+                "TEXT",
+                attribute,
+                value
+        );
+    }
+
+    private TrackedEntityInstanceInfo getInstance(String uid, Attribute... attributes) {
+        TrackedEntityInstanceInfo instance = new TrackedEntityInstanceInfo();
+        instance.setTrackedEntityInstance(uid);
+        instance.setAttributes(Arrays.asList(attributes));
+
+        return instance;
+    }
+}
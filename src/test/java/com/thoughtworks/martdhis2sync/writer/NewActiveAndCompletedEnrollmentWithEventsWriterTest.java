@@ -4,7 +4,9 @@ import com.thoughtworks.martdhis2sync.model.*;
 import com.thoughtworks.martdhis2sync.repository.SyncRepository;
 import com.thoughtworks.martdhis2sync.responseHandler.EnrollmentResponseHandler;
 import com.thoughtworks.martdhis2sync.responseHandler.EventResponseHandler;
+import com.thoughtworks.martdhis2sync.util.SyncContext;
 import com.thoughtworks.martdhis2sync.util.TEIUtil;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -17,10 +19,12 @@ import org.springframework.http.ResponseEntity;
 
 import java.util.*;
 
+import static com.thoughtworks.martdhis2sync.CommonTestHelper.enrollmentRequestBodyOf;
 import static com.thoughtworks.martdhis2sync.CommonTestHelper.setValuesForMemberFields;
 import static com.thoughtworks.martdhis2sync.model.ImportSummary.IMPORT_SUMMARY_RESPONSE_ERROR;
 import static com.thoughtworks.martdhis2sync.model.ImportSummary.IMPORT_SUMMARY_RESPONSE_SUCCESS;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.powermock.api.mockito.PowerMockito.when;
@@ -65,6 +69,7 @@ public class NewActiveAndCompletedEnrollmentWithEventsWriterTest {
 
     @Before
     public void setUp() throws Exception {
+        SyncContext.begin("HT Service");
         String patientIdentifier1 = "NAH00010";
         String patientIdentifier2 = "NAH00011";
         String patientIdentifier3 = "NAH00012";
@@ -122,6 +127,11 @@ public class NewActiveAndCompletedEnrollmentWithEventsWriterTest {
         TEIUtil.setInstancesWithEnrollments(instancesWithEnrollments);
     }
 
+    @After
+    public void tearDown() {
+        SyncContext.end();
+    }
+
     @Test
     public void shouldCallSyncRepoToSendData() throws Exception {
         String instanceId = "instance1";
@@ -147,12 +157,12 @@ public class NewActiveAndCompletedEnrollmentWithEventsWriterTest {
                     "}" +
                 "]" +
             "}";
-        when(syncRepository.sendEnrollmentData(uri, requestBody)).thenReturn(responseEntity);
+        when(syncRepository.sendEnrollmentData(eq(uri), enrollmentRequestBodyOf(requestBody))).thenReturn(responseEntity);
         when(response.getImportSummaries()).thenReturn(new ArrayList<>());
 
         writer.write(processedTableRows);
 
-        verify(syncRepository, times(1)).sendEnrollmentData(uri, requestBody);
+        verify(syncRepository, times(1)).sendEnrollmentData(eq(uri), enrollmentRequestBodyOf(requestBody));
         verify(responseEntity, times(1)).getBody();
         verify(syncResponse, times(1)).getResponse();
         verify(response, times(1)).getImportSummaries();
@@ -210,12 +220,12 @@ public class NewActiveAndCompletedEnrollmentWithEventsWriterTest {
                 "]" +
             "}";
 
-        when(syncRepository.sendEnrollmentData(uri, requestBody)).thenReturn(responseEntity);
+        when(syncRepository.sendEnrollmentData(eq(uri), enrollmentRequestBodyOf(requestBody))).thenReturn(responseEntity);
         when(response.getImportSummaries()).thenReturn(new ArrayList<>());
 
         writer.write(processedTableRows);
 
-        verify(syncRepository, times(1)).sendEnrollmentData(uri, requestBody);
+        verify(syncRepository, times(1)).sendEnrollmentData(eq(uri), enrollmentRequestBodyOf(requestBody));
         verify(responseEntity, times(1)).getBody();
         verify(syncResponse, times(1)).getResponse();
         verify(response, times(1)).getImportSummaries();
@@ -249,12 +259,12 @@ public class NewActiveAndCompletedEnrollmentWithEventsWriterTest {
                 "]" +
             "}";
 
-        when(syncRepository.sendEnrollmentData(uri, requestBody)).thenReturn(responseEntity);
+        when(syncRepository.sendEnrollmentData(eq(uri), enrollmentRequestBodyOf(requestBody))).thenReturn(responseEntity);
         when(response.getImportSummaries()).thenReturn(new ArrayList<>());
 
         writer.write(processedTableRows);
 
-        verify(syncRepository, times(1)).sendEnrollmentData(uri, requestBody);
+        verify(syncRepository, times(1)).sendEnrollmentData(eq(uri), enrollmentRequestBodyOf(requestBody));
         verify(responseEntity, times(1)).getBody();
         verify(syncResponse, times(1)).getResponse();
         verify(response, times(1)).getImportSummaries();
@@ -288,12 +298,12 @@ public class NewActiveAndCompletedEnrollmentWithEventsWriterTest {
                 "]" +
             "}";
 
-        when(syncRepository.sendEnrollmentData(uri, requestBody)).thenReturn(responseEntity);
+        when(syncRepository.sendEnrollmentData(eq(uri), enrollmentRequestBodyOf(requestBody))).thenReturn(responseEntity);
         when(response.getImportSummaries()).thenReturn(new ArrayList<>());
 
         writer.write(processedTableRows);
 
-        verify(syncRepository, times(1)).sendEnrollmentData(uri, requestBody);
+        verify(syncRepository, times(1)).sendEnrollmentData(eq(uri), enrollmentRequestBodyOf(requestBody));
         verify(responseEntity, times(1)).getBody();
         verify(syncResponse, times(1)).getResponse();
         verify(response, times(1)).getImportSummaries();
@@ -332,12 +342,12 @@ public class NewActiveAndCompletedEnrollmentWithEventsWriterTest {
                 "]" +
             "}";
 
-        when(syncRepository.sendEnrollmentData(uri, requestBody)).thenReturn(responseEntity);
+        when(syncRepository.sendEnrollmentData(eq(uri), enrollmentRequestBodyOf(requestBody))).thenReturn(responseEntity);
         when(response.getImportSummaries()).thenReturn(new ArrayList<>());
 
         writer.write(processedTableRows);
 
-        verify(syncRepository, times(1)).sendEnrollmentData(uri, requestBody);
+        verify(syncRepository, times(1)).sendEnrollmentData(eq(uri), enrollmentRequestBodyOf(requestBody));
         verify(responseEntity, times(1)).getBody();
         verify(syncResponse, times(1)).getResponse();
         verify(response, times(1)).getImportSummaries();
@@ -376,12 +386,12 @@ public class NewActiveAndCompletedEnrollmentWithEventsWriterTest {
                 "]" +
             "}";
 
-        when(syncRepository.sendEnrollmentData(uri, requestBody)).thenReturn(responseEntity);
+        when(syncRepository.sendEnrollmentData(eq(uri), enrollmentRequestBodyOf(requestBody))).thenReturn(responseEntity);
         when(response.getImportSummaries()).thenReturn(new ArrayList<>());
 
         writer.write(processedTableRows);
 
-        verify(syncRepository, times(1)).sendEnrollmentData(uri, requestBody);
+        verify(syncRepository, times(1)).sendEnrollmentData(eq(uri), enrollmentRequestBodyOf(requestBody));
         verify(responseEntity, times(1)).getBody();
         verify(syncResponse, times(1)).getResponse();
         verify(response, times(1)).getImportSummaries();
@@ -425,12 +435,12 @@ public class NewActiveAndCompletedEnrollmentWithEventsWriterTest {
                 "]" +
                 "}";
 
-        when(syncRepository.sendEnrollmentData(uri, requestBody)).thenReturn(responseEntity);
+        when(syncRepository.sendEnrollmentData(eq(uri), enrollmentRequestBodyOf(requestBody))).thenReturn(responseEntity);
         when(response.getImportSummaries()).thenReturn(new ArrayList<>());
 
         writer.write(processedTableRows);
 
-        verify(syncRepository, times(1)).sendEnrollmentData(uri, requestBody);
+        verify(syncRepository, times(1)).sendEnrollmentData(eq(uri), enrollmentRequestBodyOf(requestBody));
         verify(responseEntity, times(1)).getBody();
         verify(syncResponse, times(1)).getResponse();
         verify(response, times(1)).getImportSummaries();
@@ -474,12 +484,12 @@ public class NewActiveAndCompletedEnrollmentWithEventsWriterTest {
                 "]" +
                 "}";
 
-        when(syncRepository.sendEnrollmentData(uri, requestBody)).thenReturn(responseEntity);
+        when(syncRepository.sendEnrollmentData(eq(uri), enrollmentRequestBodyOf(requestBody))).thenReturn(responseEntity);
         when(response.getImportSummaries()).thenReturn(new ArrayList<>());
 
         writer.write(processedTableRows);
 
-        verify(syncRepository, times(1)).sendEnrollmentData(uri, requestBody);
+        verify(syncRepository, times(1)).sendEnrollmentData(eq(uri), enrollmentRequestBodyOf(requestBody));
         verify(responseEntity, times(1)).getBody();
         verify(syncResponse, times(1)).getResponse();
         verify(response, times(1)).getImportSummaries();
@@ -523,12 +533,12 @@ public class NewActiveAndCompletedEnrollmentWithEventsWriterTest {
                 "]" +
                 "}";
 
-        when(syncRepository.sendEnrollmentData(uri, requestBody)).thenReturn(responseEntity);
+        when(syncRepository.sendEnrollmentData(eq(uri), enrollmentRequestBodyOf(requestBody))).thenReturn(responseEntity);
         when(response.getImportSummaries()).thenReturn(new ArrayList<>());
 
         writer.write(processedTableRows);
 
-        verify(syncRepository, times(1)).sendEnrollmentData(uri, requestBody);
+        verify(syncRepository, times(1)).sendEnrollmentData(eq(uri), enrollmentRequestBodyOf(requestBody));
         verify(responseEntity, times(1)).getBody();
         verify(syncResponse, times(1)).getResponse();
         verify(response, times(1)).getImportSummaries();
@@ -598,13 +608,13 @@ public class NewActiveAndCompletedEnrollmentWithEventsWriterTest {
                 )
         );
 
-        when(syncRepository.sendEnrollmentData(uri, requestBody)).thenReturn(responseEntity);
+        when(syncRepository.sendEnrollmentData(eq(uri), enrollmentRequestBodyOf(requestBody))).thenReturn(responseEntity);
         when(responseEntity.getStatusCode()).thenReturn(HttpStatus.OK);
         when(response.getImportSummaries()).thenReturn(importSummaries);
 
         writer.write(processedTableRows);
 
-        verify(syncRepository, times(1)).sendEnrollmentData(uri, requestBody);
+        verify(syncRepository, times(1)).sendEnrollmentData(eq(uri), enrollmentRequestBodyOf(requestBody));
         verify(responseEntity, times(1)).getBody();
         verify(syncResponse, times(1)).getResponse();
         verify(response, times(1)).getImportSummaries();
@@ -679,12 +689,12 @@ public class NewActiveAndCompletedEnrollmentWithEventsWriterTest {
                 )
         );
 
-        when(syncRepository.sendEnrollmentData(uri, requestBody)).thenReturn(responseEntity);
+        when(syncRepository.sendEnrollmentData(eq(uri), enrollmentRequestBodyOf(requestBody))).thenReturn(responseEntity);
         when(response.getImportSummaries()).thenReturn(importSummaries);
 
         writer.write(processedTableRows);
 
-        verify(syncRepository, times(1)).sendEnrollmentData(uri, requestBody);
+        verify(syncRepository, times(1)).sendEnrollmentData(eq(uri), enrollmentRequestBodyOf(requestBody));
         verify(responseEntity, times(1)).getBody();
         verify(syncResponse, times(1)).getResponse();
         verify(response, times(1)).getImportSummaries();
@@ -744,13 +754,13 @@ public class NewActiveAndCompletedEnrollmentWithEventsWriterTest {
                 )
                 ));
 
-        when(syncRepository.sendEnrollmentData(uri, requestBody)).thenReturn(responseEntity);
+        when(syncRepository.sendEnrollmentData(eq(uri), enrollmentRequestBodyOf(requestBody))).thenReturn(responseEntity);
         when(response.getImportSummaries()).thenReturn(importSummaries);
         when(responseEntity.getStatusCode()).thenReturn(HttpStatus.OK);
 
         writer.write(processedTableRows);
 
-        verify(syncRepository, times(1)).sendEnrollmentData(uri, requestBody);
+        verify(syncRepository, times(1)).sendEnrollmentData(eq(uri), enrollmentRequestBodyOf(requestBody));
         verify(responseEntity, times(1)).getBody();
         verify(syncResponse, times(1)).getResponse();
         verify(response, times(1)).getImportSummaries();
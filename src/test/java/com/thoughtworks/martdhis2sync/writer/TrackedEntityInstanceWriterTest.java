@@ -4,6 +4,7 @@ import com.thoughtworks.martdhis2sync.model.*;
 import com.thoughtworks.martdhis2sync.repository.SyncRepository;
 import com.thoughtworks.martdhis2sync.service.LoggerService;
 import com.thoughtworks.martdhis2sync.util.MarkerUtil;
+import com.thoughtworks.martdhis2sync.util.SyncContext;
 import com.thoughtworks.martdhis2sync.util.TEIUtil;
 import lombok.SneakyThrows;
 import org.junit.After;
@@ -90,6 +91,7 @@ public class TrackedEntityInstanceWriterTest {
 
     @Before
     public void setUp() throws Exception {
+        SyncContext.begin("HT Service");
         writer = new TrackedEntityInstanceWriter();
 
         setValuesForMemberFields(writer, "dataSource", dataSource);
@@ -125,6 +127,7 @@ public class TrackedEntityInstanceWriterTest {
 
     @After
     public void tearDown() throws Exception {
+        SyncContext.end();
         patientUIDMap.clear();
         isSyncFailure = false;
     }
@@ -184,6 +187,34 @@ public class TrackedEntityInstanceWriterTest {
                 .updateMarkerEntry(anyString(), anyString(), anyString());
     }
 
+    @Test
+    @SneakyThrows
+    public void shouldLeaveTheMarkerToTheInstanceMarkerListenerWhenRunningAsAPartition() {
+        setValuesForMemberFields(writer, "partition", 2);
+
+        importSummaries = Arrays.asList(
+                new ImportSummary("", IMPORT_SUMMARY_RESPONSE_SUCCESS,
+                        new ImportCount(0, 1, 0, 0), null, new ArrayList<>(), referenceUIDs.get(0)),
+                new ImportSummary("", IMPORT_SUMMARY_RESPONSE_SUCCESS,
+                        new ImportCount(0, 1, 0, 0), null, new ArrayList<>(), referenceUIDs.get(1)));
+
+        when(responseEntity.getBody()).thenReturn(DHISSyncResponse);
+        when(responseEntity.getStatusCode()).thenReturn(HttpStatus.OK);
+        when(DHISSyncResponse.getResponse()).thenReturn(response);
+        when(response.getImportSummaries()).thenReturn(importSummaries);
+        when(syncRepository.sendData(uri, requestBody)).thenReturn(responseEntity);
+
+        patientUIDMap.put(patientIDs.get(0), referenceUIDs.get(0));
+        patientUIDMap.put(patientIDs.get(1), referenceUIDs.get(1));
+        when(TEIUtil.getPatientIdTEIUidMap()).thenReturn(patientUIDMap);
+
+        writer.write(list);
+
+        verify(syncRepository, times(1)).sendData(uri, requestBody);
+        verify(markerUtil, times(0))
+                .updateMarkerEntry(anyString(), anyString(), anyString());
+    }
+
     @Test
     @SneakyThrows
     public void shouldUpdateTrackerAndMarkerTablesOnSuccessfullySyncingNewTEI() {
@@ -202,7 +233,7 @@ public class TrackedEntityInstanceWriterTest {
 
         when(dataSource.getConnection()).thenReturn(connection);
         when(connection.prepareStatement(any())).thenReturn(preparedStatement);
-        when(preparedStatement.executeUpdate()).thenReturn(2);
+        when(preparedStatement.executeBatch()).thenReturn(new int[]{1, 1});
 
         patientUIDMap.put(patientIDs.get(0), EMPTY_STRING);
         patientUIDMap.put(patientIDs.get(1), EMPTY_STRING);
@@ -212,7 +243,9 @@ public class TrackedEntityInstanceWriterTest {
 
         verify(syncRepository, times(1)).sendData(uri, requestBody);
         verify(dataSource, times(1)).getConnection();
-        verify(preparedStatement, times(2)).executeUpdate();
+        verify(preparedStatement, times(2)).addBatch();
+        verify(preparedStatement, times(1)).executeBatch();
+        verify(connection, times(1)).commit();
         verify(markerUtil, times(1))
                 .updateMarkerEntry(anyString(), anyString(), anyString());
     }
@@ -270,7 +303,7 @@ public class TrackedEntityInstanceWriterTest {
 
         when(dataSource.getConnection()).thenReturn(connection);
         when(connection.prepareStatement(any())).thenReturn(preparedStatement);
-        when(preparedStatement.executeUpdate()).thenReturn(1);
+        when(preparedStatement.executeBatch()).thenReturn(new int[]{1});
 
         patientUIDMap.put(patientIDs.get(0), EMPTY_STRING);
         patientUIDMap.put(patientIDs.get(1), EMPTY_STRING);
@@ -282,7 +315,9 @@ public class TrackedEntityInstanceWriterTest {
             assertEquals(e.getClass(), Exception.class);
         }
         verify(dataSource, times(1)).getConnection();
-        verify(preparedStatement, times(1)).executeUpdate();
+        verify(preparedStatement, times(1)).addBatch();
+        verify(preparedStatement, times(1)).executeBatch();
+        verify(connection, times(1)).commit();
         verify(markerUtil, times(0))
                 .updateMarkerEntry(anyString(), anyString(), anyString());
         verify(loggerService, times(1)).collateLogMessage(conflictValue);
@@ -521,7 +556,7 @@ public class TrackedEntityInstanceWriterTest {
 
         when(dataSource.getConnection()).thenReturn(connection);
         when(connection.prepareStatement(any())).thenReturn(preparedStatement);
-        when(preparedStatement.executeUpdate()).thenReturn(1);
+        when(preparedStatement.executeBatch()).thenReturn(new int[]{1});
 
         try {
             writer.write(list);
@@ -530,7 +565,9 @@ public class TrackedEntityInstanceWriterTest {
         }
         verify(syncRepository, times(1)).sendData(uri, requestBody);
         verify(dataSource, times(1)).getConnection();
-        verify(preparedStatement, times(1)).executeUpdate();
+        verify(preparedStatement, times(1)).addBatch();
+        verify(preparedStatement, times(1)).executeBatch();
+        verify(connection, times(1)).commit();
         verify(markerUtil, times(0)).updateMarkerEntry(anyString(), anyString(), anyString());
         verify(loggerService, times(8)).collateLogMessage(anyString());
     }
@@ -15,7 +15,9 @@ import com.thoughtworks.martdhis2sync.responseHandler.EnrollmentResponseHandler;
 import com.thoughtworks.martdhis2sync.responseHandler.EventResponseHandler;
 import com.thoughtworks.martdhis2sync.service.JobService;
 import com.thoughtworks.martdhis2sync.service.LoggerService;
+import com.thoughtworks.martdhis2sync.util.SyncContext;
 import com.thoughtworks.martdhis2sync.util.TEIUtil;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -35,10 +37,12 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 
+import static com.thoughtworks.martdhis2sync.CommonTestHelper.enrollmentRequestBodyOf;
 import static com.thoughtworks.martdhis2sync.CommonTestHelper.setValuesForMemberFields;
 import static com.thoughtworks.martdhis2sync.model.ImportSummary.IMPORT_SUMMARY_RESPONSE_ERROR;
 import static com.thoughtworks.martdhis2sync.model.ImportSummary.IMPORT_SUMMARY_RESPONSE_SUCCESS;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.powermock.api.mockito.PowerMockito.doNothing;
@@ -90,6 +94,7 @@ public class UpdatedActiveAndCompletedEnrollmentWithEventsWriterTest {
 
     @Before
     public void setUp() throws Exception {
+        SyncContext.begin("HT Service");
         String instanceId1 = "instance1";
         String instanceId2 = "instance2";
         String instanceId3 = "instance3";
@@ -156,6 +161,11 @@ public class UpdatedActiveAndCompletedEnrollmentWithEventsWriterTest {
         when(JobService.isIS_JOB_FAILED()).thenReturn(false);
     }
 
+    @After
+    public void tearDown() {
+        SyncContext.end();
+    }
+
     @Test
     public void shouldCallSyncRepoToSendData() throws Exception {
         String instanceId = "instance1";
@@ -181,13 +191,13 @@ public class UpdatedActiveAndCompletedEnrollmentWithEventsWriterTest {
                 "}" +
                 "]" +
                 "}";
-        when(syncRepository.sendEnrollmentData(uri, requestBody)).thenReturn(responseEntity);
+        when(syncRepository.sendEnrollmentData(eq(uri), enrollmentRequestBodyOf(requestBody))).thenReturn(responseEntity);
         when(responseEntity.getStatusCode()).thenReturn(HttpStatus.OK);
         when(response.getImportSummaries()).thenReturn(new ArrayList<>());
 
         writer.write(processedTableRows);
 
-        verify(syncRepository, times(1)).sendEnrollmentData(uri, requestBody);
+        verify(syncRepository, times(1)).sendEnrollmentData(eq(uri), enrollmentRequestBodyOf(requestBody));
         verify(responseEntity, times(1)).getBody();
         verify(syncResponse, times(1)).getResponse();
         verify(response, times(1)).getImportSummaries();
@@ -234,13 +244,13 @@ public class UpdatedActiveAndCompletedEnrollmentWithEventsWriterTest {
                 "}" +
                 "]" +
                 "}";
-        when(syncRepository.sendEnrollmentData(uri, requestBody)).thenReturn(responseEntity);
+        when(syncRepository.sendEnrollmentData(eq(uri), enrollmentRequestBodyOf(requestBody))).thenReturn(responseEntity);
         when(responseEntity.getStatusCode()).thenReturn(HttpStatus.OK);
         when(response.getImportSummaries()).thenReturn(new ArrayList<>());
 
         writer.write(processedTableRows);
 
-        verify(syncRepository, times(1)).sendEnrollmentData(uri, requestBody);
+        verify(syncRepository, times(1)).sendEnrollmentData(eq(uri), enrollmentRequestBodyOf(requestBody));
         verify(responseEntity, times(1)).getBody();
         verify(syncResponse, times(1)).getResponse();
         verify(response, times(1)).getImportSummaries();
@@ -310,13 +320,13 @@ public class UpdatedActiveAndCompletedEnrollmentWithEventsWriterTest {
                 )
         );
 
-        when(syncRepository.sendEnrollmentData(uri, requestBody)).thenReturn(responseEntity);
+        when(syncRepository.sendEnrollmentData(eq(uri), enrollmentRequestBodyOf(requestBody))).thenReturn(responseEntity);
         when(responseEntity.getStatusCode()).thenReturn(HttpStatus.OK);
         when(response.getImportSummaries()).thenReturn(importSummaries);
 
         writer.write(processedTableRows);
 
-        verify(syncRepository, times(1)).sendEnrollmentData(uri, requestBody);
+        verify(syncRepository, times(1)).sendEnrollmentData(eq(uri), enrollmentRequestBodyOf(requestBody));
         verify(responseEntity, times(1)).getBody();
         verify(syncResponse, times(1)).getResponse();
         verify(response, times(1)).getImportSummaries();
@@ -391,12 +401,12 @@ public class UpdatedActiveAndCompletedEnrollmentWithEventsWriterTest {
                 )
         );
 
-        when(syncRepository.sendEnrollmentData(uri, requestBody)).thenReturn(responseEntity);
+        when(syncRepository.sendEnrollmentData(eq(uri), enrollmentRequestBodyOf(requestBody))).thenReturn(responseEntity);
         when(response.getImportSummaries()).thenReturn(importSummaries);
 
         writer.write(processedTableRows);
 
-        verify(syncRepository, times(1)).sendEnrollmentData(uri, requestBody);
+        verify(syncRepository, times(1)).sendEnrollmentData(eq(uri), enrollmentRequestBodyOf(requestBody));
         verify(responseEntity, times(2)).getBody();
         verify(syncResponse, times(1)).getResponse();
         verify(response, times(1)).getImportSummaries();
@@ -435,12 +445,12 @@ public class UpdatedActiveAndCompletedEnrollmentWithEventsWriterTest {
 
         String message = "Program has another active enrollment going on. Not possible to incomplete";
 
-        when(syncRepository.sendEnrollmentData(uri, requestBody)).thenReturn(responseEntity);
+        when(syncRepository.sendEnrollmentData(eq(uri), enrollmentRequestBodyOf(requestBody))).thenReturn(responseEntity);
         when(syncResponse.getMessage()).thenReturn(message);
 
         writer.write(processedTableRows);
 
-        verify(syncRepository, times(1)).sendEnrollmentData(uri, requestBody);
+        verify(syncRepository, times(1)).sendEnrollmentData(eq(uri), enrollmentRequestBodyOf(requestBody));
         verify(responseEntity, times(2)).getBody();
         verify(syncResponse, times(1)).getMessage();
         verify(logger, times(1)).error("UPDATE COMPLETED ENROLLMENT WITH EVENTS SYNC: " + message);
@@ -489,13 +499,13 @@ public class UpdatedActiveAndCompletedEnrollmentWithEventsWriterTest {
         when(JobService.isIS_JOB_FAILED()).thenReturn(true);
         doNothing().when(JobService.class);
         JobService.setIS_JOB_FAILED(true);
-        when(syncRepository.sendEnrollmentData(uri, requestBody)).thenReturn(responseEntity);
+        when(syncRepository.sendEnrollmentData(eq(uri), enrollmentRequestBodyOf(requestBody))).thenReturn(responseEntity);
         when(responseEntity.getStatusCode()).thenReturn(HttpStatus.OK);
         when(response.getImportSummaries()).thenReturn(new ArrayList<>());
 
         writer.write(processedTableRows);
 
-        verify(syncRepository, times(0)).sendEnrollmentData(uri, requestBody);
+        verify(syncRepository, times(0)).sendEnrollmentData(eq(uri), enrollmentRequestBodyOf(requestBody));
         verify(responseEntity, times(0)).getBody();
         verify(syncResponse, times(0)).getResponse();
         verify(response, times(0)).getImportSummaries();
@@ -544,13 +554,13 @@ public class UpdatedActiveAndCompletedEnrollmentWithEventsWriterTest {
                 "]" +
                 "}";
 
-        when(syncRepository.sendEnrollmentData(uri, requestBody)).thenReturn(responseEntity);
+        when(syncRepository.sendEnrollmentData(eq(uri), enrollmentRequestBodyOf(requestBody))).thenReturn(responseEntity);
         when(responseEntity.getStatusCode()).thenReturn(HttpStatus.OK);
         when(response.getImportSummaries()).thenReturn(new ArrayList<>());
 
         writer.write(processedTableRows);
 
-        verify(syncRepository, times(1)).sendEnrollmentData(uri, requestBody);
+        verify(syncRepository, times(1)).sendEnrollmentData(eq(uri), enrollmentRequestBodyOf(requestBody));
         verify(responseEntity, times(1)).getBody();
         verify(syncResponse, times(1)).getResponse();
         verify(response, times(1)).getImportSummaries();
@@ -590,13 +600,13 @@ public class UpdatedActiveAndCompletedEnrollmentWithEventsWriterTest {
         instancesWithEnrollments.clear();
         instancesWithEnrollments.put(instanceId, Collections.singletonList(enrollmentDetails1));
 
-        when(syncRepository.sendEnrollmentData(uri, requestBody)).thenReturn(responseEntity);
+        when(syncRepository.sendEnrollmentData(eq(uri), enrollmentRequestBodyOf(requestBody))).thenReturn(responseEntity);
         when(responseEntity.getStatusCode()).thenReturn(HttpStatus.OK);
         when(response.getImportSummaries()).thenReturn(new ArrayList<>());
 
         writer.write(processedTableRows);
 
-        verify(syncRepository, times(1)).sendEnrollmentData(uri, requestBody);
+        verify(syncRepository, times(1)).sendEnrollmentData(eq(uri), enrollmentRequestBodyOf(requestBody));
         verify(responseEntity, times(1)).getBody();
         verify(syncResponse, times(1)).getResponse();
         verify(response, times(1)).getImportSummaries();